@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares two sets of JMH results (as written with <code>-rf json</code>), reporting the change in the score of each
+ * benchmark and parameter combination.
+ * <p>
+ * A benchmark whose score has worsened by more than the threshold is reported as a regression, and the program exits
+ * with a non-zero status. If there are no baseline results (for example the first run on a machine) the results are
+ * recorded as the baseline. For example:
+ *
+ * <pre>
+ * java -cp ... benchmarks.CompareResults baseline.json results.json [threshold-percent]
+ * </pre>
+ * </p>
+ */
+public class CompareResults {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	public static void main(String[] args) throws Exception {
+
+		if (args.length < 2) {
+			System.err.println("Usage: CompareResults <baseline.json> <results.json> [threshold-percent]");
+			System.exit(2);
+		}
+
+		File baselineFile = new File(args[0]);
+		File resultsFile = new File(args[1]);
+		double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : 10;
+
+		/* Baselines are specific to a machine and JVM, so the first run on a machine records one */
+		if (!baselineFile.exists()) {
+			Files.copy(resultsFile.toPath(), baselineFile.toPath());
+			System.out.println("No baseline results; recorded these results as the baseline (" + baselineFile + ")");
+			return;
+		}
+
+		Map<String, JsonNode> baseline = load(baselineFile);
+		Map<String, JsonNode> results = load(resultsFile);
+		int regressions = 0;
+
+		for (Iterator<Map.Entry<String, JsonNode>> r = results.entrySet().iterator(); r.hasNext();) {
+
+			Map.Entry<String, JsonNode> next = r.next();
+			JsonNode previous = baseline.get(next.getKey());
+
+			double score = next.getValue().path("primaryMetric").path("score").asDouble();
+			String unit = next.getValue().path("primaryMetric").path("scoreUnit").asText();
+
+			if (previous == null) {
+				System.out.printf("%-100s %12.3f %-8s (new)%n", next.getKey(), score, unit);
+				continue;
+			}
+
+			double previousScore = previous.path("primaryMetric").path("score").asDouble();
+			double change = (previousScore != 0) ? (score - previousScore) * 100 / previousScore : 0;
+
+			/* For throughput higher is better, for the time based modes lower is better */
+			boolean higherIsBetter = "thrpt".equals(next.getValue().path("mode").asText());
+			double worsening = higherIsBetter ? -change : change;
+			boolean regressed = worsening > threshold;
+
+			if (regressed) {
+				regressions++;
+			}
+
+			System.out.printf("%-100s %12.3f %-8s %+7.1f%%%s%n", next.getKey(), score, unit, change,
+					regressed ? "  REGRESSION" : "");
+		}
+
+		if (regressions > 0) {
+			System.out.printf("%d benchmark(s) more than %.1f%% worse than the baseline%n", regressions, threshold);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Loads a set of results, keyed by benchmark name and parameters.
+	 */
+	private static Map<String, JsonNode> load(File resultsFile) throws Exception {
+
+		LinkedHashMap<String, JsonNode> results = new LinkedHashMap<String, JsonNode>();
+		JsonNode root = new ObjectMapper().readTree(resultsFile);
+
+		for (Iterator<JsonNode> r = root.elements(); r.hasNext();) {
+
+			JsonNode result = r.next();
+			StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+			JsonNode params = result.path("params");
+
+			for (Iterator<Map.Entry<String, JsonNode>> p = params.fields(); p.hasNext();) {
+				Map.Entry<String, JsonNode> param = p.next();
+				key.append(key.indexOf("{") == -1 ? " {" : ", ").append(param.getKey()).append('=')
+						.append(param.getValue().asText());
+			}
+
+			results.put((key.indexOf("{") == -1) ? key.toString() : key.append('}').toString(), result);
+		}
+
+		return results;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks;
+
+import fabric.Fabric;
+import fabric.TaskServiceDescriptor;
+import fabric.bus.feeds.impl.ServiceList;
+import fabric.bus.feeds.impl.SubscriptionMessage;
+import fabric.bus.messages.IFabricMessage;
+import fabric.bus.messages.IServiceMessage;
+import fabric.bus.messages.impl.FeedMessage;
+import fabric.bus.messages.impl.MessagePayload;
+import fabric.bus.routing.impl.StaticRouting;
+
+/**
+ * Representative messages used by the benchmarks.
+ * <p>
+ * The Fabric message classes read the local configuration settings, so the benchmark JVM must be started with
+ * <code>-Dfabric.config=.../fabricConfig_default.properties</code> (the <code>benchmarks</code> Ant target does this).
+ * </p>
+ */
+public class MessageFixtures {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/** The bus topic upon which feed messages are received */
+	public static final String FEED_TOPIC = "$fabric/node1/$feeds/$bus/platform1/system1/feed1";
+
+	/** The topic upon which service messages are received */
+	public static final String SERVICE_TOPIC = "$fabric/node1/$commands/$bus";
+
+	/** The route of the representative messages */
+	private static final String[] ROUTE = new String[] {"node1", "node2", "node3"};
+
+	/**
+	 * No instantiation of this class.
+	 */
+	private MessageFixtures() {
+
+	}
+
+	/**
+	 * Loads the local configuration settings (once).
+	 */
+	public static void initFabric() {
+
+		new Fabric().initFabricConfig();
+	}
+
+	/**
+	 * Answers a JSON payload, as published by a typical sensor feed.
+	 *
+	 * @param size
+	 *            the approximate size of the payload (in bytes).
+	 */
+	public static byte[] jsonPayload(int size) {
+
+		StringBuilder raw = new StringBuilder("{\"ts\":1400000000000,\"v\":\"");
+
+		while (raw.length() < size - 2) {
+			raw.append((char) ('a' + raw.length() % 26));
+		}
+
+		return raw.append("\"}").toString().getBytes();
+	}
+
+	/**
+	 * Answers a feed message, as sent between nodes.
+	 *
+	 * @param payloadSize
+	 *            the approximate size of the payload (in bytes).
+	 */
+	public static FeedMessage feedMessage(int payloadSize) {
+
+		FeedMessage message = new FeedMessage();
+		MessagePayload messagePayload = new MessagePayload();
+		messagePayload.setPayload(jsonPayload(payloadSize));
+		message.setPayload(messagePayload);
+		message.setOrdinal(42);
+		message.setRouting(new StaticRouting(ROUTE));
+		message.metaSetTopic(FEED_TOPIC);
+		return message;
+	}
+
+	/**
+	 * Answers a service message: a subscription request, as sent by <code>Subscription.subscribe()</code>.
+	 */
+	public static SubscriptionMessage serviceMessage() {
+
+		SubscriptionMessage message = new SubscriptionMessage();
+		message.setCorrelationID("correlation1");
+		message.setNotification(true);
+		message.setAction(IServiceMessage.ACTION_SUBSCRIBE);
+		message.setEvent(IServiceMessage.EVENT_ACTOR_REQUEST);
+		message.setProperty(IServiceMessage.PROPERTY_ACTOR, "actor1");
+		message.setProperty(IServiceMessage.PROPERTY_ACTOR_PLATFORM, "platform2");
+
+		ServiceList serviceList = new ServiceList();
+		serviceList.addService(new TaskServiceDescriptor("task1", "platform1", "system1", "feed1"));
+		message.setServiceList(serviceList);
+
+		message.setRouting(new StaticRouting(ROUTE));
+		message.metaSetTopic(SERVICE_TOPIC);
+		return message;
+	}
+
+	/**
+	 * Answers a representative message of the specified type.
+	 *
+	 * @param type
+	 *            <code>feed</code> or <code>service</code>.
+	 */
+	public static IFabricMessage message(String type) {
+
+		return "service".equals(type) ? serviceMessage() : feedMessage(256);
+	}
+
+	/**
+	 * Answers the topic upon which a representative message of the specified type is received.
+	 *
+	 * @param type
+	 *            <code>feed</code> or <code>service</code>.
+	 */
+	public static String topic(String type) {
+
+		return "service".equals(type) ? SERVICE_TOPIC : FEED_TOPIC;
+	}
+}
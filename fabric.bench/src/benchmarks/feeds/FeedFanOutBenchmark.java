@@ -0,0 +1,142 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks.feeds;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.MessageFixtures;
+import fabric.TaskServiceDescriptor;
+import fabric.bus.IBusServices;
+import fabric.bus.feeds.impl.FeedHandlingFixture;
+import fabric.bus.feeds.impl.SubscriptionManager;
+import fabric.bus.messages.IFeedMessage;
+import fabric.bus.messages.WireFormat;
+import fabric.services.messageforwarding.MessageForwardingService;
+import fabric.services.messageforwarding.OutboundMessage;
+
+/**
+ * Delivery of a feed message to a number of locally connected subscribers by
+ * <code>SubscriptionManager.handleFeed()</code>.
+ * <p>
+ * The subscription manager is driven unchanged; only its transport is stubbed. Messages that it queues for delivery
+ * are serialized (as the forwarding service would when delivering them) and consumed, so the figures exclude the cost
+ * of queueing and MQTT delivery.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedFanOutBenchmark {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/** The topic upon which messages are delivered to locally connected actors */
+	private static final String CLIENTS_TOPIC = "$fabric/node1/$clients/$feeds";
+
+	@Param({"1", "10", "100"})
+	public int subscribers;
+
+	@Param({"XML", "BINARY"})
+	public String wireFormat;
+
+	private IFeedMessage message = null;
+
+	private SubscriptionManager subscriptionManager = null;
+
+	private StubTransport transport = null;
+
+	/**
+	 * Forwarding service that serializes and discards the messages queued for delivery, in place of the transport.
+	 */
+	private static class StubTransport extends MessageForwardingService {
+
+		private final WireFormat format;
+
+		/** Set per invocation (the benchmark's sink) */
+		Blackhole sink = null;
+
+		StubTransport(WireFormat format) {
+
+			this.format = format;
+		}
+
+		@Override
+		public void add(OutboundMessage outbound) {
+
+			try {
+
+				/* As BusIO.deliverFeedMessage() */
+				String topic = CLIENTS_TOPIC + '/' + outbound.subscription().actor() + '/'
+						+ outbound.subscription().actorPlatform() + '/' + outbound.subscription().service().task()
+						+ '/' + outbound.descriptor();
+				sink.consume(topic);
+				sink.consume(outbound.message().toWireBytes(format));
+
+			} catch (Exception e) {
+
+				throw new IllegalStateException(e);
+
+			}
+		}
+	}
+
+	@Setup
+	public void setup() {
+
+		MessageFixtures.initFabric();
+		message = MessageFixtures.feedMessage(256);
+		transport = new StubTransport(WireFormat.valueOf(wireFormat));
+
+		/* Bus services providing only the (stubbed) forwarding service */
+		IBusServices busServices = (IBusServices) Proxy.newProxyInstance(IBusServices.class.getClassLoader(),
+				new Class<?>[] {IBusServices.class}, new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+
+						return "forwardingManager".equals(method.getName()) ? transport : null;
+					}
+				});
+
+		String[] actors = new String[subscribers];
+
+		for (int s = 0; s < subscribers; s++) {
+			actors[s] = "actor" + s;
+		}
+
+		subscriptionManager = FeedHandlingFixture.subscriptionManager(busServices, new TaskServiceDescriptor("task1",
+				"platform1", "system1", "feed1"), "platform2", actors);
+	}
+
+	@Benchmark
+	public void fanOut(Blackhole sink) throws Exception {
+
+		transport.sink = sink;
+		subscriptionManager.handleFeed(message);
+	}
+}
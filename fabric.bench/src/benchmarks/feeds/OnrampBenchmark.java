@@ -0,0 +1,96 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks.feeds;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.MessageFixtures;
+import fabric.ServiceDescriptor;
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IFeedMessage;
+import fabric.bus.messages.impl.FeedMessage;
+import fabric.bus.messages.impl.MessagePayload;
+
+/**
+ * Handling of messages from locally connected feeds, comparing the in-process path (see the
+ * <code>fabric.ingest.inProcess</code> configuration property) with the broker loopback that it replaces.
+ * <p>
+ * The loopback is measured up to the point at which the message would be handed to the subscription manager, i.e. the
+ * serialization and re-parsing of the Fabric message; the two MQTT hops via the local broker (publish, and delivery
+ * back to the node) come on top of the reported figures.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OnrampBenchmark {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/** The topic upon which a locally connected feed publishes */
+	private static final String ONRAMP_TOPIC = "$fabric/node1/$feeds/$onramp/platform1/system1/feed1";
+
+	@Param({"64", "1024"})
+	public int payloadSize;
+
+	/** The raw message published by the feed */
+	private byte[] payload = null;
+
+	@Setup
+	public void setup() {
+
+		MessageFixtures.initFabric();
+		payload = MessageFixtures.jsonPayload(payloadSize);
+	}
+
+	@Benchmark
+	public ServiceDescriptor brokerLoopback() throws Exception {
+
+		IFeedMessage message = wrap();
+		byte[] wireBytes = message.toWireBytes();
+		IFeedMessage received = (IFeedMessage) FabricMessageFactory.create(MessageFixtures.FEED_TOPIC, wireBytes);
+		return received.metaGetFeedDescriptor();
+	}
+
+	@Benchmark
+	public ServiceDescriptor inProcess() {
+
+		IFeedMessage message = wrap();
+		message.metaSetTopic(MessageFixtures.FEED_TOPIC);
+		return message.metaGetFeedDescriptor();
+	}
+
+	/**
+	 * Packages the raw message as a Fabric feed message, as <code>BusIO.sendRawMessage()</code> does.
+	 */
+	private IFeedMessage wrap() {
+
+		FeedMessage message = new FeedMessage();
+		MessagePayload messagePayload = new MessagePayload();
+		messagePayload.setPayload(payload);
+		message.setPayload(messagePayload);
+		message.metaSetTopic(ONRAMP_TOPIC);
+		return message;
+	}
+}
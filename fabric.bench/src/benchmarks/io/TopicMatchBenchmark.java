@@ -0,0 +1,107 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks.io;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fabric.core.io.mqtt.TopicMatcher;
+
+/**
+ * Matching of received topics against the subscriptions of an MQTT end point (<code>TopicMatcher</code>, as used by
+ * <code>MqttEndPoint</code> to select the channels for a message), at various subscription counts.
+ * <p>
+ * The subscriptions are a mix of exact topics and filters using the <code>+</code> and <code>#</code> wildcards, in the
+ * form used by the Fabric's feed topics. The <code>hit</code> benchmark matches a topic that has a few matching
+ * subscriptions; <code>miss</code> matches one that has none.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicMatchBenchmark {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	@Param({"10", "100", "1000", "10000"})
+	public int subscriptions;
+
+	private final TopicMatcher<Integer> matcher = new TopicMatcher<Integer>();
+
+	private final ArrayList<Integer> matches = new ArrayList<Integer>();
+
+	private String hitTopic = null;
+
+	private String missTopic = null;
+
+	@Setup
+	public void setup() {
+
+		matcher.clear();
+
+		for (int s = 0; s < subscriptions; s++) {
+
+			String node = "node" + (s / 100 % 10);
+			String platform = "platform" + (s / 10 % 10);
+			String feed = "feed" + s;
+
+			switch (s % 10) {
+
+				case 0:
+					/* Everything from a platform */
+					matcher.add("$fabric/" + node + "/$feeds/$bus/" + platform + "/#", s);
+					break;
+
+				case 1:
+					/* A feed on any system */
+					matcher.add("$fabric/" + node + "/$feeds/$bus/" + platform + "/+/" + feed, s);
+					break;
+
+				default:
+					matcher.add("$fabric/" + node + "/$feeds/$bus/" + platform + "/system1/" + feed, s);
+					break;
+
+			}
+		}
+
+		hitTopic = "$fabric/node0/$feeds/$bus/platform0/system1/feed2";
+		missTopic = "$fabric/nodeX/$feeds/$bus/platform0/system1/feed2";
+	}
+
+	@Benchmark
+	public int hit() {
+
+		matches.clear();
+		matcher.match(hitTopic, matches);
+		return matches.size();
+	}
+
+	@Benchmark
+	public int miss() {
+
+		matches.clear();
+		matcher.match(missTopic, matches);
+		return matches.size();
+	}
+}
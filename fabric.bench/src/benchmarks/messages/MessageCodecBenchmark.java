@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks.messages;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.MessageFixtures;
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IFabricMessage;
+import fabric.bus.messages.WireFormat;
+import fabric.core.xml.XML;
+
+/**
+ * Parsing (<code>FabricMessageFactory.create()</code>) and serialization of feed and service messages in each wire
+ * format.
+ * <p>
+ * Serialization is measured without the message's cached XML, i.e. as for a newly created or modified message.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	@Param({"feed", "service"})
+	public String messageType;
+
+	@Param({"XML", "BINARY"})
+	public String wireFormat;
+
+	private WireFormat format = null;
+
+	private IFabricMessage message = null;
+
+	private String topic = null;
+
+	private byte[] wireBytes = null;
+
+	@Setup
+	public void setup() throws Exception {
+
+		MessageFixtures.initFabric();
+		format = WireFormat.valueOf(wireFormat);
+		message = MessageFixtures.message(messageType);
+		topic = MessageFixtures.topic(messageType);
+		wireBytes = message.toWireBytes(format);
+	}
+
+	@Benchmark
+	public IFabricMessage parse() throws Exception {
+
+		return FabricMessageFactory.create(topic, wireBytes);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws Exception {
+
+		/* As FabricMessage.toWireBytes() when there is no cached XML */
+		XML messageXML = new XML();
+		message.embed("/fab", messageXML);
+		return format.encode(messageXML);
+	}
+}
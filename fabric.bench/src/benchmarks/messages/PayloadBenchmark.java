@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks.messages;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.MessageFixtures;
+import fabric.TaskServiceDescriptor;
+import fabric.bus.feeds.impl.ServiceList;
+import fabric.bus.messages.IMessagePayload;
+import fabric.bus.messages.impl.MessagePayload;
+import fabric.core.xml.XML;
+
+/**
+ * Encoding of raw payloads into a message (<code>MessagePayload.setPayload()</code> and <code>embed()</code>), and
+ * decoding them again (<code>init()</code> and <code>getPayload()</code>), for each payload encoding: text (an ASCII
+ * JSON document), bytes (base 64) and XML (a serialized service list).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadBenchmark {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/** The element in which the payload is embedded (as in a Fabric message) */
+	private static final String ELEMENT = "/fab";
+
+	@Param({"text", "bytes", "xml"})
+	public String encoding;
+
+	@Param({"256"})
+	public int payloadSize;
+
+	private byte[] raw = null;
+
+	private XML messageXML = null;
+
+	@Setup
+	public void setup() throws Exception {
+
+		MessageFixtures.initFabric();
+
+		if ("bytes".equals(encoding)) {
+
+			raw = new byte[payloadSize];
+			new Random(42).nextBytes(raw);
+
+		} else if ("xml".equals(encoding)) {
+
+			/* XML payloads are serialized Fabric objects, identified by the "enc" attribute: use a service list */
+			ServiceList services = new ServiceList();
+			XML payloadXML = new XML();
+
+			for (int s = 0; payloadXML.toBytes().length < payloadSize; s++) {
+				services.addService(new TaskServiceDescriptor("task1", "platform1", "system1", "feed" + s));
+				services.embed("/pay", payloadXML);
+			}
+
+			payloadXML.set("/pay@enc", ServiceList.class.getName());
+			raw = payloadXML.toBytes();
+
+		} else {
+
+			raw = MessageFixtures.jsonPayload(payloadSize);
+
+		}
+
+		messageXML = encode();
+
+		int actual = new MessagePayload().payloadEncoding(raw);
+		int expected = "bytes".equals(encoding) ? IMessagePayload.PAYLOAD_BYTES
+				: "xml".equals(encoding) ? IMessagePayload.PAYLOAD_XML : IMessagePayload.PAYLOAD_TEXT;
+
+		if (actual != expected) {
+			throw new IllegalStateException("Payload encoded as " + actual + ", expected " + expected);
+		}
+	}
+
+	@Benchmark
+	public XML encode() throws Exception {
+
+		MessagePayload payload = new MessagePayload();
+		payload.setPayload(raw);
+		XML xml = new XML();
+		payload.embed(ELEMENT, xml);
+		return xml;
+	}
+
+	@Benchmark
+	public byte[] decode() throws Exception {
+
+		MessagePayload payload = new MessagePayload();
+		payload.init(ELEMENT, messageXML);
+		return payload.getPayload();
+	}
+}
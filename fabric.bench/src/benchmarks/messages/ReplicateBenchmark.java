@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks.messages;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.MessageFixtures;
+import fabric.bus.messages.IFabricMessage;
+import fabric.bus.messages.IReplicate;
+
+/**
+ * Replication of feed and service messages (<code>FabricMessage.replicate()</code>), as performed for each task and
+ * actor when a feed message is delivered.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplicateBenchmark {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	@Param({"feed", "service"})
+	public String messageType;
+
+	private IFabricMessage message = null;
+
+	@Setup
+	public void setup() throws Exception {
+
+		MessageFixtures.initFabric();
+		message = MessageFixtures.message(messageType);
+	}
+
+	@Benchmark
+	public IReplicate replicate() {
+
+		return message.replicate();
+	}
+}
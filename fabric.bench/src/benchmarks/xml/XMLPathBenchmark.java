@@ -0,0 +1,105 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package benchmarks.xml;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fabric.core.xml.XML;
+
+/**
+ * Path based access to <code>fabric.core.xml.XML</code> documents, using the paths typical of Fabric messages.
+ * <p>
+ * To obtain figures without the compiled path cache and the per-document node index, run with
+ * <code>-jvmArgsAppend -Dfabric.xml.pathCacheSize=0</code>.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XMLPathBenchmark {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/** The paths read from the message, as used by the Fabric message classes */
+	private static final String[] GET_PATHS = new String[] {"/fab@t", "/fab/rt", "/fab/pay@enc", "/fab/pay",
+			"/fab@uid", "/fab/prp/p[0]@n", "/fab/prp/p[1]@n", "/fab/prp/p[2]"};
+
+	/** The regular expression used to select the message properties */
+	private static final String PROPERTY_PATHS = "/fab\\[0\\]/prp\\[0\\]/p\\[.*\\]";
+
+	private XML message = null;
+
+	private byte[] messageBytes = null;
+
+	@Setup
+	public void setup() throws Exception {
+
+		message = new XML();
+		message.set("/fab@t", "f");
+		message.set("/fab@uid", "node1:1234567890:42");
+		message.set("/fab/rt", "node1/node2/node3");
+		message.set("/fab/pay@enc", "str");
+		message.set("/fab/pay", "{\"temperature\":21.5}");
+
+		for (int p = 0; p < 3; p++) {
+			message.set("/fab/prp/p[" + p + "]@n", "property" + p);
+			message.set("/fab/prp/p[" + p + "]", "value" + p);
+		}
+
+		messageBytes = message.toBytes();
+	}
+
+	@Benchmark
+	public void get(Blackhole sink) {
+
+		for (int p = 0; p < GET_PATHS.length; p++) {
+			sink.consume(message.get(GET_PATHS[p]));
+		}
+	}
+
+	@Benchmark
+	public XML set() {
+
+		message.set("/fab/rt", "a/b/c");
+		message.set("/fab/pay@enc", "bin");
+		message.set("/fab/prp/p[1]", "value");
+		return message;
+	}
+
+	@Benchmark
+	public String[] getPaths() {
+
+		return message.getPaths(PROPERTY_PATHS);
+	}
+
+	@Benchmark
+	public void parseAndGet(Blackhole sink) throws Exception {
+
+		XML received = new XML(messageBytes);
+
+		for (int p = 0; p < GET_PATHS.length; p++) {
+			sink.consume(received.get(GET_PATHS[p]));
+		}
+	}
+}
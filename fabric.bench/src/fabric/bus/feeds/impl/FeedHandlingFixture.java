@@ -0,0 +1,92 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.feeds.impl;
+
+import java.util.ArrayList;
+
+import fabric.Fabric;
+import fabric.ServiceDescriptor;
+import fabric.TaskServiceDescriptor;
+import fabric.bus.IBusServices;
+import fabric.bus.plugins.impl.FeedPluginDispatcher;
+import fabric.bus.routing.impl.StaticRouting;
+import fabric.core.io.MessageQoS;
+import fabric.registry.TaskPlugin;
+
+/**
+ * Builds a subscription manager, with subscriptions from locally connected actors to a single feed, without the
+ * Registry (which is otherwise the source of subscriptions and plug-ins).
+ * <p>
+ * This class is in the subscription manager's package so that it can use its package-private initialization.
+ * </p>
+ */
+public class FeedHandlingFixture {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/**
+	 * No instantiation of this class.
+	 */
+	private FeedHandlingFixture() {
+
+	}
+
+	/**
+	 * Answers a subscription manager for which each of the specified actors is subscribed to a feed via a task. No
+	 * plug-ins are configured.
+	 *
+	 * @param busServices
+	 *            the interface to Fabric management functions used by the subscription manager.
+	 *
+	 * @param taskFeed
+	 *            the task and feed to which the actors are subscribed.
+	 *
+	 * @param actorPlatform
+	 *            the ID of the platform via which the actors are connected.
+	 *
+	 * @param actors
+	 *            the actors.
+	 *
+	 * @return the subscription manager.
+	 */
+	public static SubscriptionManager subscriptionManager(IBusServices busServices, TaskServiceDescriptor taskFeed,
+			String actorPlatform, String[] actors) {
+
+		String homeNode = new Fabric().homeNode();
+		String feed = new ServiceDescriptor(taskFeed).toString();
+		SubscriptionTable subscriptions = SubscriptionTable.EMPTY;
+
+		/* The actors are connected to this node, so feed messages are delivered locally */
+		StaticRouting routing = new StaticRouting(new String[] {homeNode});
+
+		for (int a = 0; a < actors.length; a++) {
+
+			FeedPluginDispatcher inboundTaskDispatcher = null;
+			FeedPluginDispatcher outboundTaskDispatcher = null;
+
+			if (a == 0) {
+				inboundTaskDispatcher = FeedPluginDispatcher.taskPluginFactory(homeNode, new TaskPlugin[0],
+						busServices, taskFeed);
+				outboundTaskDispatcher = FeedPluginDispatcher.taskPluginFactory(homeNode, new TaskPlugin[0],
+						busServices, taskFeed);
+			}
+
+			SubscriptionRecord subscription = new SubscriptionRecord(actors[a], actorPlatform, taskFeed, routing,
+					MessageQoS.DEFAULT, FeedPluginDispatcher.actorPluginFactory(homeNode, new TaskPlugin[0],
+							busServices, taskFeed, actors[a]), FeedPluginDispatcher.actorPluginFactory(homeNode,
+							new TaskPlugin[0], busServices, taskFeed, actors[a]), new ArrayList<String>());
+			subscriptions = subscriptions.add(feed, MessageQoS.DEFAULT, taskFeed.task(), inboundTaskDispatcher,
+					outboundTaskDispatcher, subscription);
+		}
+
+		SubscriptionManager subscriptionManager = new SubscriptionManager();
+		subscriptionManager.initService(busServices, subscriptions);
+		return subscriptionManager;
+	}
+}
@@ -59,4 +59,19 @@ public interface IEndPointCallback {
 	 */
 	public void endPointLost(EndPoint ep);
 
+	/**
+	 * Invoked when an asynchronous publication via an endpoint fails, i.e. after the message has been accepted for
+	 * delivery. Only the first failure following a successful delivery (or a reconnection) is reported.
+	 * 
+	 * @param ep
+	 *            the endpoint generating the event.
+	 * 
+	 * @param topic
+	 *            the topic to which the message was being published.
+	 * 
+	 * @param cause
+	 *            the reason for the failure.
+	 */
+	public void endPointDeliveryFailed(EndPoint ep, String topic, Throwable cause);
+
 }
@@ -7,9 +7,7 @@
 
 package fabric.core.io.mqtt;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.DatagramPacket;
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -37,12 +35,6 @@ public class MqttChannel extends Channel {
      * Class constants
      */
 
-    /** The header for MQTT-S messages indicating a PUBLISH message (0x0C) */
-    private static final byte[] MQTTS_HEADER = new byte[] {0x0C, 0x60};
-
-    /** Separator for the topic part of the header */
-    private static final byte[] MQTTS_TOPIC_SEPARATOR = new byte[] {' ', ' '};
-
     /** The prefix for worker thread names */
     private static final String prefix = "Fabric-Worker-";
 
@@ -319,8 +311,6 @@ public class MqttChannel extends Channel {
 
         if (outputTopic != null) {
 
-            MqttConfig config = (MqttConfig) endPoint.getConfig();
-
             try {
 
                 /* If were are not going to try and send this as an MQTT-S message... */
@@ -330,29 +320,31 @@ public class MqttChannel extends Channel {
                     /* Publish a MQTT message */
                     logger.log(Level.FINEST, "Publishing {0} byte MQTT payload to [{1}]", new Object[] {message.length,
                             outputTopic});
-                    endPoint.getMqttClient().publish(outputTopic.name(), message, mqttQos, retain);
+                    endPoint.publish(outputTopic.name(), message, mqttQos, retain);
 
                 } else {
 
-                    /* Generate an MQTT-S message */
-                    byte[] finalPacketBytes = buildMqttsMessage(outputTopic.name(), message);
+                    /* Size the MQTT-S message (without building it) */
+                    String topic = outputTopic.name();
+                    int topicLength = MqttsEncoder.topicLength(topic);
+                    int frameLength = MqttsEncoder.frameLength(topicLength, message.length);
 
-                    /* If the message is still small enough to be sent as a single datagram... */
-                    if (effectiveQoS(finalPacketBytes.length, qos) == MessageQoS.BEST_EFFORT) {
+                    /* If the message is small enough to be sent as a single datagram... */
+                    if (effectiveQoS(frameLength, qos) == MessageQoS.BEST_EFFORT) {
 
                         /* Send it as a datagram */
-                        logger.log(Level.FINEST, "Publishing {0} byte MQTT-S payload to [{1}]", new Object[] {
-                                message.length, outputTopic});
-                        DatagramPacket packet = new DatagramPacket(finalPacketBytes, finalPacketBytes.length, endPoint
-                                .getDatagramAddress(), config.getIPPort());
-                        endPoint.getDatagramSocket().send(packet);
+                        if (logger.isLoggable(Level.FINEST)) {
+                            logger.log(Level.FINEST, "Publishing {0} byte MQTT-S payload to [{1}]", new Object[] {
+                                    message.length, outputTopic});
+                        }
+                        endPoint.publishDatagram(topic, topicLength, message);
 
                     } else {
 
                         /* Fallback to publishing it as an MQTT message */
                         logger.log(Level.FINEST, "Publishing {0} byte MQTT payload to [{1}]", new Object[] {
                                 message.length, outputTopic});
-                        endPoint.getMqttClient().publish(outputTopic.name(), message, mqttQos, retain);
+                        endPoint.publish(outputTopic.name(), message, mqttQos, retain);
 
                     }
                 }
@@ -371,55 +363,6 @@ public class MqttChannel extends Channel {
         }
     }
 
-    /**
-     * Builds an MQTT-S message.
-     *
-     * @param topic
-     *            the topic to which the message is to be sent.
-     *
-     * @param payload
-     *            the message payload.
-     *
-     * @return the MQTT-S message bytes.
-     *
-     * @throws IOException
-     */
-    private byte[] buildMqttsMessage(String topic, byte[] payload) throws IOException {
-
-        ByteArrayOutputStream packetBuilder = new ByteArrayOutputStream();
-
-        packetBuilder.write(MQTTS_HEADER);
-
-        /* Add the topic */
-        byte[] topicBytes = topic.getBytes();
-        packetBuilder.write(new byte[] {(byte) (topicBytes.length / 256), (byte) (topicBytes.length % 256)});
-        packetBuilder.write(MQTTS_TOPIC_SEPARATOR);
-        packetBuilder.write(topicBytes);
-
-        /* Add the payload */
-        packetBuilder.write(payload);
-
-        /* Determine the message length */
-
-        int packetSize = packetBuilder.size();
-        byte[] packetSizeBytes = null;
-
-        /* If this is a long message... */
-        if (packetSize >= 254) {
-            packetSizeBytes = new byte[] {1, (byte) ((packetSize + 3) / 256), (byte) ((packetSize + 3) % 256)};
-        } else {
-            packetSizeBytes = new byte[] {(byte) (packetSize + 1)};
-        }
-
-        /* Compile the full packet */
-        ByteArrayOutputStream finalPacket = new ByteArrayOutputStream();
-        finalPacket.write(packetSizeBytes);
-        packetBuilder.writeTo(finalPacket);
-        byte[] finalPacketBytes = finalPacket.toByteArray();
-
-        return finalPacketBytes;
-    }
-
     /**
      * Determines the correct QoS setting to use for a message.
      *
@@ -631,6 +574,8 @@ public class MqttChannel extends Channel {
 
             if (inputTopic != null && !(inputTopic.name() == null || inputTopic.equals(""))) {
 
+                endPoint.removeSubscription(inputTopic.name(), this);
+
                 String[] topics = new String[] {inputTopic.name()};
                 endPoint.getMqttClient().unsubscribe(topics);
                 logger.log(Level.FINER, "Unsubscribed from topic [{0}]", inputTopic);
@@ -657,6 +602,9 @@ public class MqttChannel extends Channel {
             int[] mqttQosArray = new int[] {((MqttConfig) endPoint.getConfig()).getMqttQos()};
             boolean subscribed = false;
 
+            /* Register with the end point first so that no messages are dropped once the subscription is active */
+            endPoint.addSubscription(subscriptionArray[0], this);
+
             while (!subscribed) {
 
                 try {
@@ -36,6 +36,12 @@ public class MqttConfig extends Config {
     /** MQTT QOS setting 2 */
     public static final byte MQTT_QOS_2 = 2;
 
+    /**
+     * The largest in-flight window: one less than the MQTT client's own limit of 10 unacknowledged messages, leaving
+     * room for connection status messages.
+     */
+    public static final int MAX_INFLIGHT_LIMIT = 9;
+
     /*
      * Class fields
      */
@@ -73,6 +79,12 @@ public class MqttConfig extends Config {
     /** The maximum time interval (seconds) between messages sent/received via a broker connection. */
     private int keepAliveInterval = 60;
 
+    /** Indicates if messages are published asynchronously (defaults to <code>false</code>). */
+    private boolean asyncPublish = false;
+
+    /** The maximum number of asynchronous publications awaiting completion (defaults to the largest supported). */
+    private int maxInflight = MAX_INFLIGHT_LIMIT;
+
     /** Indicates if the MQTT-S is enabled. */
     private boolean mqttsEnabled = false;
 
@@ -107,6 +119,8 @@ public class MqttConfig extends Config {
         this.connectRetries = source.connectRetries;
         this.connectRetriesInterval = source.connectRetriesInterval;
         this.keepAliveInterval = source.keepAliveInterval;
+        this.asyncPublish = source.asyncPublish;
+        this.maxInflight = source.maxInflight;
 
         /* QoS settings */
         this.mqttsEnabled = source.mqttsEnabled;
@@ -140,6 +154,10 @@ public class MqttConfig extends Config {
                 Integer.toString(connectRetriesInterval)));
         keepAliveInterval = Integer.parseInt(config.getProperty(ConfigProperties.MQTT_KEEP_ALIVE_INTERVAL, Integer
                 .toString(keepAliveInterval)));
+        asyncPublish = Boolean.parseBoolean(config.getProperty(ConfigProperties.MQTT_ASYNC_PUBLISH, Boolean
+                .toString(asyncPublish)));
+        setMaxInflight(Integer.parseInt(config.getProperty(ConfigProperties.MQTT_MAX_INFLIGHT, Integer
+                .toString(maxInflight))));
 
         /* QoS settings */
         maxMqttsPayload = Integer.parseInt(config.getProperty("mqtts.maxPayload", "500"));
@@ -464,4 +482,48 @@ public class MqttConfig extends Config {
 
         this.keepAliveInterval = keepAliveInterval;
     }
+
+    /**
+     * Gets the flag indicating if messages are published asynchronously, i.e. without waiting for the broker to
+     * acknowledge each one before publishing the next.
+     *
+     * @return <code>true</code> if publishing is asynchronous, <code>false</code> otherwise.
+     */
+    public boolean isAsyncPublish() {
+
+        return asyncPublish;
+    }
+
+    /**
+     * Sets the flag indicating if messages are published asynchronously.
+     *
+     * @param asyncPublish
+     *            <code>true</code> if publishing is to be asynchronous, <code>false</code> otherwise.
+     */
+    public void setAsyncPublish(boolean asyncPublish) {
+
+        this.asyncPublish = asyncPublish;
+    }
+
+    /**
+     * Gets the maximum number of asynchronous publications awaiting completion (the in-flight window).
+     *
+     * @return the window size.
+     */
+    public int getMaxInflight() {
+
+        return maxInflight;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous publications awaiting completion (the in-flight window). The value is
+     * limited to the range <code>1</code> to <code>MAX_INFLIGHT_LIMIT</code>.
+     *
+     * @param maxInflight
+     *            the window size.
+     */
+    public void setMaxInflight(int maxInflight) {
+
+        this.maxInflight = Math.max(1, Math.min(MAX_INFLIGHT_LIMIT, maxInflight));
+    }
 }
@@ -10,15 +10,28 @@ package fabric.core.io.mqtt;
 import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.util.ArrayList;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.channels.DatagramChannel;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
@@ -28,11 +41,11 @@ import org.eclipse.paho.client.mqttv3.MqttMessage;
 import fabric.core.io.Channel;
 import fabric.core.io.Config;
 import fabric.core.io.EndPoint;
+import fabric.core.io.IEndPointCallback;
 import fabric.core.io.InputTopic;
 import fabric.core.io.Message;
 import fabric.core.io.OutputTopic;
 import fabric.core.properties.Properties;
-import fabric.core.util.Split;
 
 /**
  * Class representing an I/O end point, i.e. a logical connection to a remote node, implemented using MQTT or MQTT-S as
@@ -54,8 +67,11 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
     /** MQTT client connection. */
     private MqttClient mqttClient = null;
 
-    /** The socket for MQTT-S messages. */
-    private DatagramSocket datagramSocket = null;
+    /** The (connected) channel for MQTT-S messages. */
+    private DatagramChannel datagramChannel = null;
+
+    /** The encoder for MQTT-S messages. */
+    private MqttsEncoder mqttsEncoder = null;
 
     /** The address for MQTT-S messages. */
     private InetAddress datagramAddress = null;
@@ -63,8 +79,8 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
     /** The set of channels open against this end point. */
     private final HashMap<String, MqttChannel> channels = new HashMap<String, MqttChannel>();
 
-    /** The set of subscribed topics (one per channel). */
-    private final ArrayList<String> topics = new ArrayList<String>();
+    /** The index of subscribed topics, mapping each to the channel(s) subscribed to it. */
+    private final TopicMatcher<MqttChannel> subscriptions = new TopicMatcher<MqttChannel>();
 
     /** The configuration settings for this end point. */
     private MqttConfig config = null;
@@ -72,6 +88,125 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
     /** The class logger. */
     protected Logger logger;
 
+    /** Limits the number of asynchronous publications awaiting completion (replaced when the connection is re-made). */
+    private volatile Semaphore inflightWindow = null;
+
+    /** Used to report asynchronous delivery failures (away from the MQTT client's callback thread). */
+    private ExecutorService deliveryNotifier = null;
+
+    /** Indicates if the most recent asynchronous publication failed. */
+    private final AtomicBoolean deliveryFailing = new AtomicBoolean(false);
+
+    /** The number of messages published. */
+    private final AtomicLong publishedCount = new AtomicLong();
+
+    /** The number of asynchronous publications completed successfully. */
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    /** The number of asynchronous publications that failed. */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /** The total time (in nanoseconds) taken to complete successful asynchronous publications. */
+    private final AtomicLong deliveryNanos = new AtomicLong();
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * MQTT client that also exposes the asynchronous client on which it is built, so that messages can be published
+     * without waiting for each to complete while all other operations (which are infrequent) remain synchronous.
+     */
+    private static class PipelinedMqttClient extends MqttClient {
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param serverURI
+         *            the address of the broker.
+         *
+         * @param clientId
+         *            the client ID.
+         *
+         * @throws MqttException
+         */
+        PipelinedMqttClient(String serverURI, String clientId) throws MqttException {
+
+            super(serverURI, clientId, null);
+
+        }
+
+        /**
+         * Answers the underlying asynchronous client.
+         *
+         * @return the client.
+         */
+        MqttAsyncClient asyncClient() {
+
+            return aClient;
+
+        }
+    }
+
+    /**
+     * Completion handler for an asynchronous publication.
+     */
+    private class DeliveryListener implements IMqttActionListener {
+
+        /** The in-flight window from which a permit was taken for the publication. */
+        private final Semaphore window;
+
+        /** The topic to which the message was published. */
+        private final String topic;
+
+        /** The time at which the message was published (nanoseconds). */
+        private final long startTime;
+
+        /**
+         * Constructs a new instance.
+         */
+        DeliveryListener(Semaphore window, String topic) {
+
+            this.window = window;
+            this.topic = topic;
+            this.startTime = System.nanoTime();
+
+        }
+
+        /**
+         * @see org.eclipse.paho.client.mqttv3.IMqttActionListener#onSuccess(org.eclipse.paho.client.mqttv3.IMqttToken)
+         */
+        @Override
+        public void onSuccess(IMqttToken token) {
+
+            window.release();
+            deliveredCount.incrementAndGet();
+            deliveryNanos.addAndGet(System.nanoTime() - startTime);
+            deliveryFailing.set(false);
+
+        }
+
+        /**
+         * @see org.eclipse.paho.client.mqttv3.IMqttActionListener#onFailure(org.eclipse.paho.client.mqttv3.IMqttToken,
+         *      java.lang.Throwable)
+         */
+        @Override
+        public void onFailure(IMqttToken token, Throwable cause) {
+
+            window.release();
+            failedCount.incrementAndGet();
+
+            logger.log(Level.FINER, "Asynchronous publication to [{0}] failed: {1}", new Object[] {topic,
+                    (cause != null) ? cause.getMessage() : null});
+
+            /* If this is the first failure since the last successful delivery... */
+            if (deliveryFailing.compareAndSet(false, true)) {
+                notifyDeliveryFailed(topic, cause);
+            }
+
+        }
+    }
+
     /*
      * Class methods
      */
@@ -202,6 +337,18 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
             logger.log(Level.FINEST, "Exception: ", e);
         }
 
+        if (deliveryNotifier != null) {
+            deliveryNotifier.shutdown();
+        }
+
+        if (datagramChannel != null) {
+            try {
+                datagramChannel.close();
+            } catch (IOException e) {
+                /* Since we're cleaning up, ignore and carry on */
+            }
+        }
+
         try {
             /* If a callback is registered... */
             if (callback != null) {
@@ -239,13 +386,6 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
             }
         }
 
-        /* Make a note of the new topic */
-        synchronized (topics) {
-            if (inputTopic != null) {
-                topics.add(inputTopic.name());
-            }
-        }
-
         /* Now we can listen for incoming messages */
         mqttChannel.open();
 
@@ -278,6 +418,12 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
 
             mqttConnect();
 
+            /* Publications still in flight on the lost connection no longer count against the window */
+            if (inflightWindow != null) {
+                inflightWindow = new Semaphore(config.getMaxInflight());
+                deliveryFailing.set(false);
+            }
+
             /* Reconnect each of the current channels */
 
             logger.log(Level.FINER, "Re-subscribing to channel topics");
@@ -336,32 +482,27 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
 
         /* Pass the message to the channel */
 
-        synchronized (channels) {
+        /* Get the channel(s) subscribed to this topic */
+        List<MqttChannel> subscribedChannels = subscriptions.match(topic);
 
-            /* Get the channel for this topic */
-            String[] subscribedTopics = matchTopicToSubscriptions(topic);
+        /* If there are any... */
+        if (subscribedChannels.size() > 0) {
 
-            /* If there is one... */
-            if (subscribedTopics.length > 0) {
+            /* For each channel... */
+            for (MqttChannel channel : subscribedChannels) {
 
-                /* For each topic... */
-                for (int t = 0; t < subscribedTopics.length; t++) {
+                /* Pass the message */
+                messageHandled = channel.messageArrived(message);
 
-                    MqttChannel channel = channels.get(subscribedTopics[t]);
-
-                    /* Pass the message */
-                    messageHandled = channel.messageArrived(message);
-
-                }
+            }
 
-            } else {
+        } else {
 
-                /* We can't handle the message, so drop it */
-                logger.log(Level.WARNING, "No channel open for topic [{0}], dropping message:\n{1}", new Object[] {
-                        topic, message.toString()});
-                messageHandled = false;
+            /* We can't handle the message, so drop it */
+            logger.log(Level.WARNING, "No channel open for topic [{0}], dropping message:\n{1}", new Object[] {topic,
+                    message.toString()});
+            messageHandled = false;
 
-            }
         }
 
         logger.log(Level.FINEST, "Message handled (status [{0}])", Boolean.toString(messageHandled));
@@ -383,9 +524,7 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
         String inboundTopic = channel.inputTopic().name();
 
         /* Clean up references this topic */
-        synchronized (topics) {
-            topics.remove(inboundTopic);
-        }
+        removeSubscription(inboundTopic, channel);
 
         /* Clean up references to the channel */
         synchronized (channels) {
@@ -416,6 +555,153 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
 
     }
 
+    /**
+     * Publishes a message via the MQTT client connection for this end point.
+     * <p>
+     * If asynchronous publishing is configured, this method returns as soon as the message has been handed to the
+     * client, blocking only if the in-flight window is full (i.e. the configured number of publications are awaiting
+     * completion). The completion of each publication is recorded in the delivery statistics for this end point, and
+     * failures are reported to the registered <code>IEndPointCallback</code>. Otherwise this method returns once the
+     * publication is complete.
+     * </p>
+     *
+     * @param topic
+     *            the topic.
+     *
+     * @param payload
+     *            the message.
+     *
+     * @param qos
+     *            the MQTT QoS setting.
+     *
+     * @param retain
+     *            the "retain publication" flag.
+     *
+     * @throws Exception
+     *             thrown if the message cannot be published.
+     */
+    public void publish(String topic, byte[] payload, int qos, boolean retain) throws Exception {
+
+        Semaphore window = inflightWindow;
+
+        /* If publishing is synchronous... */
+        if (window == null) {
+
+            mqttClient.publish(topic, payload, qos, retain);
+            publishedCount.incrementAndGet();
+
+        } else {
+
+            /* Wait for space in the window (if the broker has acknowledged nothing for this long, give up) */
+            if (!window.tryAcquire(config.getKeepAliveInterval(), TimeUnit.SECONDS)) {
+                throw new IOException("Timed out waiting for in-flight publications to complete");
+            }
+
+            try {
+
+                ((PipelinedMqttClient) mqttClient).asyncClient().publish(topic, payload, qos, retain, null,
+                        new DeliveryListener(window, topic));
+                publishedCount.incrementAndGet();
+
+            } catch (Exception e) {
+
+                window.release();
+                throw e;
+
+            }
+        }
+    }
+
+    /**
+     * Answers the number of messages published via this end point.
+     *
+     * @return the count.
+     */
+    public long publishedCount() {
+
+        return publishedCount.get();
+
+    }
+
+    /**
+     * Answers the number of asynchronous publications via this end point that have completed successfully.
+     *
+     * @return the count.
+     */
+    public long deliveredCount() {
+
+        return deliveredCount.get();
+
+    }
+
+    /**
+     * Answers the number of asynchronous publications via this end point that have failed.
+     *
+     * @return the count.
+     */
+    public long failedCount() {
+
+        return failedCount.get();
+
+    }
+
+    /**
+     * Answers the average time taken to complete a successful asynchronous publication via this end point, i.e. the
+     * time from publication to acknowledgement by the broker (or, for QoS 0, until the message was sent).
+     *
+     * @return the time (in nanoseconds), or <code>0</code> if there have been no successful publications.
+     */
+    public long averageDeliveryTime() {
+
+        long delivered = deliveredCount.get();
+        return (delivered > 0) ? deliveryNanos.get() / delivered : 0;
+
+    }
+
+    /**
+     * Answers the number of asynchronous publications via this end point awaiting completion.
+     *
+     * @return the count.
+     */
+    public int inflightCount() {
+
+        Semaphore window = inflightWindow;
+        return (window != null) ? config.getMaxInflight() - window.availablePermits() : 0;
+
+    }
+
+    /**
+     * Reports an asynchronous delivery failure to the registered callback (if any).
+     *
+     * @param topic
+     *            the topic to which the message was being published.
+     *
+     * @param cause
+     *            the reason for the failure.
+     */
+    private void notifyDeliveryFailed(final String topic, final Throwable cause) {
+
+        if (callback != null && deliveryNotifier != null) {
+
+            final IEndPointCallback currentCallback = callback;
+
+            deliveryNotifier.execute(new Runnable() {
+                @Override
+                public void run() {
+
+                    try {
+                        currentCallback.endPointDeliveryFailed(MqttEndPoint.this, topic, cause);
+                    } catch (Exception e) {
+                        logger.log(Level.WARNING, "Exception in callback {0}.endPointDeliveryFailed(): {1}",
+                                new Object[] {classID(currentCallback), e.getMessage()});
+                        logger.log(Level.FINEST, "Full exception: ", e);
+                    }
+
+                }
+            });
+        }
+    }
+
     /**
      * Gets the datagam socket created for MQTT-S messages.
      *
@@ -423,8 +709,37 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
      */
     public DatagramSocket getDatagramSocket() {
 
-        return datagramSocket;
+        return (datagramChannel != null) ? datagramChannel.socket() : null;
+
+    }
+
+    /**
+     * Publishes a message as a single MQTT-S datagram.
+     *
+     * @param topic
+     *            the topic to which the message is to be sent.
+     *
+     * @param topicLength
+     *            the length of the topic name once encoded (see <code>MqttsEncoder.topicLength()</code>).
+     *
+     * @param payload
+     *            the message payload.
+     *
+     * @throws IOException
+     *             thrown if the message cannot be sent.
+     */
+    protected void publishDatagram(String topic, int topicLength, byte[] payload) throws IOException {
+
+        try {
+
+            mqttsEncoder.write(datagramChannel, topic, topicLength, payload);
 
+        } catch (PortUnreachableException e) {
+
+            /* Reported for an earlier datagram; MQTT-S delivery is best effort, so ignore it */
+            logger.log(Level.FINEST, "MQTT-S gateway [{0}] unreachable", datagramAddress);
+
+        }
     }
 
     /**
@@ -448,8 +763,31 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
 
         try {
 
-            mqttClient = new MqttClient("tcp://" + config.getIPHost() + ":" + config.getIPPort(), config.getClient(),
-                    null);
+            String serverURI = "tcp://" + config.getIPHost() + ":" + config.getIPPort();
+
+            /* If messages are to be published asynchronously... */
+            if (config.isAsyncPublish()) {
+
+                mqttClient = new PipelinedMqttClient(serverURI, config.getClient());
+                inflightWindow = new Semaphore(config.getMaxInflight());
+
+                deliveryNotifier = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+
+                        Thread notifierThread = new Thread(r, "Fabric-Delivery-" + config.getClient());
+                        notifierThread.setDaemon(true);
+                        return notifierThread;
+
+                    }
+                });
+
+            } else {
+
+                mqttClient = new MqttClient(serverURI, config.getClient(), null);
+
+            }
+
             mqttClient.setCallback(this);
 
         } catch (MqttException e) {
@@ -556,9 +894,17 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
 
             try {
 
-                /* Establish the UDP connection */
-                datagramSocket = new DatagramSocket();
+                /* Establish the UDP connection (connected, so that datagrams can be sent with a gathering write) */
                 datagramAddress = InetAddress.getByName(config.getIPHost());
+                DatagramChannel channel = DatagramChannel.open();
+                try {
+                    channel.connect(new InetSocketAddress(datagramAddress, config.getIPPort()));
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+                datagramChannel = channel;
+                mqttsEncoder = new MqttsEncoder(config.getMaxMqttsPayload(), 16);
                 connected = true;
 
             } catch (Exception e) {
@@ -581,88 +927,33 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
     }
 
     /**
-     * Checks the specified topic for a match in the list subscribed to by the channels of this end point, taking
-     * account of wildcards used in the channel topic names.
+     * Records that a channel is subscribed to a topic, so that messages arriving on matching topics are passed to it.
      *
      * @param topic
-     *            the topic to check.
+     *            the subscribed topic (which may include wildcards).
      *
-     * @return the list of names of the matching channel topics.
+     * @param channel
+     *            the channel.
      */
-    private String[] matchTopicToSubscriptions(String topic) {
-
-        ArrayList<String> matchingTopics = new ArrayList<String>();
-
-        synchronized (topics) {
-
-            /* Get the list of active topics */
-            Iterator<String> topicIterator = topics.iterator();
-
-            String[] topicParts = Split.divide(topic, "/");
-            int t = 0;
-
-            /* For each registered topic... */
-            for (t = 0; topicIterator.hasNext(); t++) {
-
-                boolean isMatch = false;
-                boolean complete = false;
-                int p = 0;
-
-                String nextTopic = topicIterator.next();
-                String[] nextTopicParts = Split.divide(nextTopic, "/");
-
-                for (p = 0; p < nextTopicParts.length && !complete; p++) {
+    protected void addSubscription(String topic, MqttChannel channel) {
 
-                    if (nextTopicParts[p].equals("#")) {
+        subscriptions.add(topic, channel);
 
-                        /* Match found */
-                        complete = true;
-                        isMatch = true;
-
-                    } else if (nextTopicParts[p].equals("+")) {
-
-                        /* Still matches, skip this level */
-                        isMatch = true;
-
-                    } else if (p >= topicParts.length) {
-
-                        /* No match */
-                        complete = true;
-                        isMatch = false;
-
-                    } else if (nextTopicParts[p].equals(topicParts[p])) {
-
-                        /* Still matches */
-                        isMatch = true;
-
-                    } else {
-
-                        /* No match */
-                        complete = true;
-                        isMatch = false;
-                    }
-                }
-
-                /* If we ran out of "next topic" parts without completing the match... */
-                if (p < topicParts.length && !complete) {
-                    isMatch = false;
-                }
-
-                /* If a match was found... */
-                if (isMatch) {
-
-                    /* Save it */
-                    matchingTopics.add(nextTopic);
+    }
 
-                }
-            }
-        }
+    /**
+     * Removes the record of a channel's subscription to a topic.
+     *
+     * @param topic
+     *            the subscribed topic.
+     *
+     * @param channel
+     *            the channel.
+     */
+    protected void removeSubscription(String topic, MqttChannel channel) {
 
-        /* Convert the list of matching topics to an array */
-        String[] matchingTopicNames = new String[matchingTopics.size()];
-        matchingTopicNames = matchingTopics.toArray(matchingTopicNames);
+        subscriptions.remove(topic, channel);
 
-        return matchingTopicNames;
     }
 
     /**
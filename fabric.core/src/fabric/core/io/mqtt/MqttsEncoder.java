@@ -0,0 +1,256 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.io.mqtt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Encodes MQTT-S PUBLISH frames directly into pooled, reusable direct buffers.
+ * <p>
+ * Each frame is sent with a single gathering write of two buffers: the header (length, message type, flags, topic
+ * length and topic name) and the payload. The size of a frame is calculated from the topic and payload lengths before
+ * anything is encoded, so that messages too large to be sent as a datagram can be identified without building them.
+ * Once the pool is warm no objects are allocated per frame (topic names containing non-ASCII characters excepted).
+ * </p>
+ */
+class MqttsEncoder {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The MQTT-S message type for a PUBLISH message */
+    private static final byte PUBLISH = 0x0C;
+
+    /** The flags for a PUBLISH message (QoS -1, topic name in the message) */
+    private static final byte FLAGS = 0x60;
+
+    /** Packet sizes from this value onward are encoded using the three byte length form */
+    private static final int LONG_PACKET = 254;
+
+    /** The character set used for topic names */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /*
+     * Class fields
+     */
+
+    /** The largest frame that will be encoded (in bytes) */
+    private final int maxFrame;
+
+    /** The idle frame buffers */
+    private final ArrayBlockingQueue<Frame> pool;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * The reusable buffers used to encode and send a single frame.
+     */
+    private static class Frame {
+
+        /** The header buffer */
+        final ByteBuffer header;
+
+        /** The payload buffer */
+        final ByteBuffer payload;
+
+        /** The buffers in the order in which they are written */
+        final ByteBuffer[] gather;
+
+        Frame(int size) {
+
+            header = ByteBuffer.allocateDirect(size);
+            payload = ByteBuffer.allocateDirect(size);
+            gather = new ByteBuffer[] {header, payload};
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param maxFrame
+     *            the largest frame that will be encoded (in bytes).
+     *
+     * @param poolSize
+     *            the maximum number of idle frame buffers retained for reuse.
+     */
+    MqttsEncoder(int maxFrame, int poolSize) {
+
+        this.maxFrame = maxFrame;
+        this.pool = new ArrayBlockingQueue<Frame>(Math.max(1, poolSize));
+
+    }
+
+    /**
+     * Answers the length of a topic name once encoded as UTF-8.
+     *
+     * @param topic
+     *            the topic name.
+     *
+     * @return the encoded length (in bytes).
+     */
+    static int topicLength(String topic) {
+
+        int length = 0;
+
+        for (int c = 0; c < topic.length(); c++) {
+
+            char ch = topic.charAt(c);
+
+            if (ch < 0x80) {
+                length++;
+            } else if (ch < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(ch) && c + 1 < topic.length()
+                    && Character.isLowSurrogate(topic.charAt(c + 1))) {
+                length += 4;
+                c++;
+            } else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Answers the size of the MQTT-S PUBLISH frame for a message.
+     *
+     * @param topicLength
+     *            the encoded length of the topic name (see <code>topicLength()</code>).
+     *
+     * @param payloadLength
+     *            the length of the payload.
+     *
+     * @return the frame size (in bytes).
+     */
+    static int frameLength(int topicLength, int payloadLength) {
+
+        /* Message type, flags, topic length (two bytes), separator (two bytes), topic name and payload */
+        int packetSize = 6 + topicLength + payloadLength;
+        return packetSize + ((packetSize >= LONG_PACKET) ? 3 : 1);
+
+    }
+
+    /**
+     * Encodes an MQTT-S PUBLISH frame and writes it to a channel.
+     *
+     * @param channel
+     *            the (connected) channel.
+     *
+     * @param topic
+     *            the topic to which the message is to be sent.
+     *
+     * @param topicLength
+     *            the encoded length of the topic name (see <code>topicLength()</code>).
+     *
+     * @param payload
+     *            the message payload.
+     *
+     * @throws IOException
+     *             thrown if the frame is too large, or cannot be written.
+     */
+    void write(GatheringByteChannel channel, String topic, int topicLength, byte[] payload) throws IOException {
+
+        int frameLength = frameLength(topicLength, payload.length);
+
+        if (frameLength > maxFrame) {
+            throw new IOException("MQTT-S frame of " + frameLength + " bytes exceeds the maximum of " + maxFrame);
+        }
+
+        Frame frame = pool.poll();
+
+        if (frame == null) {
+            frame = new Frame(maxFrame);
+        }
+
+        try {
+
+            encodeHeader(frame.header, topic, topicLength, payload.length);
+
+            frame.payload.clear();
+            frame.payload.put(payload);
+            frame.payload.flip();
+
+            /* A datagram channel writes the whole frame as a single datagram, or nothing */
+            channel.write(frame.gather);
+
+        } finally {
+
+            pool.offer(frame);
+
+        }
+    }
+
+    /**
+     * Encodes the header of an MQTT-S PUBLISH frame, ready to be written.
+     *
+     * @param header
+     *            the buffer into which the header is encoded.
+     *
+     * @param topic
+     *            the topic name.
+     *
+     * @param topicLength
+     *            the encoded length of the topic name.
+     *
+     * @param payloadLength
+     *            the length of the payload.
+     */
+    private void encodeHeader(ByteBuffer header, String topic, int topicLength, int payloadLength) {
+
+        header.clear();
+
+        /* Length (the three byte form counts its own bytes, the one byte form does not) */
+        int packetSize = 6 + topicLength + payloadLength;
+
+        if (packetSize >= LONG_PACKET) {
+            header.put((byte) 1);
+            header.putShort((short) (packetSize + 3));
+        } else {
+            header.put((byte) (packetSize + 1));
+        }
+
+        header.put(PUBLISH);
+        header.put(FLAGS);
+        header.putShort((short) topicLength);
+        header.put((byte) ' ');
+        header.put((byte) ' ');
+
+        /* Topic name */
+        if (topicLength == topic.length()) {
+
+            /* ASCII, so encode in place */
+            for (int c = 0; c < topic.length(); c++) {
+                header.put((byte) topic.charAt(c));
+            }
+
+        } else {
+
+            header.put(topic.getBytes(UTF8));
+
+        }
+
+        header.flip();
+
+    }
+}
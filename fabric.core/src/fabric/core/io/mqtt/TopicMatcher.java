@@ -0,0 +1,327 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.io.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * An index of MQTT topic filters (which may include the <code>+</code> and <code>#</code> wildcards) supporting the
+ * lookup of all of the filters, and their associated values, that match a topic.
+ * <p>
+ * Filters are held in a trie of topic levels, with the wildcards held as distinct children of each node, so the cost
+ * of a match depends upon the depth of the topic rather than the number of filters. Matching follows the MQTT rules:
+ * <code>+</code> matches exactly one level and <code>#</code> matches the parent level and any number of child levels.
+ * </p>
+ * <p>
+ * Matching does not lock and can run concurrently with itself and with updates; updates are serialized.
+ * </p>
+ *
+ * @param <V>
+ *            the type of the values associated with each filter.
+ */
+public class TopicMatcher<V> {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The topic level separator. */
+    private static final char SEPARATOR = '/';
+
+    /** The single level wildcard. */
+    private static final String SINGLE_LEVEL = "+";
+
+    /** The multi-level wildcard. */
+    private static final String MULTI_LEVEL = "#";
+
+    /*
+     * Class fields
+     */
+
+    /** The root of the trie. */
+    private final Node<V> root = new Node<V>(null, null);
+
+    /** The number of filter/value pairs in the index. */
+    private volatile int size = 0;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A node in the trie, representing a single topic level.
+     */
+    private static class Node<V> {
+
+        /** The parent of this node, or <code>null</code> for the root. */
+        final Node<V> parent;
+
+        /** The topic level represented by this node. */
+        final String level;
+
+        /** The children of this node, keyed by topic level (including the wildcards). */
+        final ConcurrentHashMap<String, Node<V>> children = new ConcurrentHashMap<String, Node<V>>();
+
+        /** The values of the filters that end at this node. */
+        final CopyOnWriteArraySet<V> values = new CopyOnWriteArraySet<V>();
+
+        Node(Node<V> parent, String level) {
+
+            this.parent = parent;
+            this.level = level;
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Adds a topic filter to the index.
+     *
+     * @param filter
+     *            the topic filter.
+     *
+     * @param value
+     *            the value associated with the filter.
+     *
+     * @return <code>true</code> if the filter/value pair was added, <code>false</code> if it was already present.
+     */
+    public synchronized boolean add(String filter, V value) {
+
+        Node<V> node = root;
+
+        for (String level : levels(filter)) {
+
+            Node<V> child = node.children.get(level);
+
+            if (child == null) {
+                child = new Node<V>(node, level);
+                node.children.put(level, child);
+            }
+
+            node = child;
+        }
+
+        boolean added = node.values.add(value);
+
+        if (added) {
+            size++;
+        }
+
+        return added;
+
+    }
+
+    /**
+     * Removes a topic filter from the index.
+     *
+     * @param filter
+     *            the topic filter.
+     *
+     * @param value
+     *            the value associated with the filter.
+     *
+     * @return <code>true</code> if the filter/value pair was removed, <code>false</code> if it was not present.
+     */
+    public synchronized boolean remove(String filter, V value) {
+
+        Node<V> node = root;
+
+        for (String level : levels(filter)) {
+
+            node = node.children.get(level);
+
+            if (node == null) {
+                return false;
+            }
+        }
+
+        boolean removed = node.values.remove(value);
+
+        if (removed) {
+
+            size--;
+
+            /* Prune any branch that no longer leads to a filter */
+            while (node.parent != null && node.values.isEmpty() && node.children.isEmpty()) {
+                node.parent.children.remove(node.level);
+                node = node.parent;
+            }
+        }
+
+        return removed;
+
+    }
+
+    /**
+     * Answers the values associated with all of the filters that match a topic.
+     *
+     * @param topic
+     *            the topic (which must not contain wildcards).
+     *
+     * @return the matching values (a value associated with more than one matching filter is included once per filter).
+     */
+    public List<V> match(String topic) {
+
+        List<V> matches = new ArrayList<V>();
+        match(topic, matches);
+        return matches;
+
+    }
+
+    /**
+     * Adds the values associated with all of the filters that match a topic to a collection.
+     *
+     * @param topic
+     *            the topic (which must not contain wildcards).
+     *
+     * @param matches
+     *            the collection to which the matching values are added.
+     */
+    public void match(String topic, Collection<V> matches) {
+
+        String[] levels = levels(topic);
+        match(root, levels, 0, matches);
+
+    }
+
+    /**
+     * Recursively matches topic levels against the trie.
+     *
+     * @param node
+     *            the current node.
+     *
+     * @param levels
+     *            the levels of the topic.
+     *
+     * @param depth
+     *            the index of the next level to match.
+     *
+     * @param matches
+     *            the collection to which the matching values are added.
+     */
+    private void match(Node<V> node, String[] levels, int depth, Collection<V> matches) {
+
+        /* A multi-level wildcard matches this level and everything below it */
+        Node<V> multi = node.children.get(MULTI_LEVEL);
+
+        if (multi != null) {
+            matches.addAll(multi.values);
+        }
+
+        if (depth == levels.length) {
+
+            /* The topic has been fully consumed */
+            matches.addAll(node.values);
+
+        } else {
+
+            Node<V> exact = node.children.get(levels[depth]);
+
+            if (exact != null) {
+                match(exact, levels, depth + 1, matches);
+            }
+
+            Node<V> single = node.children.get(SINGLE_LEVEL);
+
+            if (single != null) {
+                match(single, levels, depth + 1, matches);
+            }
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if the specified topic matches at least one filter in the index.
+     *
+     * @param topic
+     *            the topic.
+     *
+     * @return <code>true</code> if there is a match, <code>false</code> otherwise.
+     */
+    public boolean matches(String topic) {
+
+        return !match(topic).isEmpty();
+
+    }
+
+    /**
+     * Answers the number of filter/value pairs in the index.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+
+        return size;
+
+    }
+
+    /**
+     * Answers <code>true</code> if the index is empty.
+     *
+     * @return <code>true</code> if there are no entries, <code>false</code> otherwise.
+     */
+    public boolean isEmpty() {
+
+        return size == 0;
+
+    }
+
+    /**
+     * Removes all entries from the index.
+     */
+    public synchronized void clear() {
+
+        root.children.clear();
+        root.values.clear();
+        size = 0;
+
+    }
+
+    /**
+     * Splits a topic or topic filter into its levels. Unlike <code>Split.divide()</code>, empty levels (for example in
+     * <code>a//b</code>) are retained since they are significant in MQTT.
+     *
+     * @param topic
+     *            the topic or filter.
+     *
+     * @return the levels.
+     */
+    private static String[] levels(String topic) {
+
+        int count = 1;
+
+        for (int c = 0; c < topic.length(); c++) {
+            if (topic.charAt(c) == SEPARATOR) {
+                count++;
+            }
+        }
+
+        String[] levels = new String[count];
+        int start = 0;
+
+        for (int l = 0; l < count - 1; l++) {
+            int end = topic.indexOf(SEPARATOR, start);
+            levels[l] = topic.substring(start, end);
+            start = end + 1;
+        }
+
+        levels[count - 1] = topic.substring(start);
+
+        return levels;
+
+    }
+}
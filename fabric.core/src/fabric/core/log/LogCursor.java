@@ -0,0 +1,226 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A position in a <code>MessageLog</code> from which records are read in order.
+ * <p>
+ * A cursor reaching the end of the log is not closed: further calls to <code>next()</code> return records as they are
+ * appended. If the records under a cursor are deleted by the log's retention policy then the cursor moves on to the
+ * oldest remaining record. Cursors are not thread safe.
+ * </p>
+ */
+public class LogCursor {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** The log */
+    private final MessageLog log;
+
+    /** The name of the cursor, or <code>null</code> if it is not named */
+    private final String name;
+
+    /** The segment being read */
+    private LogSegment segment = null;
+
+    /** The view of the segment used by this cursor */
+    private ByteBuffer reader = null;
+
+    /** The position of the next record in the segment */
+    private int position = 0;
+
+    /** The offset of the next record */
+    private long offset = 0;
+
+    /** The number of records deleted by the retention policy before the cursor reached them */
+    private long skipped = 0;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param log
+     *            the log.
+     *
+     * @param name
+     *            the name of the cursor, or <code>null</code> if it is not named.
+     */
+    LogCursor(MessageLog log, String name) {
+
+        this.log = log;
+        this.name = name;
+
+    }
+
+    /**
+     * Positions the cursor at the start of a segment's index entry.
+     */
+    private void moveTo(LogSegment segment, int entry) {
+
+        this.segment = segment;
+        reader = segment.reader();
+        position = segment.entryPosition(entry);
+        offset = segment.entryOffset(entry);
+
+    }
+
+    /**
+     * Positions the cursor at a record.
+     *
+     * @param target
+     *            the offset of the record.
+     */
+    void seek(long target) {
+
+        LogSegment found = log.segmentFor(target);
+        moveTo(found, found.floorEntryByOffset(target));
+
+        /* The record (and any before it) may have been deleted */
+        if (offset > target) {
+            skipped += offset - target;
+        }
+
+        /* Skip to the record */
+        while (offset < target && position < segment.size()) {
+            position += LogSegment.length(reader, position);
+            offset++;
+        }
+    }
+
+    /**
+     * Positions the cursor at the first record with an ordinal greater than or equal to the specified value.
+     *
+     * @param ordinal
+     *            the ordinal.
+     */
+    void seekOrdinal(long ordinal) {
+
+        LogSegment found = log.segmentForOrdinal(ordinal);
+        moveTo(found, found.floorEntryByOrdinal(ordinal));
+
+        while (true) {
+
+            /* If we have reached the end of the segment, continue with the next (if any) */
+            if (position >= segment.size()) {
+
+                LogSegment next = log.segmentAfter(segment);
+
+                if (next == null) {
+                    break;
+                }
+
+                if (position >= segment.size()) {
+                    moveTo(next, -1);
+                }
+
+                continue;
+            }
+
+            if (LogSegment.ordinal(reader, position) >= ordinal) {
+                break;
+            }
+
+            position += LogSegment.length(reader, position);
+            offset++;
+        }
+    }
+
+    /**
+     * Reads the next record, if there is one.
+     *
+     * @return the record, or <code>null</code> if the cursor is at the end of the log.
+     */
+    public LogRecord next() {
+
+        long expected = offset;
+
+        while (position >= segment.size()) {
+
+            LogSegment next = log.segmentAfter(segment);
+
+            if (next == null) {
+                return null;
+            }
+
+            /* Once a segment is followed by another nothing more is appended to it, but check for a last record */
+            if (position >= segment.size()) {
+                moveTo(next, -1);
+            }
+        }
+
+        /* The segment being read may have been deleted, moving the cursor on past records it had not read */
+        if (offset > expected) {
+            skipped += offset - expected;
+        }
+
+        LogRecord record = LogSegment.read(reader, position, offset);
+        position += LogSegment.length(reader, position);
+        offset++;
+
+        return record;
+    }
+
+    /**
+     * Answers the offset of the next record to be read.
+     *
+     * @return the offset.
+     */
+    public long offset() {
+
+        return offset;
+    }
+
+    /**
+     * Answers the number of records deleted by the log's retention policy before the cursor could read them.
+     *
+     * @return the number of records.
+     */
+    public long skipped() {
+
+        return skipped;
+    }
+
+    /**
+     * Answers the name of the cursor.
+     *
+     * @return the name, or <code>null</code> if it is not named.
+     */
+    public String name() {
+
+        return name;
+    }
+
+    /**
+     * Records the position of a named cursor, so that it resumes from the next record to be read when it is reopened.
+     *
+     * @throws IOException
+     *             thrown if the position cannot be written.
+     *
+     * @throws IllegalStateException
+     *             thrown if the cursor is not named.
+     */
+    public void commit() throws IOException {
+
+        if (name == null) {
+            throw new IllegalStateException("Only named cursors can be committed");
+        }
+
+        log.commit(name, offset);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.log;
+
+/**
+ * A record read from a <code>MessageLog</code>.
+ */
+public class LogRecord {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** The position of the record in the log */
+    private final long offset;
+
+    /** The ordinal of the message, or <code>-1</code> if it has none */
+    private final long ordinal;
+
+    /** The time at which the record was appended */
+    private final long timestamp;
+
+    /** The message */
+    private final byte[] data;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param offset
+     *            the position of the record in the log.
+     *
+     * @param ordinal
+     *            the ordinal of the message, or <code>-1</code> if it has none.
+     *
+     * @param timestamp
+     *            the time at which the record was appended.
+     *
+     * @param data
+     *            the message.
+     */
+    LogRecord(long offset, long ordinal, long timestamp, byte[] data) {
+
+        this.offset = offset;
+        this.ordinal = ordinal;
+        this.timestamp = timestamp;
+        this.data = data;
+
+    }
+
+    /**
+     * Answers the position of the record in the log; offsets are assigned in sequence as records are appended.
+     *
+     * @return the offset.
+     */
+    public long offset() {
+
+        return offset;
+    }
+
+    /**
+     * Answers the ordinal of the message.
+     *
+     * @return the ordinal, or <code>-1</code> if it has none.
+     */
+    public long ordinal() {
+
+        return ordinal;
+    }
+
+    /**
+     * Answers the time at which the record was appended.
+     *
+     * @return the time (in milliseconds since the epoch).
+     */
+    public long timestamp() {
+
+        return timestamp;
+    }
+
+    /**
+     * Answers the message.
+     *
+     * @return the message.
+     */
+    public byte[] data() {
+
+        return data;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return "offset=" + offset + ", ordinal=" + ordinal + ", timestamp=" + timestamp + ", length=" + data.length;
+    }
+}
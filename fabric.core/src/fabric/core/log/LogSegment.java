@@ -0,0 +1,587 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A segment of a <code>MessageLog</code>: a memory-mapped file of fixed size holding a contiguous run of records, and
+ * its (sparse) offset index.
+ * <p>
+ * Each record is written as:
+ *
+ * <pre>
+ * int  length      the length of the record, including this header
+ * int  crc         CRC-32 of the remainder of the record
+ * long ordinal     the ordinal of the message, or -1
+ * long timestamp   the time at which the record was appended
+ * byte data[]      the message
+ * </pre>
+ *
+ * The length is written last, so a record only becomes visible once it is complete. The index holds an entry (offset,
+ * ordinal and position) for the first record of the segment and then for the first record written after each
+ * <code>indexInterval</code> bytes, allowing a record to be located by offset or ordinal with a binary search followed
+ * by a short scan. The ordinal of an index entry is the highest ordinal of any record in the segment up to and
+ * including the one it refers to, so that entries are in ordinal order even if the records are not.
+ * </p>
+ * <p>
+ * Segments are appended to by one thread at a time (under the log's lock), and can be read concurrently: the committed
+ * size of the segment and the number of index entries are published (in that order) after the record is written.
+ * </p>
+ */
+class LogSegment {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The size of a record header */
+    static final int HEADER_SIZE = 24;
+
+    /** The size of the index header (the number of entries) */
+    private static final int INDEX_HEADER_SIZE = 4;
+
+    /** The size of an index entry */
+    private static final int INDEX_ENTRY_SIZE = 20;
+
+    /** The file name extension of segment files */
+    static final String LOG_SUFFIX = ".log";
+
+    /** The file name extension of index files */
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /*
+     * Class fields
+     */
+
+    /** The offset of the first record in this segment */
+    private final long baseOffset;
+
+    /** The segment file */
+    private final File file;
+
+    /** The index file */
+    private final File indexFile;
+
+    /** The mapped segment file (never repositioned, so that readers can duplicate it) */
+    private final MappedByteBuffer data;
+
+    /** The view of the segment file used when appending */
+    private final ByteBuffer writer;
+
+    /** The mapped index file */
+    private final MappedByteBuffer index;
+
+    /** The size of the segment file */
+    private final int capacity;
+
+    /** The maximum number of index entries */
+    private final int maxIndexEntries;
+
+    /** The number of bytes between index entries */
+    private final int indexInterval;
+
+    /** Used to calculate record checksums when appending */
+    private final CRC32 crc = new CRC32();
+
+    /** The number of bytes holding complete records */
+    private volatile int size = 0;
+
+    /** The offset of the next record to be appended */
+    private volatile long nextOffset;
+
+    /** The time at which the last record was appended, or <code>-1</code> if there are none */
+    private volatile long lastTimestamp = -1;
+
+    /** The number of index entries */
+    private volatile int indexEntries = 0;
+
+    /** The highest ordinal of the records in the segment, or <code>-1</code> if none of them has one */
+    private volatile long maxOrdinal = -1;
+
+    /** The number of bytes appended since the last index entry */
+    private int bytesSinceIndex;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance, mapping the segment and index files (creating them if necessary).
+     *
+     * @param directory
+     *            the directory holding the segment files.
+     *
+     * @param baseOffset
+     *            the offset of the first record in the segment.
+     *
+     * @param capacity
+     *            the size of the segment file (ignored if the file already exists).
+     *
+     * @param indexInterval
+     *            the number of bytes between index entries.
+     *
+     * @throws IOException
+     *             thrown if the files cannot be mapped.
+     */
+    private LogSegment(File directory, long baseOffset, int capacity, int indexInterval) throws IOException {
+
+        this.baseOffset = baseOffset;
+        this.indexInterval = indexInterval;
+        String name = String.format("%020d", baseOffset);
+        file = new File(directory, name + LOG_SUFFIX);
+        indexFile = new File(directory, name + INDEX_SUFFIX);
+        nextOffset = baseOffset;
+
+        /* The first record is always indexed */
+        bytesSinceIndex = indexInterval;
+
+        this.capacity = file.exists() ? (int) file.length() : capacity;
+        maxIndexEntries = this.capacity / indexInterval + 2;
+
+        data = map(file, this.capacity);
+        writer = data.duplicate();
+        index = map(indexFile, INDEX_HEADER_SIZE + maxIndexEntries * INDEX_ENTRY_SIZE);
+
+    }
+
+    /**
+     * Creates a new, empty, segment.
+     *
+     * @param directory
+     *            the directory holding the segment files.
+     *
+     * @param baseOffset
+     *            the offset of the first record in the segment.
+     *
+     * @param capacity
+     *            the size of the segment file.
+     *
+     * @param indexInterval
+     *            the number of bytes between index entries.
+     *
+     * @return the segment.
+     *
+     * @throws IOException
+     *             thrown if the files cannot be created.
+     */
+    static LogSegment create(File directory, long baseOffset, int capacity, int indexInterval) throws IOException {
+
+        return new LogSegment(directory, baseOffset, capacity, indexInterval);
+    }
+
+    /**
+     * Opens an existing segment, recovering its committed size from the index and the records following the last
+     * index entry. Any incomplete or corrupt record (for example, one being written when the system failed), and
+     * everything after it, is discarded.
+     *
+     * @param directory
+     *            the directory holding the segment files.
+     *
+     * @param baseOffset
+     *            the offset of the first record in the segment.
+     *
+     * @param indexInterval
+     *            the number of bytes between index entries.
+     *
+     * @return the segment.
+     *
+     * @throws IOException
+     *             thrown if the files cannot be mapped.
+     */
+    static LogSegment open(File directory, long baseOffset, int indexInterval) throws IOException {
+
+        LogSegment segment = new LogSegment(directory, baseOffset, 0, indexInterval);
+        segment.recover();
+        return segment;
+    }
+
+    /**
+     * Maps a file, setting its size.
+     */
+    private static MappedByteBuffer map(File file, int size) throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        try {
+
+            if (raf.length() != size) {
+                raf.setLength(size);
+            }
+
+            /* The mapping remains valid once the file is closed */
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        } finally {
+
+            raf.close();
+
+        }
+    }
+
+    /**
+     * Recovers the committed size, next offset and index of the segment.
+     */
+    private void recover() {
+
+        int entries = Math.max(0, Math.min(index.getInt(0), maxIndexEntries));
+        int position = 0;
+        long offset = baseOffset;
+
+        /* Find the last index entry referring to a valid record (the index may have been written ahead of the data) */
+        while (entries > 0 && recordLength(indexPosition(entries - 1)) == -1) {
+            entries--;
+        }
+
+        if (entries > 0) {
+            position = indexPosition(entries - 1);
+            offset = indexOffset(entries - 1);
+            maxOrdinal = indexOrdinal(entries - 1);
+        }
+
+        int indexed = (entries > 0) ? position : -1;
+        index.putInt(0, entries);
+        indexEntries = entries;
+
+        /* Scan the records from there to the end, indexing them */
+        for (int length = recordLength(position); length != -1; length = recordLength(position)) {
+
+            maxOrdinal = Math.max(maxOrdinal, data.getLong(position + 8));
+
+            if (position == indexed) {
+                bytesSinceIndex = length;
+            } else {
+                addIndexEntry(offset, maxOrdinal, position, length);
+            }
+
+            lastTimestamp = data.getLong(position + 16);
+            position += length;
+            offset++;
+        }
+
+        nextOffset = offset;
+        size = position;
+
+    }
+
+    /**
+     * Answers the length of the record at a position in the segment, if it is complete and valid.
+     *
+     * @param position
+     *            the position.
+     *
+     * @return the length, or <code>-1</code> if there is no valid record at the position.
+     */
+    private int recordLength(int position) {
+
+        if (position < 0 || position + HEADER_SIZE > capacity) {
+            return -1;
+        }
+
+        int length = data.getInt(position);
+
+        if (length < HEADER_SIZE || length > capacity - position) {
+            return -1;
+        }
+
+        ByteBuffer record = data.duplicate();
+        record.limit(position + length);
+        record.position(position + 8);
+        CRC32 check = new CRC32();
+        check.update(record);
+
+        return ((int) check.getValue() == data.getInt(position + 4)) ? length : -1;
+    }
+
+    /**
+     * Appends a record to the segment.
+     *
+     * @param ordinal
+     *            the ordinal of the message, or <code>-1</code> if it has none.
+     *
+     * @param timestamp
+     *            the time at which the record is appended.
+     *
+     * @param message
+     *            the message.
+     *
+     * @return the offset of the record, or <code>-1</code> if there is no room for it in this segment.
+     */
+    long append(long ordinal, long timestamp, byte[] message) {
+
+        int position = size;
+        int length = HEADER_SIZE + message.length;
+
+        if (length > capacity - position) {
+            return -1;
+        }
+
+        writer.putLong(position + 8, ordinal);
+        writer.putLong(position + 16, timestamp);
+        writer.position(position + HEADER_SIZE);
+        writer.put(message);
+
+        writer.limit(position + length);
+        writer.position(position + 8);
+        crc.reset();
+        crc.update(writer);
+        writer.limit(capacity);
+        writer.putInt(position + 4, (int) crc.getValue());
+
+        /* Commit the record */
+        writer.putInt(position, length);
+
+        long offset = nextOffset;
+        nextOffset = offset + 1;
+        lastTimestamp = timestamp;
+        maxOrdinal = Math.max(maxOrdinal, ordinal);
+        size = position + length;
+        addIndexEntry(offset, maxOrdinal, position, length);
+
+        return offset;
+    }
+
+    /**
+     * Adds an index entry for a record, if one is due.
+     */
+    private void addIndexEntry(long offset, long ordinal, int position, int length) {
+
+        if (bytesSinceIndex >= indexInterval && indexEntries < maxIndexEntries) {
+
+            int entry = INDEX_HEADER_SIZE + indexEntries * INDEX_ENTRY_SIZE;
+            index.putLong(entry, offset);
+            index.putLong(entry + 8, ordinal);
+            index.putInt(entry + 16, position);
+            index.putInt(0, indexEntries + 1);
+            indexEntries++;
+            bytesSinceIndex = 0;
+
+        }
+
+        bytesSinceIndex += length;
+    }
+
+    private long indexOffset(int entry) {
+
+        return index.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE);
+    }
+
+    private long indexOrdinal(int entry) {
+
+        return index.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE + 8);
+    }
+
+    private int indexPosition(int entry) {
+
+        return index.getInt(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE + 16);
+    }
+
+    /**
+     * Answers the index entry closest to (at or before) the record with an offset.
+     *
+     * @param offset
+     *            the offset.
+     *
+     * @return the entry, or <code>-1</code> if the segment is empty.
+     */
+    int floorEntryByOffset(long offset) {
+
+        int low = 0;
+        int high = indexEntries - 1;
+        int floor = (high >= 0) ? 0 : -1;
+
+        while (low <= high) {
+
+            int mid = (low + high) >>> 1;
+
+            if (indexOffset(mid) <= offset) {
+                floor = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return floor;
+    }
+
+    /**
+     * Answers the last index entry for which the record it refers to, and every record before it, has an ordinal less
+     * than the specified value.
+     *
+     * @param ordinal
+     *            the ordinal.
+     *
+     * @return the entry, or <code>-1</code> if the segment is empty.
+     */
+    int floorEntryByOrdinal(long ordinal) {
+
+        int low = 0;
+        int high = indexEntries - 1;
+        int floor = (high >= 0) ? 0 : -1;
+
+        while (low <= high) {
+
+            int mid = (low + high) >>> 1;
+
+            if (indexOrdinal(mid) < ordinal) {
+                floor = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return floor;
+    }
+
+    /**
+     * Answers the offset of the record referred to by an index entry.
+     */
+    long entryOffset(int entry) {
+
+        return (entry >= 0) ? indexOffset(entry) : baseOffset;
+    }
+
+    /**
+     * Answers the position of the record referred to by an index entry.
+     */
+    int entryPosition(int entry) {
+
+        return (entry >= 0) ? indexPosition(entry) : 0;
+    }
+
+    /**
+     * Answers the highest ordinal of the records in the segment.
+     *
+     * @return the ordinal, or <code>-1</code> if the segment is empty or none of its records has an ordinal.
+     */
+    long maxOrdinal() {
+
+        return maxOrdinal;
+    }
+
+    /**
+     * Answers a view of the segment for reading (each reader must have its own).
+     */
+    ByteBuffer reader() {
+
+        return data.duplicate();
+    }
+
+    /**
+     * Reads a committed record.
+     *
+     * @param reader
+     *            the reader's view of the segment.
+     *
+     * @param position
+     *            the position of the record.
+     *
+     * @param offset
+     *            the offset of the record.
+     *
+     * @return the record.
+     */
+    static LogRecord read(ByteBuffer reader, int position, long offset) {
+
+        int length = reader.getInt(position);
+        byte[] message = new byte[length - HEADER_SIZE];
+        reader.position(position + HEADER_SIZE);
+        reader.get(message);
+
+        return new LogRecord(offset, reader.getLong(position + 8), reader.getLong(position + 16), message);
+    }
+
+    /**
+     * Answers the length of a committed record.
+     */
+    static int length(ByteBuffer reader, int position) {
+
+        return reader.getInt(position);
+    }
+
+    /**
+     * Answers the ordinal of a committed record.
+     */
+    static long ordinal(ByteBuffer reader, int position) {
+
+        return reader.getLong(position + 8);
+    }
+
+    long baseOffset() {
+
+        return baseOffset;
+    }
+
+    long nextOffset() {
+
+        return nextOffset;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    int capacity() {
+
+        return capacity;
+    }
+
+    long lastTimestamp() {
+
+        return lastTimestamp;
+    }
+
+    /**
+     * Writes any changes to the segment through to the disk.
+     */
+    void flush() {
+
+        data.force();
+        index.force();
+    }
+
+    /**
+     * Deletes the segment's files.
+     *
+     * @return <code>true</code> if the files were deleted, <code>false</code> otherwise (in which case they are deleted
+     *         when the VM exits).
+     */
+    boolean delete() {
+
+        /* Mappings are released when their buffers are collected; some platforms cannot delete the files until then */
+        boolean deleted = file.delete() & indexFile.delete();
+
+        if (!deleted) {
+            file.deleteOnExit();
+            indexFile.deleteOnExit();
+        }
+
+        return deleted;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return file.getName() + " (offsets " + baseOffset + " to " + (nextOffset - 1) + ", " + size + " bytes)";
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only log of messages, held in a directory of memory-mapped segment files.
+ * <p>
+ * Each record holds a message, its ordinal (if it has one) and the time at which it was appended, and is identified by
+ * its offset: its position in the sequence of records appended to the log. Appending a record is a copy into the
+ * mapped file of the active segment; when that is full a new segment is started. The operating system writes the
+ * mapped pages to disk, so a record survives the failure of the process as soon as it has been appended, and (unless
+ * <code>flush()</code> is called) the failure of the system once the pages have been written back. Incomplete records
+ * are discarded when the log is reopened.
+ * </p>
+ * <p>
+ * Records are read using cursors, positioned by offset or by ordinal (at the first record, in log order, whose ordinal
+ * is at least the one requested; this is only meaningful if ordinals increase through the log). A
+ * cursor can be given a name, in which case its position can be committed and is restored the next time a cursor with
+ * that name is opened, allowing a replay to be resumed. Readers do not block the writer, or each other.
+ * </p>
+ * <p>
+ * Whole segments are deleted (oldest first, but never the active segment) once the log exceeds its maximum size, or
+ * once their last record is older than the maximum age.
+ * </p>
+ */
+public class MessageLog {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The number of bytes between index entries */
+    private static final int INDEX_INTERVAL = 4096;
+
+    /** The period (in milliseconds) between checks for segments that have passed the maximum age */
+    private static final long RETENTION_CHECK_INTERVAL = 60000;
+
+    /** The file name extension of committed cursor positions */
+    private static final String CURSOR_SUFFIX = ".cursor";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /*
+     * Class fields
+     */
+
+    /** The directory holding the segment files */
+    private final File directory;
+
+    /** The size of each segment file */
+    private final int segmentSize;
+
+    /** The maximum size of the log (in bytes), or <code>0</code> for no limit */
+    private final long maxBytes;
+
+    /** The maximum age of a record (in milliseconds), or <code>0</code> for no limit */
+    private final long maxAge;
+
+    /** The segments, oldest first (replaced, never modified, so that readers can use it without locking) */
+    private volatile LogSegment[] segments = null;
+
+    /** The time of the next check for segments that have passed the maximum age */
+    private long nextRetentionCheck = 0;
+
+    /** Flag indicating if the log has been closed */
+    private boolean isClosed = false;
+
+    private final static Logger logger = Logger.getLogger("fabric.core.log");
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Opens a log, creating it if it does not exist.
+     *
+     * @param directory
+     *            the directory holding the log's files.
+     *
+     * @param segmentSize
+     *            the size of each segment file (in bytes).
+     *
+     * @param maxBytes
+     *            the maximum size of the log (in bytes), or <code>0</code> for no limit.
+     *
+     * @param maxAge
+     *            the maximum age of a record (in milliseconds), or <code>0</code> for no limit.
+     *
+     * @throws IOException
+     *             thrown if the log cannot be opened.
+     */
+    public MessageLog(File directory, int segmentSize, long maxBytes, long maxAge) throws IOException {
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create message log directory " + directory);
+        }
+
+        String[] names = directory.list(new FilenameFilter() {
+
+            @Override
+            public boolean accept(File dir, String name) {
+
+                return name.endsWith(LogSegment.LOG_SUFFIX);
+            }
+        });
+
+        /* The names are the (zero padded) base offsets, so sort into offset order */
+        Arrays.sort(names);
+        LogSegment[] opened = new LogSegment[Math.max(1, names.length)];
+
+        for (int n = 0; n < names.length; n++) {
+            long baseOffset = Long.parseLong(names[n].substring(0, names[n].length() - LogSegment.LOG_SUFFIX.length()));
+            opened[n] = LogSegment.open(directory, baseOffset, INDEX_INTERVAL);
+        }
+
+        if (names.length == 0) {
+            opened[0] = LogSegment.create(directory, 0, segmentSize, INDEX_INTERVAL);
+        }
+
+        segments = opened;
+
+        logger.log(Level.FINE, "Opened message log [{0}], offsets {1} to {2}", new Object[] {directory,
+                firstOffset(), nextOffset() - 1});
+
+    }
+
+    /**
+     * Appends a message to the log.
+     *
+     * @param ordinal
+     *            the ordinal of the message, or <code>-1</code> if it has none.
+     *
+     * @param message
+     *            the message.
+     *
+     * @return the offset of the record.
+     *
+     * @throws IOException
+     *             thrown if a new segment is required and cannot be created, or if the log has been closed.
+     */
+    public synchronized long append(long ordinal, byte[] message) throws IOException {
+
+        if (isClosed) {
+            throw new IOException("Message log " + directory + " is closed");
+        }
+
+        long now = System.currentTimeMillis();
+        LogSegment active = segments[segments.length - 1];
+        long offset = active.append(ordinal, now, message);
+
+        /* If there is no room in the active segment... */
+        if (offset == -1) {
+
+            /* Start a new one (large enough for the message, if it is bigger than a segment) */
+            active.flush();
+            int capacity = Math.max(segmentSize, LogSegment.HEADER_SIZE + message.length);
+            LogSegment next = LogSegment.create(directory, active.nextOffset(), capacity, INDEX_INTERVAL);
+            offset = next.append(ordinal, now, message);
+
+            LogSegment[] rolled = Arrays.copyOf(segments, segments.length + 1);
+            rolled[rolled.length - 1] = next;
+            segments = rolled;
+
+            logger.log(Level.FINER, "Message log [{0}] rolled to new segment {1}", new Object[] {directory, next});
+            applyRetention(now);
+
+        } else if (maxAge > 0 && now >= nextRetentionCheck) {
+
+            applyRetention(now);
+
+        }
+
+        return offset;
+    }
+
+    /**
+     * Deletes the oldest segments while the log is larger than its maximum size, or their records are older than the
+     * maximum age.
+     *
+     * @param now
+     *            the current time.
+     */
+    private void applyRetention(long now) {
+
+        nextRetentionCheck = now + RETENTION_CHECK_INTERVAL;
+
+        LogSegment[] current = segments;
+        long totalBytes = 0;
+
+        for (int s = 0; s < current.length; s++) {
+            totalBytes += current[s].capacity();
+        }
+
+        int expired = 0;
+
+        while (expired < current.length - 1) {
+
+            LogSegment oldest = current[expired];
+            boolean tooBig = maxBytes > 0 && totalBytes > maxBytes;
+            boolean tooOld = maxAge > 0 && oldest.lastTimestamp() < now - maxAge;
+
+            if (!tooBig && !tooOld) {
+                break;
+            }
+
+            totalBytes -= oldest.capacity();
+            expired++;
+        }
+
+        if (expired > 0) {
+
+            segments = Arrays.copyOfRange(current, expired, current.length);
+
+            /* Cursors reading a deleted segment keep their mapping, and move on to the oldest remaining segment */
+            for (int s = 0; s < expired; s++) {
+                logger.log(Level.FINER, "Message log [{0}] deleting segment {1}", new Object[] {directory, current[s]});
+                current[s].delete();
+            }
+        }
+    }
+
+    /**
+     * Answers the offset of the oldest record in the log.
+     *
+     * @return the offset.
+     */
+    public long firstOffset() {
+
+        return segments[0].baseOffset();
+    }
+
+    /**
+     * Answers the offset that will be given to the next record appended to the log.
+     *
+     * @return the offset.
+     */
+    public long nextOffset() {
+
+        LogSegment[] current = segments;
+        return current[current.length - 1].nextOffset();
+    }
+
+    /**
+     * Answers a cursor positioned at a record.
+     *
+     * @param offset
+     *            the offset of the record (the cursor is positioned at the oldest record if it has been deleted, or at
+     *            the end of the log if the offset is beyond it).
+     *
+     * @return the cursor.
+     */
+    public LogCursor cursor(long offset) {
+
+        LogCursor cursor = new LogCursor(this, null);
+        cursor.seek(offset);
+        return cursor;
+    }
+
+    /**
+     * Answers a cursor positioned at the first record with an ordinal greater than or equal to the specified value.
+     * <p>
+     * Records without an ordinal are skipped, so if none of the records has one the cursor is positioned at the end of
+     * the log.
+     * </p>
+     *
+     * @param ordinal
+     *            the ordinal.
+     *
+     * @return the cursor.
+     */
+    public LogCursor cursorFromOrdinal(long ordinal) {
+
+        LogCursor cursor = new LogCursor(this, null);
+        cursor.seekOrdinal(ordinal);
+        return cursor;
+    }
+
+    /**
+     * Answers a named cursor, positioned at the offset last committed for the name (or at the oldest record if there is
+     * none).
+     *
+     * @param name
+     *            the name of the cursor.
+     *
+     * @return the cursor.
+     *
+     * @throws IOException
+     *             thrown if the committed position cannot be read.
+     */
+    public LogCursor cursor(String name) throws IOException {
+
+        long offset = firstOffset();
+        File cursorFile = cursorFile(name);
+
+        if (cursorFile.exists()) {
+
+            FileInputStream in = new FileInputStream(cursorFile);
+
+            try {
+                byte[] content = new byte[(int) cursorFile.length()];
+                int read = in.read(content);
+                offset = Long.parseLong(new String(content, 0, Math.max(0, read), UTF8).trim());
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "Invalid position for message log cursor [{0}], starting from the oldest "
+                        + "record", cursorFile);
+            } finally {
+                in.close();
+            }
+        }
+
+        LogCursor cursor = new LogCursor(this, name);
+        cursor.seek(offset);
+        return cursor;
+    }
+
+    /**
+     * Records the position of a named cursor.
+     *
+     * @param name
+     *            the name of the cursor.
+     *
+     * @param offset
+     *            the offset of the next record to be read.
+     *
+     * @throws IOException
+     *             thrown if the position cannot be written.
+     */
+    void commit(String name, long offset) throws IOException {
+
+        File cursorFile = cursorFile(name);
+        File tempFile = new File(cursorFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+
+        try {
+            out.write(Long.toString(offset).getBytes(UTF8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(cursorFile)) {
+
+            /* Some platforms will not rename over an existing file */
+            cursorFile.delete();
+
+            if (!tempFile.renameTo(cursorFile)) {
+                throw new IOException("Cannot write message log cursor " + cursorFile);
+            }
+        }
+    }
+
+    /**
+     * Answers the file holding the committed position of a named cursor.
+     */
+    private File cursorFile(String name) throws UnsupportedEncodingException {
+
+        return new File(directory, URLEncoder.encode(name, "UTF-8") + CURSOR_SUFFIX);
+    }
+
+    /**
+     * Answers the segment holding a record.
+     *
+     * @param offset
+     *            the offset of the record.
+     *
+     * @return the segment (the oldest if the record has been deleted, or the active segment if the offset is beyond the
+     *         end of the log).
+     */
+    LogSegment segmentFor(long offset) {
+
+        LogSegment[] current = segments;
+        int s = current.length - 1;
+
+        while (s > 0 && current[s].baseOffset() > offset) {
+            s--;
+        }
+
+        return current[s];
+    }
+
+    /**
+     * Answers the segment holding the first record with an ordinal greater than or equal to the specified value.
+     *
+     * @param ordinal
+     *            the ordinal.
+     *
+     * @return the segment (the active segment if there is no such record).
+     */
+    LogSegment segmentForOrdinal(long ordinal) {
+
+        LogSegment[] current = segments;
+        int s = 0;
+
+        while (s < current.length - 1 && current[s].maxOrdinal() < ordinal) {
+            s++;
+        }
+
+        return current[s];
+    }
+
+    /**
+     * Answers the highest ordinal of the records in the log.
+     *
+     * @return the ordinal, or <code>-1</code> if none of the records has one.
+     */
+    public long lastOrdinal() {
+
+        LogSegment[] current = segments;
+        long last = -1;
+
+        for (int s = 0; s < current.length; s++) {
+            last = Math.max(last, current[s].maxOrdinal());
+        }
+
+        return last;
+    }
+
+    /**
+     * Answers the segment following a segment.
+     *
+     * @param segment
+     *            the segment.
+     *
+     * @return the next segment (the oldest remaining, if the segment has been deleted), or <code>null</code> if the
+     *         segment is the active segment.
+     */
+    LogSegment segmentAfter(LogSegment segment) {
+
+        LogSegment[] current = segments;
+
+        for (int s = 0; s < current.length; s++) {
+            if (current[s].baseOffset() > segment.baseOffset()) {
+                return current[s];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes the log through to the disk.
+     */
+    public synchronized void flush() {
+
+        LogSegment[] current = segments;
+        current[current.length - 1].flush();
+    }
+
+    /**
+     * Closes the log, writing it through to the disk. Existing cursors can continue to read from it.
+     */
+    public synchronized void close() {
+
+        if (!isClosed) {
+            flush();
+            isClosed = true;
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return directory.getPath();
+    }
+}
@@ -59,6 +59,18 @@ public class ConfigProperties {
     /** Timeout configuration property indicating how long a local Registry query will wait for a response. */
     public static final String REGISTRY_LOCAL_TIMEOUT = "registry.local.timeout";
 
+    /** Configuration property indicating the number of JDBC connections pooled for local Registry operations. */
+    public static final String REGISTRY_POOL_SIZE = "registry.pool.size";
+
+    /** Default number of pooled Registry connections. */
+    public static final String REGISTRY_POOL_SIZE_DEFAULT = "4";
+
+    /** Configuration property indicating the number of prepared statements cached per pooled Registry connection. */
+    public static final String REGISTRY_STATEMENT_CACHE_SIZE = "registry.pool.statementCacheSize";
+
+    /** Default number of prepared statements cached per pooled Registry connection. */
+    public static final String REGISTRY_STATEMENT_CACHE_SIZE_DEFAULT = "64";
+
     /**
      * Configuration property indicating the amount by which the distributed Registry timeout is reduced at each hop in
      * the flood, to avoid requests timing-out before partial results are returned.
@@ -101,6 +113,19 @@ public class ConfigProperties {
     /** Default interface(s) to which the node will connect. */
     public static final String NODE_INTERFACES_DEFAULT = "lo0";
 
+    /**
+     * Configuration property indicating the preferred wire format for messages sent to neighbouring nodes ("
+     * <code>xml</code>" or "<code>binary</code>"). The binary format is only used with neighbours that advertise
+     * support for it.
+     */
+    public static final String NODE_WIRE_FORMAT = "fabric.wire.format";
+
+    /** Default wire format for messages sent to neighbouring nodes. */
+    public static final String NODE_WIRE_FORMAT_DEFAULT = "xml";
+
+    /** Node configuration property (recorded in the Registry by each node) listing the wire formats it can receive. */
+    public static final String NODE_WIRE_FORMATS_SUPPORTED = "fabric.wire.formats";
+
     /*
      * Fabric topic configuration
      */
@@ -196,6 +221,12 @@ public class ConfigProperties {
     /** The MQTT retain publication setting configuration property. */
     public static final String MQTT_RETAIN = "mqtt.retainPublication";
 
+    /** Configuration property indicating if MQTT messages are published asynchronously. */
+    public static final String MQTT_ASYNC_PUBLISH = "mqtt.async";
+
+    /** Configuration property indicating the maximum number of asynchronous publications awaiting completion. */
+    public static final String MQTT_MAX_INFLIGHT = "mqtt.maxInflight";
+
     /*
      * Default node properties
      */
@@ -0,0 +1,358 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe, fixed-size filter used to detect duplicate IDs (for example message UIDs) seen within a time window.
+ * <p>
+ * The window is divided into a ring of time buckets, each holding a Bloom filter of the IDs first seen during that
+ * interval; only a fingerprint of each ID is recorded, never the ID itself. When time moves on, the oldest bucket is
+ * cleared and re-used, so an ID is remembered for at least the length of the window (and at most one bucket interval
+ * longer). Memory use is fixed when the filter is created.
+ * </p>
+ * <p>
+ * Each bucket is sized for an expected number of IDs and a target false positive rate for the filter as a whole. A
+ * false positive causes a new ID to be reported as a duplicate; the current (estimated) rate can be monitored using
+ * <code>falsePositiveRate()</code>, and rises above the target if the expected number of IDs per bucket is exceeded.
+ * </p>
+ */
+public class DuplicateFilter {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/*
+	 * Class fields
+	 */
+
+	/** The interval covered by each bucket (in milliseconds) */
+	private final long bucketInterval;
+
+	/** The number of bits in the Bloom filter of each bucket */
+	private final int bitsPerBucket;
+
+	/** The number of hash functions used by the Bloom filters */
+	private final int hashCount;
+
+	/** The buckets; the bucket for time interval <em>t</em> is at index <em>t % buckets.length</em> */
+	private final Bucket[] buckets;
+
+	/** The time interval of the newest bucket */
+	private volatile long currentInterval;
+
+	/*
+	 * Inner classes
+	 */
+
+	/**
+	 * The Bloom filter for one time interval.
+	 */
+	private static class Bucket {
+
+		/** The filter bits */
+		final AtomicLongArray bits;
+
+		/** The number of bits set */
+		final AtomicInteger bitsSet = new AtomicInteger();
+
+		/** The time interval covered by this bucket */
+		volatile long interval = -1;
+
+		Bucket(int bitCount) {
+
+			bits = new AtomicLongArray((bitCount + 63) >>> 6);
+
+		}
+
+		/**
+		 * Clears the filter and assigns it to a new time interval.
+		 */
+		void reset(long newInterval) {
+
+			for (int w = 0; w < bits.length(); w++) {
+				bits.set(w, 0);
+			}
+
+			bitsSet.set(0);
+			interval = newInterval;
+
+		}
+
+		/**
+		 * Answers <code>true</code> if the specified bit is set.
+		 */
+		boolean get(int bit) {
+
+			return (bits.get(bit >>> 6) & (1L << bit)) != 0;
+
+		}
+
+		/**
+		 * Sets the specified bit, answering <code>true</code> if it was not already set.
+		 */
+		boolean set(int bit) {
+
+			int word = bit >>> 6;
+			long mask = 1L << bit;
+
+			while (true) {
+
+				long old = bits.get(word);
+
+				if ((old & mask) != 0) {
+					return false;
+				}
+
+				if (bits.compareAndSet(word, old, old | mask)) {
+					bitsSet.incrementAndGet();
+					return true;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Constructs a new filter.
+	 *
+	 * @param window
+	 *            the period for which IDs are remembered (in milliseconds).
+	 *
+	 * @param bucketCount
+	 *            the number of buckets into which the window is divided.
+	 *
+	 * @param expectedPerBucket
+	 *            the expected maximum number of IDs recorded in each bucket interval.
+	 *
+	 * @param falsePositiveRate
+	 *            the target false positive rate (for example <code>0.0001</code>).
+	 */
+	public DuplicateFilter(long window, int bucketCount, int expectedPerBucket, double falsePositiveRate) {
+
+		bucketCount = Math.max(1, bucketCount);
+		expectedPerBucket = Math.max(1, expectedPerBucket);
+		falsePositiveRate = Math.min(0.5, Math.max(1e-12, falsePositiveRate));
+
+		bucketInterval = Math.max(1, window / bucketCount);
+
+		/* An ID may be checked against every bucket, so share the target rate between them */
+		double bucketRate = falsePositiveRate / (bucketCount + 1);
+		double ln2 = Math.log(2);
+		long bits = (long) Math.ceil(-expectedPerBucket * Math.log(bucketRate) / (ln2 * ln2));
+		bitsPerBucket = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+		hashCount = Math.max(1, (int) Math.round((double) bitsPerBucket / expectedPerBucket * ln2));
+
+		/* One extra bucket, so that a full window is always covered in addition to the current interval */
+		buckets = new Bucket[bucketCount + 1];
+
+		for (int b = 0; b < buckets.length; b++) {
+			buckets[b] = new Bucket(bitsPerBucket);
+		}
+
+		currentInterval = System.currentTimeMillis() / bucketInterval;
+		buckets[(int) (currentInterval % buckets.length)].interval = currentInterval;
+
+	}
+
+	/**
+	 * Records an ID, answering <code>true</code> if it has already been recorded within the time window (subject to
+	 * the false positive rate of the filter).
+	 *
+	 * @param id
+	 *            the ID.
+	 *
+	 * @return <code>true</code> if the ID is a duplicate, <code>false</code> otherwise.
+	 */
+	public boolean checkAndAdd(String id) {
+
+		long h1 = hash(id, 0x9E3779B97F4A7C15L);
+		long h2 = hash(id, 0xC2B2AE3D27D4EB4FL) | 1;
+
+		Bucket current = rotate();
+		long oldest = currentInterval - buckets.length + 1;
+
+		/* Check the buckets that are still in the window */
+		for (int b = 0; b < buckets.length; b++) {
+
+			Bucket bucket = buckets[b];
+
+			if (bucket != current && bucket.interval >= oldest && contains(bucket, h1, h2)) {
+				return true;
+			}
+		}
+
+		/* Add the ID to the current bucket; if no bits change then it is already present */
+		boolean isNew = false;
+
+		for (int i = 0; i < hashCount; i++) {
+			isNew |= current.set(index(h1, h2, i));
+		}
+
+		return !isNew;
+
+	}
+
+	/**
+	 * Answers <code>true</code> if an ID has been recorded within the time window (subject to the false positive rate
+	 * of the filter), without recording it.
+	 *
+	 * @param id
+	 *            the ID.
+	 *
+	 * @return <code>true</code> if the ID has been seen, <code>false</code> otherwise.
+	 */
+	public boolean contains(String id) {
+
+		long h1 = hash(id, 0x9E3779B97F4A7C15L);
+		long h2 = hash(id, 0xC2B2AE3D27D4EB4FL) | 1;
+
+		rotate();
+		long oldest = currentInterval - buckets.length + 1;
+
+		for (int b = 0; b < buckets.length; b++) {
+
+			Bucket bucket = buckets[b];
+
+			if (bucket.interval >= oldest && contains(bucket, h1, h2)) {
+				return true;
+			}
+		}
+
+		return false;
+
+	}
+
+	/**
+	 * Answers the current estimated false positive rate of the filter, based upon how full each of the buckets in the
+	 * window is.
+	 *
+	 * @return the estimated rate (between <code>0</code> and <code>1</code>).
+	 */
+	public double falsePositiveRate() {
+
+		rotate();
+		long oldest = currentInterval - buckets.length + 1;
+		double trueNegative = 1.0;
+
+		for (int b = 0; b < buckets.length; b++) {
+
+			Bucket bucket = buckets[b];
+
+			if (bucket.interval >= oldest) {
+				double fill = (double) bucket.bitsSet.get() / bitsPerBucket;
+				trueNegative *= 1.0 - Math.pow(fill, hashCount);
+			}
+		}
+
+		return 1.0 - trueNegative;
+
+	}
+
+	/**
+	 * Answers the number of the time interval covered by the current bucket (the current time divided by the bucket
+	 * interval); this changes each time that the oldest bucket is re-used.
+	 *
+	 * @return the interval number.
+	 */
+	public long currentInterval() {
+
+		rotate();
+		return currentInterval;
+
+	}
+
+	/**
+	 * Answers the memory used by the filter bits (in bytes).
+	 *
+	 * @return the size.
+	 */
+	public long size() {
+
+		return (long) buckets.length * ((bitsPerBucket + 63) >>> 6) * 8;
+
+	}
+
+	/**
+	 * Moves the current bucket on if the current time interval has changed, clearing the bucket being re-used.
+	 *
+	 * @return the current bucket.
+	 */
+	private Bucket rotate() {
+
+		long interval = System.currentTimeMillis() / bucketInterval;
+
+		if (interval > currentInterval) {
+
+			synchronized (this) {
+
+				if (interval > currentInterval) {
+
+					Bucket next = buckets[(int) (interval % buckets.length)];
+					next.reset(interval);
+					currentInterval = interval;
+
+				}
+			}
+		}
+
+		return buckets[(int) (currentInterval % buckets.length)];
+
+	}
+
+	/**
+	 * Answers <code>true</code> if all of the bits for an ID are set in a bucket.
+	 */
+	private boolean contains(Bucket bucket, long h1, long h2) {
+
+		for (int i = 0; i < hashCount; i++) {
+			if (!bucket.get(index(h1, h2, i))) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Answers the <em>i</em>th bit index for an ID (using double hashing).
+	 */
+	private int index(long h1, long h2, int i) {
+
+		return (int) (((h1 + i * h2) >>> 1) % bitsPerBucket);
+
+	}
+
+	/**
+	 * Answers a 64-bit hash of a string.
+	 */
+	private static long hash(String s, long seed) {
+
+		long h = seed ^ s.length();
+
+		for (int c = 0; c < s.length(); c++) {
+			h = (h ^ s.charAt(c)) * 0x100000001B3L;
+		}
+
+		/* Final avalanche (from MurmurHash3) */
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB93FE53A87E5L;
+		h ^= h >>> 33;
+
+		return h;
+
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timer wheel, used to run large numbers of tasks after a delay, most of which are expected to be cancelled
+ * before they are due.
+ * <p>
+ * Time is divided into ticks, and the wheel into a fixed ring of slots; a task due at tick <em>t</em> is held in slot
+ * <em>t % slots</em>. Scheduling and cancelling a task are constant time operations that lock only the task's slot,
+ * and a single worker thread visits one slot per tick, running the tasks that are due. Tasks therefore run within one
+ * tick of their due time, and must be short (or hand their work to another thread) so as not to delay those that
+ * follow.
+ * </p>
+ */
+public class TimerWheel {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/*
+	 * Class fields
+	 */
+
+	/** The logger for this instance */
+	private final Logger logger;
+
+	/** The length of a tick (in nanoseconds) */
+	private final long tickNanos;
+
+	/** The slots of the wheel (the number of slots is a power of two) */
+	private final Slot[] slots;
+
+	/** Mask used to map a tick to its slot */
+	private final int slotMask;
+
+	/** The time at which the wheel started (in nanoseconds) */
+	private final long startNanos;
+
+	/** The most recent tick for which due tasks have been run (only changed while holding the lock on its slot) */
+	private volatile long processedTick = -1;
+
+	/** The worker thread */
+	private final Thread worker;
+
+	/** Flag indicating if the wheel is running */
+	private volatile boolean isRunning = true;
+
+	/*
+	 * Inner classes
+	 */
+
+	/**
+	 * A slot of the wheel, holding a doubly linked list of the timeouts that hash to it.
+	 */
+	private static class Slot {
+
+		/** The first timeout in the list */
+		Timeout head = null;
+
+		/**
+		 * Adds a timeout to the list (the caller must hold the lock on this slot).
+		 */
+		void add(Timeout timeout) {
+
+			timeout.slot = this;
+			timeout.next = head;
+
+			if (head != null) {
+				head.previous = timeout;
+			}
+
+			head = timeout;
+
+		}
+
+		/**
+		 * Removes a timeout from the list (the caller must hold the lock on this slot).
+		 */
+		void remove(Timeout timeout) {
+
+			if (timeout.previous != null) {
+				timeout.previous.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+
+			if (timeout.next != null) {
+				timeout.next.previous = timeout.previous;
+			}
+
+			timeout.slot = null;
+			timeout.next = null;
+			timeout.previous = null;
+
+		}
+	}
+
+	/**
+	 * Handle for a scheduled task, used to cancel it.
+	 */
+	public static final class Timeout {
+
+		/** The task to run */
+		private final Runnable task;
+
+		/** The tick at which the task is due */
+		private long dueTick;
+
+		/** The slot holding this timeout, or <code>null</code> once it has been run or cancelled */
+		private Slot slot = null;
+
+		/** The next timeout in the slot */
+		private Timeout next = null;
+
+		/** The previous timeout in the slot */
+		private Timeout previous = null;
+
+		private Timeout(Runnable task, long dueTick) {
+
+			this.task = task;
+			this.dueTick = dueTick;
+
+		}
+
+		/**
+		 * Cancels the task if it has not yet been run.
+		 *
+		 * @return <code>true</code> if the task was cancelled, <code>false</code> if it has already been run or
+		 *         cancelled.
+		 */
+		public boolean cancel() {
+
+			Slot current = slot;
+
+			if (current != null) {
+
+				synchronized (current) {
+
+					/* Check that the task was not run while we were waiting for the lock */
+					if (slot == current) {
+						current.remove(this);
+						return true;
+					}
+				}
+			}
+
+			return false;
+
+		}
+	}
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Constructs and starts a new timer wheel.
+	 *
+	 * @param name
+	 *            the name of the worker thread.
+	 *
+	 * @param tick
+	 *            the length of a tick (in milliseconds), i.e. the accuracy with which tasks are run.
+	 *
+	 * @param slotCount
+	 *            the number of slots in the wheel (rounded up to a power of two); ideally enough to cover the longest
+	 *            typical delay.
+	 *
+	 * @param logger
+	 *            the logger to use.
+	 */
+	public TimerWheel(String name, long tick, int slotCount, Logger logger) {
+
+		this.logger = logger;
+		tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tick));
+
+		int size = 1;
+
+		while (size < slotCount && size < (1 << 30)) {
+			size <<= 1;
+		}
+
+		slots = new Slot[size];
+		slotMask = size - 1;
+
+		for (int s = 0; s < slots.length; s++) {
+			slots[s] = new Slot();
+		}
+
+		startNanos = System.nanoTime();
+
+		worker = new Thread(name) {
+			@Override
+			public void run() {
+				runWheel();
+			}
+		};
+		worker.setDaemon(true);
+		worker.start();
+
+	}
+
+	/**
+	 * Schedules a task to run after a delay.
+	 *
+	 * @param task
+	 *            the task.
+	 *
+	 * @param delay
+	 *            the delay (in milliseconds).
+	 *
+	 * @return the handle used to cancel the task.
+	 */
+	public Timeout schedule(Runnable task, long delay) {
+
+		long dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+		long dueTick = (dueNanos - startNanos + tickNanos - 1) / tickNanos;
+		Timeout timeout = new Timeout(task, dueTick);
+
+		while (true) {
+
+			Slot slot = slots[(int) (timeout.dueTick & slotMask)];
+
+			synchronized (slot) {
+
+				/* If the tick has already been processed then the task is due on the next one */
+				long nextTick = processedTick + 1;
+
+				if (timeout.dueTick < nextTick) {
+
+					timeout.dueTick = nextTick;
+
+					if (slots[(int) (nextTick & slotMask)] != slot) {
+						continue;
+					}
+				}
+
+				slot.add(timeout);
+				return timeout;
+
+			}
+		}
+	}
+
+	/**
+	 * Stops the wheel; tasks that have not yet been run are discarded.
+	 */
+	public void stop() {
+
+		isRunning = false;
+		worker.interrupt();
+
+	}
+
+	/**
+	 * The main loop of the worker thread.
+	 */
+	private void runWheel() {
+
+		ArrayList<Runnable> dueTasks = new ArrayList<Runnable>();
+		long tick = 0;
+
+		while (isRunning) {
+
+			/* Wait for the tick to start */
+			long sleepNanos = startNanos + tick * tickNanos - System.nanoTime();
+
+			if (sleepNanos > 0) {
+
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					continue;
+				}
+			}
+
+			/* Collect the tasks that are due */
+			Slot slot = slots[(int) (tick & slotMask)];
+
+			synchronized (slot) {
+
+				Timeout timeout = slot.head;
+
+				while (timeout != null) {
+
+					Timeout next = timeout.next;
+
+					if (timeout.dueTick <= tick) {
+						slot.remove(timeout);
+						dueTasks.add(timeout.task);
+					}
+
+					timeout = next;
+
+				}
+
+				processedTick = tick;
+
+			}
+
+			/* Run them */
+			for (int t = 0; t < dueTasks.size(); t++) {
+
+				try {
+					dueTasks.get(t).run();
+				} catch (Throwable e) {
+					logger.log(Level.WARNING, "Exception in timer task: {0}", e.getMessage());
+					logger.log(Level.FINEST, "Full exception: ", e);
+				}
+			}
+
+			dueTasks.clear();
+			tick++;
+
+		}
+	}
+}
@@ -0,0 +1,418 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.xml;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of an XML document.
+ * <p>
+ * The document tree is written depth first as a sequence of tagged nodes:
+ * <ul>
+ * <li><strong>Element:</strong> <code>ELEMENT name attribute-count (name value)* child* END</code></li>
+ * <li><strong>Text:</strong> <code>TEXT value</code></li>
+ * <li><strong>Binary content:</strong> <code>BYTES length byte*</code> (content set using
+ * <code>XML.setBytes()</code>, which is carried as-is rather than Base 64 encoded)</li>
+ * </ul>
+ * Counts and lengths are unsigned variable length integers (7 bits per byte, least significant first) and strings are
+ * UTF-8 preceded by their length. Element and attribute names are written in full the first time that they appear and
+ * subsequently as a reference to that first occurrence (a name reference of <code>0</code> indicates that the name
+ * follows).
+ * </p>
+ * <p>
+ * Processing instructions are not encoded.
+ * </p>
+ */
+public class BinaryXML {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** Marks the end of an element's children */
+    private static final byte END = 0;
+
+    /** Introduces an element */
+    private static final byte ELEMENT = 1;
+
+    /** Introduces a text node */
+    private static final byte TEXT = 2;
+
+    /** Introduces a binary content node */
+    private static final byte BYTES = 3;
+
+    /** The character set used to encode strings */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * Growable output buffer.
+     */
+    private static class Output {
+
+        /** The buffer */
+        byte[] buffer;
+
+        /** The number of bytes written */
+        int length;
+
+        /** The names written so far, and their reference numbers */
+        final Map<String, Integer> names = new HashMap<String, Integer>();
+
+        Output(byte[] header, int size) {
+
+            buffer = new byte[Math.max(size, header.length + 16)];
+            System.arraycopy(header, 0, buffer, 0, header.length);
+            length = header.length;
+
+        }
+
+        void ensure(int extra) {
+
+            if (length + extra > buffer.length) {
+                byte[] newBuffer = new byte[Math.max(buffer.length * 2, length + extra)];
+                System.arraycopy(buffer, 0, newBuffer, 0, length);
+                buffer = newBuffer;
+            }
+        }
+
+        void writeByte(int b) {
+
+            ensure(1);
+            buffer[length++] = (byte) b;
+
+        }
+
+        void writeVarint(int value) {
+
+            ensure(5);
+
+            while ((value & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            buffer[length++] = (byte) value;
+
+        }
+
+        void writeBytes(byte[] bytes) {
+
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+
+        }
+
+        void writeString(String value) {
+
+            writeBytes(value.getBytes(UTF8));
+
+        }
+
+        void writeName(String name) {
+
+            Integer ref = names.get(name);
+
+            if (ref != null) {
+                writeVarint(ref);
+            } else {
+                writeVarint(0);
+                writeString(name);
+                names.put(name, names.size() + 1);
+            }
+        }
+
+        byte[] toByteArray() {
+
+            byte[] bytes = new byte[length];
+            System.arraycopy(buffer, 0, bytes, 0, length);
+            return bytes;
+
+        }
+    }
+
+    /**
+     * Input buffer.
+     */
+    private static class Input {
+
+        /** The buffer */
+        final byte[] buffer;
+
+        /** The offset of the next byte to read */
+        int offset;
+
+        /** The names read so far, in order */
+        final ArrayList<String> names = new ArrayList<String>();
+
+        Input(byte[] buffer, int offset) {
+
+            this.buffer = buffer;
+            this.offset = offset;
+
+        }
+
+        byte readByte() {
+
+            if (offset >= buffer.length) {
+                throw new IllegalArgumentException("Truncated binary XML");
+            }
+
+            return buffer[offset++];
+
+        }
+
+        int readVarint() {
+
+            int value = 0;
+
+            for (int shift = 0; shift < 35; shift += 7) {
+
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException("Invalid length in binary XML");
+
+        }
+
+        byte[] readBytes() {
+
+            int length = readVarint();
+
+            if (length < 0 || length > buffer.length - offset) {
+                throw new IllegalArgumentException("Truncated binary XML");
+            }
+
+            byte[] bytes = new byte[length];
+            System.arraycopy(buffer, offset, bytes, 0, length);
+            offset += length;
+            return bytes;
+
+        }
+
+        String readString() {
+
+            int length = readVarint();
+
+            if (length < 0 || length > buffer.length - offset) {
+                throw new IllegalArgumentException("Truncated binary XML");
+            }
+
+            String value = new String(buffer, offset, length, UTF8);
+            offset += length;
+            return value;
+
+        }
+
+        String readName() {
+
+            int ref = readVarint();
+            String name = null;
+
+            if (ref == 0) {
+                name = readString();
+                names.add(name);
+            } else if (ref <= names.size()) {
+                name = names.get(ref - 1);
+            } else {
+                throw new IllegalArgumentException("Invalid name reference in binary XML: " + ref);
+            }
+
+            return name;
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * No instantiation of this class.
+     */
+    private BinaryXML() {
+
+    }
+
+    /**
+     * Encodes an XML document.
+     *
+     * @param xml
+     *            the document.
+     *
+     * @param header
+     *            bytes to be written before the encoded document (for example a format identifier).
+     *
+     * @return the encoded document.
+     */
+    public static byte[] encode(XML xml, byte[] header) {
+
+        Output out = new Output(header, 256);
+
+        if (xml.documentElement != null) {
+            encode(xml.documentElement, out);
+        }
+
+        return out.toByteArray();
+
+    }
+
+    /**
+     * Encodes a node and its children.
+     *
+     * @param node
+     *            the node.
+     *
+     * @param out
+     *            the output buffer.
+     */
+    private static void encode(XMLNode node, Output out) {
+
+        if (node instanceof XMLElement) {
+
+            XMLElement element = (XMLElement) node;
+
+            out.writeByte(ELEMENT);
+            out.writeName(element.getNodeName());
+
+            HashMap<String, String> attributes = element.getAttributes();
+            out.writeVarint(attributes.size());
+
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                out.writeName(attribute.getKey());
+                out.writeString(attribute.getValue());
+            }
+
+            for (XMLNode child : element.getSubnodes()) {
+                encode(child, out);
+            }
+
+            out.writeByte(END);
+
+        } else if (node instanceof XMLText) {
+
+            XMLText text = (XMLText) node;
+
+            if (text.getBytes() != null) {
+                out.writeByte(BYTES);
+                out.writeBytes(text.getBytes());
+            } else {
+                out.writeByte(TEXT);
+                out.writeString(text.getText());
+            }
+        }
+    }
+
+    /**
+     * Decodes an XML document.
+     *
+     * @param bytes
+     *            the encoded document.
+     *
+     * @param offset
+     *            the offset of the start of the encoded document.
+     *
+     * @return the document.
+     *
+     * @throws IllegalArgumentException
+     *             thrown if the encoding is invalid.
+     */
+    public static XML decode(byte[] bytes, int offset) throws IllegalArgumentException {
+
+        XML xml = new XML();
+        Input in = new Input(bytes, offset);
+
+        if (in.offset < bytes.length) {
+
+            if (in.readByte() != ELEMENT) {
+                throw new IllegalArgumentException("Binary XML does not start with an element");
+            }
+
+            xml.documentElement = decodeElement(null, in);
+        }
+
+        xml.setDirty(false);
+        return xml;
+
+    }
+
+    /**
+     * Decodes an element and its children.
+     *
+     * @param parent
+     *            the parent element, or <code>null</code> for the document element.
+     *
+     * @param in
+     *            the input buffer, positioned after the element tag.
+     *
+     * @return the element.
+     */
+    private static XMLElement decodeElement(XMLElement parent, Input in) {
+
+        XMLElement element = new XMLElement(in.readName(), parent);
+
+        int attributeCount = in.readVarint();
+        HashMap<String, String> attributes = element.getAttributes();
+
+        for (int a = 0; a < attributeCount; a++) {
+            String name = in.readName();
+            attributes.put(name, in.readString());
+        }
+
+        ArrayList<XMLNode> subnodes = element.getSubnodes();
+
+        for (byte tag = in.readByte(); tag != END; tag = in.readByte()) {
+
+            switch (tag) {
+
+                case ELEMENT:
+
+                    subnodes.add(decodeElement(element, in));
+                    break;
+
+                case TEXT:
+
+                    XMLText text = new XMLText(null, element);
+                    text.setText(in.readString());
+                    subnodes.add(text);
+                    break;
+
+                case BYTES:
+
+                    XMLText content = new XMLText(null, element);
+                    content.setBytes(in.readBytes());
+                    subnodes.add(content);
+                    break;
+
+                default:
+
+                    throw new IllegalArgumentException("Invalid node type in binary XML: " + tag);
+
+            }
+        }
+
+        return element;
+
+    }
+}
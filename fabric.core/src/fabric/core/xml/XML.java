@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -149,6 +150,12 @@ public class XML implements IXMLTokenHandler {
     /** Used to track if a single content node is broken into multiple chunks by the parser */
     protected XMLText currentText = null;
 
+    /** Index of the nodes already located in this document, by path (cleared when nodes are removed) */
+    private final ConcurrentHashMap<XMLPath, XMLNode> indexedNodes = new ConcurrentHashMap<XMLPath, XMLNode>();
+
+    /** The paths of the nodes in this document, or <code>null</code> if they need to be regenerated */
+    private String[] pathsCache = null;
+
     /** Precompiled regular expression for matching a path to a text node */
     protected static Pattern regexpTextNodePath = null;
 
@@ -398,6 +405,7 @@ public class XML implements IXMLTokenHandler {
              */
             toXML = null;
             toBytes = null;
+            pathsCache = null;
 
         }
 
@@ -713,24 +721,18 @@ public class XML implements IXMLTokenHandler {
 
         String value = null;
 
-        /* If this is not an attribute path and it is not terminated properly to match a text node... */
-        if (path.indexOf('@') < 0 && !(regexpTextNodePath.matcher(path).matches())) {
-            path = path + "/$";
-        }
-
-        /* Expand the path and convert it to its internal format */
-        ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
-        XMLPathSegment lastSegment = segments.get(segments.size() - 1);
+        /* Get the compiled form of the path (a text node is assumed if this is not an attribute path) */
+        XMLPath compiledPath = XMLPath.value(path);
 
         /* Get the node */
-        XMLNode node = findNode(segments, false);
+        XMLNode node = findNode(compiledPath, false);
 
         /* If an attribute was requested... */
-        if (lastSegment.getAttributeName().length() > 0) {
+        if (compiledPath.isAttribute()) {
 
             /* Get it */
             XMLElement element = (XMLElement) node;
-            value = (element != null) ? (String) element.getAttributes().get(lastSegment.getAttributeName()) : null;
+            value = (element != null) ? (String) element.getAttributes().get(compiledPath.attributeName()) : null;
 
         } else if (node != null) {
 
@@ -877,6 +879,16 @@ public class XML implements IXMLTokenHandler {
         /* To hold the result */
         byte[] result = null;
 
+        /* If the node holds binary content then there is no need to decode it */
+        if (path.indexOf('@') < 0) {
+
+            XMLNode node = findNode(XMLPath.value(path), false);
+
+            if (node instanceof XMLText && ((XMLText) node).getBytes() != null) {
+                return ((XMLText) node).getBytes();
+            }
+        }
+
         /* Get the value from the XML file */
         String xmlValue = get(path);
 
@@ -1004,32 +1016,24 @@ public class XML implements IXMLTokenHandler {
 
         if (value != null) {
 
-            /*
-             * If this is not an attribute path and it is not terminated properly to match a text node...
-             */
-            if (path.indexOf('@') < 0 && !(regexpTextNodePath.matcher(path).matches())) {
-                path = path + "/$";
-            }
-
-            /* Expand the path and convert it to its internal format */
-            ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
-            XMLPathSegment lastSegment = segments.get(segments.size() - 1);
+            /* Get the compiled form of the path (a text node is assumed if this is not an attribute path) */
+            XMLPath compiledPath = XMLPath.value(path);
 
             /* Get the node */
-            XMLNode node = findNode(segments, true);
+            XMLNode node = findNode(compiledPath, true);
 
             /* If an attribute was specified... */
-            if (lastSegment.getAttributeName().length() > 0) {
+            if (compiledPath.isAttribute()) {
 
                 /* Set it */
                 XMLElement element = (XMLElement) node;
 
                 if (value != null) {
                     /* Set it */
-                    element.getAttributes().put(lastSegment.getAttributeName(), value);
+                    element.getAttributes().put(compiledPath.attributeName(), value);
                 } else {
                     /* Remove it */
-                    element.getAttributes().remove(lastSegment.getAttributeName());
+                    element.getAttributes().remove(compiledPath.attributeName());
                 }
 
             } else {
@@ -1195,7 +1199,8 @@ public class XML implements IXMLTokenHandler {
     /**
      * As <code>set(<em>path</em>, <em>value</em>)</code>, but the value must be a byte array.
      * <p>
-     * Note that the byte array will be Base 64 encoded before being added to the XML.
+     * Note that the byte array will be Base 64 encoded when the XML is generated (for element content the bytes are
+     * recorded as-is, and only encoded if required).
      * </p>
      *
      * @param path
@@ -1210,6 +1215,20 @@ public class XML implements IXMLTokenHandler {
             throw new IllegalArgumentException("'value' parameter cannot be null");
         }
 
+        /* If this is the content of an element, record the bytes (they are only encoded if required)... */
+        if (path.indexOf('@') < 0) {
+
+            if (isReadOnly) {
+                throw new UnsupportedOperationException("XML document is read-only");
+            }
+
+            XMLText content = (XMLText) findNode(XMLPath.value(path), true);
+            content.setBytes(value);
+            setDirty(true);
+            return;
+
+        }
+
         /* Encode the byte array */
         String encodedBytes = null;
         try {
@@ -1275,11 +1294,8 @@ public class XML implements IXMLTokenHandler {
             throw new UnsupportedOperationException("XML document is read-only");
         }
 
-        /* Expand the path and convert it to its internal format */
-        ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
-
         /* Get the node */
-        XMLNode targetNode = findNode(segments, true);
+        XMLNode targetNode = findNode(XMLPath.node(path), true);
 
         if (targetNode != null) {
 
@@ -1302,6 +1318,9 @@ public class XML implements IXMLTokenHandler {
                     }
                 }
             }
+
+            /* The paths of the following siblings (and their descendants) have changed */
+            indexedNodes.clear();
         }
 
         setDirty(true);
@@ -1331,11 +1350,8 @@ public class XML implements IXMLTokenHandler {
      */
     public XMLNode getNode(String path) {
 
-        /* Expand the path and convert it to its internal format */
-        ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
-
         /* Get the node */
-        XMLNode node = findNode(segments, false);
+        XMLNode node = findNode(XMLPath.node(path), false);
 
         return node;
 
@@ -1351,8 +1367,12 @@ public class XML implements IXMLTokenHandler {
         /* To hold the result */
         String[] orderedPaths = null;
 
-        /* If there is anything in the XML document... */
-        if (documentElement != null) {
+        /* If the paths have already been generated for the current document... */
+        if (pathsCache != null) {
+
+            orderedPaths = pathsCache.clone();
+
+        } else if (documentElement != null) {
 
             /* To hold the paths */
             ArrayList<StringBuilder> orderedPathsList = new ArrayList<StringBuilder>();
@@ -1372,6 +1392,10 @@ public class XML implements IXMLTokenHandler {
                 orderedPaths[p] = i.next().toString();
             }
 
+            if (XMLPath.isCaching()) {
+                pathsCache = orderedPaths.clone();
+            }
+
         } else {
 
             /* Nothing to return */
@@ -1397,7 +1421,7 @@ public class XML implements IXMLTokenHandler {
 
         String[] allElementPaths = getPaths();
         ArrayList<String> matchingPaths = new ArrayList<String>();
-        Pattern pattern = Pattern.compile(regexp);
+        Pattern pattern = XMLPath.pattern(regexp);
 
         for (int p = 0; p < allElementPaths.length; p++) {
 
@@ -1875,6 +1899,10 @@ public class XML implements IXMLTokenHandler {
 
         setDefaultPIs();
 
+        /* Any existing nodes are being replaced */
+        indexedNodes.clear();
+        pathsCache = null;
+
         Reader xmlSourceReader = null;
 
         if (xmlString != null) {
@@ -2085,7 +2113,36 @@ public class XML implements IXMLTokenHandler {
     }
 
     /**
-     * Locatte a node based upon its path.
+     * Locates a node based upon its path, using the document's node index when path caching is enabled.
+     *
+     * @param path
+     *            the path to the node.
+     * @param doCreate
+     *            <code>true</code> if missing nodes should be created, <code>false</code> otherwise.
+     * @return the node, or <code>null</code> if it does not exist and <code>doCreate</code> is <code>false</code>.
+     */
+    protected XMLNode findNode(XMLPath path, boolean doCreate) {
+
+        /* If the node has already been located... */
+        XMLNode node = XMLPath.isCaching() ? indexedNodes.get(path) : null;
+
+        if (node == null) {
+
+            node = findNode(new ArrayList<XMLPathSegment>(path.segments()), doCreate);
+
+            /* Index the node, unless it is a placeholder for the (missing) content of an element */
+            if (node != null && XMLPath.isCaching()
+                    && (node instanceof XMLElement || node.getParent() != null
+                            && ((XMLElement) node.getParent()).getSubnodes().contains(node))) {
+                indexedNodes.put(path, node);
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Locates a node based upon its path.
      *
      * @param path
      *            the path to the node.
@@ -0,0 +1,268 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.xml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * A pre-parsed (compiled) path to an XML node.
+ * <p>
+ * Compiled paths are immutable and are interned in a global cache, so that the many fixed paths used to access Fabric
+ * messages (for example <code>/fab/pay@enc</code>) are only parsed once. The cache is bounded (see the
+ * <code>fabric.xml.pathCacheSize</code> system property); when it is full it is cleared and refilled on demand. A size
+ * of <code>0</code> disables caching, both of compiled paths and of the nodes located in each document.
+ * </p>
+ */
+public final class XMLPath {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The maximum number of compiled paths (and of compiled path patterns) that are cached. */
+    private static final int CACHE_SIZE = Integer.getInteger("fabric.xml.pathCacheSize", 4096);
+
+    /*
+     * Class static fields
+     */
+
+    /** Cache of compiled paths to values (text nodes or attributes) */
+    private static final ConcurrentHashMap<String, XMLPath> valuePaths = new ConcurrentHashMap<String, XMLPath>();
+
+    /** Cache of compiled paths to nodes */
+    private static final ConcurrentHashMap<String, XMLPath> nodePaths = new ConcurrentHashMap<String, XMLPath>();
+
+    /** Cache of compiled regular expressions used to select paths */
+    private static final ConcurrentHashMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+
+    /*
+     * Class fields
+     */
+
+    /** The path (normalized to refer to a text node if required) */
+    private final String path;
+
+    /** The segments of the path (never modified) */
+    private final List<XMLPathSegment> segments;
+
+    /** The name of the attribute identified by the path, or an empty string if this is not an attribute path */
+    private final String attributeName;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param path
+     *            the path.
+     */
+    private XMLPath(String path) {
+
+        this.path = path;
+        ArrayList<XMLPathSegment> split = XMLPathSegment.split(path);
+        this.segments = Collections.unmodifiableList(split);
+        this.attributeName = split.get(split.size() - 1).getAttributeName();
+
+    }
+
+    /**
+     * Answers the compiled form of a path to a value. Paths that do not identify an attribute or a text node are taken
+     * to refer to the content (text node) of the element, i.e. "<code>/$</code>" is appended.
+     *
+     * @param path
+     *            the path.
+     *
+     * @return the compiled path.
+     */
+    public static XMLPath value(String path) {
+
+        XMLPath compiled = valuePaths.get(path);
+
+        if (compiled == null) {
+
+            String textPath = path;
+
+            if (path.indexOf('@') < 0 && !XML.regexpTextNodePath.matcher(path).matches()) {
+                textPath = path + "/$";
+            }
+
+            compiled = intern(valuePaths, path, new XMLPath(textPath));
+
+        }
+
+        return compiled;
+
+    }
+
+    /**
+     * Answers the compiled form of a path to a node (used as-is).
+     *
+     * @param path
+     *            the path.
+     *
+     * @return the compiled path.
+     */
+    public static XMLPath node(String path) {
+
+        XMLPath compiled = nodePaths.get(path);
+
+        if (compiled == null) {
+            compiled = intern(nodePaths, path, new XMLPath(path));
+        }
+
+        return compiled;
+
+    }
+
+    /**
+     * Answers the compiled form of a regular expression used to select paths.
+     *
+     * @param regexp
+     *            the regular expression.
+     *
+     * @return the compiled pattern.
+     */
+    public static Pattern pattern(String regexp) {
+
+        Pattern compiled = patterns.get(regexp);
+
+        if (compiled == null) {
+
+            compiled = Pattern.compile(regexp);
+
+            if (CACHE_SIZE > 0) {
+
+                if (patterns.size() >= CACHE_SIZE) {
+                    patterns.clear();
+                }
+
+                patterns.put(regexp, compiled);
+
+            }
+        }
+
+        return compiled;
+
+    }
+
+    /**
+     * Adds a compiled path to a cache, clearing the cache first if it is full.
+     *
+     * @param cache
+     *            the cache.
+     *
+     * @param key
+     *            the path as specified by the caller.
+     *
+     * @param compiled
+     *            the compiled path.
+     *
+     * @return the compiled path.
+     */
+    private static XMLPath intern(ConcurrentHashMap<String, XMLPath> cache, String key, XMLPath compiled) {
+
+        if (CACHE_SIZE > 0) {
+
+            if (cache.size() >= CACHE_SIZE) {
+                cache.clear();
+            }
+
+            cache.put(key, compiled);
+
+        }
+
+        return compiled;
+
+    }
+
+    /**
+     * Answers <code>true</code> if compiled paths (and the nodes that they identify) are cached.
+     *
+     * @return <code>true</code> if caching is enabled, <code>false</code> otherwise.
+     */
+    static boolean isCaching() {
+
+        return CACHE_SIZE > 0;
+
+    }
+
+    /**
+     * Answers the segments of the path. The list must not be modified.
+     *
+     * @return the segments.
+     */
+    public List<XMLPathSegment> segments() {
+
+        return segments;
+
+    }
+
+    /**
+     * Answers <code>true</code> if this path identifies an attribute.
+     *
+     * @return <code>true</code> for an attribute path, <code>false</code> otherwise.
+     */
+    public boolean isAttribute() {
+
+        return attributeName.length() > 0;
+
+    }
+
+    /**
+     * Answers the name of the attribute identified by this path.
+     *
+     * @return the attribute name, or an empty string if this is not an attribute path.
+     */
+    public String attributeName() {
+
+        return attributeName;
+
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+
+        return path.hashCode();
+
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+
+        return obj instanceof XMLPath && ((XMLPath) obj).path.equals(path);
+
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return path;
+
+    }
+}
@@ -7,6 +7,10 @@
 
 package fabric.core.xml;
 
+import java.io.UnsupportedEncodingException;
+
+import org.apache.commons.codec.binary.Base64;
+
 /**
  * Data structure used to record an XML element's content.
  */
@@ -19,9 +23,12 @@ public class XMLText extends XMLNode {
 	 * Class fields
 	 */
 
-	/** To hold the text of the XML node */
+	/** To hold the text of the XML node (generated on demand if the node holds binary content) */
 	private String text = "";
 
+	/** To hold the binary content of the XML node, or <code>null</code> if the node holds text */
+	private byte[] bytes = null;
+
 	/*
 	 * Class methods
 	 */
@@ -54,6 +61,7 @@ public class XMLText extends XMLNode {
 	public String toString() {
 
 		String toString = null;
+		String text = getText();
 
 		if (text != null) {
 			toString = XML.encodeEntityRefs(text);
@@ -67,6 +75,18 @@ public class XMLText extends XMLNode {
 
 	public String getText() {
 
+		/* If the node holds binary content that has not yet been encoded... */
+		if (text == null && bytes != null) {
+
+			/* Encode it as Base 64 */
+			try {
+				text = new String(Base64.encodeBase64(bytes), "UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+
+		}
+
 		return text;
 
 	}
@@ -74,12 +94,39 @@ public class XMLText extends XMLNode {
 	public void setText(String text) {
 
 		this.text = text;
+		this.bytes = null;
 
 	}
 
 	public void appendText(String text) {
 
-		this.text += text;
+		this.text = getText() + text;
+		this.bytes = null;
+
+	}
+
+	/**
+	 * Answers the binary content of this node, if it was set using <code>setBytes()</code>.
+	 * 
+	 * @return the binary content, or <code>null</code> if the node holds text.
+	 */
+	public byte[] getBytes() {
+
+		return bytes;
+
+	}
+
+	/**
+	 * Sets the binary content of this node. The Base 64 encoded text form of the content is only generated if it is
+	 * required (for example when the node is serialized as XML).
+	 * 
+	 * @param bytes
+	 *            the binary content.
+	 */
+	public void setBytes(byte[] bytes) {
+
+		this.bytes = bytes;
+		this.text = null;
 
 	}
 }
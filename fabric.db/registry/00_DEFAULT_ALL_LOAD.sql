@@ -43,14 +43,19 @@ insert into fabric.default_config values ('sys.language', 'en');
 -- This section describes logging and instrumentation settings.
 -------------------------------------------------------------------------------
 
--- Enable/disable instrumentation.
+-- Enable/disable instrumentation. Message processing latencies (node, task,
+-- actor and plug-in) are recorded in histograms, reported when the node stops.
 insert into fabric.default_config values ('instrumentation.enable', 'false');
 
--- Instrumentation file persistence, where:
+-- Instrumentation file persistence (each event as a CSV record, with
+-- messages identified by UID), where:
 --    {0}: the Fabric node name.
-insert into fabric.default_config values ('instrumentation.fileName', 'Fabric_{0}.dat');
+-- Off by default: the histograms are cheap enough to leave instrumentation
+-- enabled, but writing every event to the file is not.
+--insert into fabric.default_config values ('instrumentation.fileName', 'Fabric_{0}.dat');
 
--- The number of instrumentation messages buffered before being persisted.
+-- The number of instrumentation events buffered before being written to the
+-- instrumentation file (if any).
 insert into fabric.default_config values ('instrumentation.buffer', '100');
 
 -------------------------------------------------------------------------------
@@ -86,6 +91,30 @@ insert into fabric.default_config values ('instrumentation.buffer', '100');
 -- This does not effect retries on startup which will always be attempted.
 --insert into fabric.default_config values ('registry.reconnect', 'true');
 
+-- The number of JDBC connections pooled for local Registry operations, and the
+-- number of prepared statements cached against each pooled connection.
+-- (Read before the Registry is available, so set in the node configuration.)
+--insert into fabric.default_config values ('registry.pool.size', '4');
+--insert into fabric.default_config values ('registry.pool.statementCacheSize', '64');
+
+-- Registry query result caching. Cached results for tables reported by the
+-- Registry triggers (see registry.notifications.level) are invalidated when an
+-- update notification is received, and otherwise expire after notifiedTtl
+-- milliseconds; results for other tables expire after ttl milliseconds. Local
+-- updates always invalidate the affected results immediately.
+insert into fabric.default_config values ('registry.cache.enabled', 'true');
+insert into fabric.default_config values ('registry.cache.size', '256');
+insert into fabric.default_config values ('registry.cache.ttl', '10000');
+insert into fabric.default_config values ('registry.cache.notifiedTtl', '300000');
+
+-- Registry update notifications are published in the background. Changes are
+-- coalesced for this period (in milliseconds), with only the latest change to
+-- a row being published, and Registry updates wait if more than maxPending
+-- changes are queued. (Read by the Registry triggers, so set in the node
+-- configuration.)
+--insert into fabric.default_config values ('registry.notifications.coalesce', '50');
+--insert into fabric.default_config values ('registry.notifications.maxPending', '10000');
+
 -- Configuration property indicating whether remote distributed queries
 -- received should be forwarded to neighbours. Setting this to true will
 -- increase network traffic but will allow distributed queries to reach nodes
@@ -116,9 +145,136 @@ insert into fabric.default_config values ('fabric.connectionManager.fireActionMe
 -- node.
 -------------------------------------------------------------------------------
 
--- When the message queue is empty, the length of the interval (in
--- milliseconds) before checking for new messages
-insert into fabric.default_config values ('fabric.messageForwarding.sleepInterval', '1000');
+-- The maximum number of messages held in memory for each destination
+-- (neighbouring node or local actor).
+insert into fabric.default_config values ('fabric.messageForwarding.queueSize', '1000');
+
+-- The maximum number of messages sent from each destination queue before
+-- moving on to the next destination.
+insert into fabric.default_config values ('fabric.messageForwarding.batchSize', '100');
+
+-- The action taken when a destination queue is full:
+--
+--    block:       wait until there is room on the queue.
+--    drop-oldest: discard the oldest queued message for the destination.
+--    spill:       write the message to an overflow file in
+--                 fabric.messageForwarding.spillDirectory (defaults to the
+--                 JVM temporary directory) and send it once the queue drains.
+--
+insert into fabric.default_config values ('fabric.messageForwarding.overflowPolicy', 'block');
+
+-- Flag indicating if feed messages that cannot be sent to a neighbouring node
+-- are held (in the message log forwarding/<node>, see fabric.messageLog.*)
+-- and resent, in order, once the node can be reached again. Messages sent
+-- with best-effort QoS are never held.
+insert into fabric.default_config values ('fabric.messageForwarding.storeAndForward', 'true');
+
+-- The interval between attempts to resend held messages (in milliseconds).
+insert into fabric.default_config values ('fabric.messageForwarding.retryInterval', '10000');
+
+-- The number of message UIDs remembered for each neighbour to detect
+-- duplicate messages when holding and resending.
+insert into fabric.default_config values ('fabric.messageForwarding.dedupWindow', '1000');
+
+-------------------------------------------------------------------------------
+-- F a b r i c   M e s s a g e   L o g s
+--
+-- This section defines the variables used to configure the append-only logs
+-- holding feed messages recorded for replay, and the messages held by the
+-- message cache service. Each log is a sequence of memory-mapped segment
+-- files; whole segments are deleted, oldest first, once a log exceeds its
+-- maximum size or its messages exceed the maximum age.
+-------------------------------------------------------------------------------
+
+-- The directory holding the logs ({0} is the name of the node).
+insert into fabric.default_config values ('fabric.messageLog.directory', 'messages/{0}');
+
+-- The size of each log segment file (in bytes).
+insert into fabric.default_config values ('fabric.messageLog.segmentSize', '16777216');
+
+-- The maximum size of each log (in bytes, 0 for no limit).
+insert into fabric.default_config values ('fabric.messageLog.maxBytes', '1073741824');
+
+-- The maximum age of a logged message (in milliseconds, 0 for no limit).
+insert into fabric.default_config values ('fabric.messageLog.maxAge', '604800000');
+
+-- Flag indicating if messages from locally connected feeds are recorded (in
+-- the log feeds/<platform>/<system>/<feed>) so that they can be replayed.
+-- Replaying from a message ordinal also requires the node configuration
+-- fabric.message.element.ordinal to be true (otherwise messages are recorded
+-- without ordinals).
+insert into fabric.default_config values ('fabric.messageLog.recordFeeds', 'false');
+
+-------------------------------------------------------------------------------
+-- F a b r i c   W i r e   F o r m a t
+--
+-- This section defines the variables used to configure the encoding of
+-- messages sent between nodes.
+-------------------------------------------------------------------------------
+
+-- The preferred format for messages sent to neighbouring nodes:
+--
+--    xml:    XML documents (binary payloads are Base 64 encoded).
+--    binary: compact binary encoding (binary payloads are sent as-is).
+--
+-- Each node records the formats that it can receive in fabric.node_config
+-- (fabric.wire.formats) at start-up; the binary format is only used with
+-- neighbours that have recorded support for it, so mixed-version Fabrics
+-- continue to exchange XML. Messages sent to local clients are always XML.
+insert into fabric.default_config values ('fabric.wire.format', 'xml');
+
+-------------------------------------------------------------------------------
+-- F l o o d   R o u t i n g
+--
+-- This section defines the variables used to configure the detection of
+-- duplicate flooded messages (for example distributed Registry queries).
+-------------------------------------------------------------------------------
+
+-- The period (in milliseconds) for which the IDs of flooded messages are
+-- remembered, and the default time-to-live of a flooded message.
+insert into fabric.default_config values ('routing.flood.ttl', '600000');
+
+-- The remembered message IDs are held in a ring of fixed-size Bloom filters,
+-- one per time bucket, with the oldest bucket being discarded as time moves
+-- on. The filters are sized for the expected number of messages per bucket
+-- and the target false positive rate, i.e. the probability that a new message
+-- is treated as a duplicate (and dropped). The rate rises above the target if
+-- more messages than expected are received.
+insert into fabric.default_config values ('routing.flood.dedup.buckets', '10');
+insert into fabric.default_config values ('routing.flood.dedup.expected', '10000');
+insert into fabric.default_config values ('routing.flood.dedup.falsePositiveRate', '0.000001');
+
+-- Neighbours reported as disconnected are not flooded to until they reconnect,
+-- or until this period (in milliseconds) has passed.
+insert into fabric.default_config values ('routing.neighbours.disconnectedHold', '60000');
+
+-- Dynamic routing uses the measured round trip time of a link as its cost,
+-- and this cost (in milliseconds) for links that have not been measured.
+insert into fabric.default_config values ('routing.dynamic.linkCost', '50');
+
+-------------------------------------------------------------------------------
+-- F a b r i c   I n g e s t
+--
+-- This section defines the variables used to configure the pipeline that
+-- handles messages arriving at the Fabric Manager.
+-------------------------------------------------------------------------------
+
+-- The number of worker lanes. Feed messages are partitioned across lanes by
+-- feed topic, so ordering is preserved per feed while independent feeds are
+-- handled in parallel; service messages are all handled, in order, on one
+-- lane. A value of 0 handles every message on the broker callback thread,
+-- one at a time.
+-- Note that values greater than 1 require any node plug-ins to be thread-safe.
+insert into fabric.default_config values ('fabric.ingest.lanes', '1');
+
+-- The maximum number of messages queued on each lane before the broker
+-- callback thread is blocked.
+insert into fabric.default_config values ('fabric.ingest.queueSize', '1000');
+
+-- Set to true to handle messages from locally connected feeds in-process,
+-- rather than republishing them to the local broker and receiving them back.
+-- Set to false if other clients need to see local feed messages on the bus topic.
+insert into fabric.default_config values ('fabric.ingest.inProcess', 'true');
 
 -------------------------------------------------------------------------------
 -- F a b r i c   B u s
@@ -256,6 +412,14 @@ insert into fabric.default_config values ('mqtt.connectRetries', '3');
 -- The interval between trying to re-establishing a connection. (milliseconds) */
 insert into fabric.default_config values ('mqtt.connectRetries.interval', '1000');
 
+-- Set to true to publish MQTT messages asynchronously, i.e. without waiting for
+-- the broker to acknowledge each message before sending the next (so that
+-- throughput on high latency links is not limited by the round trip time).
+-- Delivery failures to a neighbour are reported as a disconnection of the node.
+insert into fabric.default_config values ('mqtt.async', 'false');
+-- The maximum number of asynchronous messages awaiting acknowledgement (1 to 9).
+insert into fabric.default_config values ('mqtt.maxInflight', '9');
+
 -- MQTT-S enabled setting (only to be used if the broker is MQTT-S enabled).
 insert into fabric.default_config values ('mqtts.enabled', 'false');
 
@@ -208,6 +208,9 @@ public class FabricManager extends FabricBus implements IBusServices, IFabricShu
 
         fabletDispatcher.stopDispatcher();
 
+        /* Stop accepting in-bound messages */
+        busIO.stop();
+
         busMessageHandler.stop();
 
         /* Disconnect from the Fabric */
@@ -253,6 +256,9 @@ public class FabricManager extends FabricBus implements IBusServices, IFabricShu
         /* Clean up the Registry from the last run */
         cleanRegistry();
 
+        /* Open the logs used to record feed messages and cached messages */
+        initMessageLogs();
+
         /*
          * Join the Fabric
          */
@@ -278,6 +284,9 @@ public class FabricManager extends FabricBus implements IBusServices, IFabricShu
         /* Start to listen for incoming messages */
         busIO.openHomeNodeChannels();
 
+        /* Let neighbours know which message formats this node can receive */
+        busIO.advertiseWireFormats();
+
         /* Pass the Registry API the connection to the home node */
         FabricRegistry.homeNodeEndPoint = busIO.homeNodeEndPoint();
 
@@ -60,6 +60,9 @@ public class Fabric {
     /** Manager for the metrics recorded at run-time */
     private static MetricsManager metricsManager = null;
 
+    /** Manager for the message logs */
+    private static MessageLogManager messageLogManager = null;
+
     /** Build version number for the fabric */
     private String buildVersion = null;
 
@@ -364,6 +367,34 @@ public class Fabric {
         return metricsManager;
     }
 
+    /**
+     * Initialize the message logs for this Fabric VM.
+     */
+    public void initMessageLogs() {
+
+        String directory = config("fabric.messageLog.directory", "messages/{0}", homeNode());
+        int segmentSize = Integer.parseInt(config("fabric.messageLog.segmentSize", "16777216"));
+        long maxBytes = Long.parseLong(config("fabric.messageLog.maxBytes", "1073741824"));
+        long maxAge = Long.parseLong(config("fabric.messageLog.maxAge", "604800000"));
+        boolean recordFeeds = Boolean.parseBoolean(config("fabric.messageLog.recordFeeds", "false"));
+
+        messageLogs().initManager(directory, segmentSize, maxBytes, maxAge, recordFeeds);
+
+    }
+
+    /**
+     * Answers the message log manager for this Fabric VM.
+     *
+     * @return the message log manager.
+     */
+    public MessageLogManager messageLogs() {
+
+        if (messageLogManager == null) {
+            messageLogManager = new MessageLogManager();
+        }
+        return messageLogManager;
+    }
+
     /**
      * Answers the instrumentation status (enabled or disabled).
      *
@@ -12,6 +12,7 @@ import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,10 +57,14 @@ public class FabricBus extends Fabric {
     private static IConnectionMessage disconnectionMessage = null;
 
     /** Flag indicating feed messages are to include the message ordinal element */
-    private Boolean includeOrdinal = null;
+    private volatile Boolean includeOrdinal = null;
 
-    /** The UID of the next message to be published onto the Fabric */
-    private long fabricMessageUID = 0;
+    /**
+     * The UID of the next message to be published onto the Fabric (messages may be wrapped on several threads). If feed
+     * messages are recorded, this continues from the highest ordinal already in the feed logs, so that ordinals
+     * increase through each log across restarts.
+     */
+    private final AtomicLong fabricMessageUID = new AtomicLong();
 
     /*
      * Class methods
@@ -96,15 +101,15 @@ public class FabricBus extends Fabric {
         FeedMessage message = new FeedMessage();
 
         if (includeOrdinal == null) {
-            includeOrdinal = Boolean.parseBoolean(config().getProperty("fabric.message.element.ordinal", "false"));
+            initOrdinals();
         }
 
+        long ordinal = fabricMessageUID.getAndIncrement();
+
         if (includeOrdinal) {
-            message.setOrdinal(fabricMessageUID);
+            message.setOrdinal(ordinal);
         }
 
-        fabricMessageUID++;
-
         if (isReplay) {
             message.setReplay(isReplay);
         }
@@ -117,6 +122,41 @@ public class FabricBus extends Fabric {
 
     }
 
+    /**
+     * Determines if feed messages include an ordinal and, if they are also recorded for replay, sets the next ordinal
+     * to follow those already in the feed logs (replay by ordinal relies on ordinals increasing through each log, and
+     * so requires <code>fabric.message.element.ordinal</code> to be set).
+     */
+    private synchronized void initOrdinals() {
+
+        if (includeOrdinal != null) {
+            return;
+        }
+
+        boolean include = Boolean.parseBoolean(config().getProperty("fabric.message.element.ordinal", "false"));
+
+        if (include && messageLogs().recordFeeds()) {
+
+            try {
+
+                long last = messageLogs().lastOrdinal(MessageLogManager.FEEDS);
+                fabricMessageUID.set(last + 1);
+                logger.log(Level.FINE, "Feed message ordinals continue from [{0}]", last + 1);
+
+            } catch (Exception e) {
+
+                logger.log(Level.WARNING, "Cannot read the last ordinal recorded in the feed logs, replay by ordinal "
+                        + "may be incorrect: {0}", e.getMessage());
+                logger.log(Level.FINEST, "Full exception: ", e);
+
+            }
+        }
+
+        /* Set last, so that other threads see the counter once it has been initialized */
+        includeOrdinal = include;
+
+    }
+
     /**
      * Answers the default (or first) route from the current node to the specified target node.
      *
@@ -241,6 +281,9 @@ public class FabricBus extends Fabric {
         /* Stop instrumentation, if running */
         metrics().closeManager();
 
+        /* Write the message logs through to disk */
+        messageLogs().closeManager();
+
         /*
          * Give the last will and testament a chance to fire, and then close the connection to the local Fabric node.
          */
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2008, 2009
+ * (C) Copyright IBM Corp. 2008, 2014
  * 
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -8,17 +8,19 @@
 package fabric;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class to manage a single Fabric metrics n-tuple.
  * <p>
- * This class is used to record all of the information relevant to an event in the Fabric.
+ * This class is used to record all of the information relevant to an event in the Fabric. Messages are identified by
+ * their UID (and ordinal) rather than recorded in full, and the duration of processing is timed in nanoseconds.
  * </p>
  */
 public class FabricMetric {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2008, 2009";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2008, 2014";
 
 	/*
 	 * Class constants
@@ -73,9 +75,6 @@ public class FabricMetric {
 	/** The ordinal number of the message associated with this event (if any). */
 	private long ordinal = -1;
 
-	/** The message associated with this event (if any). */
-	private byte[] message = null;
-
 	/** The name of the plug-in associated with this event (if any). */
 	private String pluginName = null;
 
@@ -88,14 +87,17 @@ public class FabricMetric {
 	/** The event time stamp */
 	private long eventTime = -1;
 
+	/** The start time of the processing being timed (System.nanoTime()), or -1 if not started. */
+	private long startNanos = -1;
+
+	/** The duration of the processing being timed (in nanoseconds), or -1 if not yet complete. */
+	private long duration = -1;
+
 	/** Unique ID for this VM invocation */
 	private static final String runID = (new Date()).toString();
 
-	/** Lock protecting access to the metric record count for this VM */
-	private static Object vmRecordCount = new Object();
-
 	/** The record metric record count for this VM */
-	private static long vmRecordID = 0;
+	private static final AtomicLong vmRecordID = new AtomicLong();
 
 	/*
 	 * Class methods
@@ -128,29 +130,21 @@ public class FabricMetric {
 	 * @param ordinal
 	 *            the ordinal number of the message associated with this event (if any).
 	 * 
-	 * @param message
-	 *            the message associated with this event (if any).
-	 * 
 	 * @param pluginName
 	 *            the name of the plug-in associated with this event (if any).
 	 */
 	public FabricMetric(String nodeID, String taskID, String actorID, ServiceDescriptor serviceDescriptor,
-			String messageID, long ordinal, byte[] message, String pluginName) {
-
-		/* Increment the record count */
-		synchronized (vmRecordCount) {
+			String messageID, long ordinal, String pluginName) {
 
-			this.nodeID = nodeID;
-			this.messageID = messageID;
-			this.recordID = ++vmRecordID;
-			this.taskID = taskID;
-			this.actorID = actorID;
-			this.serviceDescriptor = serviceDescriptor;
-			this.pluginName = pluginName;
-			this.ordinal = ordinal;
-			this.message = message;
+		this.nodeID = nodeID;
+		this.messageID = messageID;
+		this.recordID = vmRecordID.incrementAndGet();
+		this.taskID = taskID;
+		this.actorID = actorID;
+		this.serviceDescriptor = serviceDescriptor;
+		this.pluginName = pluginName;
+		this.ordinal = ordinal;
 
-		}
 	}
 
 	/**
@@ -161,22 +155,19 @@ public class FabricMetric {
 	 */
 	public FabricMetric(FabricMetric metric) {
 
-		/* Increment the record count */
-		synchronized (vmRecordCount) {
-
-			nodeID = metric.nodeID;
-			messageID = metric.messageID;
-			recordID = ++vmRecordID;
-			taskID = metric.taskID;
-			actorID = metric.actorID;
-			serviceDescriptor = metric.serviceDescriptor;
-			pluginName = metric.pluginName;
-			ordinal = metric.ordinal;
-			message = metric.message;
-			event = metric.event;
-			eventTime = metric.eventTime;
+		nodeID = metric.nodeID;
+		messageID = metric.messageID;
+		recordID = vmRecordID.incrementAndGet();
+		taskID = metric.taskID;
+		actorID = metric.actorID;
+		serviceDescriptor = metric.serviceDescriptor;
+		pluginName = metric.pluginName;
+		ordinal = metric.ordinal;
+		event = metric.event;
+		eventTime = metric.eventTime;
+		startNanos = metric.startNanos;
+		duration = metric.duration;
 
-		}
 	}
 
 	/**
@@ -186,22 +177,32 @@ public class FabricMetric {
 	 */
 	public String toCSV() {
 
-		String csv = "";
+		StringBuilder csv = new StringBuilder();
+		appendCSV(csv);
+		return csv.toString();
 
-		csv += toCSVValue(runID) + ',';
-		csv += toCSVValue(nodeID) + ',';
-		csv += recordID + ",";
-		csv += toCSVValue(event) + ',';
-		csv += toCSVValue(messageID) + ',';
-		csv += ordinal + ",";
-		csv += toCSVValue(taskID) + ',';
-		csv += toCSVValue(actorID) + ',';
-		csv += toCSVValue(serviceDescriptor.toString()) + ',';
-		csv += toCSVValue(pluginName) + ',';
-		csv += eventTime + ',';
-		csv += toCSVValue(new String(message));
+	}
 
-		return csv;
+	/**
+	 * Appends this instance to a buffer as a comma separated value string.
+	 * 
+	 * @param csv
+	 *            the buffer.
+	 */
+	public void appendCSV(StringBuilder csv) {
+
+		csv.append(toCSVValue(runID)).append(',');
+		csv.append(toCSVValue(nodeID)).append(',');
+		csv.append(recordID).append(',');
+		csv.append(toCSVValue(event)).append(',');
+		csv.append(toCSVValue(messageID)).append(',');
+		csv.append(ordinal).append(',');
+		csv.append(toCSVValue(taskID)).append(',');
+		csv.append(toCSVValue(actorID)).append(',');
+		csv.append(toCSVValue((serviceDescriptor != null) ? serviceDescriptor.toString() : null)).append(',');
+		csv.append(toCSVValue(pluginName)).append(',');
+		csv.append(eventTime).append(',');
+		csv.append(duration);
 
 	}
 
@@ -251,8 +252,8 @@ public class FabricMetric {
 		toString += "clientID=[" + actorID + "],";
 		toString += "serviceDescriptor=[" + serviceDescriptor + "],";
 		toString += "pluginName=[" + pluginName + "],";
-		toString += "eventTime=[" + eventTime + "]";
-		toString += "message=[" + new String(message) + "]";
+		toString += "eventTime=[" + eventTime + "],";
+		toString += "duration=[" + duration + "]";
 
 		return toString;
 
@@ -295,21 +296,22 @@ public class FabricMetric {
 	}
 
 	/**
-	 * Answers the ordinal number of the message associated with this event (if any).
+	 * Sets the UUID of the Fabric message associated with the event.
 	 * 
-	 * @return the ordinal.
+	 * @param messageID
+	 *            the ID.
 	 */
-	public long getOrdinal() {
-		return ordinal;
+	public void setMessageID(String messageID) {
+		this.messageID = messageID;
 	}
 
 	/**
-	 * Answers the message associated with this event (if any).
+	 * Answers the ordinal number of the message associated with this event (if any).
 	 * 
-	 * @return the message.
+	 * @return the ordinal.
 	 */
-	public byte[] getMessage() {
-		return message;
+	public long getOrdinal() {
+		return ordinal;
 	}
 
 	/**
@@ -367,4 +369,51 @@ public class FabricMetric {
 	public void setEventTime(long eventTime) {
 		this.eventTime = eventTime;
 	}
+
+	/**
+	 * Answers the start time of the processing being timed.
+	 * 
+	 * @return the start time (System.nanoTime()), or -1 if not started.
+	 */
+	public long getStartNanos() {
+		return startNanos;
+	}
+
+	/**
+	 * Sets the start time of the processing being timed.
+	 * 
+	 * @param startNanos
+	 *            the start time (System.nanoTime()).
+	 */
+	public void setStartNanos(long startNanos) {
+		this.startNanos = startNanos;
+	}
+
+	/**
+	 * Answers the duration of the processing being timed.
+	 * 
+	 * @return the duration (in nanoseconds), or -1 if not yet complete.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Sets the duration of the processing being timed.
+	 * 
+	 * @param duration
+	 *            the duration (in nanoseconds).
+	 */
+	public void setDuration(long duration) {
+		this.duration = duration;
+	}
+
+	/**
+	 * Answers the service descriptor associated with this event (if any).
+	 * 
+	 * @return the descriptor.
+	 */
+	public ServiceDescriptor getServiceDescriptor() {
+		return serviceDescriptor;
+	}
 }
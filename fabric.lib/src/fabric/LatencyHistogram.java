@@ -0,0 +1,252 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies (in nanoseconds), with a fixed memory footprint.
+ * <p>
+ * Values are counted in buckets of logarithmically increasing width: each power of two is divided into eight
+ * sub-buckets, so percentiles are accurate to within 12.5% across the full range of values. Recording a value is
+ * lock-free.
+ * </p>
+ */
+public class LatencyHistogram {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The number of bits used to select a sub-bucket within a power of two */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** The number of sub-buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Values below this are counted exactly, one per bucket */
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+    /** The exponent of the first logarithmic bucket */
+    private static final int FIRST_EXPONENT = SUB_BUCKET_BITS + 1;
+
+    /** The total number of buckets (enough for any positive long) */
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    /*
+     * Class fields
+     */
+
+    /** The number of values in each bucket */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /** The number of values recorded */
+    private final AtomicLong count = new AtomicLong();
+
+    /** The sum of the values recorded */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** The smallest value recorded */
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    /** The largest value recorded */
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Records a value.
+     *
+     * @param nanos
+     *            the value (negative values are recorded as zero).
+     */
+    public void record(long nanos) {
+
+        nanos = Math.max(0, nanos);
+
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+
+        long current = min.get();
+
+        while (nanos < current && !min.compareAndSet(current, nanos)) {
+            current = min.get();
+        }
+
+        current = max.get();
+
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Adds the values recorded in another histogram to this one.
+     *
+     * @param other
+     *            the other histogram.
+     */
+    public void add(LatencyHistogram other) {
+
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+
+            long bucketCount = other.buckets.get(b);
+
+            if (bucketCount != 0) {
+                buckets.addAndGet(b, bucketCount);
+            }
+        }
+
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+
+        long otherMin = other.min.get();
+        long current = min.get();
+
+        while (otherMin < current && !min.compareAndSet(current, otherMin)) {
+            current = min.get();
+        }
+
+        long otherMax = other.max.get();
+        current = max.get();
+
+        while (otherMax > current && !max.compareAndSet(current, otherMax)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Answers the number of values recorded.
+     *
+     * @return the count.
+     */
+    public long count() {
+
+        return count.get();
+    }
+
+    /**
+     * Answers the mean of the values recorded.
+     *
+     * @return the mean (in nanoseconds), or 0 if no values have been recorded.
+     */
+    public long mean() {
+
+        long n = count.get();
+        return (n > 0) ? sum.get() / n : 0;
+    }
+
+    /**
+     * Answers the smallest value recorded.
+     *
+     * @return the value (in nanoseconds), or 0 if no values have been recorded.
+     */
+    public long min() {
+
+        return (count.get() > 0) ? min.get() : 0;
+    }
+
+    /**
+     * Answers the largest value recorded.
+     *
+     * @return the value (in nanoseconds), or 0 if no values have been recorded.
+     */
+    public long max() {
+
+        return (count.get() > 0) ? max.get() : 0;
+    }
+
+    /**
+     * Answers the value below which a percentage of the recorded values fall.
+     *
+     * @param percentile
+     *            the percentage (0 to 100).
+     *
+     * @return the value (in nanoseconds), or 0 if no values have been recorded.
+     */
+    public long percentile(double percentile) {
+
+        long n = count.get();
+
+        if (n == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+
+        for (int b = 0; b < BUCKET_COUNT; b++) {
+
+            seen += buckets.get(b);
+
+            if (seen >= target) {
+                return Math.min(upperBound(b), max());
+            }
+        }
+
+        return max();
+    }
+
+    /**
+     * Answers the bucket in which a value is counted.
+     *
+     * @param value
+     *            the value.
+     *
+     * @return the bucket index.
+     */
+    private static int bucket(long value) {
+
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Answers the largest value counted in a bucket.
+     *
+     * @param bucket
+     *            the bucket index.
+     *
+     * @return the value.
+     */
+    private static long upperBound(int bucket) {
+
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_EXPONENT;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format("count=%d, mean=%d, min=%d, p50=%d, p90=%d, p99=%d, max=%d (ns)", count(), mean(), min(),
+                percentile(50), percentile(90), percentile(99), max());
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.core.log.MessageLog;
+
+/**
+ * Class to manage the message logs (see <code>fabric.core.log.MessageLog</code>) of a Fabric node: the feed messages
+ * recorded for replay, the messages held by the message cache service, and the messages held for neighbours that
+ * cannot be reached.
+ * <p>
+ * Each log is identified by a name, a path of the form <code>feeds/&lt;platform&gt;/&lt;system&gt;/&lt;feed&gt;</code>,
+ * <code>cache</code> or <code>forwarding/&lt;node&gt;</code>, and is held in the corresponding sub-directory of the
+ * node's message log directory. Logs are opened when first used, and remain open until the manager is closed.
+ * </p>
+ */
+public class MessageLogManager extends Fabric {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The prefix of the names of feed logs */
+    public static final String FEEDS = "feeds/";
+
+    /** The name of the message cache log */
+    public static final String CACHE = "cache";
+
+    /** The prefix of the names of the logs holding messages for unreachable neighbours */
+    public static final String FORWARDING = "forwarding/";
+
+    /*
+     * Class fields
+     */
+
+    /** The open logs, keyed by name */
+    private final ConcurrentHashMap<String, MessageLog> logs = new ConcurrentHashMap<String, MessageLog>();
+
+    /** The directory holding the logs, or <code>null</code> if the manager has not been initialized */
+    private File directory = null;
+
+    /** The size of each log segment file (in bytes) */
+    private int segmentSize = 16 * 1024 * 1024;
+
+    /** The maximum size of each log (in bytes), or <code>0</code> for no limit */
+    private long maxBytes = 0;
+
+    /** The maximum age of a logged message (in milliseconds), or <code>0</code> for no limit */
+    private long maxAge = 0;
+
+    /** Flag indicating if messages from locally connected feeds are to be recorded */
+    private boolean recordFeeds = false;
+
+    /*
+     * Class methods
+     */
+
+    public MessageLogManager() {
+
+        super(Logger.getLogger("fabric"));
+    }
+
+    /**
+     * Initialize the message logs.
+     *
+     * @param directory
+     *            the directory holding the logs.
+     *
+     * @param segmentSize
+     *            the size of each log segment file (in bytes).
+     *
+     * @param maxBytes
+     *            the maximum size of each log (in bytes), or <code>0</code> for no limit.
+     *
+     * @param maxAge
+     *            the maximum age of a logged message (in milliseconds), or <code>0</code> for no limit.
+     *
+     * @param recordFeeds
+     *            <code>true</code> if messages from locally connected feeds are to be recorded, <code>false</code>
+     *            otherwise.
+     */
+    public void initManager(String directory, int segmentSize, long maxBytes, long maxAge, boolean recordFeeds) {
+
+        this.directory = new File(directory);
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+        this.recordFeeds = recordFeeds;
+
+        logger.log(Level.FINE, "Message logs in [{0}], segment size [{1}], maximum size [{2}], maximum age [{3}], "
+                + "recording feeds [{4}]", new Object[] {this.directory.getAbsolutePath(), segmentSize, maxBytes,
+                maxAge, recordFeeds});
+
+    }
+
+    /**
+     * Answers <code>true</code> if messages from locally connected feeds are to be recorded.
+     *
+     * @return the flag.
+     */
+    public boolean recordFeeds() {
+
+        return recordFeeds;
+    }
+
+    /**
+     * Answers a message log, opening it if necessary.
+     *
+     * @param name
+     *            the name of the log.
+     *
+     * @return the log.
+     *
+     * @throws IOException
+     *             thrown if the log cannot be opened, or the manager has not been initialized.
+     */
+    public MessageLog log(String name) throws IOException {
+
+        MessageLog log = logs.get(name);
+
+        if (log == null) {
+
+            synchronized (logs) {
+
+                log = logs.get(name);
+
+                if (log == null) {
+
+                    if (directory == null) {
+                        throw new IOException("Message logs have not been initialized");
+                    }
+
+                    log = new MessageLog(logDirectory(name), segmentSize, maxBytes, maxAge);
+                    logs.put(name, log);
+
+                }
+            }
+        }
+
+        return log;
+    }
+
+    /**
+     * Answers the directory holding a log: each part of the name becomes a sub-directory.
+     *
+     * @param name
+     *            the name of the log.
+     *
+     * @return the directory.
+     */
+    private File logDirectory(String name) throws IOException {
+
+        File logDirectory = directory;
+        String[] parts = name.split("/");
+
+        for (int p = 0; p < parts.length; p++) {
+            logDirectory = new File(logDirectory, URLEncoder.encode(parts[p], "UTF-8"));
+        }
+
+        return logDirectory;
+    }
+
+    /**
+     * Answers the names of the existing logs (open or not) directly below a path, for example the feed logs of a
+     * system.
+     *
+     * @param path
+     *            the path, e.g. <code>feeds/&lt;platform&gt;/&lt;system&gt;</code>.
+     *
+     * @return the names of the logs, relative to the path.
+     *
+     * @throws IOException
+     *             thrown if the manager has not been initialized.
+     */
+    public String[] logNames(String path) throws IOException {
+
+        if (directory == null) {
+            throw new IOException("Message logs have not been initialized");
+        }
+
+        ArrayList<String> names = new ArrayList<String>();
+        File[] children = logDirectory(path).listFiles();
+
+        if (children != null) {
+            for (int c = 0; c < children.length; c++) {
+                if (children[c].isDirectory()) {
+                    names.add(URLDecoder.decode(children[c].getName(), "UTF-8"));
+                }
+            }
+        }
+
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * Answers the highest message ordinal recorded in the existing logs (open or not) below a path, for example the
+     * feed logs.
+     *
+     * @param path
+     *            the path, e.g. <code>feeds</code>.
+     *
+     * @return the ordinal, or <code>-1</code> if there are no messages with ordinals.
+     *
+     * @throws IOException
+     *             thrown if a log cannot be opened, or the manager has not been initialized.
+     */
+    public long lastOrdinal(String path) throws IOException {
+
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        String[] names = logNames(path);
+        long last = -1;
+
+        if (names.length == 0) {
+
+            /* A directory without sub-directories is a log */
+            if (logDirectory(path).isDirectory()) {
+                last = log(path).lastOrdinal();
+            }
+
+        } else {
+
+            for (int n = 0; n < names.length; n++) {
+                last = Math.max(last, lastOrdinal(path + '/' + names[n]));
+            }
+
+        }
+
+        return last;
+    }
+
+    /**
+     * Appends a message to a log, logging (rather than throwing) any failure.
+     *
+     * @param name
+     *            the name of the log.
+     *
+     * @param ordinal
+     *            the ordinal of the message, or <code>-1</code> if it has none.
+     *
+     * @param message
+     *            the message.
+     *
+     * @return the offset of the message in the log, or <code>-1</code> if it could not be appended.
+     */
+    public long append(String name, long ordinal, byte[] message) {
+
+        long offset = -1;
+
+        try {
+
+            offset = log(name).append(ordinal, message);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot append message to log [{0}]: {1}", new Object[] {name, e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+
+        return offset;
+    }
+
+    /**
+     * Closes a message log, writing it through to disk. It will be reopened if it is used again.
+     *
+     * @param name
+     *            the name of the log.
+     */
+    public void closeLog(String name) {
+
+        synchronized (logs) {
+
+            MessageLog log = logs.remove(name);
+
+            if (log != null) {
+                log.close();
+            }
+
+        }
+    }
+
+    /**
+     * Closes the message logs, writing them through to disk.
+     */
+    public void closeManager() {
+
+        synchronized (logs) {
+
+            for (Iterator<MessageLog> l = logs.values().iterator(); l.hasNext();) {
+                l.next().close();
+            }
+
+            logs.clear();
+
+        }
+    }
+}
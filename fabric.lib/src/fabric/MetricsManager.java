@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2006, 2012
+ * (C) Copyright IBM Corp. 2006, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -9,17 +9,31 @@ package fabric;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Class to manage the instrumentation (profiling information) for the Fabric running on a node.
+ * <p>
+ * The duration of each timed stage of message processing (node, task, actor and plug-in) is recorded, in nanoseconds,
+ * in a latency histogram for the stage and the node, task, actor and plug-in concerned. Each thread records into its
+ * own set of histograms, so recording does not contend with other threads; the histograms are combined when they are
+ * read (see <code>latencies()</code>) and reported when metrics are flushed. If a file name is configured then the
+ * individual events are also buffered and written to the file as comma separated values.
+ * </p>
  */
 public class MetricsManager extends Fabric {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2014";
 
     /*
      * Class static fields
@@ -29,8 +43,30 @@ public class MetricsManager extends Fabric {
      * Class fields
      */
 
-    /** The metrics recorded by this instance */
-    private ArrayList<FabricMetric> metrics = new ArrayList<FabricMetric>();
+    /** The metrics recorded by this instance, waiting to be written to the file */
+    private final ConcurrentLinkedQueue<FabricMetric> metrics = new ConcurrentLinkedQueue<FabricMetric>();
+
+    /** The number of metrics waiting to be written to the file */
+    private final AtomicInteger bufferedMetrics = new AtomicInteger();
+
+    /** The latency recorders of the threads that have recorded metrics */
+    private final CopyOnWriteArrayList<Recorder> recorders = new CopyOnWriteArrayList<Recorder>();
+
+    /** The latency recorder of the current thread */
+    private final ThreadLocal<Recorder> recorder = new ThreadLocal<Recorder>() {
+
+        @Override
+        protected Recorder initialValue() {
+
+            Recorder recorder = new Recorder();
+            recorders.add(recorder);
+            return recorder;
+        }
+    };
+
+    /** The latencies recorded by threads that have since ended */
+    private final ConcurrentHashMap<String, LatencyHistogram> retiredLatencies =
+            new ConcurrentHashMap<String, LatencyHistogram>();
 
     /** Flag indicating if instrumentation is required */
     private boolean doInstrument = false;
@@ -54,6 +90,28 @@ public class MetricsManager extends Fabric {
      * Inner classes
      */
 
+    /**
+     * The latency histograms recorded by a single thread.
+     */
+    private static class Recorder {
+
+        /** The thread that owns this recorder */
+        final WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+
+        /** The histograms, keyed by stage, node, task, actor and plug-in (only added to by the owning thread) */
+        final ConcurrentHashMap<String, LatencyHistogram> latencies =
+                new ConcurrentHashMap<String, LatencyHistogram>();
+
+        /**
+         * Answers <code>true</code> if the thread that owns this recorder has ended.
+         */
+        boolean isRetired() {
+
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
     /*
      * Class methods
      */
@@ -84,6 +142,7 @@ public class MetricsManager extends Fabric {
         this.doInstrument = doInstrument;
         this.fileName = fileName;
         this.maxBufferedMetrics = maxBufferedMetrics;
+        this.persistToFile = (fileName != null);
 
         /* If instrumentation is enabled... */
         if (doInstrument) {
@@ -116,10 +175,14 @@ public class MetricsManager extends Fabric {
             /* Record the start time */
             metric.setEventTime(System.currentTimeMillis());
             metric.setEvent(event);
+            metric.setDuration(-1);
 
             /* Save the record */
             addMetric(metric);
 
+            /* Start timing last, so that recording the start event is not included */
+            metric.setStartNanos(System.nanoTime());
+
         }
 
     }
@@ -135,12 +198,18 @@ public class MetricsManager extends Fabric {
      */
     public void endTiming(FabricMetric metric, String event) {
 
-        if (doInstrument) {
+        if (doInstrument && metric != null) {
 
             /* Record the end time */
+            long endNanos = System.nanoTime();
             metric.setEventTime(System.currentTimeMillis());
             metric.setEvent(event);
 
+            if (metric.getStartNanos() != -1) {
+                metric.setDuration(endNanos - metric.getStartNanos());
+                recordLatency(metric);
+            }
+
             /* Save the record */
             addMetric(metric);
 
@@ -148,6 +217,112 @@ public class MetricsManager extends Fabric {
 
     }
 
+    /**
+     * Records the duration of a timed metric in the current thread's latency histograms.
+     *
+     * @param metric
+     *            the metric.
+     */
+    private void recordLatency(FabricMetric metric) {
+
+        String key = latencyKey(metric);
+        ConcurrentHashMap<String, LatencyHistogram> latencies = recorder.get().latencies;
+        LatencyHistogram histogram = latencies.get(key);
+
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            latencies.put(key, histogram);
+        }
+
+        histogram.record(metric.getDuration());
+
+    }
+
+    /**
+     * Answers the key of the latency histogram for a metric, a comma separated list of the processing stage, node,
+     * task, actor and plug-in.
+     *
+     * @param metric
+     *            the metric.
+     *
+     * @return the key.
+     */
+    private String latencyKey(FabricMetric metric) {
+
+        String stage = metric.getEvent();
+        int suffix = stage.lastIndexOf('_');
+        stage = (suffix > 0) ? stage.substring(0, suffix) : stage;
+
+        StringBuilder key = new StringBuilder(stage);
+        key.append(',').append((metric.getNodeID() != null) ? metric.getNodeID() : "");
+        key.append(',').append((metric.getTaskID() != null) ? metric.getTaskID() : "");
+        key.append(',').append((metric.getActorID() != null) ? metric.getActorID() : "");
+        key.append(',').append((metric.getPluginName() != null) ? metric.getPluginName() : "");
+
+        return key.toString();
+
+    }
+
+    /**
+     * Answers the latencies recorded so far by all threads.
+     *
+     * @return the latency histograms, keyed by a comma separated list of the processing stage, node, task, actor and
+     *         plug-in; the histograms are copies.
+     */
+    public Map<String, LatencyHistogram> latencies() {
+
+        TreeMap<String, LatencyHistogram> latencies = new TreeMap<String, LatencyHistogram>();
+
+        synchronized (retiredLatencies) {
+
+            /* Fold the histograms of threads that have ended into the retired set, and stop tracking them */
+            for (Iterator<Recorder> r = recorders.iterator(); r.hasNext();) {
+
+                Recorder next = r.next();
+
+                if (next.isRetired()) {
+                    addLatencies(retiredLatencies, next.latencies);
+                    recorders.remove(next);
+                }
+            }
+
+            addLatencies(latencies, retiredLatencies);
+
+        }
+
+        for (Iterator<Recorder> r = recorders.iterator(); r.hasNext();) {
+            addLatencies(latencies, r.next().latencies);
+        }
+
+        return latencies;
+
+    }
+
+    /**
+     * Adds a set of latency histograms to another.
+     *
+     * @param to
+     *            the histograms to add to.
+     *
+     * @param from
+     *            the histograms to add.
+     */
+    private void addLatencies(Map<String, LatencyHistogram> to, Map<String, LatencyHistogram> from) {
+
+        for (Iterator<Map.Entry<String, LatencyHistogram>> e = from.entrySet().iterator(); e.hasNext();) {
+
+            Map.Entry<String, LatencyHistogram> next = e.next();
+            LatencyHistogram histogram = to.get(next.getKey());
+
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                to.put(next.getKey(), histogram);
+            }
+
+            histogram.add(next.getValue());
+        }
+    }
+
     /**
      * Adds a new metric. If the new metric exceeds the maximum size of the buffer then the results are persisted (if
      * persistence is enabled) and cleared.
@@ -157,23 +332,20 @@ public class MetricsManager extends Fabric {
      */
     public void addMetric(FabricMetric metric) {
 
-        if (doInstrument) {
-
-            synchronized (metrics) {
+        if (doInstrument && persistToFile) {
 
-                /* Record the new metric */
-                metrics.add(new FabricMetric(metric));
+            /* Record the new metric */
+            metrics.add(new FabricMetric(metric));
 
-                /* If we have reached the maximum size of the buffer... */
-                if (metrics.size() >= maxBufferedMetrics) {
-                    flushMetrics();
-                }
+            /* If we have reached the maximum size of the buffer... */
+            if (bufferedMetrics.incrementAndGet() >= maxBufferedMetrics) {
+                flushMetrics();
             }
         }
     }
 
     /**
-     * Empties the buffer of metrics by writing to a file, and/or discarding.
+     * Empties the buffer of metrics by writing to a file, and/or discarding, and reports the latencies recorded so far.
      */
     public void flushMetrics() {
 
@@ -181,41 +353,59 @@ public class MetricsManager extends Fabric {
 
             logger.log(Level.FINE, "Persisting instrumentation");
 
-            synchronized (metrics) {
-
-                /* To hold the records ready for output to file */
-                String csvRecords = "";
+            /* To hold the records ready for output to file */
+            StringBuilder csvRecords = new StringBuilder();
+            FabricMetric next = null;
 
-                /* While there are more records to process... */
-                while (metrics.size() > 0) {
+            /* While there are more records to process... */
+            while ((next = metrics.poll()) != null) {
 
-                    /* Get the next metric, and remove it from the buffer */
-                    FabricMetric next = metrics.remove(0);
+                bufferedMetrics.decrementAndGet();
 
-                    /* If metrics are to be persisted to file... */
-                    if (persistToFile) {
+                /* Add the next record as a CSV list */
+                next.appendCSV(csvRecords);
+                csvRecords.append('\n');
 
-                        /* Add the next record as a CSV list */
-                        String csv = next.toCSV();
-                        csvRecords += csv + '\n';
-
-                    }
-                }
+            }
 
-                /* If there are metrics to be persisted to file... */
-                if (csvRecords.length() > 0) {
+            /* If there are metrics to be persisted to file... */
+            if (csvRecords.length() > 0 && metricsWriter != null) {
 
-                    /* Write the records to the file */
+                /* Write the records to the file */
+                synchronized (metricsWriter) {
                     try {
                         /* Append the record to the file */
-                        metricsWriter.write(csvRecords);
+                        metricsWriter.write(csvRecords.toString());
                     } catch (Exception e) {
                         logger.log(Level.SEVERE, "Cannot persist metrics to file: ", e);
                     }
-
                 }
+
             }
+
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Latencies (stage,node,task,actor,plug-in):\n{0}", latencyReport());
+            }
+        }
+    }
+
+    /**
+     * Answers a report of the latencies recorded so far, one line per histogram.
+     *
+     * @return the report.
+     */
+    public String latencyReport() {
+
+        StringBuilder report = new StringBuilder();
+        Map<String, LatencyHistogram> latencies = latencies();
+
+        for (Iterator<Map.Entry<String, LatencyHistogram>> e = latencies.entrySet().iterator(); e.hasNext();) {
+            Map.Entry<String, LatencyHistogram> next = e.next();
+            report.append(next.getKey()).append(": ").append(next.getValue()).append('\n');
         }
+
+        return report.toString();
+
     }
 
     /**
@@ -225,22 +415,23 @@ public class MetricsManager extends Fabric {
 
         if (doInstrument) {
 
-            synchronized (metrics) {
+            /* Flush the buffer */
+            flushMetrics();
 
-                /* Flush the buffer */
-                flushMetrics();
+            logger.log(Level.INFO, "Latencies (stage,node,task,actor,plug-in):\n{0}", latencyReport());
 
-                if (persistToFile) {
+            if (metricsWriter != null) {
 
-                    /* We're done with the file */
+                /* We're done with the file */
+                synchronized (metricsWriter) {
                     try {
                         metricsWriter.close();
                     } catch (IOException e) {
                         /* Not much we can do at this point */
                         logger.log(Level.SEVERE, "Closure of instrumentation metrics file failed: ", e);
                     }
-
                 }
+
             }
         }
     }
@@ -113,6 +113,10 @@ public interface IBusIO {
 	/**
 	 * Wraps a message received from a locally connected system in a Fabric message envelope, and publishes it to the
 	 * Fabric bus for processing and delivery.
+	 * <p>
+	 * Unless disabled by the <code>fabric.ingest.inProcess</code> configuration property, the message is handed
+	 * directly to the node's feed message handler rather than making a round trip via the local broker.
+	 * </p>
 	 * 
 	 * @param fullTopic
 	 *            the full topic name upon which the message was received.
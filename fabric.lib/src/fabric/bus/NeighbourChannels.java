@@ -9,6 +9,7 @@ package fabric.bus;
 
 import java.io.IOException;
 
+import fabric.bus.messages.WireFormat;
 import fabric.core.io.ICallback;
 import fabric.core.io.InputTopic;
 import fabric.core.io.OutputTopic;
@@ -54,6 +55,9 @@ public class NeighbourChannels {
 	/** The neighbour's Fabric Distributed Registry topic. */
 	private OutputTopic outboundRegistryBus = null;
 
+	/** The format used to encode messages sent to the neighbour. */
+	private WireFormat wireFormat = WireFormat.XML;
+
 	/*
 	 * Class methods
 	 */
@@ -289,6 +293,27 @@ public class NeighbourChannels {
 		closeRegistryBusChannel();
 	}
 
+	/**
+	 * Answers the format used to encode messages sent to the neighbour.
+	 * 
+	 * @return the wire format.
+	 */
+	public WireFormat wireFormat() {
+
+		return wireFormat;
+	}
+
+	/**
+	 * Sets the format used to encode messages sent to the neighbour.
+	 * 
+	 * @param wireFormat
+	 *            the wire format.
+	 */
+	public void setWireFormat(WireFormat wireFormat) {
+
+		this.wireFormat = wireFormat;
+	}
+
 	/**
 	 * Answers the neighbour descriptor.
 	 * 
@@ -76,23 +76,21 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      * Class fields
      */
 
-    /** The table of active subscriptions, keyed by subscription ID (created using the subscriptionID() method). */
-    private final HashMap<String, SubscriptionRecord> activeSubscriptionIDs = new HashMap<String, SubscriptionRecord>();
-
     /**
-     * The table of active subscriptions, keyed by feed names, with each entry containing the submap of active
-     * subscriptions for the feed.
+     * The table of active subscriptions, keyed by subscription ID (created using the subscriptionID() method). Guarded
+     * by <code>subscriptionLock</code>.
      */
-    private final HashMap<String, ArrayList<SubscriptionRecord>> activeSubscriptions = new HashMap<String, ArrayList<SubscriptionRecord>>();
+    private final HashMap<String, SubscriptionRecord> activeSubscriptionIDs = new HashMap<String, SubscriptionRecord>();
 
     /**
-     * The count of active subscriptions for each task, keyed by task ID; when the count reaches zero the task plug-ins
-     * are stopped.
+     * Snapshot of the active subscriptions (including the QoS setting of each feed and the task plug-in dispatchers),
+     * indexed by feed, task and actor. A new snapshot is published each time that the subscriptions change, so feed
+     * messages are handled without locking.
      */
-    private final HashMap<String, Integer> taskSubscriptionCounts = new HashMap<String, Integer>();
+    private volatile SubscriptionTable subscriptions = SubscriptionTable.EMPTY;
 
-    /** Map of QoS settings for Fabric feeds, keyed by feed descriptor. */
-    private final HashMap<String, MessageQoS> feedQoS = new HashMap<String, MessageQoS>();
+    /** Lock serializing subscribe and unsubscribe commands. */
+    private final Object subscriptionLock = new Object();
 
     /** The manager for in-bound per-node plug-ins. */
     private FeedPluginDispatcher inboundNodeDispatcher = null;
@@ -100,18 +98,6 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
     /** The manager for out-bound per-node plug-ins. */
     private FeedPluginDispatcher outboundNodeDispatcher = null;
 
-    /**
-     * The table of in-bound per-task plug-in dispatchers, keyed by feed names, with each entry containing the sub-table
-     * of in-bound task plug-in dispatchers for the feed.
-     */
-    private final HashMap<String, HashMap<String, FeedPluginDispatcher>> inboundTaskDispatchers = new HashMap<String, HashMap<String, FeedPluginDispatcher>>();
-
-    /**
-     * The table of out-bound per-task plug-in dispatchers, keyed by feed names, with each entry containing the
-     * sub-table of out-bound task plug-in dispatchers for the feed.
-     */
-    private final HashMap<String, HashMap<String, FeedPluginDispatcher>> outboundTaskDispatchers = new HashMap<String, HashMap<String, FeedPluginDispatcher>>();
-
     /** A local copy of the interface to Fabric management functions. */
     private IBusServices busServices = null;
 
@@ -145,14 +131,8 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         /* The action resulting from actor plug-ins */
         int actorPluginAction = IFeedPlugin.ACTION_CONTINUE;
 
-        /* The list of active subscriptions at which this message is associated */
-        ArrayList<SubscriptionRecord> feedSubscriptions = null;
-
-        /* The in-bound task plug-in dispatchers for this feed */
-        HashMap<String, FeedPluginDispatcher> inboundFeedTaskDispatchers = null;
-
-        /* The out-bound task plug-in dispatchers for this feed */
-        HashMap<String, FeedPluginDispatcher> outboundFeedTaskDispatchers = null;
+        /* The active subscriptions (and task plug-in dispatchers) for the feed, or null if there are none */
+        SubscriptionTable.Feed feedSubscriptions = null;
 
         /*
          * Table recoding the nodes to which this message is to be sent next. The key for each entry in the table is the
@@ -244,38 +224,26 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         /* Stop node plug-ins */
         inboundNodeDispatcher.stopDispatcher();
 
-        /* Stop task plug-ins */
-        for (Iterator<HashMap<String, FeedPluginDispatcher>> feedTaskDispatchersIterator = inboundTaskDispatchers
-                .values().iterator(); feedTaskDispatchersIterator.hasNext();) {
-
-            HashMap<String, FeedPluginDispatcher> taskDispatchersIterator = feedTaskDispatchersIterator.next();
+        for (SubscriptionTable.Feed feedSubscriptions : subscriptions.feeds()) {
 
-            for (Iterator<FeedPluginDispatcher> dispatchersIterator = taskDispatchersIterator.values().iterator(); dispatchersIterator
-                    .hasNext();) {
-
-                FeedPluginDispatcher dispatcher = dispatchersIterator.next();
-                dispatcher.stopDispatcher();
-
-            }
-        }
+            for (SubscriptionTable.Task taskSubscriptions : feedSubscriptions.tasks()) {
 
-        /* Stop actor plug-ins */
-        for (Iterator<ArrayList<SubscriptionRecord>> a = activeSubscriptions.values().iterator(); a.hasNext();) {
+                /* Stop task plug-ins */
+                taskSubscriptions.inboundDispatcher().stopDispatcher();
 
-            ArrayList<SubscriptionRecord> feedSubscriptionList = a.next();
+                /* Stop actor plug-ins */
+                for (Iterator<SubscriptionRecord> s = taskSubscriptions.subscriptions().iterator(); s.hasNext();) {
 
-            for (Iterator<SubscriptionRecord> s = feedSubscriptionList.iterator(); s.hasNext();) {
+                    SubscriptionRecord nextSubscription = s.next();
 
-                SubscriptionRecord nextSubscription = s.next();
+                    IFeedPluginDispatcher nextInboundDispatcher = nextSubscription.inboundActorDispatcher();
+                    nextInboundDispatcher.stopDispatcher();
 
-                IFeedPluginDispatcher nextInboundDispatcher = nextSubscription.inboundActorDispatcher();
-                nextInboundDispatcher.stopDispatcher();
-
-                IFeedPluginDispatcher nextOutboundDispatcher = nextSubscription.outboundActorDispatcher();
-                nextOutboundDispatcher.stopDispatcher();
+                    IFeedPluginDispatcher nextOutboundDispatcher = nextSubscription.outboundActorDispatcher();
+                    nextOutboundDispatcher.stopDispatcher();
 
+                }
             }
-
         }
 
         logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
@@ -304,12 +272,8 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         /* If the message is to be processed further... */
         if (fhmd.nodePluginAction == IFeedPlugin.ACTION_CONTINUE) {
 
-            /* Get the list of active subscriptions for the feed associated with this message */
-            fhmd.feedSubscriptions = activeSubscriptions.get(fhmd.feedName);
-
-            /* Get the task plug-in dispatchers for this feed */
-            fhmd.inboundFeedTaskDispatchers = inboundTaskDispatchers.get(fhmd.feedName);
-            fhmd.outboundFeedTaskDispatchers = outboundTaskDispatchers.get(fhmd.feedName);
+            /* Get the active subscriptions for the feed associated with this message (from the current snapshot) */
+            fhmd.feedSubscriptions = subscriptions.feed(fhmd.feedName);
 
             /* Get the list of tasks with subscriptions for this feed */
             Iterator<String> tasks = feedTaskList(nodeMessage, fhmd);
@@ -365,10 +329,10 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             /* Iterate across the list contained in the message */
             tasks = fhmd.taskSubscriptions.taskIterator();
         }
-        /* Else if there are any task dispatchers registered for this feed */
-        else if (fhmd.inboundFeedTaskDispatchers != null) {
-            /* Iterate across the dispatchers */
-            tasks = fhmd.inboundFeedTaskDispatchers.keySet().iterator();
+        /* Else if there are any subscriptions for this feed */
+        else if (fhmd.feedSubscriptions != null) {
+            /* Iterate across the subscribed tasks */
+            tasks = fhmd.feedSubscriptions.taskIDs().iterator();
         }
 
         return tasks;
@@ -412,7 +376,7 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
             if (doInstrument()) {
                 taskMetric = new FabricMetric(homeNode(), task, null, message.metaGetFeedDescriptor(),
-                        message.getUID(), message.getOrdinal(), message.toXML().toBytes(), null);
+                        message.getUID(), message.getOrdinal(), null);
                 metrics().startTiming(taskMetric, FabricMetric.EVENT_TASK_PROCESSING_START);
             }
 
@@ -442,10 +406,19 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      */
     private void handleFeedForTask(IFeedMessage message, FeedHandlingMetaData fhmd, String task) throws Exception {
 
+        /* Get the subscriptions for this task (a targeted message may name a task with no subscriptions here) */
+        SubscriptionTable.Task taskSubscriptions = (fhmd.feedSubscriptions != null) ? fhmd.feedSubscriptions
+                .task(task) : null;
+
+        if (taskSubscriptions == null) {
+            logger.log(Level.FINEST, "No subscriptions to feed [{0}] for task [{1}]", new Object[] {fhmd.feedName,
+                    task});
+            return;
+        }
+
         /* Apply the in-bound task plug-ins to the message */
         IFeedMessage taskMessage = (IFeedMessage) message.replicate();
-        FeedPluginDispatcher inboundTaskDispatcher = fhmd.inboundFeedTaskDispatchers.get(task);
-        fhmd.taskPluginAction = inboundTaskDispatcher.dispatch(taskMessage, fhmd.nodePluginAction);
+        fhmd.taskPluginAction = taskSubscriptions.inboundDispatcher().dispatch(taskMessage, fhmd.nodePluginAction);
 
         /* If the message is to be processed further... */
         if (fhmd.taskPluginAction == IFeedPlugin.ACTION_CONTINUE) {
@@ -453,22 +426,17 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             /* Determine if the message was modified by the plug-ins */
             fhmd.messageModified = (fhmd.messageModified == true) ? true : taskMessage.metaIsModified();
 
-            /* If there are any subscriptions for this feed... */
-            if (fhmd.feedSubscriptions != null) {
-
-                List<String> actorList = null;
-
-                /* If the message is directed at specific tasks and actors... */
-                if (fhmd.messageIsTargetted) {
-                    /* Get the list of actors for this message */
-                    actorList = fhmd.taskSubscriptions.getActors(task);
-                }
-
-                /* Handle the message for each actor */
-                handleFeedForActorList(taskMessage, task, actorList, fhmd);
+            List<String> actorList = null;
 
+            /* If the message is directed at specific tasks and actors... */
+            if (fhmd.messageIsTargetted) {
+                /* Get the list of actors for this message */
+                actorList = fhmd.taskSubscriptions.getActors(task);
             }
 
+            /* Handle the message for each actor */
+            handleFeedForActorList(taskMessage, task, taskSubscriptions, actorList, fhmd);
+
         } else {
 
             /* The message is not to be processed further */
@@ -493,6 +461,9 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      * @param task
      *            the task via which the actors are subscribed.
      *
+     * @param taskSubscriptions
+     *            the subscriptions to the feed via the task.
+     *
      * @param actorList
      *            the list of actors.
      *
@@ -501,60 +472,76 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      *
      * @throws Exception
      */
-    private void handleFeedForActorList(IFeedMessage taskMessage, String task, List<String> actorList,
-            FeedHandlingMetaData fhmd) throws Exception {
+    private void handleFeedForActorList(IFeedMessage taskMessage, String task,
+            SubscriptionTable.Task taskSubscriptions, List<String> actorList, FeedHandlingMetaData fhmd)
+        throws Exception {
+
+        /* Get the subscriptions for the actors (looked up by actor ID rather than by scanning) */
+        List<SubscriptionRecord> actorSubscriptions = null;
+
+        if (actorList == null) {
+
+            actorSubscriptions = taskSubscriptions.subscriptions();
+
+        } else {
+
+            actorSubscriptions = new ArrayList<SubscriptionRecord>();
+
+            for (int a = 0; a < actorList.size(); a++) {
+
+                /* Ignore duplicate entries in the actor list */
+                if (actorList.indexOf(actorList.get(a)) == a) {
+                    actorSubscriptions.addAll(taskSubscriptions.subscriptions(actorList.get(a)));
+                }
+            }
+        }
 
         /* For each subscription... */
-        for (Iterator<SubscriptionRecord> s = fhmd.feedSubscriptions.iterator(); s.hasNext();) {
+        for (Iterator<SubscriptionRecord> s = actorSubscriptions.iterator(); s.hasNext();) {
 
             /* Get the next subscription */
             SubscriptionRecord nextSubscription = s.next();
 
-            /* If it is for the current task and actor... */
-            if (nextSubscription.service().task().equals(task)
-                    && (actorList == null || actorList.contains(nextSubscription.actor()))) {
-
-                /* Actor instrumentation */
-                FabricMetric actorMetric = null;
+            /* Actor instrumentation */
+            FabricMetric actorMetric = null;
 
-                if (doInstrument()) {
-                    actorMetric = new FabricMetric(homeNode(), task, null, taskMessage.metaGetFeedDescriptor(),
-                            taskMessage.getUID(), taskMessage.getOrdinal(), taskMessage.toXML().toBytes(), null);
-                    metrics().startTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_START);
-                }
+            if (doInstrument()) {
+                actorMetric = new FabricMetric(homeNode(), task, null, taskMessage.metaGetFeedDescriptor(),
+                        taskMessage.getUID(), taskMessage.getOrdinal(), null);
+                metrics().startTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_START);
+            }
 
-                /* Handle the message for this actor */
-                IFeedMessage actorMessage = handleFeedForActor(taskMessage, nextSubscription, fhmd);
+            /* Handle the message for this actor */
+            IFeedMessage actorMessage = handleFeedForActor(taskMessage, nextSubscription, fhmd);
 
-                if (doInstrument()) {
-                    metrics().endTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_STOP);
-                }
+            if (doInstrument()) {
+                metrics().endTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_STOP);
+            }
 
-                /* If the message is to be processed further... */
-                if (actorMessage != null) {
+            /* If the message is to be processed further... */
+            if (actorMessage != null) {
 
-                    /* Apply the out-bound task plug-ins to the message */
-                    FeedPluginDispatcher outboundTaskDispatcher = fhmd.outboundFeedTaskDispatchers.get(task);
-                    fhmd.taskPluginAction = outboundTaskDispatcher.dispatch(actorMessage, fhmd.actorPluginAction);
+                /* Apply the out-bound task plug-ins to the message */
+                fhmd.taskPluginAction = taskSubscriptions.outboundDispatcher().dispatch(actorMessage,
+                        fhmd.actorPluginAction);
 
-                    /* If the message is to be processed further... */
-                    if (fhmd.taskPluginAction == IFeedPlugin.ACTION_CONTINUE) {
+                /* If the message is to be processed further... */
+                if (fhmd.taskPluginAction == IFeedPlugin.ACTION_CONTINUE) {
 
-                        /* Determine if the message was modified by the plug-ins */
-                        fhmd.messageModified = (fhmd.messageModified == true) ? true : actorMessage.metaIsModified();
+                    /* Determine if the message was modified by the plug-ins */
+                    fhmd.messageModified = (fhmd.messageModified == true) ? true : actorMessage.metaIsModified();
 
-                        /* Task and actor processing is now complete */
-                        addMessageToSendList(nextSubscription, fhmd, actorMessage);
+                    /* Task and actor processing is now complete */
+                    addMessageToSendList(nextSubscription, fhmd, actorMessage);
 
-                    } else {
+                } else {
 
-                        /* The message is not to be processed further */
-                        logger.log(Level.FINEST,
-                                "Discarding message from feed [{0}] due to out-bound task plug-in action",
-                                fhmd.feedName);
-                        fhmd.messageModified = true;
+                    /* The message is not to be processed further */
+                    logger.log(Level.FINEST,
+                            "Discarding message from feed [{0}] due to out-bound task plug-in action",
+                            fhmd.feedName);
+                    fhmd.messageModified = true;
 
-                    }
                 }
             }
         }
@@ -681,6 +668,26 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
     }
 
+    /**
+     * Initializes this instance with a fixed set of active subscriptions and no node plug-ins, rather than from the
+     * Registry. This allows feed handling to be exercised in isolation (see the feed benchmarks in
+     * <code>fabric.bench</code>).
+     *
+     * @param busServices
+     *            the interface to Fabric management functions.
+     *
+     * @param subscriptions
+     *            the active subscriptions.
+     */
+    void initService(IBusServices busServices, SubscriptionTable subscriptions) {
+
+        this.busServices = busServices;
+        this.subscriptions = subscriptions;
+        inboundNodeDispatcher = FeedPluginDispatcher.nodePluginFactory(homeNode(), new NodePlugin[0], busServices);
+        outboundNodeDispatcher = FeedPluginDispatcher.nodePluginFactory(homeNode(), new NodePlugin[0], busServices);
+
+    }
+
     /**
      * Factory method to initialize a plug-in dispatcher for node plug-ins.
      *
@@ -714,29 +721,18 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      *
      * @throws Exception
      */
-    private FeedPluginDispatcher taskDispatcherFactory(TaskServiceDescriptor taskFeed, String type,
-            HashMap<String, HashMap<String, FeedPluginDispatcher>> taskDispatchers) throws Exception {
-
-        ServiceDescriptor feed = new ServiceDescriptor(taskFeed);
+    private FeedPluginDispatcher taskDispatcherFactory(TaskServiceDescriptor taskFeed, String type) throws Exception {
 
         /* Get the list of plug-ins for this task/feed/node combination (local query only) */
         String predicate = format("(task_id='%s' or task_id='*') and (platform_id='%s' or platform_id='*') and "
                 + "(service_id='%s' or service_id='*') and " + "(data_feed_id='%s' or data_feed_id='*') and "
-                + "(node_id='%s' or node_id='*') and type='%s' order by ordinal", taskFeed.task(), taskFeed.platform(),
-                taskFeed.system(), taskFeed.service(), homeNode(), type);
+                + "(node_id='%s' or node_id='*') and type='%s' order by ordinal", taskFeed.task(),
+                taskFeed.platform(), taskFeed.system(), taskFeed.service(), homeNode(), type);
         TaskPlugin[] taskPlugins = FabricRegistry.getTaskPluginFactory(QueryScope.LOCAL).getTaskPlugins(predicate);
 
-        HashMap<String, FeedPluginDispatcher> feedTaskDispatchers = lookupSubmap(feed.toString(), taskDispatchers);
-        FeedPluginDispatcher taskDispatcher = feedTaskDispatchers.get(taskFeed.task());
-
-        /* If we haven't loaded the task plug-ins yet... */
-        if (taskDispatcher == null) {
-
-            /* Initialize the dispatcher for this list of plug-ins and record it */
-            taskDispatcher = FeedPluginDispatcher.taskPluginFactory(homeNode(), taskPlugins, busServices, taskFeed);
-            feedTaskDispatchers.put(taskFeed.task(), taskDispatcher);
-
-        }
+        /* Initialize the dispatcher for this list of plug-ins */
+        FeedPluginDispatcher taskDispatcher = FeedPluginDispatcher.taskPluginFactory(homeNode(), taskPlugins,
+                busServices, taskFeed);
 
         return taskDispatcher;
 
@@ -800,12 +796,15 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
                     new Object[] {FLog.arrayAsString(serviceList.getServices()), actor, actorPlatform});
         }
 
-        /* For each feed... */
-        for (int f = 0; f < feeds.length; f++) {
+        synchronized (subscriptionLock) {
+
+            /* For each feed... */
+            for (int f = 0; f < feeds.length; f++) {
 
-            /* Set up the feed subscription */
-            subscribeToFeed(message, actor, actorPlatform, feeds[f]);
+                /* Set up the feed subscription */
+                subscribeToFeed(message, actor, actorPlatform, feeds[f]);
 
+            }
         }
 
         IRouting messageRoute = message.getRouting();
@@ -882,13 +881,20 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
             logger.log(Level.FINE, "New subscription to [{0}]", taskFeed);
 
-            /* Determine the QoS for this feed */
-            lookupFeedQoS(feed);
+            SubscriptionTable currentSubscriptions = subscriptions;
+            SubscriptionTable.Feed feedSubscriptions = currentSubscriptions.feed(feed.toString());
+
+            /* Determine the QoS for this feed (if this is the first subscription to it) */
+            MessageQoS messageQoS = (feedSubscriptions != null) ? feedSubscriptions.qos() : lookupFeedQoS(feed);
 
-            /* Get the task plug-in dispatchers for this feed/task */
-            incrementTaskSubscriptionCount(taskFeed.task());
-            taskDispatcherFactory(taskFeed, INBOUND, inboundTaskDispatchers);
-            taskDispatcherFactory(taskFeed, OUTBOUND, outboundTaskDispatchers);
+            /* If this is the first subscription to this feed/task, get the task plug-in dispatchers */
+            FeedPluginDispatcher inboundTaskDispatcher = null;
+            FeedPluginDispatcher outboundTaskDispatcher = null;
+
+            if (feedSubscriptions == null || feedSubscriptions.task(taskFeed.task()) == null) {
+                inboundTaskDispatcher = taskDispatcherFactory(taskFeed, INBOUND);
+                outboundTaskDispatcher = taskDispatcherFactory(taskFeed, OUTBOUND);
+            }
 
             /* Get the actor plug-in dispatcher for this feed/task/actor */
             FeedPluginDispatcher inboundActorDispatcher = actorDispatcherFactory(actor, taskFeed, INBOUND);
@@ -900,13 +906,11 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             /* Determine the route for the feed messages associated with this subscription */
             IRouting feedRouting = message.route();
 
-            /* Get the list of active subscriptions for this feed */
-            ArrayList<SubscriptionRecord> feedSubscriptions = lookupSublist(feed.toString(), activeSubscriptions);
-
-            /* Create and record a new subscription record */
+            /* Create a new subscription record and publish a new snapshot of the active subscriptions containing it */
             SubscriptionRecord subscription = new SubscriptionRecord(actor, actorPlatform, taskFeed, feedRouting,
                     MessageQoS.DEFAULT, inboundActorDispatcher, outboundActorDispatcher, cleanupMessageHandles);
-            feedSubscriptions.add(subscription);
+            subscriptions = currentSubscriptions.add(feed.toString(), messageQoS, taskFeed.task(),
+                    inboundTaskDispatcher, outboundTaskDispatcher, subscription);
 
             /* Add this subscription to the active list */
             activeSubscriptionIDs.put(subscriptionID, subscription);
@@ -940,40 +944,36 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      *
      * @param feed
      *            the feed descriptor.
+     *
+     * @return the QoS setting.
      */
-    private void lookupFeedQoS(ServiceDescriptor feed) {
+    private MessageQoS lookupFeedQoS(ServiceDescriptor feed) {
 
-        /* If the QoS setting for this feed has not already been determined... */
-        if (!feedQoS.containsKey(feed)) {
+        MessageQoS messageQoS = MessageQoS.DEFAULT;
 
-            MessageQoS messageQoS = MessageQoS.DEFAULT;
+        /* Get the feed's record from the Registry */
+        Service feedRecord = FabricRegistry.getServiceFactory().getServiceById(feed.platform(), feed.system(),
+                feed.service());
 
-            /* Get the feed's record from the Registry */
-            Service feedRecord = FabricRegistry.getServiceFactory().getServiceById(feed.platform(), feed.system(),
-                    feed.service());
+        /* If there is a record... */
+        if (feedRecord != null) {
 
-            /* If there is a record... */
-            if (feedRecord != null) {
+            /* Get and unpack the feed's attributes */
+            String attributes = feedRecord.getAttributes();
+            Map<String, String> attributesMap = AbstractFactory.buildAttributesMap(attributes);
 
-                /* Get and unpack the feed's attributes */
-                String attributes = feedRecord.getAttributes();
-                Map<String, String> attributesMap = AbstractFactory.buildAttributesMap(attributes);
+            String qosAttribute = null;
 
-                String qosAttribute = null;
+            /* If there is a QoS setting... */
+            if (attributesMap != null && (qosAttribute = attributesMap.get("qos")) != null) {
 
-                /* If there is a QoS setting... */
-                if (attributesMap != null && (qosAttribute = attributesMap.get("qos")) != null) {
+                messageQoS = (qosAttribute.equals("reliable")) ? MessageQoS.RELIABLE : MessageQoS.BEST_EFFORT;
 
-                    messageQoS = (qosAttribute.equals("reliable")) ? MessageQoS.RELIABLE : MessageQoS.BEST_EFFORT;
-
-                }
             }
-
-            /* Save the setting */
-            feedQoS.put(feed.toString(), messageQoS);
-
         }
 
+        return messageQoS;
+
     }
 
     /**
@@ -1210,11 +1210,15 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
                     new Object[] {FLog.arrayAsString(serviceList.getServices()), actor, actorPlatform});
         }
 
-        /* For each service... */
-        for (int s = 0; s < services.length; s++) {
+        synchronized (subscriptionLock) {
+
+            /* For each service... */
+            for (int s = 0; s < services.length; s++) {
 
-            unsubscribeFromFeed(message.getCorrelationID(), message.getEvent(), actor, actorPlatform, services[s]);
+                unsubscribeFromFeed(message.getCorrelationID(), message.getEvent(), actor, actorPlatform,
+                        services[s]);
 
+            }
         }
 
         /* Remove any remaining notifications for this subscription */
@@ -1249,67 +1253,41 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         ServiceDescriptor feed = new ServiceDescriptor(taskFeed);
         String subscriptionID = subscriptionID(actor, actorPlatform, taskFeed);
 
+        /* Get the subscription (if it is active) */
+        SubscriptionRecord subscription = activeSubscriptionIDs.get(subscriptionID);
+
         /* If this subscription is active... */
-        if (activeSubscriptionIDs.containsKey(subscriptionID)) {
+        if (subscription != null) {
 
             logger.log(Level.FINE, "Stopping subscription to service [{0}]", taskFeed);
 
-            /* Get the list of active subscriptions for this feed */
-            ArrayList<SubscriptionRecord> feedSubscriptions = lookupSublist(feed.toString(), activeSubscriptions);
-
-            /* For each subscription... */
-            for (int s = 0; s < feedSubscriptions.size(); s++) {
-
-                /* Get the next subscription */
-                SubscriptionRecord nextSubscription = feedSubscriptions.get(s);
-
-                /* If this is the subscription we want... */
-                if (nextSubscription.actor().equals(actor) && nextSubscription.actorPlatform().equals(actorPlatform)
-                        && nextSubscription.service().task().equals(taskFeed.task())) {
-
-                    /* Stop the actor plug-ins */
-                    nextSubscription.inboundActorDispatcher().stopDispatcher();
-                    nextSubscription.outboundActorDispatcher().stopDispatcher();
+            /* Publish a new snapshot of the active subscriptions without this one */
+            SubscriptionTable currentSubscriptions = subscriptions;
+            SubscriptionTable.Feed feedSubscriptions = currentSubscriptions.feed(feed.toString());
+            SubscriptionTable.Task taskSubscriptions = (feedSubscriptions != null) ? feedSubscriptions.task(taskFeed
+                    .task()) : null;
+            subscriptions = currentSubscriptions.remove(feed.toString(), subscription);
 
-                    /* De-register any clean-up messages associated with this subscription */
-                    for (Iterator<String> i = nextSubscription.cleanupMessageHandles().iterator(); i.hasNext();) {
-                        busServices.removeMessage(i.next());
-                    }
+            /* Stop the actor plug-ins */
+            subscription.inboundActorDispatcher().stopDispatcher();
+            subscription.outboundActorDispatcher().stopDispatcher();
 
-                    fireSubscriberNotifications(correlationID, nextSubscription.service(), event);
-
-                    /* Remove the subscription */
-                    feedSubscriptions.remove(s);
-
-                    /* Allow for the subscription list shifting down one */
-                    s--;
-
-                    /* Finished */
-                    break;
-
-                }
+            /* De-register any clean-up messages associated with this subscription */
+            for (Iterator<String> i = subscription.cleanupMessageHandles().iterator(); i.hasNext();) {
+                busServices.removeMessage(i.next());
             }
 
-            /* If there are no subscriptions left for this task... */
-            if (decrementTaskSubscriptionCount(taskFeed.task()) == 0) {
-
-                ArrayList<HashMap<String, FeedPluginDispatcher>> taskDispatchers = new ArrayList<HashMap<String, FeedPluginDispatcher>>();
-                taskDispatchers.add(lookupSubmap(feed.toString(), inboundTaskDispatchers));
-                taskDispatchers.add(lookupSubmap(feed.toString(), outboundTaskDispatchers));
-
-                for (Iterator<HashMap<String, FeedPluginDispatcher>> i = taskDispatchers.iterator(); i.hasNext();) {
+            fireSubscriberNotifications(correlationID, subscription.service(), event);
 
-                    /* Get the next task plug-in dispatcher for this feed/task */
-                    HashMap<String, FeedPluginDispatcher> feedTaskDispatchers = i.next();
-                    FeedPluginDispatcher taskDispatcher = feedTaskDispatchers.get(taskFeed.task());
+            /* If there are no subscriptions left for this feed/task... */
+            feedSubscriptions = subscriptions.feed(feed.toString());
 
-                    /* Stop the plug-ins */
-                    taskDispatcher.stopDispatcher();
+            if (taskSubscriptions != null
+                    && (feedSubscriptions == null || feedSubscriptions.task(taskFeed.task()) == null)) {
 
-                    /* Remove the dispatcher */
-                    feedTaskDispatchers.remove(taskFeed.task());
-
-                }
+                /* Stop the task plug-ins */
+                taskSubscriptions.inboundDispatcher().stopDispatcher();
+                taskSubscriptions.outboundDispatcher().stopDispatcher();
 
             }
 
@@ -1378,65 +1356,6 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
     }
 
-    /**
-     * Increments the count of active subscriptions for the specified task.
-     *
-     * @param task
-     *            the ID of the task.
-     */
-    private void incrementTaskSubscriptionCount(String task) {
-
-        /* Get the current count */
-        Integer count = taskSubscriptionCounts.get(task);
-
-        /* If there is no count... */
-        if (count == null) {
-            /* Initialize it */
-            count = 1;
-        } else {
-            /* Increment the current count */
-            count++;
-        }
-
-        /* Set the new count */
-        taskSubscriptionCounts.put(task, count);
-
-    }
-
-    /**
-     * Decrements the count of active subscriptions for the specified task.
-     *
-     * @param task
-     *            the ID of the task.
-     *
-     * @return the current count.
-     */
-    private int decrementTaskSubscriptionCount(String task) {
-
-        /* Get the current count */
-        Integer count = taskSubscriptionCounts.get(task);
-
-        /* If there is a count... */
-        if (count != null) {
-
-            /* Decrement it */
-            count--;
-
-            /* If there are further subscriptions... */
-            if (count != 0) {
-                /* Update the count */
-                taskSubscriptionCounts.put(task, count);
-            } else {
-                /* We don't need to worry about this task any more */
-                taskSubscriptionCounts.remove(task);
-            }
-
-        }
-
-        return count.intValue();
-
-    }
-
     /**
      * Forwards a message to the next hop(s) in its route to a actor.
      *
@@ -1529,8 +1448,8 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             if (fhmd.nodePluginAction == IFeedPlugin.ACTION_CONTINUE) {
 
                 /* Forward the message across the Fabric to the node */
-                OutboundMessage outboundMessage = new OutboundMessage(message, node, fhmd.feedName, feedQoS
-                        .get(fhmd.feedName));
+                OutboundMessage outboundMessage = new OutboundMessage(message, node, fhmd.feedName,
+                        fhmd.feedSubscriptions.qos());
                 busServices.forwardingManager().add(outboundMessage);
 
             } else {
@@ -1580,8 +1499,8 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
                     SubscriptionRecord subscription = s.next();
 
                     /* Queue the message to be sent to the actor */
-                    OutboundMessage outboundMessage = new OutboundMessage(message, subscription, fhmd.feedName, feedQoS
-                            .get(fhmd.feedName));
+                    OutboundMessage outboundMessage = new OutboundMessage(message, subscription, fhmd.feedName,
+                            fhmd.feedSubscriptions.qos());
                     busServices.forwardingManager().add(outboundMessage);
 
                 }
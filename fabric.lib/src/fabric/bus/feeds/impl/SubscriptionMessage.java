@@ -50,6 +50,18 @@ public class SubscriptionMessage extends ServiceMessage {
 
     }
 
+    /**
+     * Constructs a new instance that is a structural copy of an existing instance.
+     *
+     * @param source
+     *            the instance to copy.
+     */
+    protected SubscriptionMessage(SubscriptionMessage source) {
+
+        super(source);
+
+    }
+
     /**
      * Initializes an instance.
      */
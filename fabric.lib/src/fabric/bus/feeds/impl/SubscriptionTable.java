@@ -0,0 +1,349 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.feeds.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fabric.bus.plugins.impl.FeedPluginDispatcher;
+import fabric.core.io.MessageQoS;
+
+/**
+ * Immutable snapshot of the active subscriptions of a node, indexed by feed, task and actor.
+ * <p>
+ * Snapshots are never modified: adding or removing a subscription answers a new snapshot that shares all of the
+ * unchanged feed entries with its predecessor. This allows the subscription manager to publish a new snapshot
+ * atomically whenever subscriptions change, while feed messages are routed using whichever snapshot was current when
+ * they arrived, without locking.
+ * </p>
+ */
+public final class SubscriptionTable {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** A table containing no subscriptions. */
+    public static final SubscriptionTable EMPTY = new SubscriptionTable(new HashMap<String, Feed>());
+
+    /*
+     * Class fields
+     */
+
+    /** The subscriptions for each feed, keyed by feed name. */
+    private final Map<String, Feed> feeds;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * The subscriptions to a single feed.
+     */
+    public static final class Feed {
+
+        /** The QoS setting for the feed. */
+        private final MessageQoS qos;
+
+        /** The subscriptions for each task, keyed by task ID (in subscription order). */
+        private final Map<String, Task> tasks;
+
+        private Feed(MessageQoS qos, Map<String, Task> tasks) {
+
+            this.qos = qos;
+            this.tasks = Collections.unmodifiableMap(tasks);
+
+        }
+
+        /**
+         * Answers the QoS setting for the feed.
+         *
+         * @return the QoS.
+         */
+        public MessageQoS qos() {
+
+            return qos;
+
+        }
+
+        /**
+         * Answers the subscriptions to the feed for a task.
+         *
+         * @param task
+         *            the task ID.
+         *
+         * @return the task's subscriptions, or <code>null</code> if there are none.
+         */
+        public Task task(String task) {
+
+            return tasks.get(task);
+
+        }
+
+        /**
+         * Answers the IDs of the tasks with subscriptions to the feed.
+         *
+         * @return the task IDs.
+         */
+        public Collection<String> taskIDs() {
+
+            return tasks.keySet();
+
+        }
+
+        /**
+         * Answers the subscriptions to the feed, by task.
+         *
+         * @return the task subscriptions.
+         */
+        public Collection<Task> tasks() {
+
+            return tasks.values();
+
+        }
+    }
+
+    /**
+     * The subscriptions to a single feed via a single task.
+     */
+    public static final class Task {
+
+        /** The in-bound task plug-in dispatcher. */
+        private final FeedPluginDispatcher inboundDispatcher;
+
+        /** The out-bound task plug-in dispatcher. */
+        private final FeedPluginDispatcher outboundDispatcher;
+
+        /** All of the subscriptions, in subscription order. */
+        private final List<SubscriptionRecord> subscriptions;
+
+        /** The subscriptions for each actor, keyed by actor ID (an actor can subscribe via more than one platform). */
+        private final Map<String, List<SubscriptionRecord>> actors;
+
+        private Task(FeedPluginDispatcher inboundDispatcher, FeedPluginDispatcher outboundDispatcher,
+                List<SubscriptionRecord> subscriptions) {
+
+            this.inboundDispatcher = inboundDispatcher;
+            this.outboundDispatcher = outboundDispatcher;
+            this.subscriptions = Collections.unmodifiableList(subscriptions);
+
+            HashMap<String, List<SubscriptionRecord>> actorMap = new HashMap<String, List<SubscriptionRecord>>();
+
+            for (SubscriptionRecord subscription : subscriptions) {
+
+                List<SubscriptionRecord> actorSubscriptions = actorMap.get(subscription.actor());
+
+                if (actorSubscriptions == null) {
+                    actorSubscriptions = new ArrayList<SubscriptionRecord>(1);
+                    actorMap.put(subscription.actor(), actorSubscriptions);
+                }
+
+                actorSubscriptions.add(subscription);
+            }
+
+            this.actors = actorMap;
+
+        }
+
+        /**
+         * Answers the in-bound task plug-in dispatcher.
+         *
+         * @return the dispatcher.
+         */
+        public FeedPluginDispatcher inboundDispatcher() {
+
+            return inboundDispatcher;
+
+        }
+
+        /**
+         * Answers the out-bound task plug-in dispatcher.
+         *
+         * @return the dispatcher.
+         */
+        public FeedPluginDispatcher outboundDispatcher() {
+
+            return outboundDispatcher;
+
+        }
+
+        /**
+         * Answers all of the subscriptions for this feed and task.
+         *
+         * @return the subscriptions (never <code>null</code>).
+         */
+        public List<SubscriptionRecord> subscriptions() {
+
+            return subscriptions;
+
+        }
+
+        /**
+         * Answers the subscriptions for this feed and task made by an actor.
+         *
+         * @param actor
+         *            the actor ID.
+         *
+         * @return the subscriptions (never <code>null</code>).
+         */
+        public List<SubscriptionRecord> subscriptions(String actor) {
+
+            List<SubscriptionRecord> actorSubscriptions = actors.get(actor);
+            return (actorSubscriptions != null) ? Collections.unmodifiableList(actorSubscriptions) : Collections
+                    .<SubscriptionRecord> emptyList();
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param feeds
+     *            the subscriptions for each feed (not copied).
+     */
+    private SubscriptionTable(Map<String, Feed> feeds) {
+
+        this.feeds = feeds;
+
+    }
+
+    /**
+     * Answers the subscriptions to a feed.
+     *
+     * @param feed
+     *            the feed name.
+     *
+     * @return the feed's subscriptions, or <code>null</code> if there are none.
+     */
+    public Feed feed(String feed) {
+
+        return feeds.get(feed);
+
+    }
+
+    /**
+     * Answers the subscriptions to all feeds.
+     *
+     * @return the feed subscriptions.
+     */
+    public Collection<Feed> feeds() {
+
+        return Collections.unmodifiableCollection(feeds.values());
+
+    }
+
+    /**
+     * Answers a new table containing the subscriptions in this table plus one more.
+     *
+     * @param feed
+     *            the feed name.
+     *
+     * @param qos
+     *            the QoS setting for the feed (ignored if there are already subscriptions to the feed).
+     *
+     * @param task
+     *            the task ID.
+     *
+     * @param inboundDispatcher
+     *            the in-bound task plug-in dispatcher (ignored if there are already subscriptions for the task).
+     *
+     * @param outboundDispatcher
+     *            the out-bound task plug-in dispatcher (ignored if there are already subscriptions for the task).
+     *
+     * @param subscription
+     *            the new subscription.
+     *
+     * @return the new table.
+     */
+    public SubscriptionTable add(String feed, MessageQoS qos, String task, FeedPluginDispatcher inboundDispatcher,
+            FeedPluginDispatcher outboundDispatcher, SubscriptionRecord subscription) {
+
+        Feed oldFeed = feeds.get(feed);
+        LinkedHashMap<String, Task> tasks = new LinkedHashMap<String, Task>();
+
+        if (oldFeed != null) {
+            qos = oldFeed.qos;
+            tasks.putAll(oldFeed.tasks);
+        }
+
+        Task oldTask = tasks.get(task);
+        ArrayList<SubscriptionRecord> subscriptions = new ArrayList<SubscriptionRecord>();
+
+        if (oldTask != null) {
+            inboundDispatcher = oldTask.inboundDispatcher;
+            outboundDispatcher = oldTask.outboundDispatcher;
+            subscriptions.addAll(oldTask.subscriptions);
+        }
+
+        subscriptions.add(subscription);
+        tasks.put(task, new Task(inboundDispatcher, outboundDispatcher, subscriptions));
+
+        HashMap<String, Feed> newFeeds = new HashMap<String, Feed>(feeds);
+        newFeeds.put(feed, new Feed(qos, tasks));
+
+        return new SubscriptionTable(newFeeds);
+
+    }
+
+    /**
+     * Answers a new table containing the subscriptions in this table less one. Task and feed entries that no longer
+     * have any subscriptions are removed.
+     *
+     * @param feed
+     *            the feed name.
+     *
+     * @param subscription
+     *            the subscription to remove.
+     *
+     * @return the new table, or this table if the subscription was not present.
+     */
+    public SubscriptionTable remove(String feed, SubscriptionRecord subscription) {
+
+        Feed oldFeed = feeds.get(feed);
+        String task = subscription.service().task();
+        Task oldTask = (oldFeed != null) ? oldFeed.tasks.get(task) : null;
+
+        if (oldTask == null || !oldTask.subscriptions.contains(subscription)) {
+            return this;
+        }
+
+        ArrayList<SubscriptionRecord> subscriptions = new ArrayList<SubscriptionRecord>(oldTask.subscriptions);
+        subscriptions.remove(subscription);
+
+        LinkedHashMap<String, Task> tasks = new LinkedHashMap<String, Task>(oldFeed.tasks);
+
+        if (subscriptions.isEmpty()) {
+            tasks.remove(task);
+        } else {
+            tasks.put(task, new Task(oldTask.inboundDispatcher, oldTask.outboundDispatcher, subscriptions));
+        }
+
+        HashMap<String, Feed> newFeeds = new HashMap<String, Feed>(feeds);
+
+        if (tasks.isEmpty()) {
+            newFeeds.remove(feed);
+        } else {
+            newFeeds.put(feed, new Feed(oldFeed.qos, tasks));
+        }
+
+        return new SubscriptionTable(newFeeds);
+
+    }
+}
@@ -10,12 +10,15 @@ package fabric.bus.impl;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import fabric.Fabric;
 import fabric.FabricBus;
 import fabric.FabricMetric;
+import fabric.MessageLogManager;
 import fabric.ServiceDescriptor;
 import fabric.bus.BusIOChannels;
 import fabric.bus.BusMessageHandler;
@@ -24,10 +27,13 @@ import fabric.bus.NeighbourChannels;
 import fabric.bus.SharedEndPoint;
 import fabric.bus.feeds.impl.SubscriptionRecord;
 import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IConnectionMessage;
 import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.IFeedMessage;
 import fabric.bus.messages.IMessagePayload;
 import fabric.bus.messages.IServiceMessage;
+import fabric.bus.messages.WireFormat;
+import fabric.bus.messages.impl.ConnectionMessage;
 import fabric.bus.messages.impl.FeedMessage;
 import fabric.bus.messages.impl.MessagePayload;
 import fabric.bus.messages.impl.ServiceMessage;
@@ -43,6 +49,7 @@ import fabric.core.io.mqtt.MqttEndPoint;
 import fabric.core.logging.FLog;
 import fabric.core.properties.ConfigProperties;
 import fabric.registry.FabricRegistry;
+import fabric.registry.NodeConfig;
 import fabric.registry.NodeIpMapping;
 import fabric.registry.NodeNeighbour;
 import fabric.registry.QueryScope;
@@ -64,6 +71,13 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     /** Copyright notice. */
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2014";
 
+    /*
+     * Class constants
+     */
+
+    /** The ingest pipeline partition key shared by all service and command messages */
+    private static final String SERVICE_LANE = "$service";
+
     /*
      * Class fields
      */
@@ -71,8 +85,11 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     /** The handler for Fabric messages */
     private BusMessageHandler messageHandler = null;
 
-    /** The list of nodes neighbouring this Fabric Manager */
-    private final HashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTable = new HashMap<NodeDescriptor, NeighbourChannels>();
+    /** The list of nodes neighbouring this Fabric Manager (read without locking by the ingest lanes) */
+    private final ConcurrentHashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTable = new ConcurrentHashMap<NodeDescriptor, NeighbourChannels>();
+
+    /** Lock held while connecting to, or disconnecting from, a neighbour */
+    private final Object neighbourLock = new Object();
 
     /** To hold the channels and topics used by the Fabric Manager */
     private final BusIOChannels ioChannels = new BusIOChannels();
@@ -86,8 +103,14 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     /** The template topic for the Fabric registry bus connection to a neighbouring node */
     private String fabricRegistryBusTemplate = null;
 
-    /** The UID of the next message to be published onto the Fabric */
-    private long fabricMessageUID = 0;
+    /** The pool of ordered worker lanes handling in-bound messages, or <code>null</code> if disabled */
+    private IngestPipeline ingestPipeline = null;
+
+    /** Lock allowing feed messages to be handled in parallel, but service messages to be handled exclusively */
+    private final ReentrantReadWriteLock handlerLock = new ReentrantReadWriteLock();
+
+    /** Flag indicating if messages from locally connected feeds are handled in-process rather than via the broker */
+    private boolean inProcessOnramp = true;
 
     /*
      * Class methods
@@ -121,6 +144,26 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
         fabricFeedsBusTemplate = config(ConfigProperties.TOPIC_FEEDS_BUS, ConfigProperties.TOPIC_FEEDS_BUS_DEFAULT);
         fabricRegistryBusTemplate = config(ConfigProperties.REGISTRY_COMMAND_TOPIC,
                 ConfigProperties.REGISTRY_COMMAND_TOPIC_DEFAULT);
+
+        /* Configure the in-bound message pipeline (zero lanes means handle messages on the broker callback thread) */
+        int ingestLanes = Integer.parseInt(config("fabric.ingest.lanes", "1"));
+        int ingestQueueSize = Integer.parseInt(config("fabric.ingest.queueSize", "1000"));
+
+        if (ingestLanes > 0) {
+            ingestPipeline = new IngestPipeline("Bus-Ingest", ingestLanes, ingestQueueSize, logger);
+        }
+
+        inProcessOnramp = Boolean.parseBoolean(config("fabric.ingest.inProcess", "true"));
+    }
+
+    /**
+     * Stops in-bound message handling, allowing any queued messages to complete.
+     */
+    public void stop() {
+
+        if (ingestPipeline != null) {
+            ingestPipeline.stop();
+        }
     }
 
     /**
@@ -205,6 +248,61 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
         }
     }
 
+    /**
+     * Records the wire formats that this node can receive in the Registry, so that neighbours can select the format
+     * that they use to send messages to it.
+     */
+    public void advertiseWireFormats() {
+
+        try {
+
+            NodeConfig supported = FabricRegistry.getNodeConfigFactory().createNodeConfig(homeNode(),
+                    ConfigProperties.NODE_WIRE_FORMATS_SUPPORTED, WireFormat.SUPPORTED);
+            FabricRegistry.getNodeConfigFactory().save(supported);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot record supported wire formats in the Registry: {0}", e.getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+    }
+
+    /**
+     * Determines the format to use for messages sent to a neighbour, from the preferred format of this node and the
+     * formats advertised by the neighbour.
+     *
+     * @param neighbour
+     *            the neighbour's node ID.
+     *
+     * @return the wire format.
+     */
+    private WireFormat negotiateWireFormat(String neighbour) {
+
+        String preferred = config(ConfigProperties.NODE_WIRE_FORMAT, ConfigProperties.NODE_WIRE_FORMAT_DEFAULT);
+        String supported = null;
+
+        /* Only look up the neighbour's capabilities if they make a difference */
+        if (!preferred.equalsIgnoreCase(WireFormat.XML.name())) {
+
+            try {
+
+                NodeConfig neighbourSupported = FabricRegistry.getNodeConfigFactory(QueryScope.DISTRIBUTED)
+                        .getNodeConfigByName(neighbour, ConfigProperties.NODE_WIRE_FORMATS_SUPPORTED);
+                supported = (neighbourSupported != null) ? neighbourSupported.getValue() : null;
+
+            } catch (Exception e) {
+
+                logger.log(Level.FINE, "Cannot determine wire formats supported by node [{0}], using XML: {1}",
+                        new Object[] {neighbour, e.getMessage()});
+
+            }
+        }
+
+        return WireFormat.negotiate(preferred, supported);
+
+    }
+
     /**
      * @see fabric.core.io.ICallback#startCallback(java.lang.Object)
      */
@@ -218,21 +316,114 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
      * @see fabric.core.io.ICallback#handleMessage(fabric.core.io.Message)
      */
     @Override
-    public synchronized void handleMessage(Message message) {
+    public void handleMessage(final Message message) {
 
         FLog.enter(logger, Level.FINER, this, "handleMessage", message);
 
-        String messageTopic = (String) message.topic;
-        byte[] messageData = message.data;
-        String messageString = new String((messageData != null) ? messageData : new byte[0]);
+        final String messageTopic = (String) message.topic;
+
+        /* If the ingest pipeline is disabled... */
+        if (ingestPipeline == null) {
+
+            /* Handle the message on the calling thread, one message at a time */
+            synchronized (this) {
+                processMessage(messageTopic, message.data);
+            }
+
+        }
+        /* Else if this is a feed message (local, replay, or en route across the Fabric)... */
+        else if (messageTopic.startsWith(ioChannels.receiveLocalFeeds.name())
+                || messageTopic.startsWith(ioChannels.receiveLocalReplayFeeds.name())
+                || messageTopic.startsWith(ioChannels.receiveBus.name())) {
+
+            /* Partition by feed topic so that per-feed ordering is preserved */
+            ingestPipeline.submit(messageTopic, new Runnable() {
+                @Override
+                public void run() {
+                    processMessage(messageTopic, message.data);
+                }
+            });
+
+        } else {
+
+            /*
+             * Handle service and command messages in the order in which they arrive (e.g. a subscribe followed by an
+             * unsubscribe for the same feed) by keeping them all on one lane
+             */
+            ingestPipeline.submit(SERVICE_LANE, new Runnable() {
+                @Override
+                public void run() {
+                    processMessage(messageTopic, message.data);
+                }
+            });
+
+        }
 
-        logger.log(Level.FINEST, "Full message:\n{0}", messageString);
+        FLog.exit(logger, Level.FINER, this, "handleMessage", null);
+    }
+
+    /**
+     * Parses a message received from the broker.
+     *
+     * @param messageTopic
+     *            the topic on which the message was received.
+     *
+     * @param messageData
+     *            the message.
+     *
+     * @return the parsed message, or <code>null</code> if the message is improperly formatted.
+     */
+    private IFabricMessage parseMessage(String messageTopic, byte[] messageData) {
+
+        IFabricMessage parsedMessage = null;
+
+        try {
+
+            /* Parse the message */
+            parsedMessage = FabricMessageFactory.create(messageTopic, messageData);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Improperly formatted message received on topic {0}: {1}", new Object[] {
+                    messageTopic, e.getMessage()});
+            logger.log(Level.FINEST, "Full message:\n{0}", new String((messageData != null) ? messageData
+                    : new byte[0]));
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+
+        return parsedMessage;
+    }
+
+    /**
+     * Handles a single message received from the broker.
+     * <p>
+     * Feed messages are handled under the shared side of the handler lock, so independent feeds can be processed in
+     * parallel by the ingest lanes. All other messages (which can change subscription and service state) are handled
+     * under the exclusive side.
+     * </p>
+     *
+     * @param messageTopic
+     *            the topic on which the message was received.
+     *
+     * @param messageData
+     *            the message.
+     */
+    private void processMessage(String messageTopic, byte[] messageData) {
+
+        String messageString = null;
+        IFabricMessage parsedMessage = null;
+
+        if (logger.isLoggable(Level.FINEST)) {
+            messageString = new String((messageData != null) ? messageData : new byte[0]);
+            logger.log(Level.FINEST, "Full message:\n{0}", messageString);
+        }
 
         /* Instrumentation */
         FabricMetric metric = null;
 
         if (doInstrument()) {
-            metric = new FabricMetric(homeNode(), null, null, null, null, -1, messageData, null);
+            metric = new FabricMetric(homeNode(), null, null, null, null, -1, null);
             metrics().startTiming(metric, FabricMetric.EVENT_NODE_PROCESSING_START);
         }
 
@@ -246,7 +437,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                 if (feedTopic.startsWith("$")) {
 
                     try {
-                        floodFeedMessage(feedTopic, message.data);
+                        floodFeedMessage(feedTopic, messageData);
                     } catch (Exception e) {
                         logger.log(Level.SEVERE, "Failed to publish virtual service message: ", e.getMessage());
                         logger.log(Level.FINEST, "Full exception: ", e);
@@ -254,7 +445,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
 
                 } else {
 
-                    sendRawMessage(messageTopic, message.data, false);
+                    sendRawMessage(messageTopic, messageData, false);
 
                 }
 
@@ -262,38 +453,35 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             /* Else if it's a local replay message from a source attached directly to the node... */
             else if (messageTopic.startsWith(ioChannels.receiveLocalReplayFeeds.name())) {
 
-                sendRawMessage(messageTopic, message.data, true);
+                sendRawMessage(messageTopic, messageData, true);
 
             }
             /* Else this should be a message that we can parse */
             else {
 
-                IFabricMessage parsedMessage = null;
-
-                try {
-
-                    /* Parse the message */
-                    parsedMessage = FabricMessageFactory.create(messageTopic, messageData);
-
-                } catch (Exception e) {
-
-                    logger.log(Level.WARNING, "Improperly formatted message received on topic {0}: {1}", new Object[] {
-                            messageTopic, e.getMessage()});
-                    logger.log(Level.FINEST, "Full message:\n{0}", messageString);
-                    logger.log(Level.FINEST, "Full exception: ", e);
+                parsedMessage = parseMessage(messageTopic, messageData);
 
+                /* Identify the message in the instrumentation */
+                if (metric != null && parsedMessage != null) {
+                    metric.setMessageID(parsedMessage.getUID());
                 }
 
                 /* If this is a Fabric feed message... */
                 if (parsedMessage instanceof IFeedMessage) {
 
-                    messageHandler.handleFeedMessage((IFeedMessage) parsedMessage);
+                    dispatchFeedMessage((IFeedMessage) parsedMessage);
 
                 }
                 /* Else if this is a Fabric service message... */
                 else if (parsedMessage instanceof IServiceMessage) {
 
-                    messageHandler.handleServiceMessage((ServiceMessage) parsedMessage);
+                    handlerLock.writeLock().lock();
+
+                    try {
+                        messageHandler.handleServiceMessage((ServiceMessage) parsedMessage);
+                    } finally {
+                        handlerLock.writeLock().unlock();
+                    }
 
                 }
                 /* Else if this is any other kind of Fabric message... */
@@ -312,12 +500,12 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                     logger.log(
                             Level.WARNING,
                             "Ignoring improperly formatted connection status (last-will-and-testament) message recevied on topic {0}:\n{1}",
-                            new Object[] {messageTopic, messageString});
+                            new Object[] {messageTopic, new String((messageData != null) ? messageData : new byte[0])});
 
                 } else {
 
                     logger.log(Level.WARNING, "Ignoring improperly formatted message recevied on topic {0}:\n{1}",
-                            new Object[] {messageTopic, messageString});
+                            new Object[] {messageTopic, new String((messageData != null) ? messageData : new byte[0])});
 
                 }
 
@@ -337,8 +525,61 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             }
 
         }
+    }
 
-        FLog.exit(logger, Level.FINER, this, "handleMessage", null);
+    /**
+     * Hands a feed message to the message handler, under the shared side of the handler lock.
+     *
+     * @param message
+     *            the feed message.
+     *
+     * @throws Exception
+     */
+    private void dispatchFeedMessage(IFeedMessage message) throws Exception {
+
+        handlerLock.readLock().lock();
+
+        try {
+            messageHandler.handleFeedMessage(message);
+        } finally {
+            handlerLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Handles a feed message from a locally connected system in-process, exactly as if it had been published to, and
+     * then received from, the bus topic of this node.
+     *
+     * @param message
+     *            the feed message, with its topic set to the bus topic.
+     */
+    private void injectFeedMessage(IFeedMessage message) {
+
+        /* Instrumentation (the same as for a message received from the broker) */
+        FabricMetric metric = null;
+
+        if (doInstrument()) {
+            metric = new FabricMetric(homeNode(), null, null, null, message.getUID(), message.getOrdinal(), null);
+            metrics().startTiming(metric, FabricMetric.EVENT_NODE_PROCESSING_START);
+        }
+
+        try {
+
+            dispatchFeedMessage(message);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Exception handling local feed message on topic [{0}]: {1}", new Object[] {
+                    message.metaGetTopic(), e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        } finally {
+
+            if (doInstrument()) {
+                metrics().endTiming(metric, FabricMetric.EVENT_NODE_PROCESSING_STOP);
+            }
+
+        }
     }
 
     /**
@@ -410,6 +651,38 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
         NeighbourChannels neighbourChannels = null;
         NodeDescriptor nodeDescriptor = createDescriptor(neighbour);
 
+        /* Get the the existing Fabric connection to the node (if any) without waiting for the lock */
+        if (nodeDescriptor != null) {
+            neighbourChannels = neighbourChannelsTable.get(nodeDescriptor);
+        }
+
+        if (neighbourChannels != null) {
+            return neighbourChannels;
+        }
+
+        /* Connect (and record the connection) one thread at a time, so that only one connection is opened */
+        synchronized (neighbourLock) {
+            neighbourChannels = connectNewNeighbour(neighbour, nodeDescriptor);
+        }
+
+        return neighbourChannels;
+    }
+
+    /**
+     * Connects to a neighbour if there is no existing connection. Called while holding the neighbour lock.
+     *
+     * @param neighbour
+     *            the neighbour.
+     *
+     * @param nodeDescriptor
+     *            the first node descriptor to try.
+     *
+     * @return the connection, or <code>null</code> if none could be made.
+     */
+    private NeighbourChannels connectNewNeighbour(String neighbour, NodeDescriptor nodeDescriptor) {
+
+        NeighbourChannels neighbourChannels = null;
+
         while (neighbourChannels == null && nodeDescriptor != null) {
 
             /* Get the the existing Fabric connection to the node */
@@ -427,7 +700,9 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                 /* If the connection was successful... */
                 if (neighbourChannels != null) {
 
-                    logger.log(Level.INFO, "Connected to new neighbour [{0}]", neighbour);
+                    neighbourChannels.setWireFormat(negotiateWireFormat(neighbour));
+                    logger.log(Level.INFO, "Connected to new neighbour [{0}] (wire format {1})", new Object[] {
+                            neighbour, neighbourChannels.wireFormat()});
                     neighbourChannelsTable.put(nodeDescriptor, neighbourChannels);
 
                 } else {
@@ -576,8 +851,8 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     @Override
     public void disconnectNeighbour(String id) throws UnsupportedOperationException, IOException {
 
-        HashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTableCopy = (HashMap<NodeDescriptor, NeighbourChannels>) neighbourChannelsTable
-                .clone();
+        HashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTableCopy = new HashMap<NodeDescriptor, NeighbourChannels>(
+                neighbourChannelsTable);
 
         for (NodeDescriptor nodeDescriptor : neighbourChannelsTableCopy.keySet()) {
             if (nodeDescriptor.name().equals(id)) {
@@ -593,12 +868,16 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     public NeighbourChannels disconnectNeighbour(NodeDescriptor nodeDescriptor, boolean doRetry)
             throws UnsupportedOperationException, IOException {
 
-        NeighbourChannels currentChannels = neighbourChannelsTable.remove(nodeDescriptor);
         NeighbourChannels newChannels = null;
 
-        if (currentChannels != null) {
-            currentChannels.closeChannels();
-            disconnectNode(nodeDescriptor);
+        synchronized (neighbourLock) {
+
+            NeighbourChannels currentChannels = neighbourChannelsTable.remove(nodeDescriptor);
+
+            if (currentChannels != null) {
+                currentChannels.closeChannels();
+                disconnectNode(nodeDescriptor);
+            }
         }
 
         if (doRetry) {
@@ -615,9 +894,54 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     public void sendRawMessage(String fullTopic, byte[] messageData, boolean isReplay) throws IOException {
 
         /* Package the incoming resource message as a Fabric feed message */
-        IFeedMessage message = wrapRawMessage(messageData, isReplay);
+        final IFeedMessage message = wrapRawMessage(messageData, isReplay);
         message.metaSetTopic(fullTopic);
 
+        /* If configured, record the message so that it can be replayed */
+        if (!isReplay && messageLogs().recordFeeds()) {
+            messageLogs().append(MessageLogManager.FEEDS + message.metaGetFeedDescriptor(), message.getOrdinal(),
+                    messageData);
+        }
+
+        /* If the message can be handled in-process (avoiding the round trip via the broker)... */
+        if (inProcessOnramp && messageHandler != null) {
+
+            /* Address the message as if it had been received from the bus */
+            String busTopic = ioChannels.receiveBus.name() + '/' + message.metaGetFeedDescriptor();
+            message.metaSetTopic(busTopic);
+
+            /* If the ingest pipeline is disabled... */
+            if (ingestPipeline == null) {
+
+                synchronized (this) {
+                    injectFeedMessage(message);
+                }
+
+            }
+            /*
+             * Else if we are already on an ingest lane (i.e. handling a message from a locally connected feed, which
+             * has been partitioned by feed topic)...
+             */
+            else if (ingestPipeline.isLaneThread()) {
+
+                /* Handle it now, which preserves the per-feed ordering (and can't block on a full lane) */
+                injectFeedMessage(message);
+
+            } else {
+
+                /* Partition by feed topic, as for a message received from the bus */
+                ingestPipeline.submit(busTopic, new Runnable() {
+                    @Override
+                    public void run() {
+                        injectFeedMessage(message);
+                    }
+                });
+
+            }
+
+            return;
+        }
+
         /* Republish the message onto the Fabric */
         byte[] fabricMessageBytes = null;
 
@@ -671,7 +995,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                 if (nodeConnection != null) {
 
                     /* Forward the message */
-                    nodeConnection.commandBusChannel().write(message.toWireBytes());
+                    nodeConnection.commandBusChannel().write(message.toWireBytes(nodeConnection.wireFormat()));
 
                 } else {
 
@@ -701,11 +1025,25 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             logger.log(Level.FINEST, "Sending feed [{0}] message to node [{1}]", new Object[] {feedTopic,
                     nodeConnection.neighbourDescriptor()});
             String fullTopic = nodeConnection.outboundFeedBus().name() + '/' + feedTopic;
-            nodeConnection.feedBusChannel().write(message.toWireBytes(), new OutputTopic(fullTopic));
+
+            try {
+
+                nodeConnection.feedBusChannel().write(message.toWireBytes(nodeConnection.wireFormat()),
+                        new OutputTopic(fullTopic));
+
+            } catch (IOException e) {
+
+                /* Drop the failed connection so that the next attempt reconnects */
+                logger.log(Level.FINE, "Send to node [{0}] failed, disconnecting: {1}", new Object[] {node,
+                        e.getMessage()});
+                disconnectNeighbour(nodeConnection.neighbourDescriptor(), false);
+                throw e;
+
+            }
 
         } else {
 
-            logger.log(Level.WARNING, "No connection to node [{0}], cannot send feed message", node);
+            throw new IOException("No connection to node [" + node + "], cannot send feed message");
 
         }
     }
@@ -834,4 +1172,43 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             e.printStackTrace();
         }
     }
+
+    /**
+     * @see fabric.core.io.IEndPointCallback#endPointDeliveryFailed(fabric.core.io.EndPoint, java.lang.String,
+     *      java.lang.Throwable)
+     */
+    @Override
+    public void endPointDeliveryFailed(EndPoint ep, String topic, Throwable cause) {
+
+        logger.log(Level.WARNING, "Delivery of message(s) to topic [{0}] failed: {1}", new Object[] {topic,
+                (cause != null) ? cause.getMessage() : null});
+
+        HashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTableCopy = new HashMap<NodeDescriptor, NeighbourChannels>(
+                neighbourChannelsTable);
+
+        /* For each neighbour connected via the end point... */
+        for (NodeDescriptor nodeDescriptor : neighbourChannelsTableCopy.keySet()) {
+
+            if (neighbourChannelsTableCopy.get(nodeDescriptor).neighbourEndPoint().getConfig() == ep.getConfig()) {
+
+                /*
+                 * Messages to the neighbour may have been lost, so tell the Connection Manager that it has disconnected
+                 * (triggering the clean-up actions registered for it, e.g. for subscriptions routed via it)
+                 */
+
+                logger.log(Level.INFO, "Reporting loss of messages to neighbour [{0}] as a disconnection",
+                        nodeDescriptor.name());
+
+                try {
+                    IConnectionMessage disconnectionMessage = new ConnectionMessage(nodeDescriptor.name(),
+                            IServiceMessage.EVENT_DISCONNECTED);
+                    ioChannels.sendCommandsChannel.write(disconnectionMessage.toWireBytes());
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Cannot report disconnection of neighbour [{0}]: {1}", new Object[] {
+                            nodeDescriptor.name(), e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,269 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Partitions in-bound Fabric messages across a fixed pool of ordered worker lanes.
+ * <p>
+ * Each unit of work is submitted with a partition key (typically the feed topic of the message).
+ * All work with the same key is handled by the same lane, and therefore in arrival order, while work for different
+ * keys can be handled in parallel. Each lane has a bounded queue; when it is full the submitting thread blocks, pushing
+ * back on the broker connection rather than growing the heap.
+ * </p>
+ */
+public class IngestPipeline {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** Queued to wake an idle lane once the pipeline has been stopped. */
+    private static final Runnable STOP = new Runnable() {
+
+        @Override
+        public void run() {
+        }
+    };
+
+    /*
+     * Class fields
+     */
+
+    /** The logger for this instance. */
+    private final Logger logger;
+
+    /** The worker lanes. */
+    private final Lane[] lanes;
+
+    /** Flag indicating if the pipeline is accepting work. */
+    private volatile boolean isRunning = true;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A single ordered worker lane.
+     */
+    private class Lane implements Runnable {
+
+        /** The queue of work for this lane. */
+        private final BlockingQueue<Runnable> queue;
+
+        /** The worker thread for this lane. */
+        private final Thread worker;
+
+        /**
+         * Constructs a new lane.
+         *
+         * @param name
+         *            the name of the worker thread.
+         *
+         * @param queueSize
+         *            the maximum number of queued work items.
+         */
+        Lane(String name, int queueSize) {
+
+            queue = new ArrayBlockingQueue<Runnable>(queueSize);
+            worker = new Thread(this, name);
+            worker.setDaemon(true);
+
+        }
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+
+            /* Once the pipeline has been stopped, finish the work already queued and exit */
+            while (isRunning || !queue.isEmpty()) {
+
+                Runnable next = null;
+
+                try {
+
+                    next = queue.take();
+
+                } catch (InterruptedException e) {
+
+                    /* The lane is stopped via its queue, not by interruption */
+                    continue;
+
+                }
+
+                if (next == STOP) {
+                    break;
+                }
+
+                runSafely(next);
+            }
+        }
+
+        /**
+         * Runs a work item, logging rather than propagating any exception.
+         *
+         * @param work
+         *            the work item.
+         */
+        private void runSafely(Runnable work) {
+
+            try {
+                work.run();
+            } catch (Throwable t) {
+                logger.log(Level.WARNING, "Unhandled exception in ingest lane [{0}]: {1}", new Object[] {
+                        Thread.currentThread().getName(), t.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", t);
+            }
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs and starts a new pipeline.
+     *
+     * @param name
+     *            the base name for the worker threads.
+     *
+     * @param laneCount
+     *            the number of lanes (must be at least one).
+     *
+     * @param queueSize
+     *            the maximum number of queued work items per lane.
+     *
+     * @param logger
+     *            the logger to use.
+     */
+    public IngestPipeline(String name, int laneCount, int queueSize, Logger logger) {
+
+        this.logger = logger;
+
+        lanes = new Lane[Math.max(1, laneCount)];
+
+        for (int l = 0; l < lanes.length; l++) {
+            lanes[l] = new Lane(name + '-' + l, Math.max(1, queueSize));
+        }
+
+        for (int l = 0; l < lanes.length; l++) {
+            lanes[l].worker.start();
+        }
+
+        logger.log(Level.FINE, "Ingest pipeline [{0}] started with {1} lane(s)", new Object[] {name, lanes.length});
+
+    }
+
+    /**
+     * Answers the number of lanes in this pipeline.
+     *
+     * @return the lane count.
+     */
+    public int laneCount() {
+
+        return lanes.length;
+
+    }
+
+    /**
+     * Answers <code>true</code> if the calling thread is one of the worker threads of this pipeline, i.e. if it is
+     * already handling work submitted to a lane.
+     *
+     * @return <code>true</code> if called from a lane, <code>false</code> otherwise.
+     */
+    public boolean isLaneThread() {
+
+        Thread current = Thread.currentThread();
+
+        for (int l = 0; l < lanes.length; l++) {
+            if (lanes[l].worker == current) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Queues a unit of work on the lane selected by the partition key, blocking if the lane is full.
+     *
+     * @param key
+     *            the partition key; work items with equal keys are handled in submission order.
+     *
+     * @param work
+     *            the work to perform.
+     *
+     * @return <code>true</code> if the work was queued, <code>false</code> if the pipeline has been stopped.
+     */
+    public boolean submit(Object key, Runnable work) {
+
+        if (!isRunning) {
+            return false;
+        }
+
+        Lane lane = lanes[lane(key)];
+
+        try {
+
+            lane.queue.put(work);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            return false;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Answers the index of the lane responsible for the specified partition key.
+     *
+     * @param key
+     *            the partition key.
+     *
+     * @return the lane index.
+     */
+    private int lane(Object key) {
+
+        if (key == null || lanes.length == 1) {
+            return 0;
+        }
+
+        /* Spread the hash bits so that keys with similar prefixes (e.g. topics) are distributed evenly */
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % lanes.length;
+
+    }
+
+    /**
+     * Stops the pipeline, allowing queued work (including any work in progress) to complete.
+     */
+    public void stop() {
+
+        isRunning = false;
+
+        /* Wake any idle lanes (a lane whose queue is full will exit once it has emptied it) */
+        for (int l = 0; l < lanes.length; l++) {
+            lanes[l].queue.offer(STOP);
+        }
+    }
+}
@@ -198,8 +198,8 @@ public abstract class FabricMessageFactory {
     public static IFabricMessage create(String topic, byte[] wireBytes) throws ClassNotFoundException,
         IllegalAccessException, InstantiationException, Exception {
 
-        /* Currently the wire format is just a byte array representation of an XML document */
-        XML messageXML = new XML(wireBytes);
+        /* The wire format is either an XML document or its binary encoding, as indicated by the leading byte */
+        XML messageXML = WireFormat.of(wireBytes).decode(wireBytes);
         return create(topic, messageXML);
 
     }
@@ -158,6 +158,19 @@ public interface IFabricMessage extends IEmbeddedXML, IWireXML {
 	 */
 	public byte[] toWireBytes() throws Exception;
 
+	/**
+	 * Gets the wire form of the message in the specified format.
+	 * 
+	 * @param format
+	 *            the wire format.
+	 * 
+	 * @return the wire message bytes.
+	 * 
+	 * @throws Exception
+	 *             thrown if the conversion into the wire format fails.
+	 */
+	public byte[] toWireBytes(WireFormat format) throws Exception;
+
 	/**
 	 * Gets the flag indicating if this instance has been modified since it was created of the flag has been reset.
 	 * 
@@ -0,0 +1,154 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.messages;
+
+import fabric.core.xml.BinaryXML;
+import fabric.core.xml.XML;
+
+/**
+ * Enumerated type representing the encodings used to send Fabric messages over the wire.
+ * <p>
+ * Possible formats are:
+ * <ul>
+ * <li><strong>XML:</strong> the message as an XML document (binary payloads are Base 64 encoded).</li>
+ * <li><strong>BINARY:</strong> the message document in the compact encoding provided by {@link BinaryXML} (binary
+ * payloads are carried as-is), preceded by a magic byte and a version number.</li>
+ * </ul>
+ * The magic byte (<code>0xFB</code>) can never start a UTF-8 encoded XML document, so the format of a received message
+ * can always be determined from its first byte.
+ * </p>
+ */
+public enum WireFormat {
+    XML, BINARY;
+
+    /*
+     * Class constants
+     */
+
+    /** The first byte of a message in the binary format. */
+    public static final byte BINARY_MAGIC = (byte) 0xFB;
+
+    /** The version of the binary format generated by this node. */
+    public static final byte BINARY_VERSION = 1;
+
+    /** The header written at the start of a message in the binary format. */
+    private static final byte[] BINARY_HEADER = new byte[] {BINARY_MAGIC, BINARY_VERSION};
+
+    /** The list of formats supported by this node, as advertised to its neighbours. */
+    public static final String SUPPORTED = "xml,binary/" + BINARY_VERSION;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Encodes a message document in this format.
+     *
+     * @param messageXML
+     *            the message document.
+     *
+     * @return the wire bytes.
+     */
+    public byte[] encode(XML messageXML) {
+
+        return (this == BINARY) ? BinaryXML.encode(messageXML, BINARY_HEADER) : messageXML.toBytes();
+
+    }
+
+    /**
+     * Decodes a message document received in this format.
+     *
+     * @param wireBytes
+     *            the wire bytes.
+     *
+     * @return the message document.
+     *
+     * @throws Exception
+     *             thrown if the message cannot be decoded.
+     */
+    public XML decode(byte[] wireBytes) throws Exception {
+
+        XML messageXML = null;
+
+        if (this == BINARY) {
+
+            if (wireBytes.length < BINARY_HEADER.length || wireBytes[1] > BINARY_VERSION) {
+                throw new IllegalArgumentException("Unsupported binary wire format version");
+            }
+
+            messageXML = BinaryXML.decode(wireBytes, BINARY_HEADER.length);
+
+        } else {
+
+            messageXML = new XML(wireBytes);
+
+        }
+
+        return messageXML;
+
+    }
+
+    /**
+     * Answers the format of a received message.
+     *
+     * @param wireBytes
+     *            the wire bytes.
+     *
+     * @return the format.
+     */
+    public static WireFormat of(byte[] wireBytes) {
+
+        return (wireBytes != null && wireBytes.length > 0 && wireBytes[0] == BINARY_MAGIC) ? BINARY : XML;
+
+    }
+
+    /**
+     * Answers the format to use when sending messages to a neighbour.
+     *
+     * @param preferred
+     *            the preferred format of this node (a configuration value, for example "<code>binary</code>").
+     *
+     * @param neighbourSupported
+     *            the list of formats advertised by the neighbour, or <code>null</code> if it has not advertised any
+     *            (for example because it pre-dates the binary format).
+     *
+     * @return the format to use.
+     */
+    public static WireFormat negotiate(String preferred, String neighbourSupported) {
+
+        WireFormat format = XML;
+
+        if (preferred != null && preferred.trim().equalsIgnoreCase(BINARY.name()) && neighbourSupported != null) {
+
+            for (String supported : neighbourSupported.split(",")) {
+
+                /* Each entry is of the form "name[/version]" */
+                String[] parts = supported.trim().split("/");
+
+                if (parts[0].equalsIgnoreCase(BINARY.name())) {
+
+                    /* The neighbour must be able to read the version generated by this node */
+                    int version = 1;
+
+                    try {
+                        version = (parts.length > 1) ? Integer.parseInt(parts[1]) : 1;
+                    } catch (NumberFormatException e) {
+                        version = 0;
+                    }
+
+                    if (version >= BINARY_VERSION) {
+                        format = BINARY;
+                    }
+                }
+            }
+        }
+
+        return format;
+
+    }
+}
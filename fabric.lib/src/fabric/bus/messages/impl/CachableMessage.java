@@ -49,6 +49,16 @@ public class CachableMessage extends ServiceMessage {
 
 	}
 	
+	/**
+	 * Constructs a new instance that is a structural copy of an existing instance.
+	 * 
+	 * @param source
+	 *            the instance to copy.
+	 */
+	protected CachableMessage(CachableMessage source) {
+		super(source);
+	}
+	
 	/**
 	 * Sets the source property of the message
 	 * @param src
@@ -43,23 +43,15 @@ public class ClientNotificationMessage extends NotificationMessage implements IC
     }
 
     /**
-     * Constructs a new instance based upon an existing instance.
+     * Constructs a new instance that is a structural copy of an existing instance.
      * 
      * @param source
-     *            the routing instance to replicate.
+     *            the instance to copy.
      */
     public ClientNotificationMessage(ClientNotificationMessage source) {
 
         super(source);
 
-        setActor(source.getProperty(PROPERTY_ACTOR));
-        setActorPlatform(source.getProperty(PROPERTY_ACTOR_PLATFORM));
-
-        construct();
-
-        /* These changes shouldn't be reflected in the instance's "modified" status as this is a new instance */
-        metaResetModified();
-
     }
 
     /**
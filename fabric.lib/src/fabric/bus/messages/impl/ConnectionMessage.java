@@ -47,6 +47,18 @@ public class ConnectionMessage extends ServiceMessage implements IConnectionMess
 
     }
 
+    /**
+     * Constructs a new instance that is a structural copy of an existing instance.
+     *
+     * @param source
+     *            the instance to copy.
+     */
+    protected ConnectionMessage(ConnectionMessage source) {
+
+        super(source);
+
+    }
+
     /**
      * Constructs a new instance.
      *
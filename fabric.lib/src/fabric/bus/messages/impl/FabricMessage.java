@@ -8,8 +8,10 @@
 package fabric.bus.messages.impl;
 
 import java.beans.PropertyChangeEvent;
+import java.lang.reflect.Constructor;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +21,7 @@ import fabric.bus.messages.FabricMessageFactory;
 import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.IMessagePayload;
 import fabric.bus.messages.IReplicate;
+import fabric.bus.messages.WireFormat;
 import fabric.bus.routing.IRouting;
 import fabric.bus.routing.MessageRoutingFactory;
 import fabric.core.xml.XML;
@@ -41,6 +44,12 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
     /** The XML namespace synchronization lock. */
     private static Object xmlNamespaceLock = new Object();
 
+    /**
+     * Cache of the copy constructors used by <code>replicate()</code>, keyed by message class. Classes that do not
+     * declare a copy constructor map to <code>Boolean.FALSE</code> and are replicated via their XML form.
+     */
+    private static final ConcurrentHashMap<Class<?>, Object> copyConstructors = new ConcurrentHashMap<Class<?>, Object>();
+
     /*
      * Class fields
      */
@@ -117,6 +126,58 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
 
     }
 
+    /**
+     * Constructs a new instance that is a structural copy of an existing instance.
+     * <p>
+     * The mutable parts of the message (properties, routing and payload wrapper) are replicated; immutable content,
+     * such as the payload itself, is shared with the source. Subclasses must call {@link #metaInitReplica(FabricMessage)}
+     * once they have copied their own fields.
+     * </p>
+     *
+     * @param source
+     *            the instance to copy.
+     */
+    protected FabricMessage(FabricMessage source) {
+
+        super(Logger.getLogger("fabric.bus.messages"));
+
+        type = source.type;
+        compactType = source.compactType;
+        uid = source.uid;
+        correlationID = source.correlationID;
+        topic = source.topic;
+
+        setProperties((source.properties != null) ? (MessageProperties) source.properties.replicate() : null);
+        setRouting((source.routing != null) ? (IRouting) source.routing.replicate() : null);
+        setPayload((source.payload != null) ? (IMessagePayload) source.payload.replicate() : null);
+
+        metaProperties.putAll(source.metaProperties);
+
+        metaInitReplica(source);
+
+        /* Listen for changes to embedded objects */
+        addChangeListener(this);
+
+    }
+
+    /**
+     * Completes the construction of a replica.
+     * <p>
+     * The replica is marked as unmodified and shares the cached XML form of its source. The cache is never updated in
+     * place, so it remains valid for both instances until one of them is modified, at which point that instance simply
+     * drops its reference.
+     * </p>
+     *
+     * @param source
+     *            the instance from which this replica was made.
+     */
+    protected void metaInitReplica(FabricMessage source) {
+
+        isModified = false;
+        xmlCache = source.xmlCache;
+
+    }
+
     /**
      * @see fabric.bus.messages.IFabricMessage#type()
      */
@@ -446,6 +507,16 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
 
     }
 
+    /**
+     * @see fabric.bus.messages.IFabricMessage#toWireBytes(fabric.bus.messages.WireFormat)
+     */
+    @Override
+    public byte[] toWireBytes(WireFormat format) throws Exception {
+
+        return format.encode(toXML());
+
+    }
+
     /**
      * Invalidates the cached XML for this message.
      */
@@ -583,6 +654,13 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
     }
 
     /**
+     * Answers a replica of this message.
+     * <p>
+     * If the class of this instance declares a copy constructor (a constructor taking a single argument of the same
+     * class) then it is used to build a structural copy. Otherwise the replica is built from the XML form of the
+     * message.
+     * </p>
+     *
      * @see fabric.bus.messages.IReplicate#replicate()
      */
     @Override
@@ -591,8 +669,20 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
         IFabricMessage replica = null;
 
         try {
-            XML messageXML = toXML();
-            replica = FabricMessageFactory.create(metaGetTopic(), messageXML);
+
+            Constructor<?> copyConstructor = copyConstructor(getClass());
+
+            if (copyConstructor != null) {
+
+                replica = (IFabricMessage) copyConstructor.newInstance(this);
+
+            } else {
+
+                XML messageXML = toXML();
+                replica = FabricMessageFactory.create(metaGetTopic(), messageXML);
+
+            }
+
         } catch (Exception e) {
             logger.log(Level.FINE, "Failed to replicate message: {0}", e.getMessage());
             logger.log(Level.FINEST, "Full exception:\n", e);
@@ -601,4 +691,39 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
         return replica;
 
     }
+
+    /**
+     * Answers the copy constructor for the specified message class.
+     *
+     * @param messageClass
+     *            the class.
+     *
+     * @return the constructor, or <code>null</code> if the class does not declare one.
+     */
+    private static Constructor<?> copyConstructor(Class<?> messageClass) {
+
+        Object copyConstructor = copyConstructors.get(messageClass);
+
+        /* If we haven't looked for this class's copy constructor yet... */
+        if (copyConstructor == null) {
+
+            try {
+
+                Constructor<?> constructor = messageClass.getDeclaredConstructor(messageClass);
+                constructor.setAccessible(true);
+                copyConstructor = constructor;
+
+            } catch (Exception e) {
+
+                copyConstructor = Boolean.FALSE;
+
+            }
+
+            copyConstructors.put(messageClass, copyConstructor);
+
+        }
+
+        return (copyConstructor instanceof Constructor) ? (Constructor<?>) copyConstructor : null;
+
+    }
 }
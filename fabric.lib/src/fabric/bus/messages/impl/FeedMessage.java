@@ -61,6 +61,23 @@ public class FeedMessage extends FabricMessage implements IFeedMessage {
 
     }
 
+    /**
+     * Constructs a new instance that is a structural copy of an existing instance.
+     *
+     * @param source
+     *            the instance to copy.
+     */
+    protected FeedMessage(FeedMessage source) {
+
+        super(source);
+
+        serviceDescriptor = source.serviceDescriptor;
+        setSubscriptions((TaskSubscriptions) source.subscriptions.replicate());
+
+        metaInitReplica(source);
+
+    }
+
     /**
      * @see fabric.bus.messages.impl.FabricMessage#init(java.lang.String, fabric.core.xml.XML)
      */
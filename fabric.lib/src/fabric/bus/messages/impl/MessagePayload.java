@@ -73,6 +73,11 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
     /**
      * Constructs a new instance, initialized from the specified instance.
+     * <p>
+     * Text and binary payloads are shared with the source rather than copied: the payload is never modified in place
+     * (the setters replace it), so sharing is safe as long as callers do not alter the array returned by
+     * <code>getPayloadBytes()</code>. XML payloads are replicated.
+     * </p>
      *
      * @param source
      *            the instance to copy.
@@ -94,7 +99,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
                 case PAYLOAD_XML:
 
-                    IReplicate sourceXML = (IReplicate) payload;
+                    IReplicate sourceXML = (IReplicate) source.payload;
                     payload = sourceXML.replicate();
                     break;
 
@@ -106,15 +111,13 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
                 case PAYLOAD_BYTES:
 
-                    byte[] sourceBytes = (byte[]) source.payload;
-                    payload = new byte[sourceBytes.length];
-                    System.arraycopy(sourceBytes, 0, payload, 0, sourceBytes.length);
+                    payload = source.payload;
                     break;
 
             }
         }
 
-        xmlCache = null;
+        xmlCache = source.xmlCache;
     }
 
     /**
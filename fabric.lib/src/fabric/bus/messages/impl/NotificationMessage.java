@@ -44,6 +44,18 @@ public class NotificationMessage extends ServiceMessage implements INotification
 
     }
 
+    /**
+     * Constructs a new instance that is a structural copy of an existing instance.
+     *
+     * @param source
+     *            the instance to copy.
+     */
+    protected NotificationMessage(NotificationMessage source) {
+
+        super(source);
+
+    }
+
     /**
      * Constructs a new instance associated with the specified service message.
      * <p>
@@ -42,6 +42,18 @@ public class PlatformNotificationMessage extends ServiceMessage implements IPlat
 
 	}
 
+	/**
+	 * Constructs a new instance that is a structural copy of an existing instance.
+	 * 
+	 * @param source
+	 *            the instance to copy.
+	 */
+	protected PlatformNotificationMessage(PlatformNotificationMessage source) {
+
+		super(source);
+
+	}
+
 	/**
 	 * Initializes an instance.
 	 */
@@ -78,6 +78,28 @@ public class ServiceMessage extends FabricMessage implements IServiceMessage {
 
     }
 
+    /**
+     * Constructs a new instance that is a structural copy of an existing instance.
+     *
+     * @param source
+     *            the instance to copy.
+     */
+    protected ServiceMessage(ServiceMessage source) {
+
+        super(source);
+
+        serviceFamilyName = source.serviceFamilyName;
+        serviceName = source.serviceName;
+        compactServiceName = source.compactServiceName;
+        actionEnRoute = source.actionEnRoute;
+        notification = source.notification;
+        notificationTimeout = source.notificationTimeout;
+        setServiceList((source.serviceList != null) ? (ServiceList) source.serviceList.replicate() : null);
+
+        metaInitReplica(source);
+
+    }
+
     /**
      * @see fabric.bus.messages.impl.FabricMessage#init(java.lang.String, fabric.core.xml.XML)
      */
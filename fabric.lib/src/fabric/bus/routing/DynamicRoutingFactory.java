@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2012
+ * (C) Copyright IBM Corp. 2012, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -8,198 +8,338 @@
 package fabric.bus.routing;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import fabric.Fabric;
 import fabric.registry.FabricRegistry;
 import fabric.registry.Node;
 import fabric.registry.NodeNeighbour;
 import fabric.registry.QueryScope;
-import fabric.registry.exception.RegistryQueryException;
+import fabric.registry.RegistryCache;
 
+/**
+ * Routing factory that determines the shortest available path between two nodes.
+ * <p>
+ * The topology of the Fabric (the available nodes and the links between them) is read from the Registry once and held
+ * in memory, as are the shortest path trees calculated from it (one per source node, giving the routes to every
+ * reachable node). Both are held in <code>RegistryCache</code>s, so they are recalculated, on demand, when the
+ * <code>NODES</code> or <code>NODE_NEIGHBOURS</code> tables are updated. Route lookups therefore do not normally
+ * require a Registry query.
+ * </p>
+ * <p>
+ * The cost of a link is its smoothed round trip time where this has been measured (see
+ * <code>NeighbourTopology</code>), and the value configured by <code>routing.dynamic.linkCost</code> (in milliseconds,
+ * default 50) otherwise; costs are taken at the time a path tree is calculated. Links marked as unavailable in the
+ * Registry are not used, and if the shortest path passes through a neighbour that the Connection Manager has reported
+ * as disconnected then an alternative is used: a shortest path tree in which disconnected neighbours can only be the
+ * end of a route. These trees are cached by source node and the set of neighbours currently disconnected, so they are
+ * recalculated (in full) only when that set or the topology changes. A route that ends at a disconnected neighbour is
+ * left unchanged, so that messages for it can be held until it reconnects.
+ * </p>
+ */
 public class DynamicRoutingFactory implements IRoutingFactory {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012, 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The key of the topology graph in its cache. */
+    private static final String GRAPH_KEY = "graph";
+
+    /** The lowest cost given to a link, so that the number of hops is always significant. */
+    private static final double MINIMUM_LINK_COST = 1;
+
+    /*
+     * Class static fields
+     */
+
+    /** The topology graph, mapping the ID of each available node to the IDs of its available neighbours. */
+    private static final RegistryCache<String, Map<String, String[]>> graphCache =
+            new RegistryCache<String, Map<String, String[]>>("routingGraph", QueryScope.DISTRIBUTED,
+                    FabricRegistry.NODES, FabricRegistry.NODE_NEIGHBOURS);
+
+    /** Shortest path trees keyed by source node, mapping each reachable node to its predecessor on the path. */
+    private static final RegistryCache<String, Map<String, String>> pathCache =
+            new RegistryCache<String, Map<String, String>>("routingPaths", QueryScope.DISTRIBUTED,
+                    FabricRegistry.NODES, FabricRegistry.NODE_NEIGHBOURS);
+
+    /**
+     * Shortest path trees avoiding disconnected neighbours, keyed by source node and the (sorted) IDs of the neighbours
+     * disconnected when they were calculated.
+     */
+    private static final RegistryCache<String, Map<String, String>> avoidingPathCache =
+            new RegistryCache<String, Map<String, String>>("routingAvoidingPaths", QueryScope.DISTRIBUTED,
+                    FabricRegistry.NODES, FabricRegistry.NODE_NEIGHBOURS);
+
+    /** The cost of a link whose round trip time has not been measured, or <code>-1</code> if not yet known. */
+    private static double defaultLinkCost = -1;
+
+    private final static Logger logger = Logger.getLogger("fabric.bus.routing");
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A node waiting to be visited, with its distance from the source node.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+
+        final String node;
+
+        final double distance;
+
+        Candidate(String node, double distance) {
+
+            this.node = node;
+            this.distance = distance;
+
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+
+            return Double.compare(distance, other.distance);
+        }
+    }
 
+    /*
+     * Class methods
+     */
+
+    /**
+     * @see fabric.bus.routing.IRoutingFactory#getRouteNodes(java.lang.String, java.lang.String)
+     */
     @Override
     public String[] getRouteNodes(String startNode, String endNode) {
-        /*
-         * This is a simple implementation of Dijkstra's Algorithm to determine the shortest available path between the
-         * specified nodes. It current assumes a constant fixed weight for each edge in the network. It could be adapted
-         * to take into account attributes of the network, such as bandwidth/reliability. All routes get the same
-         * Ordinal value (1).
-         */
 
-        String[] result = new String[] {};
+        String[] route = new String[] {};
 
-        // A set of all nodes that tracks which ones have not yet been examined
-        HashSet<String> unvisited = new HashSet<String>();
+        if (startNode.equals(endNode)) {
+            return new String[] {startNode};
+        }
 
         try {
-            Node[] nodes = FabricRegistry.getNodeFactory().getNodes("AVAILABILITY='AVAILABLE'");
-            for (int i = 0; i < nodes.length; i++) {
-                unvisited.add(nodes[i].getId());
-            }
-        } catch (RegistryQueryException rqe) {
-            // Never actually thrown
-        }
 
-        // Get the complete set of node neighbours
-        NodeNeighbour[] nn = FabricRegistry.getNodeNeighbourFactory(QueryScope.DISTRIBUTED).getAllNeighbours();
+            Map<String, String> paths = pathCache.get(startNode,
+                    new RegistryCache.Loader<String, Map<String, String>>() {
 
-        // An edge map of the network; maps from node to a list of its neighbours
-        HashMap<String, ArrayList<NodeNeighbour>> graph = new HashMap<String, ArrayList<NodeNeighbour>>();
+                        @Override
+                        public Map<String, String> load(String key) throws Exception {
 
-        for (int i = 0; i < nn.length; i++) {
-            if (unvisited.contains(nn[i].getNodeId()) && unvisited.contains(nn[i].getNeighbourId())) {
-                ArrayList<NodeNeighbour> edgeList = graph.get(nn[i].getNodeId());
-                if (edgeList == null) {
-                    edgeList = new ArrayList<NodeNeighbour>();
+                            return shortestPaths(key, false);
+                        }
+                    });
+
+            route = route(paths, startNode, endNode);
+
+            /* If the route passes through (not just to) a disconnected neighbour then look for an alternative */
+            for (int n = 1; n < route.length - 1; n++) {
+                if (NeighbourTopology.isDisconnected(route[n])) {
+                    logger.log(Level.FINER, "Route from [{0}] to [{1}] passes through disconnected node [{2}]",
+                            new Object[] {startNode, endNode, route[n]});
+                    route = route(avoidingPaths(startNode), startNode, endNode);
+                    break;
                 }
-                edgeList.add(nn[i]);
-                graph.put(nn[i].getNodeId(), edgeList);
             }
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot determine the route from [{0}] to [{1}]: {2}", new Object[] {startNode,
+                    endNode, e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+
         }
 
-        // Assume a fixed weight for all edges. In the future, this could take into account
-        // additional information about the edge such as bandwidth/latency.
-        //
-        int fixedWeight = 1;
-
-        // A map of node name to current shortest distance from the source node
-        HashMap<String, Integer> dist = new HashMap<String, Integer>();
-        // A map of node name to a list of nodes that could immediately precede it in the
-        // shortest path. A list is used as there could be more than one path with the
-        // shortest distance.
-        HashMap<String, ArrayList<String>> previous = new HashMap<String, ArrayList<String>>();
-
-        String source = startNode;
-        String target = endNode;
-
-        dist.put(source, 0);
-        unvisited.remove(source);
-
-        String current = source;
-
-        // While there are still nodes to consider
-        while (unvisited.size() > 0) {
-            // Get the list of neighbours of the current node
-            ArrayList<NodeNeighbour> nodeEdges = graph.get(current);
-            if (nodeEdges != null) {
-                // For each neighbour, if it has not yet been processed, check
-                // if we have a new shortest path to it and update the structures
-                // accordingly.
-                for (int i = 0; i < nodeEdges.size(); i++) {
-                    String neighbour = nodeEdges.get(i).getNeighbourId();
-                    if (unvisited.contains(neighbour)) {
-                        int newDistance = dist.get(current) + fixedWeight;
-                        if (!dist.containsKey(neighbour) || newDistance < dist.get(neighbour)) {
-                            dist.put(neighbour, newDistance);
-                            ArrayList<String> list = new ArrayList<String>();
-                            list.add(current);
-                            previous.put(neighbour, list);
-                        } else if (newDistance == dist.get(neighbour)) {
-                            previous.get(neighbour).add(current);
-                        }
-                    }
-                }
-            }
-            // Remove the current node as it has now been processed
-            unvisited.remove(current);
+        return route;
+    }
+
+    /**
+     * Answers the shortest path tree from a node that avoids passing through disconnected neighbours, calculating it if
+     * the cached tree (if any) was calculated for a different set of disconnected neighbours.
+     *
+     * @param source
+     *            the source node.
+     *
+     * @return the shortest path tree, mapping each reachable node to its predecessor on the path from the source.
+     *
+     * @throws Exception
+     *             thrown if the topology cannot be read from the Registry.
+     */
+    private static Map<String, String> avoidingPaths(final String source) throws Exception {
+
+        String[] avoided = NeighbourTopology.disconnectedNeighbours();
+        StringBuilder cacheKey = new StringBuilder(source);
+
+        for (int a = 0; a < avoided.length; a++) {
+            cacheKey.append('\n').append(avoided[a]);
+        }
+
+        return avoidingPathCache.get(cacheKey.toString(), new RegistryCache.Loader<String, Map<String, String>>() {
+
+            @Override
+            public Map<String, String> load(String key) throws Exception {
 
-            if (current.equals(target)) {
-                // Reached the target node so nothing more to do
-                break;
+                return shortestPaths(source, true);
             }
+        });
+    }
+
+    /**
+     * Calculates the shortest paths from a node to all of the nodes reachable from it (Dijkstra's algorithm).
+     *
+     * @param source
+     *            the source node.
+     *
+     * @param excludeDisconnected
+     *            <code>true</code> if routes are not to pass through neighbours reported as disconnected (although they
+     *            can still end at them), <code>false</code> otherwise.
+     *
+     * @return the shortest path tree, mapping each reachable node to its predecessor on the path from the source.
+     *
+     * @throws Exception
+     *             thrown if the topology cannot be read from the Registry.
+     */
+    private static Map<String, String> shortestPaths(String source, boolean excludeDisconnected) throws Exception {
+
+        Map<String, String[]> graph = graphCache.get(GRAPH_KEY,
+                new RegistryCache.Loader<String, Map<String, String[]>>() {
 
-            // Find the next unvisited node with the shortest path
-            // to the source calculated so far and use it as the
-            // next node for processing.
-            Iterator<String> it = unvisited.iterator();
-            int minD = Integer.MAX_VALUE;
-            while (it.hasNext()) {
-                String n = it.next();
-                if (dist.containsKey(n)) {
-                    int d = dist.get(n);
-                    if (d < minD) {
-                        minD = d;
-                        current = n;
+                    @Override
+                    public Map<String, String[]> load(String key) throws Exception {
+
+                        return loadGraph();
                     }
-                }
+                });
+
+        if (defaultLinkCost == -1) {
+            defaultLinkCost = Double.parseDouble(new Fabric().config("routing.dynamic.linkCost", "50"));
+        }
+
+        HashMap<String, Double> distances = new HashMap<String, Double>();
+        HashMap<String, String> previous = new HashMap<String, String>();
+        HashSet<String> visited = new HashSet<String>();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<Candidate>();
+
+        distances.put(source, 0.0);
+        candidates.add(new Candidate(source, 0));
+
+        while (!candidates.isEmpty()) {
+
+            Candidate current = candidates.poll();
+
+            /* Skip stale entries for nodes already reached by a shorter path */
+            if (!visited.add(current.node)) {
+                continue;
             }
 
-            if (minD == Integer.MAX_VALUE) {
-                // If none of the unvisited nodes has been reached,
-                // they are not connected to the source node.
-                break;
+            /* A disconnected neighbour can be the end of a route, but not a hop on the way to another node */
+            if (excludeDisconnected && !current.node.equals(source) && NeighbourTopology.isDisconnected(current.node)) {
+                continue;
             }
-        }
 
-        if (current.equals(target)) {
-            // If we have reached the target node, need to back-track through the 'previous'
-            // map to find the routes.
-            // As there could be more than one route with the same distance, we need to
-            // build each path separately.
-
-            // A set of complete paths from source to target
-            Set<ArrayList<Object>> completePaths = new HashSet<ArrayList<Object>>();
-
-            // A set of paths that end at target, but have not yet been fully back-tracked
-            // to the source
-            Set<ArrayList<Object>> incompletePaths = new HashSet<ArrayList<Object>>();
-
-            // Start with a single path containing the target node
-            ArrayList<Object> l = new ArrayList<Object>();
-            l.add(target);
-            incompletePaths.add(l);
-
-            // While there are still paths to complete back-tracking to source
-            while (!incompletePaths.isEmpty()) {
-                ArrayList<Object> path = incompletePaths.iterator().next();
-                if (path.get(0) instanceof String) {
-                    // If the first element is a String then it is a single node.
-                    String n = (String) path.get(0);
-                    if (previous.containsKey(n)) {
-                        // If there is a previous entry to this one, prepend it
-                        // to the path
-                        path.add(0, previous.get(n));
-                    } else {
-                        // No previous entry means we have reached the source.
-                        // Move this incompletePath to the completePaths set
-                        incompletePaths.remove(path);
-                        completePaths.add(path);
-                    }
-                } else if (path.get(0) instanceof ArrayList) {
-                    // If the first element is a List, then it is a list of nodes
-                    // that could precede this one.
-
-                    // Get the list of previous Nodes, removing it from the path
-                    ArrayList<String> previousNodes = (ArrayList<String>) path.remove(0);
-                    // Remove this incompletePath as we're about to fork a number
-                    // of new incompletePaths
-                    incompletePaths.remove(path);
-                    Iterator<String> it = previousNodes.iterator();
-                    while (it.hasNext()) {
-                        // For each previous node, create a copy of the current incomplete
-                        // path and prepend the previous node
-                        String n = it.next();
-                        ArrayList<Object> newPath = (ArrayList<Object>) path.clone();
-                        newPath.add(0, n);
-                        incompletePaths.add(newPath);
-                    }
+            String[] neighbours = graph.get(current.node);
+
+            for (int n = 0; neighbours != null && n < neighbours.length; n++) {
+
+                String neighbour = neighbours[n];
+
+                if (visited.contains(neighbour)) {
+                    continue;
+                }
+
+                double cost = NeighbourTopology.roundTripTime(current.node, neighbour);
+                double distance = current.distance + Math.max(MINIMUM_LINK_COST, (cost < 0) ? defaultLinkCost : cost);
+                Double known = distances.get(neighbour);
+
+                if (known == null || distance < known) {
+                    distances.put(neighbour, distance);
+                    previous.put(neighbour, current.node);
+                    candidates.add(new Candidate(neighbour, distance));
                 }
             }
+        }
 
-            if (completePaths.size() > 0) {
-                ArrayList<Object> path = completePaths.iterator().next();
-                result = path.toArray(result);
+        return Collections.unmodifiableMap(previous);
+    }
+
+    /**
+     * Answers the route between two nodes from a shortest path tree.
+     *
+     * @param paths
+     *            the shortest path tree for the start node.
+     *
+     * @param startNode
+     *            the start node.
+     *
+     * @param endNode
+     *            the end node.
+     *
+     * @return the nodes on the route, or an empty array if the end node is not reachable.
+     */
+    private static String[] route(Map<String, String> paths, String startNode, String endNode) {
+
+        ArrayList<String> route = new ArrayList<String>();
+
+        for (String node = endNode; node != null; node = paths.get(node)) {
+
+            route.add(node);
+
+            if (node.equals(startNode)) {
+                Collections.reverse(route);
+                return route.toArray(new String[route.size()]);
             }
         }
 
-        return result;
+        return new String[] {};
     }
 
+    /**
+     * Reads the topology graph from the Registry.
+     *
+     * @return the graph, mapping the ID of each available node to the IDs of its available neighbours.
+     */
+    private static Map<String, String[]> loadGraph() throws Exception {
+
+        Node[] nodes = FabricRegistry.getNodeFactory().getNodes("AVAILABILITY='AVAILABLE'");
+        HashMap<String, LinkedHashSet<String>> edges = new HashMap<String, LinkedHashSet<String>>();
+
+        for (int n = 0; n < nodes.length; n++) {
+            edges.put(nodes[n].getId(), new LinkedHashSet<String>());
+        }
+
+        /* Get the complete set of node neighbours */
+        NodeNeighbour[] nn = FabricRegistry.getNodeNeighbourFactory(QueryScope.DISTRIBUTED).getAllNeighbours();
+
+        for (int n = 0; nn != null && n < nn.length; n++) {
+
+            LinkedHashSet<String> neighbours = edges.get(nn[n].getNodeId());
+
+            if (neighbours != null && edges.containsKey(nn[n].getNeighbourId())
+                    && !NodeNeighbour.UNAVAILABLE.equals(nn[n].getAvailability())
+                    && !nn[n].getNeighbourId().equals(nn[n].getNodeId())) {
+                neighbours.add(nn[n].getNeighbourId());
+            }
+        }
+
+        HashMap<String, String[]> graph = new HashMap<String, String[]>();
+
+        for (Map.Entry<String, LinkedHashSet<String>> entry : edges.entrySet()) {
+            graph.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+
+        logger.log(Level.FINER, "Routing topology loaded: {0} node(s)", graph.size());
+
+        return Collections.unmodifiableMap(graph);
+    }
 }
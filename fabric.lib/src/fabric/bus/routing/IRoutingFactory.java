@@ -13,6 +13,21 @@ public interface IRoutingFactory {
 	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012";
 	
 	
+	/**
+	 * Answers the nodes on the route between two nodes.
+	 * <p>
+	 * A single instance of each routing factory is created and used for all route lookups, possibly concurrently.
+	 * Implementations are responsible for caching their routes if they are expensive to calculate.
+	 * </p>
+	 *
+	 * @param startNode
+	 *            the start node.
+	 *
+	 * @param endNode
+	 *            the end node.
+	 *
+	 * @return the nodes on the route, or an empty array if there is no route.
+	 */
 	public String[] getRouteNodes(String startNode, String endNode);
 
 }
@@ -0,0 +1,273 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.Fabric;
+import fabric.registry.FabricRegistry;
+import fabric.registry.NodeNeighbour;
+import fabric.registry.QueryScope;
+import fabric.registry.RegistryCache;
+
+/**
+ * In-memory view of the neighbours of each node, used by the routing classes so that routing a message does not
+ * require a Registry query.
+ * <p>
+ * The neighbours of a node are read from the Registry once and held in a <code>RegistryCache</code>, so the view is
+ * refreshed when the <code>NODE_NEIGHBOURS</code> table is updated (by a local update or a Registry trigger
+ * notification). In addition, neighbours reported as disconnected by the Connection Manager are left out of the view
+ * until they are reported as connected again, or until the period configured by
+ * <code>routing.neighbours.disconnectedHold</code> (in milliseconds, default 60 seconds) has passed; after that they
+ * are routed to again, giving the bus the chance to re-establish the connection.
+ * </p>
+ * <p>
+ * The view also holds the round trip times measured between nodes and their neighbours, smoothed over successive
+ * measurements, for use as link costs when calculating routes.
+ * </p>
+ */
+public class NeighbourTopology {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class static fields
+     */
+
+    /** The unique neighbour IDs of each node (excluding the node itself), keyed by node ID. */
+    private static final RegistryCache<String, String[]> neighbourCache = new RegistryCache<String, String[]>(
+            "neighbourTopology", QueryScope.LOCAL, FabricRegistry.NODE_NEIGHBOURS);
+
+    /** Neighbours reported as disconnected, mapped to the time until which they are left out of the view. */
+    private static final ConcurrentHashMap<String, Long> disconnected = new ConcurrentHashMap<String, Long>();
+
+    /** The period for which a disconnected neighbour is left out of the view, or <code>-1</code> if not yet known. */
+    private static long disconnectedHold = -1;
+
+    /** The smoothed round trip times (in milliseconds) from each node to its neighbours, keyed by node ID. */
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, Double>> roundTripTimes =
+            new ConcurrentHashMap<String, ConcurrentHashMap<String, Double>>();
+
+    /** The weight given to a new round trip time measurement when smoothing. */
+    private static final double ROUND_TRIP_WEIGHT = 0.25;
+
+    private final static Logger logger = Logger.getLogger("fabric.bus.routing");
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Answers the IDs of the neighbours of a node, excluding any that have been reported as disconnected.
+     *
+     * @param nodeId
+     *            the node ID.
+     *
+     * @return the neighbour IDs; the array is shared and must be treated as read-only.
+     */
+    public static String[] neighbours(String nodeId) {
+
+        String[] neighbours = null;
+
+        try {
+
+            neighbours = neighbourCache.get(nodeId, new RegistryCache.Loader<String, String[]>() {
+
+                @Override
+                public String[] load(String key) throws Exception {
+
+                    /* Get the complete set of unique node neighbours by 'best' interface */
+                    NodeNeighbour[] nn = FabricRegistry.getNodeNeighbourFactory(QueryScope.LOCAL)
+                            .getUniqueNeighboursByNeighbourId(key);
+                    LinkedHashSet<String> neighbourIDs = new LinkedHashSet<String>();
+
+                    for (int i = 0; nn != null && i < nn.length; i++) {
+                        if (!nn[i].getNeighbourId().equals(key)) {
+                            neighbourIDs.add(nn[i].getNeighbourId());
+                        }
+                    }
+
+                    return neighbourIDs.toArray(new String[neighbourIDs.size()]);
+                }
+            });
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot determine the neighbours of node [{0}]: {1}", new Object[] {nodeId,
+                    e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+            return new String[0];
+
+        }
+
+        /* In the steady state there are no disconnected neighbours, so the cached view can be used as-is */
+        if (disconnected.isEmpty()) {
+            return neighbours;
+        }
+
+        long now = System.currentTimeMillis();
+        ArrayList<String> connected = new ArrayList<String>(neighbours.length);
+
+        for (String neighbour : neighbours) {
+
+            Long until = disconnected.get(neighbour);
+
+            if (until == null) {
+                connected.add(neighbour);
+            } else if (until <= now) {
+                disconnected.remove(neighbour, until);
+                connected.add(neighbour);
+            }
+        }
+
+        return connected.toArray(new String[connected.size()]);
+
+    }
+
+    /**
+     * Records that a neighbour has disconnected, leaving it out of the view for a time.
+     *
+     * @param neighbour
+     *            the neighbour's node ID.
+     */
+    public static void neighbourDisconnected(String neighbour) {
+
+        if (disconnectedHold == -1) {
+            disconnectedHold = Long.parseLong(new Fabric().config("routing.neighbours.disconnectedHold", "60000"));
+        }
+
+        disconnected.put(neighbour, System.currentTimeMillis() + disconnectedHold);
+        logger.log(Level.FINER, "Neighbour [{0}] disconnected; removed from routing view", neighbour);
+
+    }
+
+    /**
+     * Records that a neighbour has (re)connected, returning it to the view.
+     *
+     * @param neighbour
+     *            the neighbour's node ID.
+     */
+    public static void neighbourConnected(String neighbour) {
+
+        if (disconnected.remove(neighbour) != null) {
+            logger.log(Level.FINER, "Neighbour [{0}] connected; returned to routing view", neighbour);
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if a neighbour is currently left out of the view because it has been reported as
+     * disconnected.
+     *
+     * @param neighbour
+     *            the neighbour's node ID.
+     *
+     * @return <code>true</code> if the neighbour is disconnected, <code>false</code> otherwise.
+     */
+    public static boolean isDisconnected(String neighbour) {
+
+        if (disconnected.isEmpty()) {
+            return false;
+        }
+
+        Long until = disconnected.get(neighbour);
+        return until != null && until > System.currentTimeMillis();
+
+    }
+
+    /**
+     * Answers the neighbours currently left out of the view because they have been reported as disconnected.
+     *
+     * @return the neighbours' node IDs, in sorted order.
+     */
+    public static String[] disconnectedNeighbours() {
+
+        if (disconnected.isEmpty()) {
+            return new String[0];
+        }
+
+        long now = System.currentTimeMillis();
+        ArrayList<String> neighbours = new ArrayList<String>();
+
+        for (Map.Entry<String, Long> entry : disconnected.entrySet()) {
+            if (entry.getValue() > now) {
+                neighbours.add(entry.getKey());
+            }
+        }
+
+        Collections.sort(neighbours);
+        return neighbours.toArray(new String[neighbours.size()]);
+
+    }
+
+    /**
+     * Records a round trip time measured between a node and one of its neighbours.
+     *
+     * @param nodeId
+     *            the node ID.
+     *
+     * @param neighbour
+     *            the neighbour's node ID.
+     *
+     * @param millis
+     *            the round trip time (in milliseconds).
+     */
+    public static void roundTripMeasured(String nodeId, String neighbour, double millis) {
+
+        ConcurrentHashMap<String, Double> times = roundTripTimes.get(nodeId);
+
+        if (times == null) {
+            roundTripTimes.putIfAbsent(nodeId, new ConcurrentHashMap<String, Double>());
+            times = roundTripTimes.get(nodeId);
+        }
+
+        /* Smooth the measurement (a lost update under contention simply drops a sample) */
+        Double previous = times.get(neighbour);
+        double smoothed = (previous == null) ? millis : previous + ROUND_TRIP_WEIGHT * (millis - previous);
+        times.put(neighbour, smoothed);
+
+        logger.log(Level.FINEST, "Round trip time from [{0}] to [{1}] is now {2} ms", new Object[] {nodeId, neighbour,
+                smoothed});
+
+    }
+
+    /**
+     * Answers the smoothed round trip time measured between two neighbouring nodes, in either direction.
+     *
+     * @param nodeId
+     *            the node ID.
+     *
+     * @param neighbour
+     *            the neighbour's node ID.
+     *
+     * @return the round trip time (in milliseconds), or <code>-1</code> if it has not been measured.
+     */
+    public static double roundTripTime(String nodeId, String neighbour) {
+
+        Double millis = null;
+        ConcurrentHashMap<String, Double> times = roundTripTimes.get(nodeId);
+
+        if (times != null) {
+            millis = times.get(neighbour);
+        }
+
+        if (millis == null) {
+            times = roundTripTimes.get(neighbour);
+            millis = (times != null) ? times.get(nodeId) : null;
+        }
+
+        return (millis != null) ? millis : -1;
+
+    }
+}
@@ -36,5 +36,24 @@ public interface IFloodMessageService {
 	 * @param retained (currently unused) whether the message should be retained for future nodes to receive 
 	 */
 	public void addMessage(IFabricMessage message, long ttl, boolean retained);
-	
+
+	/**
+	 * Adds a message to the cache of seen messages, returning whether it is a duplicate of one previously seen by the
+	 * flood service. Equivalent to <code>isDuplicate()</code> followed by <code>addMessage()</code>, but atomic.
+	 *
+	 * @param message the message
+	 * @param ttl the time, in relative milliseconds, the message should be held in the cache
+	 * @param retained (currently unused) whether the message should be retained for future nodes to receive
+	 * @return true if this message has already been handled, false otherwise.
+	 */
+	public boolean recordMessage(IFabricMessage message, long ttl, boolean retained);
+
+	/**
+	 * Returns the current estimated false positive rate of duplicate detection, i.e. the probability that a message
+	 * that has not been seen before is reported as a duplicate.
+	 *
+	 * @return the rate (between 0 and 1).
+	 */
+	public double falsePositiveRate();
+
 }
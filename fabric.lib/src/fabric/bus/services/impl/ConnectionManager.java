@@ -24,6 +24,7 @@ import fabric.bus.messages.INotificationMessage;
 import fabric.bus.messages.IServiceMessage;
 import fabric.bus.messages.impl.ConnectionMessage;
 import fabric.bus.plugins.IPluginConfig;
+import fabric.bus.routing.NeighbourTopology;
 import fabric.bus.services.IBusServiceConfig;
 import fabric.bus.services.IConnectionManager;
 import fabric.bus.services.IPersistentService;
@@ -309,6 +310,15 @@ public class ConnectionManager extends BusService implements IPersistentService,
                 new Object[] {message.getProperty(ConnectionMessage.PROPERTY_EVENT),
                 message.getProperty(ConnectionMessage.PROPERTY_RESOURCE_TYPE), node, service});
 
+        /* Keep the routing view of the node's neighbours up to date */
+        if (IServiceMessage.TYPE_NODE.equals(resourceType) && node != null && !node.equals(homeNode())) {
+            if (IServiceMessage.EVENT_DISCONNECTED.equals(event)) {
+                NeighbourTopology.neighbourDisconnected(node);
+            } else if (IServiceMessage.EVENT_CONNECTED.equals(event)) {
+                NeighbourTopology.neighbourConnected(node);
+            }
+        }
+
         /* Fire the "all node" messages */
         doAction(ACTION_FIRE, resourceType, "", platform, system, service, actor, event);
 
@@ -7,9 +7,6 @@
 
 package fabric.bus.services.impl;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.logging.Level;
 
 import fabric.bus.messages.IClientNotificationMessage;
@@ -18,6 +15,7 @@ import fabric.bus.messages.INotificationMessage;
 import fabric.bus.messages.IServiceMessage;
 import fabric.bus.services.IFloodMessageService;
 import fabric.bus.services.IPersistentService;
+import fabric.core.util.DuplicateFilter;
 
 /**
  *
@@ -43,11 +41,14 @@ public class FloodMessageService extends BusService implements IPersistentServic
         return INSTANCE;
     }
 
-    /** The cache of messages that have been handled. */
-    private final HashMap<String, MessageCacheEntry> handledMessageCache;
+    /**
+     * The UIDs of the messages that have been handled. Only a fingerprint of each UID is held, in time buckets that
+     * expire together; a message is remembered for at least <code>routing.flood.ttl</code> milliseconds.
+     */
+    private final DuplicateFilter handledMessages;
 
-    /** Watchdog for expiring messages from the cache. */
-    private MessageCacheWatchdog watchdog = null;
+    /** The filter interval for which statistics were last logged. */
+    private volatile long loggedInterval = -1;
 
     /**
      * Create an instance of the service
@@ -62,9 +63,15 @@ public class FloodMessageService extends BusService implements IPersistentServic
             throw new UnsupportedOperationException();
         }
 
-        handledMessageCache = new HashMap<String, MessageCacheEntry>();
-        watchdog = new MessageCacheWatchdog();
-        watchdog.start();
+        long window = Long.parseLong(config("routing.flood.ttl", "600000"));
+        int buckets = Integer.parseInt(config("routing.flood.dedup.buckets", "10"));
+        int expected = Integer.parseInt(config("routing.flood.dedup.expected", "10000"));
+        double falsePositiveRate = Double.parseDouble(config("routing.flood.dedup.falsePositiveRate", "0.000001"));
+
+        handledMessages = new DuplicateFilter(window, buckets, expected, falsePositiveRate);
+
+        logger.log(Level.FINE, "Flood message duplicate filter: {0}ms window, {1} buckets, {2} bytes", new Object[] {
+                window, buckets, handledMessages.size()});
     }
 
     /**
@@ -76,7 +83,7 @@ public class FloodMessageService extends BusService implements IPersistentServic
     @Override
     public boolean isDuplicate(String uid) {
 
-        return handledMessageCache.containsKey(uid);
+        return handledMessages.contains(uid);
     }
 
     /**
@@ -85,12 +92,37 @@ public class FloodMessageService extends BusService implements IPersistentServic
     @Override
     public void addMessage(IFabricMessage message, long ttl, boolean retained) {
 
-        // A ttl of 0 means never expire
-        long expireyTime = (ttl > 0) ? System.currentTimeMillis() + ttl : 0;
-        MessageCacheEntry entry = new MessageCacheEntry(retained, expireyTime, message);
-        synchronized (handledMessageCache) {
-            handledMessageCache.put(message.getUID(), entry);
+        recordMessage(message, ttl, retained);
+    }
+
+    /**
+     * @see IFloodMessageService#recordMessage(IFabricMessage, long, boolean)
+     */
+    @Override
+    public boolean recordMessage(IFabricMessage message, long ttl, boolean retained) {
+
+        /* Messages are held for the configured window (routing.flood.ttl) rather than for their individual TTLs */
+        boolean isDuplicate = handledMessages.checkAndAdd(message.getUID());
+
+        /* Report the filter statistics each time that a bucket expires */
+        long interval = handledMessages.currentInterval();
+
+        if (interval != loggedInterval) {
+            loggedInterval = interval;
+            logger.log(Level.FINE, "Flood message duplicate filter estimated false positive rate: {0}",
+                    handledMessages.falsePositiveRate());
         }
+
+        return isDuplicate;
+    }
+
+    /**
+     * @see IFloodMessageService#falsePositiveRate()
+     */
+    @Override
+    public double falsePositiveRate() {
+
+        return handledMessages.falsePositiveRate();
     }
 
     /**
@@ -120,100 +152,6 @@ public class FloodMessageService extends BusService implements IPersistentServic
     @Override
     public void stopService() {
 
-        watchdog.shutdown();
         logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
     }
-
-    /**
-     * Class representing a message entry in the cache
-     */
-    class MessageCacheEntry {
-
-        IFabricMessage message;
-        long expiryTime;
-        boolean retained;
-
-        public MessageCacheEntry(boolean retained, long expiryTime, IFabricMessage message) {
-
-            this.message = message;
-            this.expiryTime = expiryTime;
-            this.retained = retained;
-
-        }
-    }
-
-    /**
-     * The Watchdog thread used to expire messages from the cache.
-     */
-    class MessageCacheWatchdog extends Thread {
-
-        /**
-         * Default interval for how often the watchdog runs.
-         */
-        public static final int WATCHDOG_INTERVAL = 60000;
-
-        /** flag to control running state of the watchdog. */
-        boolean running = true;
-
-        /** Object to synchronize lifecycle operations against. */
-        Object lifecycle = new Object();
-
-        /** Stops the watchdog. Blocks until the watchdog is stopped. */
-        public void shutdown() {
-
-            synchronized (lifecycle) {
-                running = false;
-                lifecycle.notifyAll();
-                try {
-                    lifecycle.wait(WATCHDOG_INTERVAL);
-                } catch (InterruptedException e) {
-                }
-            }
-        }
-
-        @Override
-        public void run() {
-
-            while (running) {
-                synchronized (lifecycle) {
-                    try {
-                        lifecycle.wait(WATCHDOG_INTERVAL);
-                    } catch (InterruptedException e) {
-                    }
-                    // Check we should still be running
-                    if (!running) {
-                        break;
-                    }
-                }
-
-                // Get the current time
-                long now = System.currentTimeMillis();
-
-                // Build up a list of the messages that have expired.
-                ArrayList<String> toExpire = new ArrayList<String>();
-
-                // Prevent concurrent modification errors
-                synchronized (handledMessageCache) {
-                    Iterator<MessageCacheEntry> it = handledMessageCache.values().iterator();
-                    while (it.hasNext()) {
-                        MessageCacheEntry entry = it.next();
-                        if (entry.expiryTime > 0 && entry.expiryTime < now) {
-                            toExpire.add(entry.message.getUID());
-                        }
-                    }
-
-                    Iterator<String> uidIt = toExpire.iterator();
-                    while (uidIt.hasNext()) {
-                        String uid = uidIt.next();
-                        handledMessageCache.remove(uid);
-                    }
-                }
-
-            }
-
-            synchronized (lifecycle) {
-                lifecycle.notifyAll();
-            }
-        }
-    }
 }
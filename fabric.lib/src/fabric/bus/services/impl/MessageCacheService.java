@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2012
+ * (C) Copyright IBM Corp. 2012, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,25 +7,36 @@
 
 package fabric.bus.services.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import fabric.MessageLogManager;
 import fabric.bus.messages.IClientNotificationMessage;
 import fabric.bus.messages.INotificationMessage;
 import fabric.bus.messages.IServiceMessage;
 import fabric.bus.messages.impl.CachableMessage;
 import fabric.bus.services.IPersistentService;
+import fabric.core.log.LogRecord;
 import fabric.registry.CachedMessage;
-import fabric.registry.CachedMessageFactory;
 import fabric.registry.FabricRegistry;
 
 /**
- * This service will cause any messages it receives to be stored in the registry.
+ * This service will cause any messages it receives to be stored in the node's message cache log (see
+ * <code>fabric.MessageLogManager</code>).
+ * <p>
+ * Each record holds the source and destination of the message, followed by the message itself; use
+ * <code>decode()</code> to convert a record read from the log back into a <code>CachedMessage</code>.
+ * </p>
  */
 public class MessageCacheService extends BusService implements IPersistentService {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012, 2014";
 
     /*
      * Class methods
@@ -61,11 +72,9 @@ public class MessageCacheService extends BusService implements IPersistentServic
         if (message instanceof CachableMessage) {
             CachableMessage dm = (CachableMessage) message;
 
-            CachedMessageFactory cmf = FabricRegistry.getCachedMessageFactory();
-            CachedMessage cm = cmf.createCachedMessage(System.currentTimeMillis(), dm.getSource(), dm.getDestination(),
-                    dm.getMessage());
             try {
-                FabricRegistry.save(cm);
+                messageLogs().log(MessageLogManager.CACHE).append(-1,
+                        encode(dm.getSource(), dm.getDestination(), dm.getMessage()));
                 logger.log(Level.FINEST, "Saved message {0} to cache", message.getUID());
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Failed to save cachable message [{0}]: {1}", new Object[] {message.getUID(),
@@ -77,6 +86,57 @@ public class MessageCacheService extends BusService implements IPersistentServic
         return message;
     }
 
+    /**
+     * Encodes a cached message as a log record.
+     *
+     * @param source
+     *            the source of the message.
+     *
+     * @param destination
+     *            the destination of the message.
+     *
+     * @param message
+     *            the message.
+     *
+     * @return the record.
+     */
+    private static byte[] encode(String source, String destination, String message) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF((source != null) ? source : "");
+        out.writeUTF((destination != null) ? destination : "");
+        out.write(((message != null) ? message : "").getBytes("UTF-8"));
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a record read from the message cache log.
+     *
+     * @param record
+     *            the record.
+     *
+     * @return the cached message.
+     *
+     * @throws IOException
+     *             thrown if the record is not a cached message.
+     */
+    public static CachedMessage decode(LogRecord record) throws IOException {
+
+        byte[] data = record.data();
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        String source = in.readUTF();
+        String destination = in.readUTF();
+        int start = data.length - bytes.available();
+        String message = new String(data, start, data.length - start, "UTF-8");
+
+        return FabricRegistry.getCachedMessageFactory().createCachedMessage(record.timestamp(), source, destination,
+                message);
+    }
+
     @Override
     public void stopService() {
 
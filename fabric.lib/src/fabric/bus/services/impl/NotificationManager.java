@@ -10,6 +10,7 @@ package fabric.bus.services.impl;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,12 +26,17 @@ import fabric.bus.services.IBusServiceConfig;
 import fabric.bus.services.INotificationManager;
 import fabric.bus.services.IPersistentService;
 import fabric.core.io.OutputTopic;
+import fabric.core.util.TimerWheel;
 
 /**
  * Class handling service acknowledgment messages for the Fabric.
+ * <p>
+ * Notification time-outs are held in a timer wheel (see <code>TimerWheel</code>), so that adding and removing a
+ * notification does not depend upon the number outstanding, and a notification fires within one tick (configured by
+ * <code>fabric.notificationManager.tick</code>, in milliseconds) of timing-out.
+ * </p>
  */
-public class NotificationManager extends BusService implements Runnable, IPersistentService,
-        INotificationManager {
+public class NotificationManager extends BusService implements IPersistentService, INotificationManager {
 
     /** Copyright notice. */
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2010, 2012";
@@ -46,14 +52,14 @@ public class NotificationManager extends BusService implements Runnable, IPersis
     /** A local copy of the interface to Fabric management functions. */
     private IBusServices busServices = null;
 
-    /** The table of notification records, keyed by correlation ID. */
-    private final HashMap<String, ArrayList<NotificationRecord>> notificationRecords = new HashMap<String, ArrayList<NotificationRecord>>();
-
-    /** Object used to synchronise with the mapper main thread */
-    private final Object threadSync = new Object();
+    /**
+     * The table of notification records, keyed by correlation ID and then by service descriptor. Each per-correlation
+     * ID table is guarded by its own lock, and is removed from this table (while holding its lock) once it is empty.
+     */
+    private final ConcurrentHashMap<String, HashMap<String, ArrayList<NotificationRecord>>> notificationRecords = new ConcurrentHashMap<String, HashMap<String, ArrayList<NotificationRecord>>>();
 
-    /** Flag used to indicate when the main thread should terminate */
-    private boolean isRunning = true;
+    /** The timer wheel used to fire notifications that time-out */
+    private TimerWheel timeouts = null;
 
     /*
      * Inner classes
@@ -63,7 +69,7 @@ public class NotificationManager extends BusService implements Runnable, IPersis
      * Class representing a connection message record, i.e. a message to send plus the details of the Fabric asset with
      * which it is associated.
      */
-    private class NotificationRecord {
+    private class NotificationRecord implements Runnable {
 
         /** The correlation ID for this notification record. */
         public String correlationID = null;
@@ -83,9 +89,12 @@ public class NotificationManager extends BusService implements Runnable, IPersis
         /** The event ID associated with this message. */
         public String event = IServiceMessage.EVENT_UNKNOWN;
 
-        /** The timeout period for this notification (<code>null</code> indicates no timeout). */
+        /** The timeout period for this notification (in milliseconds, <code>0</code> indicates no timeout). */
         public long timeout = 0;
 
+        /** The handle of the pending timeout (<code>null</code> if there is none). */
+        public TimerWheel.Timeout pendingTimeout = null;
+
         /** Flag indicating if this notification should be retained, or removed when any related notification fires. */
         public boolean retained = false;
 
@@ -111,7 +120,7 @@ public class NotificationManager extends BusService implements Runnable, IPersis
          *            the message to be sent upon receipt of the specified event.
          *
          * @param timeout
-         *            the timeout period (in milliseconds) until the notification times-out and the failure message is
+         *            the timeout period (in seconds) until the notification times-out and the failure message is
          *            automatically delivered.
          *
          * @param retained
@@ -128,15 +137,31 @@ public class NotificationManager extends BusService implements Runnable, IPersis
             this.actor = actor;
             this.actorPlatform = actorPlatform;
             this.message = (IServiceMessage) message.replicate();
+            this.timeout = timeout * 1000L;
+            this.retained = retained;
+        }
 
-            /* If a timeout has been specified... */
-            if (timeout != 0) {
-
-                this.timeout = System.currentTimeMillis() + (timeout * 1000);
+        /**
+         * Cancels the pending timeout for this record (the caller must hold the lock on the record's table).
+         */
+        public void cancelTimeout() {
 
+            if (pendingTimeout != null) {
+                pendingTimeout.cancel();
+                pendingTimeout = null;
             }
+        }
+
+        /**
+         * Fires this notification when it times-out (called by the timer wheel).
+         *
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+
+            fireTimeout(this);
 
-            this.retained = retained;
         }
     }
 
@@ -171,87 +196,62 @@ public class NotificationManager extends BusService implements Runnable, IPersis
         /* Make a local copy of the accessor for Fabric management services */
         busServices = ((IBusServiceConfig) config).getFabricServices();
 
-        /* Start the time out thread */
-        Thread pluginThread = new Thread(this, "Notification-Manager");
-        pluginThread.start();
+        /* Start the time out timer; the wheel covers around a minute (the longest typical timeout) in one turn */
+        long tick = Long.parseLong(config("fabric.notificationManager.tick", "10"));
+        timeouts = new TimerWheel("Notification-Manager", tick, (int) (60000 / Math.max(1, tick)), logger);
 
     }
 
     /**
-     * @see java.lang.Runnable#run()
+     * Fires a notification that has timed-out, removing it together with any other non-retained notifications for its
+     * correlation ID.
+     *
+     * @param record
+     *            the notification record.
      */
-    @Override
-    public void run() {
-
-        isRunning = true;
-
-        /* Determine the period between timeout checks */
-        long timeoutCheck = Integer.parseInt(config("fabric.notificationManager.timeoutCheck", "60")) * 1000;
-
-        while (isRunning) {
-
-            try {
-
-                synchronized (threadSync) {
-
-                    /* Make a note of the current time */
-                    long currentTime = System.currentTimeMillis();
+    private void fireTimeout(NotificationRecord record) {
 
-                    /* To hold the list of notifications that are fired */
-                    ArrayList<NotificationRecord> firedNotifications = new ArrayList<NotificationRecord>();
+        HashMap<String, ArrayList<NotificationRecord>> records = notificationRecords.get(record.correlationID);
 
-                    /* For each list of notification records... */
-                    for (Iterator<String> recordListIterator = notificationRecords.keySet().iterator(); recordListIterator
-                            .hasNext();) {
-
-                        /* Get the next list */
-                        String nextKey = recordListIterator.next();
-                        ArrayList<NotificationRecord> nextRecordList = notificationRecords.get(nextKey);
+        if (records == null) {
+            return;
+        }
 
-                        /* For each record in the list... */
-                        for (NotificationRecord nextRecord : nextRecordList) {
+        synchronized (records) {
 
-                            /* If this record has timed-out... */
-                            if (nextRecord.timeout != 0 && nextRecord.timeout < currentTime) {
+            /* If the record has been removed while waiting for the lock then there is nothing to do */
+            ArrayList<NotificationRecord> recordList = records.get(String.valueOf(record.serviceDescriptor));
 
-                                logger.log(
-                                        Level.FINE,
-                                        "Timeout triggered: firing notification for correlation ID [{0}], event [{1}], service ID [{2}], actor [{3}], platform [{4}]",
-                                        new Object[] {nextRecord.correlationID, nextRecord.event,
-                                                nextRecord.serviceDescriptor, nextRecord.actor,
-                                                nextRecord.actorPlatform});
-                                logger.log(Level.FINEST, "Full message:\n{0}", nextRecord.message);
-                                deliverNotification(nextRecord.actor, nextRecord.actorPlatform, null,
-                                        nextRecord.message, null);
+            if (notificationRecords.get(record.correlationID) != records || recordList == null
+                    || !recordList.remove(record)) {
+                return;
+            }
 
-                                /* Record this notification so that it can be removed later */
-                                firedNotifications.add(nextRecord);
+            record.pendingTimeout = null;
 
-                            }
-                        }
-                    }
+            if (recordList.isEmpty()) {
+                records.remove(String.valueOf(record.serviceDescriptor));
+            }
 
-                    /* Remove notifications that have fired (or no longer need to be fired) */
-                    for (NotificationRecord notification : firedNotifications) {
-                        removeNotifications(notification.correlationID, notification.serviceDescriptor, false);
-                    }
+            removeUnretained(record.correlationID, records);
 
-                }
+        }
 
-                synchronized (threadSync) {
-                    /* Sleep before the next timeout check */
-                    threadSync.wait(timeoutCheck);
-                }
+        logger.log(
+                Level.FINE,
+                "Timeout triggered: firing notification for correlation ID [{0}], event [{1}], service ID [{2}], actor [{3}], platform [{4}]",
+                new Object[] {record.correlationID, record.event, record.serviceDescriptor, record.actor,
+                        record.actorPlatform});
+        logger.log(Level.FINEST, "Full message:\n{0}", record.message);
 
-            } catch (InterruptedException e) {
+        try {
 
-                /* Not too worried about this happening */
+            deliverNotification(record.actor, record.actorPlatform, null, record.message, null);
 
-            } catch (Exception e) {
+        } catch (Exception e) {
 
-                logger.log(Level.WARNING, "Exception firing timeout notificatons: ", e);
+            logger.log(Level.WARNING, "Exception firing timeout notificatons: ", e);
 
-            }
         }
     }
 
@@ -273,25 +273,22 @@ public class NotificationManager extends BusService implements Runnable, IPersis
         /* Extract the notification-specific arguments from the message, to be added to the client message */
         String notificationArgs = message.getNotificationArgs();
 
-        synchronized (threadSync) {
-
-            /* If there are no feeds in the list... */
-            if (serviceList.size() == 0) {
+        /* If there are no feeds in the list... */
+        if (serviceList.size() == 0) {
 
-                /* Fire the notifications */
-                fireNotifications(correlationID, event, notificationArgs, message);
+            /* Fire the notifications */
+            fireNotifications(correlationID, event, notificationArgs, message);
 
-            } else {
+        } else {
 
-                TaskServiceDescriptor[] feeds = serviceList.getServices();
+            TaskServiceDescriptor[] feeds = serviceList.getServices();
 
-                /* For each feed... */
-                for (int f = 0; f < feeds.length; f++) {
+            /* For each feed... */
+            for (int f = 0; f < feeds.length; f++) {
 
-                    /* Fire the notification */
-                    fireNotifications(correlationID, feeds[f], event, notificationArgs, message);
+                /* Fire the notification */
+                fireNotifications(correlationID, feeds[f], event, notificationArgs, message);
 
-                }
             }
         }
 
@@ -305,11 +302,9 @@ public class NotificationManager extends BusService implements Runnable, IPersis
     @Override
     public void stopService() {
 
-        /* Tell the timer thread to stop... */
-        isRunning = false;
-
-        synchronized (threadSync) {
-            threadSync.notifyAll();
+        /* Stop the time out timer */
+        if (timeouts != null) {
+            timeouts.stop();
         }
 
         logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
@@ -338,15 +333,48 @@ public class NotificationManager extends BusService implements Runnable, IPersis
         NotificationRecord newRecord = new NotificationRecord(correlationID, serviceDescriptor, event, actor,
                 actorPlatform, message, timeout, retained);
 
-        synchronized (threadSync) {
+        while (true) {
 
-            /* Add this message to the list for this correlation ID */
-            String recordListKey = correlationID + '/' + serviceDescriptor;
-            ArrayList<NotificationRecord> recordList = lookupSublist(recordListKey, notificationRecords);
-            recordList.add(newRecord);
+            /* Get the table of records for this correlation ID, creating it if required */
+            HashMap<String, ArrayList<NotificationRecord>> records = notificationRecords.get(correlationID);
 
-        }
+            if (records == null) {
+
+                HashMap<String, ArrayList<NotificationRecord>> newRecords = new HashMap<String, ArrayList<NotificationRecord>>();
+                records = notificationRecords.putIfAbsent(correlationID, newRecords);
+
+                if (records == null) {
+                    records = newRecords;
+                }
+            }
 
+            synchronized (records) {
+
+                /* If the table was emptied and discarded while waiting for the lock then try again */
+                if (notificationRecords.get(correlationID) != records) {
+                    continue;
+                }
+
+                /* Add this message to the list for this service */
+                String recordListKey = String.valueOf(serviceDescriptor);
+                ArrayList<NotificationRecord> recordList = records.get(recordListKey);
+
+                if (recordList == null) {
+                    recordList = new ArrayList<NotificationRecord>();
+                    records.put(recordListKey, recordList);
+                }
+
+                recordList.add(newRecord);
+
+                /* If a timeout has been specified... */
+                if (newRecord.timeout != 0 && timeouts != null) {
+                    newRecord.pendingTimeout = timeouts.schedule(newRecord, newRecord.timeout);
+                }
+
+                return;
+
+            }
+        }
     }
 
     /**
@@ -384,45 +412,89 @@ public class NotificationManager extends BusService implements Runnable, IPersis
      */
     private void removeNotifications(String correlationID, ServiceDescriptor serviceDescriptor, boolean doRemoveRetained) {
 
-        synchronized (threadSync) {
+        HashMap<String, ArrayList<NotificationRecord>> records = notificationRecords.get(correlationID);
+
+        if (records == null) {
+            return;
+        }
+
+        synchronized (records) {
 
             /* If retained notifications are to be removed... */
             if (doRemoveRetained) {
 
-                String recordListKey = correlationID + '/' + serviceDescriptor;
-                notificationRecords.remove(recordListKey);
+                ArrayList<NotificationRecord> recordList = records.remove(String.valueOf(serviceDescriptor));
+
+                if (recordList != null) {
+                    for (NotificationRecord record : recordList) {
+                        record.cancelTimeout();
+                    }
+                }
+
+                discardIfEmpty(correlationID, records);
 
             }
             /* Else remove ALL non-retained notifications for this correlation ID */
             else {
 
-                /* For each notification record... */
-                for (Iterator<String> recordListIterator = notificationRecords.keySet().iterator(); recordListIterator
-                        .hasNext();) {
+                removeUnretained(correlationID, records);
 
-                    /* Get the key of the next list */
-                    String recordListKey = recordListIterator.next();
+            }
+        }
+    }
+
+    /**
+     * Removes all non-retained notifications from the table of records for a correlation ID (the caller must hold the
+     * lock on the table).
+     *
+     * @param correlationID
+     *            the correlation ID.
+     *
+     * @param records
+     *            the table of records for the correlation ID.
+     */
+    private void removeUnretained(String correlationID, HashMap<String, ArrayList<NotificationRecord>> records) {
 
-                    /* If this is a list for the specified correlation ID... */
-                    if (recordListKey.startsWith(correlationID)) {
+        /* For each list of notification records... */
+        for (Iterator<ArrayList<NotificationRecord>> recordListIterator = records.values().iterator(); recordListIterator
+                .hasNext();) {
 
-                        /* Get the list */
-                        ArrayList<NotificationRecord> nextRecordList = notificationRecords.get(recordListKey);
+            ArrayList<NotificationRecord> nextRecordList = recordListIterator.next();
 
-                        /* For each record in the list... */
-                        for (int n = 0; n < nextRecordList.size(); n++) {
+            /* For each record in the list... */
+            for (int n = 0; n < nextRecordList.size(); n++) {
 
-                            /* If this is not a retained record... */
-                            if (!nextRecordList.get(n).retained) {
+                /* If this is not a retained record... */
+                if (!nextRecordList.get(n).retained) {
 
-                                /* Remove it */
-                                nextRecordList.remove(n--);
+                    /* Remove it */
+                    nextRecordList.remove(n--).cancelTimeout();
 
-                            }
-                        }
-                    }
                 }
             }
+
+            if (nextRecordList.isEmpty()) {
+                recordListIterator.remove();
+            }
+        }
+
+        discardIfEmpty(correlationID, records);
+
+    }
+
+    /**
+     * Discards the table of records for a correlation ID if it is empty (the caller must hold the lock on the table).
+     *
+     * @param correlationID
+     *            the correlation ID.
+     *
+     * @param records
+     *            the table of records for the correlation ID.
+     */
+    private void discardIfEmpty(String correlationID, HashMap<String, ArrayList<NotificationRecord>> records) {
+
+        if (records.isEmpty()) {
+            notificationRecords.remove(correlationID, records);
         }
     }
 
@@ -446,11 +518,19 @@ public class NotificationManager extends BusService implements Runnable, IPersis
     public void fireNotifications(String correlationID, ServiceDescriptor serviceDescriptor, String event,
             String notificationArgs, INotificationMessage trigger) throws Exception {
 
-        synchronized (threadSync) {
+        /* Get the notifications for the specified correlation ID */
+        HashMap<String, ArrayList<NotificationRecord>> records = notificationRecords.get(correlationID);
+
+        if (records == null) {
+            return;
+        }
+
+        /* To hold the notifications that are fired */
+        ArrayList<NotificationRecord> firedNotifications = new ArrayList<NotificationRecord>();
 
-            /* Get the list of notifications for the specified correlation ID */
-            String recordListKey = correlationID + '/' + serviceDescriptor;
-            ArrayList<NotificationRecord> recordList = notificationRecords.get(recordListKey);
+        synchronized (records) {
+
+            ArrayList<NotificationRecord> recordList = records.get(String.valueOf(serviceDescriptor));
 
             /* If there are any... */
             if (recordList != null) {
@@ -460,11 +540,7 @@ public class NotificationManager extends BusService implements Runnable, IPersis
 
                     /* If the next record matches the specified event... */
                     if (record.event.equals(event)) {
-
-                        /* Fire the notification */
-                        deliverNotification(record.actor, record.actorPlatform, notificationArgs, record.message,
-                                trigger);
-
+                        firedNotifications.add(record);
                     }
                 }
 
@@ -472,11 +548,16 @@ public class NotificationManager extends BusService implements Runnable, IPersis
                 if (IServiceMessage.EVENT_MESSAGE_HANDLED.equals(event)) {
 
                     /* We can remove any pending messages that don't need to be retained */
-                    removeNotifications(correlationID, serviceDescriptor, false);
+                    removeUnretained(correlationID, records);
 
                 }
             }
         }
+
+        /* Fire the notifications (outside of the lock, since delivery may block) */
+        for (NotificationRecord record : firedNotifications) {
+            deliverNotification(record.actor, record.actorPlatform, notificationArgs, record.message, trigger);
+        }
     }
 
     /*
@@ -8,6 +8,7 @@
 package fabric.registry;
 
 import fabric.registry.exception.RegistryQueryException;
+import fabric.registry.persistence.distributed.DistributedQueryStream;
 
 /**
  * Factory used to create Nodes and save/delete/query them in the Fabric Registry.
@@ -82,4 +83,16 @@ public interface NodeFactory extends Factory {
 	 */
 	public Node[] getNodes(String queryPredicates) throws RegistryQueryException;
 
+	/**
+	 * Streaming variant of <code>getNodes()</code>, returning the nodes found on each Fabric node as they arrive.
+	 * 
+	 * @param queryPredicates
+	 * @param stopCondition
+	 *            the condition used to end the query early, or <code>null</code> to wait for all nodes.
+	 * @return the stream of results; the objects in each batch are <code>Node</code>s.
+	 * @throws RegistryQueryException
+	 */
+	public DistributedQueryStream streamNodes(String queryPredicates, DistributedQueryStream.StopCondition stopCondition)
+			throws RegistryQueryException;
+
 }
@@ -0,0 +1,459 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import fabric.Fabric;
+
+/**
+ * A bounded, read-through cache of the results of a Registry query, for a specific query scope.
+ * <p>
+ * Each cache declares the Registry tables that its results depend upon. Entries are invalidated when:
+ * <ul>
+ * <li>one of those tables is updated locally (see <code>statementExecuted()</code>);</li>
+ * <li>a Registry update notification for one of those tables is received (see <code>handleRegistryUpdate()</code>);
+ * these are the JSON messages published by the Registry triggers on <code>$fab/$reg/$updates</code>;</li>
+ * <li>the entry's time-to-live expires. Tables for which Registry triggers are reported (as determined by the
+ * <code>registry.notifications.level</code> configuration setting) use a long time-to-live as a safety net; other
+ * tables use a short time-to-live since changes made by other processes are not notified.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Cached values are shared between callers and must be treated as read-only.
+ * </p>
+ *
+ * @param <K>
+ *            the type of the cache key (typically the query arguments).
+ *
+ * @param <V>
+ *            the type of the cached query results.
+ */
+public class RegistryCache<K, V> {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The service on which Registry update notifications are published. */
+    public static final String UPDATES_SERVICE = "$fab/$reg/$updates";
+
+    /** The tables for which Registry triggers are defined, keyed by the name used in update notifications. */
+    private static final Map<String, String> TRIGGER_TABLES = new LinkedHashMap<String, String>();
+
+    static {
+        TRIGGER_TABLES.put("NODES", FabricRegistry.NODES);
+        TRIGGER_TABLES.put("NODE_NEIGHBOURS", FabricRegistry.NODE_NEIGHBOURS);
+        TRIGGER_TABLES.put("PLATFORMS", FabricRegistry.PLATFORMS);
+        TRIGGER_TABLES.put("SYSTEMS", FabricRegistry.SYSTEMS);
+        TRIGGER_TABLES.put("SERVICES", FabricRegistry.DATA_FEEDS);
+        TRIGGER_TABLES.put("TASK_SUBSCRIPTIONS", FabricRegistry.TASK_SUBSCRIPTIONS);
+    }
+
+    /*
+     * Class static fields
+     */
+
+    /** All of the caches that have been created. */
+    private static final List<RegistryCache<?, ?>> caches = new CopyOnWriteArrayList<RegistryCache<?, ?>>();
+
+    /** Factory used to parse update notifications. */
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /** The tables for which update notifications are expected, or <code>null</code> if not yet determined. */
+    private static volatile Set<String> notifiedTables = null;
+
+    private final static Logger logger = Logger.getLogger("fabric.registry");
+
+    /*
+     * Class fields
+     */
+
+    /** The name of this cache (for diagnostics). */
+    private final String name;
+
+    /** The scope of the queries whose results are cached. */
+    private final QueryScope queryScope;
+
+    /** The tables upon which the cached results depend. */
+    private final String[] tables;
+
+    /** The cached entries, in least-recently-used order. */
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+
+    /** Incremented on each invalidation, so that results loaded concurrently with an invalidation are discarded. */
+    private long generation = 0;
+
+    /** The maximum number of entries, or <code>-1</code> if not yet determined. */
+    private int maxEntries = -1;
+
+    /** The time-to-live of an entry (in milliseconds), or <code>-1</code> if not yet determined. */
+    private long ttl = -1;
+
+    /** Flag indicating if caching is enabled. */
+    private boolean isEnabled = true;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * Loads the value for a key on a cache miss.
+     *
+     * @param <K>
+     *            the type of the cache key.
+     *
+     * @param <V>
+     *            the type of the cached value.
+     */
+    public interface Loader<K, V> {
+
+        /**
+         * Runs the Registry query for a key.
+         *
+         * @param key
+         *            the key.
+         *
+         * @return the query results.
+         *
+         * @throws Exception
+         *             thrown if the query fails.
+         */
+        public V load(K key) throws Exception;
+
+    }
+
+    /**
+     * A cached value.
+     */
+    private static class Entry<V> {
+
+        /** The value. */
+        final V value;
+
+        /** The time at which the entry expires. */
+        final long expires;
+
+        Entry(V value, long expires) {
+
+            this.value = value;
+            this.expires = expires;
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new cache.
+     *
+     * @param name
+     *            the name of the cache (for diagnostics).
+     *
+     * @param queryScope
+     *            the scope of the queries whose results are cached.
+     *
+     * @param tables
+     *            the tables upon which the cached results depend.
+     */
+    public RegistryCache(String name, QueryScope queryScope, String... tables) {
+
+        this.name = name;
+        this.queryScope = queryScope;
+        this.tables = new String[tables.length];
+
+        for (int t = 0; t < tables.length; t++) {
+            this.tables[t] = tables[t].toUpperCase();
+        }
+
+        caches.add(this);
+
+    }
+
+    /**
+     * Answers the cached value for a key, running the query if there is no current entry.
+     *
+     * @param key
+     *            the key.
+     *
+     * @param loader
+     *            the query to run on a cache miss.
+     *
+     * @return the value.
+     *
+     * @throws Exception
+     *             thrown if the query fails.
+     */
+    public V get(K key, Loader<K, V> loader) throws Exception {
+
+        long loadGeneration = 0;
+        long now = java.lang.System.currentTimeMillis();
+
+        boolean isCaching = false;
+
+        synchronized (entries) {
+
+            configure();
+            isCaching = isEnabled && ttl != -1;
+
+            if (isCaching) {
+
+                Entry<V> entry = entries.get(key);
+
+                if (entry != null && entry.expires > now) {
+                    return entry.value;
+                }
+
+                loadGeneration = generation;
+            }
+        }
+
+        /* Run the query outside of the lock */
+        V value = loader.load(key);
+
+        synchronized (entries) {
+
+            /* Only cache the result if nothing has changed since the query was started */
+            if (isCaching && value != null && loadGeneration == generation) {
+
+                entries.put(key, new Entry<V>(value, now + ttl));
+
+                if (entries.size() > maxEntries) {
+                    entries.remove(entries.keySet().iterator().next());
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Discards all of the entries in this cache.
+     */
+    public void invalidate() {
+
+        synchronized (entries) {
+            entries.clear();
+            generation++;
+        }
+
+        logger.log(Level.FINEST, "Registry cache [{0}/{1}] invalidated", new Object[] {name, queryScope});
+
+    }
+
+    /**
+     * Answers <code>true</code> if this cache depends upon the specified table.
+     *
+     * @param table
+     *            the fully qualified table name (in upper case).
+     *
+     * @return <code>true</code> if the cache uses the table, <code>false</code> otherwise.
+     */
+    private boolean dependsOn(String table) {
+
+        for (String t : tables) {
+            if (t.equals(table)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Determines the settings for this cache from the Fabric configuration (which is not available when the Registry
+     * factories are first loaded).
+     */
+    private void configure() {
+
+        if (ttl == -1) {
+
+            Fabric fabric = new Fabric();
+
+            try {
+
+                isEnabled = Boolean.parseBoolean(fabric.config("registry.cache.enabled", "true"));
+                maxEntries = Integer.parseInt(fabric.config("registry.cache.size", "256"));
+
+                /* If all of the tables used by this cache report changes... */
+                if (notifiedTables().containsAll(Arrays.asList(tables))) {
+                    ttl = Long.parseLong(fabric.config("registry.cache.notifiedTtl", "300000"));
+                } else {
+                    ttl = Long.parseLong(fabric.config("registry.cache.ttl", "10000"));
+                }
+
+            } catch (Exception e) {
+
+                /* Configuration not yet available, don't cache for now */
+                ttl = -1;
+                return;
+
+            }
+
+            logger.log(Level.FINER, "Registry cache [{0}/{1}] time-to-live {2}ms", new Object[] {name, queryScope,
+                    ttl});
+        }
+    }
+
+    /**
+     * Answers the set of tables for which Registry update notifications are reported.
+     *
+     * @return the fully qualified table names.
+     */
+    private static Set<String> notifiedTables() {
+
+        if (notifiedTables == null) {
+
+            Set<String> tableSet = new HashSet<String>();
+            String level = new Fabric().config("registry.notifications.level", "ALL").toUpperCase();
+
+            if (level.equals("ALL")) {
+
+                tableSet.addAll(TRIGGER_TABLES.values());
+
+            } else if (!level.equals("NONE")) {
+
+                for (String table : level.split("\\s*,\\s*")) {
+                    String qualifiedTable = TRIGGER_TABLES.get(table.trim());
+                    if (qualifiedTable != null) {
+                        tableSet.add(qualifiedTable);
+                    }
+                }
+            }
+
+            notifiedTables = tableSet;
+        }
+
+        return notifiedTables;
+    }
+
+    /**
+     * Invalidates all of the caches that depend upon a table.
+     *
+     * @param table
+     *            the fully qualified table name.
+     */
+    public static void tableUpdated(String table) {
+
+        table = table.toUpperCase();
+
+        for (RegistryCache<?, ?> cache : caches) {
+            if (cache.dependsOn(table)) {
+                cache.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Invalidates all caches.
+     */
+    public static void invalidateAll() {
+
+        for (RegistryCache<?, ?> cache : caches) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Handles a Registry update notification (the JSON object published by the Registry triggers), invalidating the
+     * caches that depend upon the updated table.
+     *
+     * @param update
+     *            the notification.
+     */
+    public static void handleRegistryUpdate(String update) {
+
+        String table = null;
+
+        try (JsonParser parser = jsonFactory.createParser(update)) {
+
+            /* Scan the top-level fields for the table name */
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+
+                while (table == null && parser.nextToken() == JsonToken.FIELD_NAME) {
+
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+
+                    if (field.equals("table")) {
+                        table = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+
+        } catch (Exception e) {
+
+            logger.log(Level.FINE, "Cannot parse Registry update notification, invalidating all caches: {0}", e
+                    .getMessage());
+
+        }
+
+        String qualifiedTable = (table != null) ? TRIGGER_TABLES.get(table.toUpperCase()) : null;
+
+        if (qualifiedTable != null) {
+            tableUpdated(qualifiedTable);
+        } else {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Invalidates the caches affected by a local Registry update.
+     *
+     * @param sql
+     *            the SQL <code>INSERT</code>, <code>UPDATE</code> or <code>DELETE</code> statement.
+     */
+    public static void statementExecuted(String sql) {
+
+        String table = null;
+        String[] words = sql.trim().split("\\s+", 4);
+
+        if (words.length >= 3) {
+
+            String verb = words[0].toUpperCase();
+
+            if (verb.equals("UPDATE")) {
+                table = words[1];
+            } else if (verb.equals("INSERT") || verb.equals("DELETE")) {
+                table = words[2];
+            }
+        }
+
+        if (table != null) {
+
+            /* Remove any trailing column list or clause */
+            int paren = table.indexOf('(');
+            table = (paren == -1) ? table : table.substring(0, paren);
+            tableUpdated(table);
+
+        } else {
+
+            invalidateAll();
+
+        }
+    }
+}
@@ -8,6 +8,7 @@
 package fabric.registry;
 
 import fabric.registry.exception.RegistryQueryException;
+import fabric.registry.persistence.distributed.DistributedQueryStream;
 
 /**
  * Factory used to create routes between nodes and save/delete/query them in the Fabric Registry.
@@ -48,6 +49,18 @@ public interface RouteFactory extends Factory {
 	 */
 	public Route[] getRoutes(String queryPredicates) throws RegistryQueryException;
 
+	/**
+	 * Streaming variant of <code>getRoutes()</code>, returning the routes found on each Fabric node as they arrive.
+	 * 
+	 * @param queryPredicates
+	 * @param stopCondition
+	 *            the condition used to end the query early, or <code>null</code> to wait for all nodes.
+	 * @return the stream of results; the objects in each batch are <code>Route</code>s.
+	 * @throws RegistryQueryException
+	 */
+	public DistributedQueryStream streamRoutes(String queryPredicates,
+			DistributedQueryStream.StopCondition stopCondition) throws RegistryQueryException;
+
 	/**
 	 * 
 	 * @param startNode
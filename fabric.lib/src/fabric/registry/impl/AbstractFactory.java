@@ -17,6 +17,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import fabric.Fabric;
+import fabric.core.logging.FLog;
 import fabric.registry.QueryScope;
 import fabric.registry.RegistryObject;
 import fabric.registry.exception.DuplicateKeyException;
@@ -24,7 +25,10 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.MalformedPredicateException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.Persistence;
 import fabric.registry.persistence.PersistenceManager;
+import fabric.registry.persistence.distributed.DistributedJDBCPersistence;
+import fabric.registry.persistence.distributed.DistributedQueryStream;
 
 /**
  */
@@ -227,6 +231,65 @@ public abstract class AbstractFactory extends Fabric {
         return results;
     }
 
+    /**
+     * Runs a parameterized query for Registry objects.
+     *
+     * @param sqlString
+     *            the SELECT statement, using <code>?</code> as the parameter marker.
+     *
+     * @param parameters
+     *            the parameter values, in order.
+     *
+     * @param factory
+     *            the factory used to convert each row into a Registry object.
+     *
+     * @return the matching objects.
+     *
+     * @throws PersistenceException
+     */
+    public RegistryObject[] queryRegistryObjects(String sqlString, Object[] parameters, AbstractFactory factory)
+        throws PersistenceException {
+
+        logger.log(Level.FINEST, "Query SQL: {0}, parameters: {1}", new Object[] {sqlString,
+                FLog.arrayAsString(parameters)});
+        RegistryObject[] results = null;
+        if (sqlString != null && sqlString.length() > 0) {
+            results = PersistenceManager.getPersistence().queryRegistryObjects(sqlString, parameters, factory,
+                    queryScope);
+        }
+        return results;
+    }
+
+    /**
+     * Runs a query for Registry objects, streaming back the results from each node as they arrive.
+     * <p>
+     * If the registry is not distributed, or this factory runs local queries, the query runs immediately and the
+     * results are returned as a single batch.
+     * </p>
+     *
+     * @param sqlString
+     *            the SELECT statement.
+     *
+     * @param stopCondition
+     *            the condition used to end the query early (for example after a number of rows), or <code>null</code>
+     *            to wait for all nodes.
+     *
+     * @return the stream of results; use <code>DistributedQueryStream.Batch.objects()</code> to obtain the Registry
+     *         objects.
+     *
+     * @throws PersistenceException
+     */
+    public DistributedQueryStream streamRegistryObjects(String sqlString,
+            DistributedQueryStream.StopCondition stopCondition) throws PersistenceException {
+
+        logger.log(Level.FINEST, "Streamed query SQL: {0}", sqlString);
+        Persistence persistence = PersistenceManager.getPersistence();
+        if (queryScope == QueryScope.DISTRIBUTED && persistence instanceof DistributedJDBCPersistence) {
+            return ((DistributedJDBCPersistence) persistence).streamQuery(sqlString, this, stopCondition);
+        }
+        return new DistributedQueryStream(homeNode(), queryRegistryObjects(sqlString, this));
+    }
+
     private boolean checkObjectsAreValid(RegistryObject[] objects) {
 
         boolean valid = true;
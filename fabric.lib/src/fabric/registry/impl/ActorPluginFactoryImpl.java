@@ -64,7 +64,7 @@ public class ActorPluginFactoryImpl extends AbstractFactory implements ActorPlug
 
         SELECT_ALL_QUERY_ACTOR_PLUGINS = format("select * from %s", FabricRegistry.ACTOR_PLUGINS);
 
-        BY_NODE_QUERY_ACTOR_PLUGINS = format("select * from %s where NODE_ID='\\%s'", FabricRegistry.ACTOR_PLUGINS);
+        BY_NODE_QUERY_ACTOR_PLUGINS = format("select * from %s where NODE_ID=?", FabricRegistry.ACTOR_PLUGINS);
 
         PREDICATE_QUERY_ACTOR_PLUGINS = format("select * from %s where \\%s", FabricRegistry.ACTOR_PLUGINS);
     }
@@ -217,8 +217,7 @@ public class ActorPluginFactoryImpl extends AbstractFactory implements ActorPlug
     public ActorPlugin[] getActorPluginsByNode(String id) {
         ActorPlugin[] plugins = null;
         try {
-            String query = format(BY_NODE_QUERY_ACTOR_PLUGINS, id);
-            plugins = runActorPluginQuery(query);
+            plugins = runActorPluginQuery(BY_NODE_QUERY_ACTOR_PLUGINS, new Object[] {id});
         } catch (PersistenceException e) {
             e.printStackTrace();
         }
@@ -226,8 +225,12 @@ public class ActorPluginFactoryImpl extends AbstractFactory implements ActorPlug
     }
 
     private ActorPlugin[] runActorPluginQuery(String sql) throws PersistenceException {
+        return runActorPluginQuery(sql, null);
+    }
+
+    private ActorPlugin[] runActorPluginQuery(String sql, Object[] parameters) throws PersistenceException {
         ActorPlugin[] plugins = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
+        RegistryObject[] objects = queryRegistryObjects(sql, parameters, this);
         if (objects != null && objects.length > 0) {
             // necessary
             plugins = new ActorPlugin[objects.length];
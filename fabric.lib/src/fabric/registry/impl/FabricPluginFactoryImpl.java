@@ -59,7 +59,7 @@ public class FabricPluginFactoryImpl extends AbstractFactory implements FabricPl
 
         SELECT_ALL_QUERY_FABRIC_PLUGINS = format("select * from %s", FabricRegistry.FABLET_PLUGINS);
 
-        BY_NODE_QUERY_FABRIC_PLUGINS = format("select * from %s where NODE_ID='\\%s'", FabricRegistry.FABLET_PLUGINS);
+        BY_NODE_QUERY_FABRIC_PLUGINS = format("select * from %s where NODE_ID=?", FabricRegistry.FABLET_PLUGINS);
 
         PREDICATE_QUERY_FABRIC_PLUGINS = format("select * from %s where \\%s", FabricRegistry.FABLET_PLUGINS);
     }
@@ -180,8 +180,7 @@ public class FabricPluginFactoryImpl extends AbstractFactory implements FabricPl
     public FabricPlugin[] getFabricPluginsByNode(String id) {
         FabricPlugin[] plugins = null;
         try {
-            String query = format(BY_NODE_QUERY_FABRIC_PLUGINS, id);
-            plugins = runFabricPluginQuery(query);
+            plugins = runFabricPluginQuery(BY_NODE_QUERY_FABRIC_PLUGINS, new Object[] {id});
         } catch (PersistenceException e) {
             e.printStackTrace();
         }
@@ -189,8 +188,12 @@ public class FabricPluginFactoryImpl extends AbstractFactory implements FabricPl
     }
 
     private FabricPlugin[] runFabricPluginQuery(String sql) throws PersistenceException {
+        return runFabricPluginQuery(sql, null);
+    }
+
+    private FabricPlugin[] runFabricPluginQuery(String sql, Object[] parameters) throws PersistenceException {
         FabricPlugin[] plugins = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
+        RegistryObject[] objects = queryRegistryObjects(sql, parameters, this);
         if (objects != null && objects.length > 0) {
             // necessary
             plugins = new FabricPlugin[objects.length];
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.distributed.DistributedQueryStream;
 
 /**
  * Implementation of the factory for <code>Node</code>s.
@@ -225,6 +226,17 @@ public class NodeFactoryImpl extends AbstractFactory implements NodeFactory {
         return nodes;
     }
 
+    @Override
+    public DistributedQueryStream streamNodes(String queryPredicates, DistributedQueryStream.StopCondition stopCondition)
+            throws RegistryQueryException {
+        try {
+            String query = format(PREDICATE_QUERY, queryPredicates);
+            return streamRegistryObjects(query, stopCondition);
+        } catch (PersistenceException e) {
+            throw new RegistryQueryException("Invalid query: " + PREDICATE_QUERY + queryPredicates);
+        }
+    }
+
     @Override
     public Node[] getNodesByType(String typeId) {
         Node[] nodes = null;
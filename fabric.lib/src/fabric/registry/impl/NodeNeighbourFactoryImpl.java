@@ -7,11 +7,15 @@
 
 package fabric.registry.impl;
 
+import java.util.Arrays;
+import java.util.List;
+
 import fabric.registry.FabricRegistry;
 import fabric.registry.NodeNeighbour;
 import fabric.registry.NodeNeighbourFactory;
 import fabric.registry.RegistryObject;
 import fabric.registry.QueryScope;
+import fabric.registry.RegistryCache;
 import fabric.registry.exception.DuplicateKeyException;
 import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
@@ -55,6 +59,14 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
     /** Delete records matching a specified node ID */
     private static String DELETE_NEIGHBOURS_BY_NODE = null;
 
+    /* Query caches */
+
+    /** Cache of the results of <code>getUniqueNeighboursByNeighbourId()</code>, keyed by node ID. */
+    private RegistryCache<String, NodeNeighbour[]> uniqueNeighboursCache = null;
+
+    /** Cache of the results of <code>getAvailableNeighboursEntries()</code>, keyed by node ID and neighbour ID. */
+    private RegistryCache<List<String>, NodeNeighbour[]> availableNeighboursCache = null;
+
     /** SQL to mark all Static Neighbours as Available */
     private static String SET_STATIC_NEIGHBOURS_TO_AVAILABLE = null;
 
@@ -85,12 +97,12 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
 
         SELECT_ALL_QUERY = format("select * from %s", FabricRegistry.NODE_NEIGHBOURS);
 
-        UNIQUE_BY_ID_QUERY = format("select * from %s where node_id='\\%s'", FabricRegistry.NODE_NEIGHBOURS);
+        UNIQUE_BY_ID_QUERY = format("select * from %s where node_id=?", FabricRegistry.NODE_NEIGHBOURS);
 
         PREDICATE_QUERY = format("select * from %s where \\%s", FabricRegistry.NODE_NEIGHBOURS);
 
         AVAILABLE_NEIGHBOURS_QUERY = format(
-                "select * from %s where NODE_ID='\\%s' and NEIGHBOUR_ID='\\%s' AND AVAILABILITY='"
+                "select * from %s where NODE_ID=? and NEIGHBOUR_ID=? AND AVAILABILITY='"
                         + NodeNeighbour.AVAILABLE + "'", FabricRegistry.NODE_NEIGHBOURS);
 
         /** Delete records matching a specified node ID */
@@ -104,6 +116,11 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
                 + "' WHERE NODE_ID='\\%s' AND NEIGHBOUR_ID='\\%s' AND NEIGHBOUR_INTERFACE='\\%s' ",
                 FabricRegistry.NODE_NEIGHBOURS);
 
+        uniqueNeighboursCache = new RegistryCache<String, NodeNeighbour[]>("uniqueNeighbours", queryScope,
+                FabricRegistry.NODE_NEIGHBOURS);
+        availableNeighboursCache = new RegistryCache<List<String>, NodeNeighbour[]>("availableNeighbours",
+                queryScope, FabricRegistry.NODE_NEIGHBOURS);
+
     }
 
     public static NodeNeighbourFactoryImpl getInstance(QueryScope queryScope) {
@@ -209,8 +226,12 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
     }
 
     private NodeNeighbour[] runQuery(String sql) throws PersistenceException {
+        return runQuery(sql, null);
+    }
+
+    private NodeNeighbour[] runQuery(String sql, Object[] parameters) throws PersistenceException {
         NodeNeighbour[] neighbours = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
+        RegistryObject[] objects = queryRegistryObjects(sql, parameters, this);
         if (objects != null && objects.length > 0) {
             // necessary
             neighbours = new NodeNeighbour[objects.length];
@@ -238,13 +259,19 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
     public NodeNeighbour[] getUniqueNeighboursByNeighbourId(String nodeId) {
         NodeNeighbour[] neighbours = null;
         try {
-            String query = format(UNIQUE_BY_ID_QUERY, nodeId);
-            neighbours = runQuery(query);
-        } catch (PersistenceException e) {
+            neighbours = uniqueNeighboursCache.get(nodeId, new RegistryCache.Loader<String, NodeNeighbour[]>() {
+
+                @Override
+                public NodeNeighbour[] load(String key) throws Exception {
+                    return runQuery(UNIQUE_BY_ID_QUERY, new Object[] {key});
+                }
+            });
+        } catch (Exception e) {
             e.printStackTrace();
 
         }
-        return neighbours;
+        /* Copy the cached results so that the cache is unaffected by changes to the array */
+        return (neighbours != null) ? neighbours.clone() : null;
     }
 
     @Override
@@ -334,13 +361,20 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
     public NodeNeighbour[] getAvailableNeighboursEntries(String nodeId, String neighbourId) {
         NodeNeighbour[] neighbours = null;
         try {
-            String query = format(AVAILABLE_NEIGHBOURS_QUERY, nodeId, neighbourId);
-            neighbours = runQuery(query);
-        } catch (PersistenceException e) {
+            neighbours = availableNeighboursCache.get(Arrays.asList(nodeId, neighbourId),
+                    new RegistryCache.Loader<List<String>, NodeNeighbour[]>() {
+
+                @Override
+                public NodeNeighbour[] load(List<String> key) throws Exception {
+                    return runQuery(AVAILABLE_NEIGHBOURS_QUERY, key.toArray());
+                }
+            });
+        } catch (Exception e) {
             e.printStackTrace();
 
         }
-        return neighbours;
+        /* Copy the cached results so that the cache is unaffected by changes to the array */
+        return (neighbours != null) ? neighbours.clone() : null;
 
     }
 
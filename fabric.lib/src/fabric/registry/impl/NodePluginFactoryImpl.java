@@ -60,7 +60,7 @@ public class NodePluginFactoryImpl extends AbstractFactory implements NodePlugin
 
         SELECT_ALL_QUERY_NODE_PLUGINS = format("select * from %s", FabricRegistry.NODE_PLUGINS);
 
-        BY_NODE_QUERY_NODE_PLUGINS = format("select * from %s where NODE_ID='\\%s'", FabricRegistry.NODE_PLUGINS);
+        BY_NODE_QUERY_NODE_PLUGINS = format("select * from %s where NODE_ID=?", FabricRegistry.NODE_PLUGINS);
 
         PREDICATE_QUERY_NODE_PLUGINS = format("select * from %s where \\%s", FabricRegistry.NODE_PLUGINS);
     }
@@ -185,8 +185,7 @@ public class NodePluginFactoryImpl extends AbstractFactory implements NodePlugin
     public NodePlugin[] getNodePluginsByNode(String id) {
         NodePlugin[] plugins = null;
         try {
-            String query = format(BY_NODE_QUERY_NODE_PLUGINS, id);
-            plugins = runNodePluginQuery(query);
+            plugins = runNodePluginQuery(BY_NODE_QUERY_NODE_PLUGINS, new Object[] {id});
         } catch (PersistenceException e) {
             e.printStackTrace();
         }
@@ -194,8 +193,12 @@ public class NodePluginFactoryImpl extends AbstractFactory implements NodePlugin
     }
 
     private NodePlugin[] runNodePluginQuery(String sql) throws PersistenceException {
+        return runNodePluginQuery(sql, null);
+    }
+
+    private NodePlugin[] runNodePluginQuery(String sql, Object[] parameters) throws PersistenceException {
         NodePlugin[] plugins = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
+        RegistryObject[] objects = queryRegistryObjects(sql, parameters, this);
         if (objects != null && objects.length > 0) {
             // necessary
             plugins = new NodePlugin[objects.length];
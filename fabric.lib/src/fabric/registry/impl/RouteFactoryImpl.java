@@ -7,6 +7,9 @@
 
 package fabric.registry.impl;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import fabric.Fabric;
@@ -17,11 +20,13 @@ import fabric.registry.RegistryObject;
 import fabric.registry.Route;
 import fabric.registry.RouteFactory;
 import fabric.registry.QueryScope;
+import fabric.registry.RegistryCache;
 import fabric.registry.exception.DuplicateKeyException;
 import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.distributed.DistributedQueryStream;
 
 /**
  * Implementation of the factory for <code>Route</code>s.
@@ -52,6 +57,19 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
     private String BY_START_NODE_QUERY = null;
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
+    /** Select the route between two nodes (parameters: start node and end node, each given twice) */
+    private String POINT_TO_POINT_QUERY = null;
+
+    /*
+     * Query caches
+     */
+
+    /** Cache of point-to-point routes, keyed by start and end node */
+    private RegistryCache<List<String>, Route[]> routesCache = null;
+
+    /** The routing factories used to calculate routes, keyed by class name */
+    private final ConcurrentHashMap<String, IRoutingFactory> routingFactories =
+            new ConcurrentHashMap<String, IRoutingFactory>();
 
     /*
      * Static initialisation
@@ -67,8 +85,14 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
         SELECT_COLUMNS = format("r.start_node_id, r.end_node_id, r.ordinal, r.route from %s as r ",
                 FabricRegistry.ROUTES);
         SELECT_ALL_QUERY = format("select 'all' as type, %s", SELECT_COLUMNS);
-        BY_START_NODE_QUERY = format("select 'byStartNode' as type, %s where START_NODE_ID='\\%s'", SELECT_COLUMNS);
+        BY_START_NODE_QUERY = format("select 'byStartNode' as type, %s where START_NODE_ID=?", SELECT_COLUMNS);
         PREDICATE_QUERY = format("select 'predicate' as type, %s where \\%s", SELECT_COLUMNS);
+        POINT_TO_POINT_QUERY = format("select 'pointToPoint' as type, r.start_node_id, r.end_node_id, r.ordinal, r.route, "
+                + "cast(? as varchar(32672)) as target_start_node, cast(? as varchar(32672)) as target_end_node "
+                + "from %s as r where ((r.start_node_id=? and r.end_node_id=?) or "
+                + "(r.start_node_id='*' and r.end_node_id='*')) order by r.ordinal", FabricRegistry.ROUTES);
+
+        routesCache = new RegistryCache<List<String>, Route[]>("routes", queryScope, FabricRegistry.ROUTES);
     }
 
     public static RouteFactoryImpl getInstance(QueryScope queryScope) {
@@ -205,8 +229,7 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
 
         Route[] routes = null;
         try {
-            String query = format(BY_START_NODE_QUERY, id);
-            routes = runQuery(query);
+            routes = runQuery(BY_START_NODE_QUERY, new Object[] {id});
         } catch (PersistenceException e) {
             e.printStackTrace();
         }
@@ -220,29 +243,23 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
 
         try {
 
-            /* Build the query */
-            String query = "select ";
-            query += "'pointToPoint' as type, ";
-            query += "r.start_node_id, ";
-            query += "r.end_node_id, ";
-            query += "r.ordinal, ";
-            query += "r.route, ";
-            query += "'" + startNode + "' as target_start_node, ";
-            query += "'" + endNode + "' as target_end_node ";
-            query += "from " + FabricRegistry.ROUTES + " as r ";
-            query += "where ((r.start_node_id='" + startNode + "' and r.end_node_id='" + endNode + "') or ";
-            query += "(r.start_node_id='*' and r.end_node_id='*')) ";
-            query += "order by r.ordinal";
+            routes = routesCache.get(Arrays.asList(startNode, endNode), new RegistryCache.Loader<List<String>, Route[]>() {
 
-            routes = runQuery(query);
+                @Override
+                public Route[] load(List<String> key) throws Exception {
+                    return runQuery(POINT_TO_POINT_QUERY, new Object[] {key.get(0), key.get(1), key.get(0),
+                            key.get(1)});
+                }
+            });
 
-        } catch (PersistenceException e) {
+        } catch (Exception e) {
 
             e.printStackTrace();
 
         }
 
-        return routes;
+        /* Copy the cached results so that the cache is unaffected by changes to the array */
+        return (routes != null) ? routes.clone() : null;
     }
 
     @Override
@@ -259,10 +276,27 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
         return routes;
     }
 
+    @Override
+    public DistributedQueryStream streamRoutes(String queryPredicates,
+            DistributedQueryStream.StopCondition stopCondition) throws RegistryQueryException {
+
+        try {
+            String query = format(PREDICATE_QUERY, queryPredicates);
+            return streamRegistryObjects(query, stopCondition);
+        } catch (PersistenceException e) {
+            throw new RegistryQueryException("Invalid query: " + PREDICATE_QUERY + queryPredicates);
+        }
+    }
+
     private Route[] runQuery(String sql) throws PersistenceException {
 
+        return runQuery(sql, null);
+    }
+
+    private Route[] runQuery(String sql, Object[] parameters) throws PersistenceException {
+
         Route[] routes = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
+        RegistryObject[] objects = queryRegistryObjects(sql, parameters, this);
         if (objects != null && objects.length > 0) {
             // necessary
             routes = new Route[objects.length];
@@ -349,8 +383,14 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
 
         } else if (routeDesc.toLowerCase().startsWith("factory=")) {
 
-            String className = routeDesc.substring(8);
-            IRoutingFactory fac = (IRoutingFactory) Fabric.instantiate(className);
+            /* Routing factories (e.g. dynamic routing) are reused, and cache their own routes */
+            String className = routeDesc.substring(8).trim();
+            IRoutingFactory fac = routingFactories.get(className);
+            if (fac == null) {
+                fac = (IRoutingFactory) Fabric.instantiate(className);
+                IRoutingFactory existing = routingFactories.putIfAbsent(className, fac);
+                fac = (existing != null) ? existing : fac;
+            }
             nodes = fac.getRouteNodes(startNode, endNode);
 
         } else if (routeDesc.toLowerCase().startsWith("<")) {
@@ -61,7 +61,7 @@ public class SystemPluginFactoryImpl extends AbstractFactory implements SystemPl
 
         SELECT_ALL_QUERY_SYSTEM_PLUGINS = format("select * from %s", FabricRegistry.SYSTEM_PLUGINS);
 
-        BY_NODE_QUERY_SYSTEM_PLUGINS = format("select * %s where NODE_ID='\\%s'", FabricRegistry.SYSTEM_PLUGINS);
+        BY_NODE_QUERY_SYSTEM_PLUGINS = format("select * from %s where NODE_ID=?", FabricRegistry.SYSTEM_PLUGINS);
 
         PREDICATE_QUERY_SYSTEM_PLUGINS = format("select * from %s where \\%s", FabricRegistry.SYSTEM_PLUGINS);
     }
@@ -169,8 +169,7 @@ public class SystemPluginFactoryImpl extends AbstractFactory implements SystemPl
     public SystemPlugin[] getSystemPluginsByNode(String id) {
         SystemPlugin[] plugins = null;
         try {
-            String query = format(BY_NODE_QUERY_SYSTEM_PLUGINS, id);
-            plugins = runSystemPluginQuery(query);
+            plugins = runSystemPluginQuery(BY_NODE_QUERY_SYSTEM_PLUGINS, new Object[] {id});
         } catch (PersistenceException e) {
             e.printStackTrace();
         }
@@ -196,8 +195,12 @@ public class SystemPluginFactoryImpl extends AbstractFactory implements SystemPl
     }
 
     private SystemPlugin[] runSystemPluginQuery(String sql) throws PersistenceException {
+        return runSystemPluginQuery(sql, null);
+    }
+
+    private SystemPlugin[] runSystemPluginQuery(String sql, Object[] parameters) throws PersistenceException {
         SystemPlugin[] plugins = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
+        RegistryObject[] objects = queryRegistryObjects(sql, parameters, this);
         if (objects != null && objects.length > 0) {
             // necessary
             plugins = new SystemPlugin[objects.length];
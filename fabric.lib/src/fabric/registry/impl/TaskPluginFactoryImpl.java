@@ -60,7 +60,7 @@ public class TaskPluginFactoryImpl extends AbstractFactory implements TaskPlugin
 
         SELECT_ALL_QUERY_TASK_PLUGINS = format("select * from %s", FabricRegistry.TASK_PLUGINS);
 
-        BY_NODE_QUERY_TASK_PLUGINS = format("select * from %s where NODE_ID='\\%s'", FabricRegistry.TASK_PLUGINS);
+        BY_NODE_QUERY_TASK_PLUGINS = format("select * from %s where NODE_ID=?", FabricRegistry.TASK_PLUGINS);
 
         PREDICATE_QUERY_TASK_PLUGINS = format("select * from %s where \\%s", FabricRegistry.TASK_PLUGINS);
     }
@@ -186,8 +186,7 @@ public class TaskPluginFactoryImpl extends AbstractFactory implements TaskPlugin
     public TaskPlugin[] getTaskPluginsByNode(String id) {
         TaskPlugin[] plugins = null;
         try {
-            String query = format(BY_NODE_QUERY_TASK_PLUGINS, id);
-            plugins = runTaskPluginQuery(query);
+            plugins = runTaskPluginQuery(BY_NODE_QUERY_TASK_PLUGINS, new Object[] {id});
         } catch (PersistenceException e) {
             e.printStackTrace();
         }
@@ -213,8 +212,12 @@ public class TaskPluginFactoryImpl extends AbstractFactory implements TaskPlugin
     }
 
     private TaskPlugin[] runTaskPluginQuery(String sql) throws PersistenceException {
+        return runTaskPluginQuery(sql, null);
+    }
+
+    private TaskPlugin[] runTaskPluginQuery(String sql, Object[] parameters) throws PersistenceException {
         TaskPlugin[] plugins = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
+        RegistryObject[] objects = queryRegistryObjects(sql, parameters, this);
         if (objects != null && objects.length > 0) {
             // necessary
             plugins = new TaskPlugin[objects.length];
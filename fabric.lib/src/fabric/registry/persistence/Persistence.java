@@ -76,6 +76,26 @@ public interface Persistence {
     public RegistryObject[] queryRegistryObjects(String queryString, AbstractFactory factory,
             QueryScope queryScope) throws PersistenceException;
 
+    /**
+     * Run a parameterized query for Registry objects. Implementations may cache the prepared form of the query, so the
+     * SQL should be constant with only the parameter values varying between calls.
+     *
+     * @param queryString
+     *            - the SELECT statement to execute, using <code>?</code> as the parameter marker.
+     * @param parameters
+     *            - the parameter values, in order.
+     * @param factory
+     *            - the object factory used to convert each row into the appropriate registry object.
+     * @param queryScope
+     *            - indicates whether the query should only reflect local registry only.
+     * @return an array of objects or null if no results were returned from the database.
+     *
+     * @throws PersistenceException
+     *             if an error occurs running the specified SELECT statement.
+     */
+    public RegistryObject[] queryRegistryObjects(String queryString, Object[] parameters, AbstractFactory factory,
+            QueryScope queryScope) throws PersistenceException;
+
     /**
      * Run a query that is only expected to return a simple string value. This method can be used for cases where only a
      * single value is required (e.g. to check a particularly field of a certain object).
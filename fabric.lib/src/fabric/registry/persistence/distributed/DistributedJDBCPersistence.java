@@ -57,6 +57,14 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
     public static final String QUERY_ACTION = "Query";
     public static final String PARTIAL_RESULT_ACTION = "PartialResult";
     public static final String FINAL_RESULT_ACTION = "FinalResult";
+    public static final String STREAMED_RESULT_ACTION = "StreamedResult";
+    public static final String CANCEL_ACTION = "Cancel";
+
+    // Message properties for streamed queries
+    /** Set on a query whose results should be streamed back as they arrive */
+    public static final String STREAM_PROPERTY = "registry.distributed.stream";
+    /** Set on partial results that are streamed, i.e. more will follow from the same node */
+    public static final String MORE_RESULTS_PROPERTY = "registry.distributed.more";
 
     private OutputTopic commandChannelTopic;
     private InputTopic resultChannelTopic;
@@ -72,6 +80,7 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
 
     private ConcurrentHashMap<String, DistributedQueryResult> resultByCorrelationId = new ConcurrentHashMap<String, DistributedQueryResult>();
     private Map<String, DistributedQueryWaitThread> waitThreadsByCorrelationId = new TreeMap<String, DistributedQueryWaitThread>();
+    private Map<String, DistributedQueryStream> streamsByCorrelationId = new ConcurrentHashMap<String, DistributedQueryStream>();
 
     private boolean fabricConnected = false;
 
@@ -191,6 +200,21 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         return results;
     }
 
+    @Override
+    public RegistryObject[] queryRegistryObjects(String queryString, Object[] parameters, AbstractFactory factory,
+        QueryScope queryScope) throws PersistenceException {
+
+        RegistryObject[] results = null;
+        if (queryScope == QueryScope.LOCAL) {
+            results = localJDBCPersistence.queryRegistryObjects(queryString, parameters, factory, queryScope);
+        } else {
+            // Remote nodes receive the query as text, so the parameter values are inlined
+            results = queryRegistryObjects(SingletonJDBCPersistence.inlineParameters(queryString, parameters), factory,
+                    queryScope);
+        }
+        return results;
+    }
+
     @Override
     public String queryString(String sqlString, QueryScope queryScope) throws PersistenceException {
 
@@ -349,9 +373,25 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
 
                 switch (action) {
 
+                    case DistributedJDBCPersistence.STREAMED_RESULT_ACTION:
+
+                        DistributedQueryStream stream = streamsByCorrelationId.get(correlationId);
+                        if (stream != null) {
+                            DistributedQueryResult result = new DistributedQueryResult();
+                            result.append(serviceMessage.getPayload().getPayload(), "json");
+                            stream.add(result);
+                        }
+
+                        break;
+
                     case DistributedJDBCPersistence.FINAL_RESULT_ACTION:
 
-                        if (waitThreadsByCorrelationId.containsKey(correlationId)) {
+                        DistributedQueryStream endedStream = streamsByCorrelationId.remove(correlationId);
+                        if (endedStream != null) {
+                            DistributedQueryResult result = new DistributedQueryResult();
+                            result.append(serviceMessage.getPayload().getPayload(), "json");
+                            endedStream.end(result);
+                        } else if (waitThreadsByCorrelationId.containsKey(correlationId)) {
 
                             logger.finest("This is a correlationId I am looking for");
                             DistributedQueryResult result = new DistributedQueryResult();
@@ -393,6 +433,68 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         return localJDBCPersistence.getDistributedQueryResult(sqlString, nodeName);
     }
 
+    /**
+     * Run a distributed query, streaming back the results from each node as they arrive.
+     *
+     * @param queryString
+     * @param factory
+     *            the factory used to create registry objects from the results, or null
+     * @param stopCondition
+     *            the condition used to end the query early (for example after a number of rows), or null to wait for
+     *            all nodes
+     * @return the stream of results
+     * @throws PersistenceException
+     */
+    public DistributedQueryStream streamQuery(String queryString, AbstractFactory factory,
+        DistributedQueryStream.StopCondition stopCondition) throws PersistenceException {
+
+        ServiceMessage serviceMessage = constructMessage(queryString);
+        serviceMessage.setProperty(STREAM_PROPERTY, "true");
+        String correlationId = serviceMessage.getCorrelationID();
+        DistributedQueryStream stream = new DistributedQueryStream(this, correlationId, factory, stopCondition,
+                queryTimeOut);
+        streamsByCorrelationId.put(correlationId, stream);
+        try {
+            /* Send the command to the local Fabric Manager */
+            logger.finer("Sending streamed query: " + serviceMessage.toXML());
+            commandChannel.write(serviceMessage.toWireBytes());
+        } catch (Exception e) {
+            streamsByCorrelationId.remove(correlationId);
+            throw new PersistenceException("Failed to send distributed query", e);
+        }
+        return stream;
+    }
+
+    /**
+     * Cancel a streamed query, propagating the cancellation to all nodes still working on it.
+     *
+     * @param correlationId
+     */
+    void cancelQuery(String correlationId) {
+
+        if (streamsByCorrelationId.remove(correlationId) == null) {
+            return;
+        }
+        try {
+            ServiceMessage serviceMessage = new ServiceMessage();
+            serviceMessage.setServiceName(SERVICE_NAME);
+            serviceMessage.setServiceFamilyName(PLUGIN_FAMILY);
+            serviceMessage.setRouting(new FloodRouting(nodeName));
+            serviceMessage.setCorrelationID(correlationId);
+            serviceMessage.setAction(DistributedJDBCPersistence.CANCEL_ACTION);
+            serviceMessage.setNotification(false);
+            MessagePayload mp = new MessagePayload();
+            mp.setPayloadText("{}");
+            serviceMessage.setPayload(mp);
+            logger.finer("Cancelling query with correlation ID " + correlationId);
+            commandChannel.write(serviceMessage.toWireBytes());
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Failed to cancel query with correlation ID {0}: {1}", new Object[] {correlationId,
+                    e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+        }
+    }
+
     /**
      * Allow access to the greater information within a DistributedQueryResult
      *
@@ -15,6 +15,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +36,7 @@ import fabric.bus.messages.impl.ServiceMessage;
 import fabric.bus.plugins.IFabletConfig;
 import fabric.bus.plugins.IFabletPlugin;
 import fabric.bus.plugins.IPluginConfig;
+import fabric.bus.routing.NeighbourTopology;
 import fabric.bus.routing.impl.StaticRouting;
 import fabric.core.io.ICallback;
 import fabric.core.io.InputTopic;
@@ -39,6 +44,7 @@ import fabric.core.io.Message;
 import fabric.core.io.OutputTopic;
 import fabric.core.logging.FLog;
 import fabric.core.properties.ConfigProperties;
+import fabric.core.util.TimerWheel;
 import fabric.registry.FabricRegistry;
 import fabric.registry.QueryScope;
 import fabric.registry.exception.PersistenceException;
@@ -55,6 +61,9 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
     private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
 
+    /** The number of threads used to handle expired query timeouts */
+    private final static int QUERY_TIMEOUT_THREADS = 4;
+
     /** The configuration object for this instance */
     private IFabletConfig fabletConfig = null;
 
@@ -89,9 +98,30 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
      */
     private Map<String, String> returnNodeByCorrelationID = new ConcurrentHashMap<String, String>();
     /**
-     * Given a correlationId, returns the wait thread for that correlationId
+     * Correlation IDs of queries whose results are streamed back as they arrive, rather than merged
+     */
+    private Set<String> streamedCorrelationIds = Collections.synchronizedSet(new HashSet<String>());
+    /**
+     * Given a correlationId of a streamed query, returns the time (System.nanoTime()) at which it was flooded to each
+     * neighbour that has not yet responded; used to measure the round trip time to the neighbour
+     */
+    private ConcurrentHashMap<String, ConcurrentHashMap<String, Long>> floodTimesByCorrelationId = new ConcurrentHashMap<String, ConcurrentHashMap<String, Long>>();
+    /**
+     * Given a correlationId, returns the pending query timeout for that correlationId
+     */
+    private Map<String, TimerWheel.Timeout> queryTimeoutsByCorrelationId = new ConcurrentHashMap<String, TimerWheel.Timeout>();
+
+    /**
+     * The timer used for the timeouts of all flooded queries (shared, so that a burst of queries does not require a
+     * thread per query)
      */
-    private Map<String, DistributedQueryWaitThread> waitThreadsByCorrelationId = new ConcurrentHashMap<String, DistributedQueryWaitThread>();
+    private TimerWheel queryTimeouts = null;
+
+    /**
+     * The threads that handle expired query timeouts (kept off the timer thread, since timing out a query can publish
+     * its partial results)
+     */
+    private ExecutorService queryTimeoutHandlers = null;
 
     private String nodeName = null;
     private String myRegistryUID = null;
@@ -127,6 +157,18 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
         perfLoggingEnabled = new Boolean(this.config(ConfigProperties.REGISTRY_DISTRIBUTED_PERF_LOGGING));
         floodRemoteQuery = new Boolean(this.config(ConfigProperties.REGISTRY_DISTRIBUTED_FLOOD_REMOTE_QUERY,
                 ConfigProperties.REGISTRY_DISTRIBUTED_FLOOD_REMOTE_QUERY_DEFAULT));
+
+        /* Query timeouts are in the order of seconds, so a 100ms tick is ample; the wheel turns every 25.6 seconds */
+        queryTimeouts = new TimerWheel("Distributed-Query-Timeouts", 100, 256, logger);
+        queryTimeoutHandlers = Executors.newFixedThreadPool(QUERY_TIMEOUT_THREADS, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Distributed-Query-Timeout-Handler");
+                t.setDaemon(true);
+                return t;
+            }
+        });
     }
 
     /**
@@ -135,6 +177,14 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
     @Override
     public void stopPlugin() {
 
+        /* Stop the query timer (pending queries will not be answered) */
+        if (queryTimeouts != null) {
+            queryTimeouts.stop();
+        }
+        if (queryTimeoutHandlers != null) {
+            queryTimeoutHandlers.shutdownNow();
+        }
+
         /* Tell the main thread to stop... */
         isRunning = false;
 
@@ -290,6 +340,15 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
                         }
 
                         boolean returnImmediately = executeQuery(correlationId, prevNode, distributedQuery);
+                        if (Boolean.parseBoolean(serviceMessage.getProperty(DistributedJDBCPersistence.STREAM_PROPERTY))) {
+                            streamedCorrelationIds.add(correlationId);
+                            if (!returnImmediately) {
+                                // Send our local results straight away, keeping only exceptions for the final result
+                                DistributedQueryResult localResult = resultByCorrelationId.put(correlationId,
+                                        new DistributedQueryResult());
+                                sendResult(correlationId, localResult.toJsonString(), true);
+                            }
+                        }
                         if (returnImmediately) {
                             // return this result immediately
                             returnResult(correlationId);
@@ -341,6 +400,18 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
                         // Get Json bytes to append to our resultset.
                         payloadBytes = payload.getPayload();
 
+                        if (Boolean.parseBoolean(serviceMessage
+                                .getProperty(DistributedJDBCPersistence.MORE_RESULTS_PROPERTY))) {
+                            // Streamed results: pass them straight on, the node is still pending
+                            ConcurrentSkipListSet<String> pendingNodes = pendingNodesByCorrelationId.get(correlationId);
+                            if (pendingNodes != null && pendingNodes.contains(prevNode)) {
+                                logger.finer("Streamed results from node [" + prevNode + "] returned");
+                                recordRoundTrip(correlationId, prevNode);
+                                sendResult(correlationId, new String(payloadBytes, "UTF-8"), true);
+                            }
+                            break;
+                        }
+
                         logger.finer("Pending results from node [" + prevNode + "] returned");
                         DistributedQueryResult currentResult = resultByCorrelationId.get(correlationId);
                         // Acquire lock for result so we can complete append.
@@ -374,6 +445,9 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
                     case DistributedJDBCPersistence.FINAL_RESULT_ACTION:
                         logger.info("Nothing to do for final results, handled by client");
                         break;
+                    case DistributedJDBCPersistence.CANCEL_ACTION:
+                        cancelQuery(correlationId, prevNode);
+                        break;
                     default:
                         logger.info("Action [" + action + "] not recognised, doing nothing");
                         break;
@@ -443,6 +517,32 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
         return numberOfNodesPending;
     }
 
+    /**
+     * Record the round trip time to a neighbour if this is its first response to a streamed query
+     *
+     * @param correlationId
+     * @param neighbour
+     */
+    private void recordRoundTrip(String correlationId, String neighbour) {
+
+        ConcurrentHashMap<String, Long> floodTimes = floodTimesByCorrelationId.get(correlationId);
+        Long floodTime = (floodTimes != null) ? floodTimes.remove(neighbour) : null;
+        if (floodTime != null) {
+            NeighbourTopology.roundTripMeasured(nodeName, neighbour, (System.nanoTime() - floodTime) / 1000000.0);
+        }
+    }
+
+    /**
+     * Remove all pending nodes for a correlationId, returning them (or null if none were pending)
+     *
+     * @param correlationId
+     * @return
+     */
+    private synchronized ConcurrentSkipListSet<String> removePendingNodes(String correlationId) {
+
+        return pendingNodesByCorrelationId.remove(correlationId);
+    }
+
     /**
      * We currently always execute our local query before we flood the query onwards
      **/
@@ -502,6 +602,13 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
         }
         pendingNodesByCorrelationId.put(correlationId, onwardNodes);
         int remainingNodes = onwardNodes.size();
+        // The first streamed response from a neighbour carries its local results, sent as soon as it receives the
+        // query, so time it to measure the round trip time to the neighbour
+        ConcurrentHashMap<String, Long> floodTimes = null;
+        if (streamedCorrelationIds.contains(correlationId)) {
+            floodTimes = new ConcurrentHashMap<String, Long>();
+            floodTimesByCorrelationId.put(correlationId, floodTimes);
+        }
         String[] nodesArray = onwardNodes.toArray(new String[] {});
         for (int i = 0; i < nodesArray.length; i++) {
             String nextNode = nodesArray[i];
@@ -516,7 +623,11 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
                     try {
                         /* Forward the message */
-                        neighbourChannels.registryBusChannel().write(serviceMessage.toWireBytes());
+                        byte[] wireBytes = serviceMessage.toWireBytes(neighbourChannels.wireFormat());
+                        if (floodTimes != null) {
+                            floodTimes.put(nextNode, System.nanoTime());
+                        }
+                        neighbourChannels.registryBusChannel().write(wireBytes);
                     } catch (Exception e) {
                         // We should disconnect from this neighbourEndPoint
                         // This will force it to be recreated if we need it in future.
@@ -533,25 +644,70 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
             }
         }
 
-        // Last thing we do is start our wait threads so any blocking on
+        // Last thing we do is schedule our timeout so any blocking on
         // flooding our query isn't part of our timeout.
-        // There is small risk our flooded queries have returned before we start our timeout threads,
-        // however when the thread times out it will check there are still pending nodes before taking any action
+        // There is small risk our flooded queries have returned before we schedule our timeout,
+        // so check there are still pending nodes once it is in place
         if (!onwardNodes.isEmpty() && remainingNodes != 0) {
-            // Launch our timeout thread
             // Assume same wait time for all pending nodes and have just one
-            // wait thread per correlationID
-            logger.finest("Starting waitingThread for correlationId = " + correlationId);
-            waitThreadsByCorrelationId.put(correlationId, new DistributedQueryWaitThread(timeOut, correlationId, this));
-            waitThreadsByCorrelationId.get(correlationId).start();
+            // timeout per correlationID
+            logger.finest("Scheduling timeout for correlationId = " + correlationId);
+            final String timedOutCorrelationId = correlationId;
+            queryTimeoutsByCorrelationId.put(correlationId, queryTimeouts.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        queryTimeoutHandlers.execute(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                try {
+                                    queryTimedOut(timedOutCorrelationId);
+                                } catch (Exception e) {
+                                    logger.log(Level.WARNING, "Failed to time out query [{0}]: {1}", new Object[] {
+                                            timedOutCorrelationId, e.getMessage()});
+                                    logger.log(Level.FINEST, "Full exception: ", e);
+                                }
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        logger.log(Level.FINE, "Not timing out query [{0}]: fablet stopping", timedOutCorrelationId);
+                    }
+                }
+            }, timeOut));
+            if (!pendingNodesByCorrelationId.containsKey(correlationId)) {
+                cancelQueryTimeout(correlationId);
+            }
         }
         return remainingNodes;
     }
 
+    /**
+     * Cancels the pending timeout (if any) for a query.
+     *
+     * @param correlationId
+     */
+    private void cancelQueryTimeout(String correlationId) {
+
+        TimerWheel.Timeout timeout = queryTimeoutsByCorrelationId.remove(correlationId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
     public void queryTimedOut(String correlationId) throws Exception {
 
+        queryTimeoutsByCorrelationId.remove(correlationId);
+        logger.fine("Timeout exceeded waiting for result with correlation ID " + correlationId);
+
+        ConcurrentSkipListSet<String> pendingNodes = pendingNodesByCorrelationId.get(correlationId);
+        if (pendingNodes == null) {
+            // All results arrived while the timeout was firing
+            return;
+        }
+
         boolean iRemovedLastPendingNode = false;
-        for (Iterator<String> iterator = pendingNodesByCorrelationId.get(correlationId).iterator(); iterator.hasNext();) {
+        for (Iterator<String> iterator = pendingNodes.iterator(); iterator.hasNext();) {
             String pendingNode = iterator.next();
             int response = updatePendingNodeByCorrelationIds(correlationId, pendingNode);
             DistributedQueryResult currentResult = resultByCorrelationId.get(correlationId);
@@ -578,6 +734,41 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
         if (myCorrelationIds.contains(correlationId)) {
             // Returning to client
             logger.finer("Looking to return final results" + results.toString());
+        } else {
+            // Returning to previous Node
+            logger.finer("Preparing to return Partial Results for correlation Id " + correlationId + results.toString());
+        }
+
+        String resultJson;
+        synchronized (results) {
+            resultJson = results.toJsonString();
+        }
+        sendResult(correlationId, resultJson, false);
+
+        // Clear out any record of this correlationID
+        resultByCorrelationId.remove(correlationId);
+        myCorrelationIds.remove(correlationId);
+        returnNodeByCorrelationID.remove(correlationId);
+        streamedCorrelationIds.remove(correlationId);
+        floodTimesByCorrelationId.remove(correlationId);
+        cancelQueryTimeout(correlationId);
+    }
+
+    /**
+     * Send results back towards the client: directly if this fablet is responsible for the correlationId, otherwise
+     * to the previous node.
+     *
+     * @param correlationId
+     * @param resultJson
+     *            the results (a DistributedQueryResult in Json notation)
+     * @param moreResults
+     *            true if these are streamed results and more will follow, false if these are the last results
+     * @throws Exception
+     */
+    private void sendResult(String correlationId, String resultJson, boolean moreResults) throws Exception {
+
+        if (myCorrelationIds.contains(correlationId)) {
+            // Returning to client
             ServiceMessage serviceMessage = new ServiceMessage();
             String[] route = {nodeName};
             serviceMessage.setRouting(new StaticRouting(route));
@@ -585,25 +776,26 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
             /* Indicate that this is a built-in Fabric plug-in */
             serviceMessage.setServiceFamilyName(DistributedJDBCPersistence.PLUGIN_FAMILY);
-            serviceMessage.setAction(DistributedJDBCPersistence.FINAL_RESULT_ACTION);
+            serviceMessage.setAction(moreResults ? DistributedJDBCPersistence.STREAMED_RESULT_ACTION
+                    : DistributedJDBCPersistence.FINAL_RESULT_ACTION);
             serviceMessage.setCorrelationID(correlationId);
 
             // Add SQL query to service message
             MessagePayload mp = new MessagePayload();
-            synchronized (results) {
-                mp.setPayloadText(results.toJsonString());
-            }
+            mp.setPayloadText(resultJson);
             serviceMessage.setPayload(mp);
-            logger.finest("About to send a final response to " + resultChannelTopic);
+            logger.finest("About to send a response to " + resultChannelTopic);
             resultChannel = FabricRegistry.homeNodeEndPoint.openOutputChannel(resultChannelTopic);
             resultChannel.write(serviceMessage.toWireBytes());
             FabricRegistry.homeNodeEndPoint.closeChannel(resultChannel, false);
 
         } else {
-            // Returning to previous Node
-            logger.finer("Preparing to return Partial Results for correlation Id " + correlationId + results.toString());
 
             String prevNode = returnNodeByCorrelationID.get(correlationId);
+            if (prevNode == null) {
+                logger.finest("No return path for correlation Id " + correlationId);
+                return;
+            }
 
             // otherwise its a service return message
             logger.finest("Point to Point service response to " + prevNode);
@@ -626,39 +818,95 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
             serviceMessage.setNotification(false);
             serviceMessage.setAction(DistributedJDBCPersistence.PARTIAL_RESULT_ACTION);
             serviceMessage.setCorrelationID(correlationId);
+            if (moreResults) {
+                serviceMessage.setProperty(DistributedJDBCPersistence.MORE_RESULTS_PROPERTY, "true");
+            }
 
             // Add result to service message
             MessagePayload mp = new MessagePayload();
-            synchronized (results) {
-                mp.setPayloadText(results.toJsonString());
-            }
+            mp.setPayloadText(resultJson);
             serviceMessage.setPayload(mp);
 
             logger.finer("Sending results: " + serviceMessage.toXML());
-            NeighbourChannels neighbourChannels = busIO.connectNeighbour(prevNode);
-            if (neighbourChannels == null) {
-                logger.fine("Failed to send partial result to " + prevNode);
-            } else {
+            sendToNeighbour(prevNode, serviceMessage);
+        }
+    }
 
-                try {
-                    /* Forward the message */
-                    neighbourChannels.registryBusChannel().write(serviceMessage.toWireBytes());
-                } catch (Exception e) {
-                    logger.finer("Problem with neighbour :\n" + e.getMessage());
-                    // We should remove this channel from the channel list in case it caused the exception
-                    // This will force it to be recreated if we need it in future.
-                    busIO.disconnectNeighbour(neighbourChannels.neighbourDescriptor(), false);
-                }
-            }
+    /**
+     * Cancel a query, discarding any results and propagating the cancellation to the nodes it is still pending
+     * against. Only the client, or the node to which results would have been returned, may cancel a query.
+     *
+     * @param correlationId
+     * @param prevNode
+     *            the node from which the cancellation came
+     * @throws Exception
+     */
+    private void cancelQuery(String correlationId, String prevNode) throws Exception {
+
+        boolean fromReturnPath = myCorrelationIds.contains(correlationId) ? nodeName.equalsIgnoreCase(prevNode)
+                : prevNode != null && prevNode.equalsIgnoreCase(returnNodeByCorrelationID.get(correlationId));
+        if (!fromReturnPath) {
+            logger.finest("Ignoring cancellation of correlation Id " + correlationId + " from [" + prevNode + "]");
+            return;
         }
 
+        logger.fine("Query with correlation Id " + correlationId + " cancelled by [" + prevNode + "]");
+        ConcurrentSkipListSet<String> pendingNodes = removePendingNodes(correlationId);
+
         // Clear out any record of this correlationID
+        cancelQueryTimeout(correlationId);
         resultByCorrelationId.remove(correlationId);
         myCorrelationIds.remove(correlationId);
         returnNodeByCorrelationID.remove(correlationId);
-        DistributedQueryWaitThread waitThread = waitThreadsByCorrelationId.remove(correlationId);
-        if (waitThread != null) {
-            waitThread.interrupt();
+        streamedCorrelationIds.remove(correlationId);
+        floodTimesByCorrelationId.remove(correlationId);
+
+        if (pendingNodes != null) {
+            for (String pendingNode : pendingNodes) {
+
+                ServiceMessage serviceMessage = new ServiceMessage();
+                serviceMessage.setServiceName(DistributedJDBCPersistence.SERVICE_NAME);
+                serviceMessage.setServiceFamilyName(Fabric.FABRIC_PLUGIN_FAMILY);
+                String[] route = {nodeName, pendingNode};
+                serviceMessage.setRouting(new StaticRouting(route));
+                serviceMessage.setActionEnRoute(false);
+                serviceMessage.setNotification(false);
+                serviceMessage.setAction(DistributedJDBCPersistence.CANCEL_ACTION);
+                serviceMessage.setCorrelationID(correlationId);
+                MessagePayload mp = new MessagePayload();
+                mp.setPayloadText("{}");
+                serviceMessage.setPayload(mp);
+
+                logger.finer("Cancelling query pending against node [" + pendingNode + "]");
+                sendToNeighbour(pendingNode, serviceMessage);
+            }
+        }
+    }
+
+    /**
+     * Send a message point to point to a neighbour, disconnecting from the neighbour if it fails.
+     *
+     * @param neighbour
+     * @param serviceMessage
+     * @throws Exception
+     */
+    private void sendToNeighbour(String neighbour, ServiceMessage serviceMessage) throws Exception {
+
+        NeighbourChannels neighbourChannels = busIO.connectNeighbour(neighbour);
+        if (neighbourChannels == null) {
+            logger.fine("Failed to send " + serviceMessage.getAction() + " to " + neighbour);
+        } else {
+
+            try {
+                /* Forward the message */
+                neighbourChannels.registryBusChannel().write(
+                        serviceMessage.toWireBytes(neighbourChannels.wireFormat()));
+            } catch (Exception e) {
+                logger.finer("Problem with neighbour :\n" + e.getMessage());
+                // We should remove this channel from the channel list in case it caused the exception
+                // This will force it to be recreated if we need it in future.
+                busIO.disconnectNeighbour(neighbourChannels.neighbourDescriptor(), false);
+            }
         }
     }
 
@@ -705,7 +953,8 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
             try {
                 /* Forward the message */
-                neighbourChannels.registryBusChannel().write(serviceMessage.toWireBytes());
+                neighbourChannels.registryBusChannel().write(
+                        serviceMessage.toWireBytes(neighbourChannels.wireFormat()));
             } catch (Exception e) {
                 logger.finer("Problem with neighbour :\n" + e.getMessage());
                 // We should remove this channel from the channel list in case it caused the exception
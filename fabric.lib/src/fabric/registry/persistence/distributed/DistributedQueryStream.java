@@ -0,0 +1,427 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.persistence.distributed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import fabric.registry.RegistryObject;
+import fabric.registry.exception.PersistenceException;
+import fabric.registry.impl.AbstractFactory;
+import fabric.registry.persistence.impl.PersistenceResultRow;
+
+/**
+ * The results of a streamed registry query, delivered as a sequence of per-node batches in the order in which they
+ * arrive, rather than once every node has responded (or the query has timed out).
+ * <p>
+ * Batches are read using <code>next()</code>, which blocks until the next batch arrives or the query ends. A query ends
+ * when all nodes have responded, when it times out, when its stop condition is satisfied (for example once a number of
+ * rows has been received) or when it is cancelled. A query that ends early is cancelled across the Fabric, so that
+ * nodes still working on it stop waiting for their neighbours.
+ * </p>
+ */
+public class DistributedQueryStream {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    private final static String PACKAGE_NAME = DistributedQueryStream.class.getPackage().getName();
+    private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
+
+    /** Marks the end of the stream in the queue of batches */
+    private static final Batch END_OF_STREAM = new Batch(null, new ArrayList<PersistenceResultRow>(), null, null,
+            null);
+
+    /**
+     * Condition used to end a query early.
+     */
+    public interface StopCondition {
+
+        /**
+         * Answers <code>true</code> if the query has received enough results, in which case no further batches are
+         * delivered and the query is cancelled.
+         *
+         * @param stream
+         *            the stream, including the batch just received.
+         *
+         * @return <code>true</code> to end the query, <code>false</code> to continue.
+         */
+        public boolean isSatisfied(DistributedQueryStream stream);
+
+    }
+
+    /**
+     * The results from a single node.
+     */
+    public static class Batch {
+
+        private final String nodeName;
+        private final List<PersistenceResultRow> rows;
+        private final List<String> exceptions;
+        private final AbstractFactory factory;
+        private final RegistryObject[] objects;
+
+        private Batch(String nodeName, List<PersistenceResultRow> rows, List<String> exceptions,
+                AbstractFactory factory, RegistryObject[] objects) {
+
+            this.nodeName = nodeName;
+            this.rows = Collections.unmodifiableList(rows);
+            this.exceptions = (exceptions != null) ? Collections.unmodifiableList(exceptions) : Collections
+                    .<String> emptyList();
+            this.factory = factory;
+            this.objects = objects;
+        }
+
+        /**
+         * Answers the node from which these results came.
+         *
+         * @return the node ID.
+         */
+        public String nodeName() {
+
+            return nodeName;
+        }
+
+        /**
+         * Answers the result rows (empty for the results of a query that did not run as a distributed query, for which
+         * only <code>objects()</code> is available).
+         *
+         * @return the rows (never <code>null</code>).
+         */
+        public List<PersistenceResultRow> rows() {
+
+            return rows;
+        }
+
+        /**
+         * Answers any exceptions reported for the node (for example if the query timed out waiting for it).
+         *
+         * @return the exception messages (never <code>null</code>).
+         */
+        public List<String> exceptions() {
+
+            return exceptions;
+        }
+
+        /**
+         * Answers the result rows converted to registry objects using the factory with which the query was made.
+         *
+         * @return the registry objects; rows that cannot be converted are skipped.
+         *
+         * @throws PersistenceException
+         *             if the query was not made with a factory.
+         */
+        public RegistryObject[] objects() throws PersistenceException {
+
+            if (objects != null) {
+                return objects.clone();
+            }
+            if (factory == null) {
+                throw new PersistenceException("No factory available to create registry objects");
+            }
+
+            ArrayList<RegistryObject> objects = new ArrayList<RegistryObject>();
+            for (PersistenceResultRow row : rows) {
+                try {
+                    RegistryObject object = factory.create(row);
+                    if (object != null) {
+                        objects.add(object);
+                    }
+                } catch (PersistenceException e) {
+                    logger.warning("failed to process results row " + row.toString());
+                }
+            }
+            return objects.toArray(new RegistryObject[objects.size()]);
+        }
+    }
+
+    /*
+     * Class fields
+     */
+
+    /** The persistence used to cancel the query, or null if the query has already ended */
+    private final DistributedJDBCPersistence persistence;
+
+    private final String correlationId;
+
+    private final AbstractFactory factory;
+
+    private final StopCondition stopCondition;
+
+    /** The time at which the query times out (System.nanoTime()) */
+    private final long deadline;
+
+    private final LinkedBlockingQueue<Batch> batches = new LinkedBlockingQueue<Batch>();
+
+    /** Exception messages reported so far, by node */
+    private final Map<String, List<String>> exceptions = new ConcurrentHashMap<String, List<String>>();
+
+    private int rowCount = 0;
+    private int nodeCount = 0;
+
+    /** The nodes that have responded so far (with or without results) */
+    private final HashSet<String> respondedNodes = new HashSet<String>();
+    private volatile boolean ended = false;
+    private volatile boolean cancelled = false;
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Answers a condition that ends a query once at least a number of rows have been received.
+     *
+     * @param rows
+     *            the number of rows.
+     *
+     * @return the condition.
+     */
+    public static StopCondition firstRows(final int rows) {
+
+        return new StopCondition() {
+
+            @Override
+            public boolean isSatisfied(DistributedQueryStream stream) {
+
+                return stream.rowCount() >= rows;
+            }
+        };
+    }
+
+    /**
+     * Answers a condition that ends a query once a number of nodes have responded (a quorum), whether or not they
+     * returned any results.
+     *
+     * @param nodes
+     *            the number of nodes.
+     *
+     * @return the condition.
+     */
+    public static StopCondition nodeQuorum(final int nodes) {
+
+        return new StopCondition() {
+
+            @Override
+            public boolean isSatisfied(DistributedQueryStream stream) {
+
+                return stream.nodeCount() >= nodes;
+            }
+        };
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new stream.
+     *
+     * @param persistence
+     *            the persistence handling the query, or null for a stream whose results are all known.
+     * @param correlationId
+     *            the correlation ID of the query.
+     * @param factory
+     *            the factory used to create registry objects from the results, or null.
+     * @param stopCondition
+     *            the condition used to end the query early, or null to wait for all nodes.
+     * @param timeout
+     *            the timeout for the query (in milliseconds).
+     */
+    DistributedQueryStream(DistributedJDBCPersistence persistence, String correlationId, AbstractFactory factory,
+            StopCondition stopCondition, long timeout) {
+
+        this.persistence = persistence;
+        this.correlationId = correlationId;
+        this.factory = factory;
+        this.stopCondition = stopCondition;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Constructs a stream holding the complete results of a query that did not run as a distributed query (for example
+     * a local query), as a single batch.
+     *
+     * @param nodeName
+     *            the node on which the query ran.
+     * @param objects
+     *            the results.
+     */
+    public DistributedQueryStream(String nodeName, RegistryObject[] objects) {
+
+        this(null, null, null, null, 0);
+        if (objects != null && objects.length > 0) {
+            batches.offer(new Batch(nodeName, new ArrayList<PersistenceResultRow>(), null, null, objects));
+            rowCount = objects.length;
+            nodeCount = 1;
+        }
+        ended = true;
+        batches.offer(END_OF_STREAM);
+    }
+
+    /**
+     * Answers the next batch of results, waiting until one arrives or the query ends.
+     *
+     * @return the batch, or <code>null</code> if the query has ended and all batches have been read.
+     *
+     * @throws InterruptedException
+     */
+    public Batch next() throws InterruptedException {
+
+        Batch batch = batches.peek();
+        if (batch == null && !ended) {
+            long remaining = deadline - System.nanoTime();
+            batch = (remaining > 0) ? batches.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (batch == null) {
+                logger.fine("Streamed query with correlation ID " + correlationId + " timed out");
+                cancel();
+            }
+        } else {
+            batch = batches.poll();
+        }
+
+        if (batch == END_OF_STREAM || batch == null) {
+            // Leave the marker for subsequent calls
+            batches.clear();
+            batches.offer(END_OF_STREAM);
+            return null;
+        }
+        return batch;
+    }
+
+    /**
+     * Ends the query, discarding any results that have not yet arrived and cancelling it across the Fabric.
+     */
+    public void cancel() {
+
+        boolean wasEnded;
+        synchronized (this) {
+            wasEnded = ended;
+            ended = true;
+            if (!wasEnded) {
+                cancelled = true;
+                batches.offer(END_OF_STREAM);
+            }
+        }
+        if (!wasEnded && persistence != null) {
+            persistence.cancelQuery(correlationId);
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if no more batches will arrive (although some may still be waiting to be read).
+     */
+    public boolean isEnded() {
+
+        return ended;
+    }
+
+    /**
+     * Answers <code>true</code> if the query was ended before all nodes had responded, either by its stop condition,
+     * a timeout or a call to <code>cancel()</code>.
+     */
+    public boolean isCancelled() {
+
+        return cancelled;
+    }
+
+    /**
+     * Answers the number of rows received so far.
+     */
+    public synchronized int rowCount() {
+
+        return rowCount;
+    }
+
+    /**
+     * Answers the number of nodes that have responded so far, whether or not they returned any results.
+     */
+    public synchronized int nodeCount() {
+
+        return nodeCount;
+    }
+
+    /**
+     * Answers the exception messages reported so far, by node.
+     */
+    public Map<String, List<String>> exceptions() {
+
+        return Collections.unmodifiableMap(exceptions);
+    }
+
+    /**
+     * Answers the correlation ID of the query.
+     */
+    public String correlationId() {
+
+        return correlationId;
+    }
+
+    /**
+     * Adds the results of a streamed response to the stream, one batch per node.
+     *
+     * @param result
+     *            the results.
+     */
+    void add(DistributedQueryResult result) {
+
+        boolean satisfied = false;
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            for (Iterator<String> nodes = result.nodeToResults.keySet().iterator(); nodes.hasNext();) {
+                String nodeName = nodes.next();
+                List<String> nodeExceptions = result.nodeToExceptionMessages.get(nodeName);
+                List<PersistenceResultRow> rows = result.nodeToResults.get(nodeName);
+                if (nodeExceptions != null) {
+                    exceptions.put(nodeName, nodeExceptions);
+                }
+                if (respondedNodes.add(nodeName)) {
+                    nodeCount++;
+                }
+                if (!rows.isEmpty() || nodeExceptions != null) {
+                    batches.offer(new Batch(nodeName, rows, nodeExceptions, factory, null));
+                    rowCount += rows.size();
+                }
+                if (stopCondition != null && stopCondition.isSatisfied(this)) {
+                    satisfied = true;
+                    break;
+                }
+            }
+        }
+        if (satisfied) {
+            logger.finer("Stop condition satisfied for streamed query with correlation ID " + correlationId);
+            cancel();
+        }
+    }
+
+    /**
+     * Ends the stream with the final response to the query.
+     *
+     * @param result
+     *            the final results (normally just the exceptions reported along the way).
+     */
+    void end(DistributedQueryResult result) {
+
+        add(result);
+        synchronized (this) {
+            if (!ended) {
+                ended = true;
+                batches.offer(END_OF_STREAM);
+            }
+        }
+    }
+}
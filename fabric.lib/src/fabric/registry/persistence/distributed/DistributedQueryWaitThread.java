@@ -20,14 +20,6 @@ public class DistributedQueryWaitThread extends Thread
 	private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
 	private long timeout;
 	private String correlationId;
-	private DistributedPersistenceFablet timeOutCallback;
-	
-	public DistributedQueryWaitThread(long timeout, String correlationId, DistributedPersistenceFablet service)
-	{
-		this.timeout = timeout;
-		this.correlationId = correlationId;
-		this.timeOutCallback = service;
-	}
 	
 	public DistributedQueryWaitThread(long timeout, String correlationId)
 	{
@@ -41,19 +33,11 @@ public class DistributedQueryWaitThread extends Thread
 		{
 			Thread.sleep(timeout);
 			logger.fine("Timeout " + timeout + " milliseconds exceeded waiting for result with correlation ID " + correlationId);
-			if (timeOutCallback != null)
-			{
-				timeOutCallback.queryTimedOut(correlationId);
-			}
 		}
 		catch (InterruptedException e)
 		{
 			logger.finest("Wait Thread interrupted for correlationId " + correlationId);
 		}
-		catch (Exception e)
-		{
-			logger.warning("FAILED TO TIMEOUT THE QUERY " + e.getMessage());
-		}
 		
 	}
 	
@@ -104,6 +104,16 @@ public class GaianPersistence extends SingletonJDBCPersistence {
         return super.queryRegistryObjects(queryString, factory, queryScope);
     }
 
+    @Override
+    public RegistryObject[] queryRegistryObjects(String queryString, Object[] parameters, AbstractFactory factory,
+        QueryScope queryScope) throws PersistenceException {
+
+        if (queryScope == QueryScope.DISTRIBUTED) {
+            queryString = mapSQLForGaian(queryString);
+        }
+        return super.queryRegistryObjects(queryString, parameters, factory, queryScope);
+    }
+
     @Override
     public int queryInt(String queryString, QueryScope queryScope) throws PersistenceException {
 
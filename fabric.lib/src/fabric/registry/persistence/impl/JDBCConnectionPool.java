@@ -0,0 +1,503 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.persistence.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.registry.exception.PersistenceException;
+
+/**
+ * A fixed-size pool of JDBC connections to the Fabric Registry.
+ * <p>
+ * Each pooled connection keeps its own cache of prepared statements, keyed by SQL text, so that frequently used
+ * parameterized queries are only compiled once per connection. Connections are opened lazily; a connection that fails
+ * with a connection error (SQL state <code>08xxx</code>) is discarded and re-opened the next time it is borrowed.
+ * </p>
+ */
+public class JDBCConnectionPool {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The JDBC driver used to connect to the Registry. */
+    private static final String DRIVER_CLASS = "org.apache.derby.jdbc.ClientDriver";
+
+    /** Interval (in seconds) between connection attempts. */
+    private static final int RETRY_INTERVAL = 5;
+
+    /*
+     * Class fields
+     */
+
+    /** The URL of the Registry database. */
+    private final String url;
+
+    /** The JDBC query timeout (in seconds), or <code>-1</code> for none. */
+    private final int queryTimeout;
+
+    /** The maximum number of prepared statements cached per connection. */
+    private final int statementCacheSize;
+
+    /** Flag indicating if connections are validated each time they are borrowed. */
+    private final boolean validateOnBorrow;
+
+    /** All of the connections in the pool. */
+    private final List<PooledConnection> connections = new ArrayList<PooledConnection>();
+
+    /** The connections available to be borrowed. */
+    private final BlockingQueue<PooledConnection> idle;
+
+    /** Object used to serialize (re)connection attempts. */
+    private final Object connectLock = new Object();
+
+    /** Flag indicating if the pool has been closed. */
+    private volatile boolean isClosed = false;
+
+    private final static Logger logger = Logger.getLogger(JDBCConnectionPool.class.getPackage().getName());
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A connection in the pool together with its prepared statement cache.
+     */
+    public class PooledConnection {
+
+        /** The JDBC connection, or <code>null</code> if it has not been opened (or has been discarded). */
+        private Connection connection = null;
+
+        /** The prepared statement cache, in least-recently-used order. */
+        private final LinkedHashMap<String, PreparedStatement> statementCache = new LinkedHashMap<String, PreparedStatement>(
+                16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+
+                boolean remove = size() > statementCacheSize;
+
+                if (remove) {
+                    closeQuietly(eldest.getValue());
+                }
+
+                return remove;
+            }
+        };
+
+        /**
+         * Answers a new (uncached) statement for this connection; the caller is responsible for closing it.
+         *
+         * @return the statement.
+         *
+         * @throws SQLException
+         */
+        public Statement createStatement() throws SQLException {
+
+            Statement s = connection.createStatement();
+
+            if (queryTimeout != -1) {
+                s.setQueryTimeout(queryTimeout);
+            }
+
+            return s;
+        }
+
+        /**
+         * Answers a prepared statement for the specified SQL, from the cache if possible. The statement must not be
+         * closed by the caller.
+         *
+         * @param sql
+         *            the SQL.
+         *
+         * @return the statement.
+         *
+         * @throws SQLException
+         */
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+
+            PreparedStatement ps = statementCache.get(sql);
+
+            if (ps == null) {
+
+                ps = connection.prepareStatement(sql);
+
+                if (queryTimeout != -1) {
+                    ps.setQueryTimeout(queryTimeout);
+                }
+
+                statementCache.put(sql, ps);
+
+            } else {
+
+                ps.clearParameters();
+
+            }
+
+            return ps;
+        }
+
+        /**
+         * Closes the JDBC connection and its cached statements.
+         */
+        private void discard() {
+
+            for (PreparedStatement ps : statementCache.values()) {
+                closeQuietly(ps);
+            }
+
+            statementCache.clear();
+
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                    /* Ignore, the connection is being discarded */
+                }
+                connection = null;
+            }
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new pool.
+     *
+     * @param url
+     *            the URL of the Registry database.
+     *
+     * @param size
+     *            the number of connections in the pool.
+     *
+     * @param statementCacheSize
+     *            the maximum number of prepared statements cached per connection.
+     *
+     * @param queryTimeout
+     *            the JDBC query timeout (in seconds), or <code>-1</code> for none.
+     *
+     * @param validateOnBorrow
+     *            <code>true</code> if connections are to be validated each time that they are borrowed,
+     *            <code>false</code> otherwise.
+     */
+    public JDBCConnectionPool(String url, int size, int statementCacheSize, int queryTimeout, boolean validateOnBorrow) {
+
+        this.url = url;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.queryTimeout = queryTimeout;
+        this.validateOnBorrow = validateOnBorrow;
+
+        size = Math.max(1, size);
+        idle = new ArrayBlockingQueue<PooledConnection>(size);
+
+        for (int c = 0; c < size; c++) {
+            PooledConnection pc = new PooledConnection();
+            connections.add(pc);
+            idle.add(pc);
+        }
+    }
+
+    /**
+     * Answers the number of connections in the pool.
+     *
+     * @return the pool size.
+     */
+    public int size() {
+
+        return connections.size();
+
+    }
+
+    /**
+     * Establishes the first connection to the Registry, retrying until successful.
+     *
+     * @throws PersistenceException
+     *             thrown if the thread is interrupted while waiting for a connection.
+     */
+    public void connect() throws PersistenceException {
+
+        PooledConnection pc = borrow();
+        release(pc);
+
+    }
+
+    /**
+     * Answers <code>true</code> if the pool has not been closed.
+     *
+     * @return the pool status.
+     */
+    public boolean isConnected() {
+
+        return !isClosed;
+
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting for one to become available if necessary. The connection is opened
+     * if required, retrying until successful.
+     *
+     * @return the connection, which must be returned using <code>release()</code>.
+     *
+     * @throws PersistenceException
+     *             thrown if the thread is interrupted while waiting for a connection (its interrupt status is
+     *             preserved).
+     */
+    public PooledConnection borrow() throws PersistenceException {
+
+        PooledConnection pc = null;
+
+        try {
+            pc = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.FINEST, "Interrupted waiting for a Registry connection");
+            throw new PersistenceException("Interrupted waiting for a Registry connection");
+        }
+
+        if (pc.connection != null && validateOnBorrow && !isValid(pc)) {
+            logger.log(Level.FINE, "Resetting JDBC connection");
+            pc.discard();
+        }
+
+        if (pc.connection == null) {
+            open(pc);
+        }
+
+        return pc;
+    }
+
+    /**
+     * Returns a connection to the pool.
+     *
+     * @param pc
+     *            the connection.
+     */
+    public void release(PooledConnection pc) {
+
+        if (pc != null) {
+            idle.offer(pc);
+        }
+
+    }
+
+    /**
+     * Handles an SQL exception raised using a pooled connection. If the exception indicates that the connection has
+     * been lost (SQL state <code>08xxx</code>) the connection is discarded so that it will be re-opened when next
+     * used.
+     *
+     * @param pc
+     *            the connection.
+     *
+     * @param e
+     *            the exception.
+     *
+     * @return <code>true</code> if the exception was a connection error, <code>false</code> otherwise.
+     */
+    public boolean handleException(PooledConnection pc, SQLException e) {
+
+        boolean isConnectionError = isConnectionError(e);
+
+        if (isConnectionError && pc != null) {
+            pc.discard();
+        }
+
+        return isConnectionError;
+    }
+
+    /**
+     * Re-establishes a connection to the Registry after a connection failure, retrying until successful.
+     *
+     * @throws PersistenceException
+     *             thrown if the thread is interrupted while waiting for a connection.
+     */
+    public void reconnect() throws PersistenceException {
+
+        PooledConnection pc = borrow();
+
+        try {
+
+            /* Check that the connection is still good (another thread may have re-opened it) */
+            if (!isValid(pc)) {
+                pc.discard();
+                open(pc);
+            }
+
+        } finally {
+            release(pc);
+        }
+    }
+
+    /**
+     * Closes all of the connections in the pool.
+     *
+     * @throws SQLException
+     *             thrown if a connection cannot be closed.
+     */
+    public void close() throws SQLException {
+
+        isClosed = true;
+        SQLException thrown = null;
+
+        for (PooledConnection pc : connections) {
+
+            for (PreparedStatement ps : pc.statementCache.values()) {
+                closeQuietly(ps);
+            }
+            pc.statementCache.clear();
+
+            if (pc.connection != null) {
+                try {
+                    pc.connection.close();
+                } catch (SQLException e) {
+                    thrown = e;
+                }
+                pc.connection = null;
+            }
+        }
+
+        if (thrown != null) {
+            throw thrown;
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if an exception represents a connection error (SQL state <code>08xxx</code>).
+     *
+     * @param e
+     *            the exception.
+     *
+     * @return <code>true</code> for a connection error, <code>false</code> otherwise.
+     */
+    public static boolean isConnectionError(SQLException e) {
+
+        /* 08 prefix codes are connection exceptions in Derby */
+        return e != null && e.getSQLState() != null && e.getSQLState().startsWith("08");
+
+    }
+
+    /**
+     * Opens the JDBC connection for a pooled connection, retrying until successful.
+     *
+     * @param pc
+     *            the pooled connection.
+     */
+    private void open(PooledConnection pc) {
+
+        synchronized (connectLock) {
+
+            logger.log(Level.FINER, "Connecting to the Registry");
+
+            /* Try until we get a connection */
+            while (pc.connection == null) {
+
+                try {
+
+                    Class.forName(DRIVER_CLASS).newInstance();
+                    pc.connection = DriverManager.getConnection(url);
+                    isClosed = false;
+
+                    logger.log(Level.FINER, "Registry connection established");
+
+                } catch (Exception e) {
+
+                    logger.log(
+                            Level.WARNING,
+                            "Failed to connect to Fabric Registry (ensure that the Registry is running); retrying in {0} second(s): [{1}]",
+                            new Object[] {RETRY_INTERVAL, e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
+
+                    /* Wait before retrying */
+                    try {
+                        Thread.sleep(RETRY_INTERVAL * 1000);
+                    } catch (InterruptedException e1) {
+                        logger.log(Level.WARNING, "Sleep interrupted: ", e1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if a pooled connection is usable.
+     *
+     * @param pc
+     *            the pooled connection.
+     *
+     * @return <code>true</code> if the connection is usable, <code>false</code> otherwise.
+     */
+    private boolean isValid(PooledConnection pc) {
+
+        boolean isValid = false;
+
+        if (pc.connection != null) {
+
+            Statement stmt = null;
+            ResultSet rs = null;
+
+            try {
+
+                stmt = pc.createStatement();
+                rs = stmt.executeQuery("values(1)");
+                isValid = true;
+
+            } catch (SQLException e) {
+
+                logger.log(Level.FINE, "Exception using Registry connection: {0}", e.getMessage());
+
+            } finally {
+
+                if (rs != null) {
+                    try {
+                        rs.close();
+                    } catch (SQLException e) {
+                    }
+                }
+
+                closeQuietly(stmt);
+            }
+        }
+
+        return isValid;
+    }
+
+    /**
+     * Closes a statement, ignoring any errors.
+     *
+     * @param s
+     *            the statement (may be <code>null</code>).
+     */
+    private static void closeQuietly(Statement s) {
+
+        if (s != null) {
+            try {
+                s.close();
+            } catch (SQLException e) {
+            }
+        }
+    }
+}
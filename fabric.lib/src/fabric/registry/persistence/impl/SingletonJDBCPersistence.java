@@ -7,17 +7,13 @@
 
 package fabric.registry.persistence.impl;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,25 +22,28 @@ import fabric.core.logging.FLog;
 import fabric.core.properties.ConfigProperties;
 import fabric.core.properties.Properties;
 import fabric.registry.QueryScope;
+import fabric.registry.RegistryCache;
 import fabric.registry.RegistryObject;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.impl.AbstractFactory;
 import fabric.registry.persistence.Persistence;
 import fabric.registry.persistence.distributed.DistributedQueryResult;
+import fabric.registry.persistence.impl.JDBCConnectionPool.PooledConnection;
 
 /**
- * The JDBC based implementation of persistence
+ * The JDBC based implementation of persistence.
+ * <p>
+ * Registry operations are run against a pool of JDBC connections so that concurrent callers do not serialize on a
+ * single connection. Parameterized queries are run using prepared statements cached against each pooled connection.
+ * </p>
  */
 public class SingletonJDBCPersistence extends Object implements Persistence {
 
     /** Copyright notice. */
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
-    /** Connection to the Fabric Registry database. */
-    private Connection fabricConnection = null;
-
-    /** Lock object controlling access to the thread connection. */
-    private Object fabricConnectionLock = new Object();
+    /** The pool of connections to the Fabric Registry database. */
+    private JDBCConnectionPool connectionPool = null;
 
     /** URL of the Fabric Registry database, used for all queries, inserts, deletes and updates. */
     protected String fabricDbUrl = null;
@@ -52,16 +51,19 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     /** JDBC query timeout. */
     private int queryTimeout = 60;
 
-    /** Cache of JDBC Statements, one per thread. */
-    HashMap<String, Statement> statementCache = new HashMap<String, Statement>();
+    /** The number of connections in the pool. */
+    private int poolSize = 4;
+
+    /** The maximum number of prepared statements cached per connection. */
+    private int statementCacheSize = 64;
 
     /** Object used to synchronise Fabric Registry reconnection attempts. */
     private Object monitor = new Object();
 
-    /** Thread pool for Registry connection test worker threads. */
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
-
-    /** Flag (set via configuration) indicating if the experimental Fabric Registry reconnection feature is enabled. */
+    /**
+     * Flag (set via configuration) indicating if the experimental Fabric Registry reconnection feature is enabled. When
+     * set, each pooled connection is validated before it is used.
+     */
     private boolean experimentalRegistryTimeoutMonitor = false;
 
     private final static String CLASS_NAME = SingletonJDBCPersistence.class.getName();
@@ -70,27 +72,6 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
     protected Properties config;
 
-    /*
-     * Inner classes
-     */
-
-    class Bool {
-
-        boolean value = false;
-
-        public Bool(boolean value) {
-            this.value = value;
-        }
-
-        public void set(boolean value) {
-            this.value = value;
-        }
-
-        public boolean get() {
-            return value;
-        }
-    }
-
     /*
      * Class methods
      */
@@ -117,186 +98,218 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
             this.queryTimeout = -1;
         }
 
+        try {
+            String configValue = fabric.config(ConfigProperties.REGISTRY_POOL_SIZE,
+                    ConfigProperties.REGISTRY_POOL_SIZE_DEFAULT);
+            this.poolSize = Integer.parseInt(configValue);
+        } catch (Exception e) {
+            this.poolSize = Integer.parseInt(ConfigProperties.REGISTRY_POOL_SIZE_DEFAULT);
+        }
+
+        try {
+            String configValue = fabric.config(ConfigProperties.REGISTRY_STATEMENT_CACHE_SIZE,
+                    ConfigProperties.REGISTRY_STATEMENT_CACHE_SIZE_DEFAULT);
+            this.statementCacheSize = Integer.parseInt(configValue);
+        } catch (Exception e) {
+            this.statementCacheSize = Integer.parseInt(ConfigProperties.REGISTRY_STATEMENT_CACHE_SIZE_DEFAULT);
+        }
+
         try {
             String configValue = fabric.config("experimental.registry.timeoutMonitor", "false");
             this.experimentalRegistryTimeoutMonitor = Boolean.parseBoolean(configValue);
         } catch (Exception e) {
             this.experimentalRegistryTimeoutMonitor = false;
         }
+
+        connectionPool = new JDBCConnectionPool(fabricDbUrl, poolSize, statementCacheSize, queryTimeout,
+                experimentalRegistryTimeoutMonitor);
     }
 
     /**
-     * Answers a new JDBC statement instance.
+     * Answers a statement with which to run the specified SQL. If there are parameters then the statement is a cached
+     * prepared statement with the parameters bound, otherwise it is a new statement that must be closed after use.
+     *
+     * @param pc
+     *            the pooled connection.
      *
-     * @return the new statement.
+     * @param sqlString
+     *            the SQL.
+     *
+     * @param parameters
+     *            the parameter values, or <code>null</code> if the SQL is not parameterized.
+     *
+     * @return the statement.
      *
      * @throws SQLException
      */
-    private Statement createStatement() throws SQLException {
+    private Statement createStatement(PooledConnection pc, String sqlString, Object[] parameters)
+        throws SQLException {
 
         Statement s = null;
-        String threadName = Thread.currentThread().getName();
 
-        if (experimentalRegistryTimeoutMonitor) {
+        if (parameters == null) {
 
-            s = registryConnectionWithRefresh().createStatement();
+            s = pc.createStatement();
 
         } else {
 
-            s = registryConnection().createStatement();
-
-            // synchronized (statementCache) {
-            //
-            // s = statementCache.get(threadName);
-            //
-            // if (s == null) {
-            //
-            // s = registryConnection().createStatement();
-            //
-            // if (queryTimeout != -1) {
-            // s.setQueryTimeout(queryTimeout);
-            // }
-            //
-            // statementCache.put(threadName, s);
-            // }
-            // }
+            PreparedStatement ps = pc.prepareStatement(sqlString);
+
+            for (int p = 0; p < parameters.length; p++) {
+                if (parameters[p] == null) {
+                    ps.setNull(p + 1, Types.VARCHAR);
+                } else {
+                    ps.setObject(p + 1, parameters[p]);
+                }
+            }
+
+            s = ps;
         }
 
         return s;
     }
 
     /**
-     * Answers the JDBC connection to the Registry.
+     * Answers the SQL for a parameterized query with the parameter values inlined as literals, for use where a prepared
+     * statement cannot be used (for example when the query is sent to another node).
      *
-     * @return the JDBC connection.
+     * @param sqlString
+     *            the parameterized SQL.
+     *
+     * @param parameters
+     *            the parameter values (may be <code>null</code>).
+     *
+     * @return the SQL with the parameter markers replaced by their values.
      */
-    private Connection registryConnection() {
+    public static String inlineParameters(String sqlString, Object[] parameters) {
 
-        Connection connection = null;
-
-        synchronized (fabricConnectionLock) {
-            connection = fabricConnection;
+        if (parameters == null || parameters.length == 0) {
+            return sqlString;
         }
 
-        return connection;
-    }
+        StringBuilder sql = new StringBuilder(sqlString.length() + parameters.length * 16);
+        boolean inQuotes = false;
+        int p = 0;
 
-    /**
-     * Answers the JDBC connection to the Registry, checking its validity and renewing if necessary.
-     *
-     * @return the JDBC connection.
-     */
-    private Connection registryConnectionWithRefresh() {
+        for (int c = 0; c < sqlString.length(); c++) {
 
-        final Bool isThreadComplete = new Bool(false);
-        final Bool doCloseConnection = new Bool(false);
+            char next = sqlString.charAt(c);
 
-        Object waitMonitor = new Object();
+            if (next == '\'') {
 
-        Runnable testConnectionWorker = new Runnable() {
+                inQuotes = !inQuotes;
+                sql.append(next);
 
-            @Override
-            public void run() {
+            } else if (next == '?' && !inQuotes && p < parameters.length) {
 
-                Connection connection = null;
+                Object value = parameters[p++];
 
-                synchronized (fabricConnectionLock) {
+                if (value == null) {
+                    sql.append("NULL");
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    sql.append(value);
+                } else {
+                    sql.append('\'').append(value.toString().replace("'", "''")).append('\'');
+                }
 
-                    if (fabricConnection == null) {
-                        jdbcConnect();
-                    }
+            } else {
 
-                    connection = fabricConnection;
-                }
+                sql.append(next);
 
-                try {
-                    Statement s = fabricConnection.createStatement();
-                    s.executeQuery("values(1)");
-                } catch (SQLException e) {
-                    synchronized (doCloseConnection) {
-                        doCloseConnection.set(true);
-                        logger.log(Level.FINE, "Exception using Registry connection: {0}", e.getMessage());
-                    }
-                }
+            }
+        }
 
-                synchronized (isThreadComplete) {
-                    isThreadComplete.set(true);
-                }
+        return sql.toString();
+    }
 
-                synchronized (waitMonitor) {
-                    waitMonitor.notify();
-                }
+    /**
+     * Runs a query.
+     *
+     * @param stmt
+     *            the statement returned by <code>createStatement()</code>.
+     *
+     * @param sqlString
+     *            the SQL.
+     *
+     * @return the results.
+     *
+     * @throws SQLException
+     */
+    private ResultSet executeQuery(Statement stmt, String sqlString) throws SQLException {
 
-                // try {
-                // Thread.sleep(1);
-                // } catch (InterruptedException e1) {
-                // }
-
-                synchronized (doCloseConnection) {
-                    if (doCloseConnection.get()) {
-                        try {
-                            connection.close();
-                        } catch (SQLException e) {
-                            logger.log(Level.FINE, "Could not close stale Registry connection: {0}", e.getMessage());
-                        }
-                    }
-                }
-            }
-        };
+        if (stmt instanceof PreparedStatement) {
+            return ((PreparedStatement) stmt).executeQuery();
+        } else {
+            return stmt.executeQuery(sqlString);
+        }
+    }
 
-        executor.execute(testConnectionWorker);
+    /**
+     * Releases the resources used to run a query, returning the connection to the pool.
+     *
+     * @param pc
+     *            the pooled connection.
+     *
+     * @param stmt
+     *            the statement (cached prepared statements are not closed).
+     *
+     * @param rs
+     *            the result set.
+     */
+    private void release(PooledConnection pc, Statement stmt, ResultSet rs) {
 
-        long waitFor = 5000;
-        long start = System.currentTimeMillis();
-        long end = 0;
-        boolean interrupted = false;
-        do {
+        if (rs != null) {
             try {
-                interrupted = false;
-                synchronized (waitMonitor) {
-                    waitMonitor.wait(waitFor);
-                }
-            } catch (InterruptedException e) {
-                interrupted = true;
+                rs.close();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Error closing result set! ", e);
             }
-            end = System.currentTimeMillis();
-        } while (interrupted && ((end - start) < waitFor));
-
-        synchronized (isThreadComplete) {
-
-            synchronized (doCloseConnection) {
+        }
 
-                if (!isThreadComplete.get() || doCloseConnection.get()) {
+        if (stmt != null && !(stmt instanceof PreparedStatement)) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+            }
+        }
 
-                    synchronized (fabricConnectionLock) {
+        connectionPool.release(pc);
+    }
 
-                        /* Refresh the JDBC connection */
-                        logger.log(Level.FINE, "Resetting JDBC connection");
-                        fabricConnection = null;
-                        jdbcConnect();
+    /**
+     * Handles an exception raised running a query: connection errors trigger a reconnection attempt (if enabled), while
+     * any other error is re-thrown.
+     *
+     * @param sqlString
+     *            the SQL.
+     *
+     * @param thrownException
+     *            the exception.
+     *
+     * @throws PersistenceException
+     *             thrown if the exception was not a connection error.
+     */
+    private void handleQueryException(String sqlString, SQLException thrownException) throws PersistenceException {
 
-                        /* Tell the thread to clean up the connection */
-                        doCloseConnection.set(true);
+        logger.log(Level.WARNING, "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
+                new Object[] {sqlString, thrownException.getSQLState(), thrownException.getErrorCode(),
+                        thrownException.getMessage()});
+        logger.log(Level.FINEST, "Full exception: ", thrownException);
 
-                        try {
-                            start = System.currentTimeMillis();
-                            Statement s = fabricConnection.createStatement();
-                            s.executeQuery("values(1)");
-                            end = System.currentTimeMillis();
-                            logger.log(Level.FINE, "Query took [{0}] seconds with the new connection",
-                                    (end - start) / 1000);
-                        } catch (SQLException e) {
-                            synchronized (doCloseConnection) {
-                                doCloseConnection.set(true);
-                                logger.log(Level.FINE, "Exception using Registry connection: {0}", e.getMessage());
-                            }
-                        }
-                    }
+        if (JDBCConnectionPool.isConnectionError(thrownException)) {
+            /* 08 prefix codes are connection exceptions in Derby */
+            String reconnectEnabled = config.getProperty(ConfigProperties.REGISTRY_RECONNECT, "false");
+            logger.log(Level.FINER, "Reconnect enabled: " + reconnectEnabled);
+            if (reconnectEnabled.equalsIgnoreCase("true")) {
+                logger.log(Level.WARNING, "Registry connection lost... attempting to reconnect...");
+                synchronized (monitor) {
+                    connectionPool.reconnect();
                 }
             }
+        } else { // anything else, log it and throw exception
+            throw new PersistenceException("Error occurred executing query.", thrownException.getMessage(),
+                    thrownException.getErrorCode(), thrownException.getSQLState());
         }
-
-        return fabricConnection;
     }
 
     /**
@@ -306,102 +319,19 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     @Override
     public void connect() throws PersistenceException {
 
-        jdbcConnect();
-    }
-
-    /**
-     * Establish the connection with the Registry.
-     *
-     * If it is not available, keep retrying at regular intervals.
-     */
-    private void jdbcConnect() {
-
-        boolean connected = false;
-        int retryInterval = 5;
-
-        synchronized (fabricConnectionLock) {
-
-            /* if we were connected, tidy up the previous connection where possible */
-            if (fabricConnection != null) { /* runtime connection drop */
-                logger.log(Level.FINEST,
-                        "Testing if Registry connection has already been established by another thread");
-                Statement stmt = null;
-                ResultSet rs = null;
-                try {
-                    stmt = fabricConnection.createStatement();
-                    rs = stmt.executeQuery("values(1)");
-                    /* if we get here we just return */
-                    logger.log(Level.FINER, "Registry connection already established");
-                    return;
-                } catch (SQLException e) {
-                    if (e.getSQLState().startsWith("08")) { /* not connected */
-                        try {
-                            fabricConnection.close(); /* attempt to release any resources */
-                        } catch (Exception e1) {
-                        } finally {
-                            fabricConnection = null;
-                        }
-                    } else {
-                        /* some other exception */
-                    }
-                } finally {
-                    if (rs != null) {
-                        try {
-                            rs.close();
-                        } catch (SQLException e) {
-                        }
-                    }
-                    if (stmt != null) {
-                        try {
-                            stmt.close();
-                        } catch (SQLException e) {
-                        }
-                    }
-                }
-            }
-
-            logger.log(Level.FINER, "Connecting to the Registry");
-            /* try until we get a connection */
-            while (!connected) {
-                try {
-                    Class.forName("org.apache.derby.jdbc.ClientDriver").newInstance();
-                    fabricConnection = DriverManager.getConnection(fabricDbUrl);
-                    connected = true;
-
-                    logger.log(Level.FINER, "Registry connection established");
-
-                } catch (Exception e) { /* log the exception and retry in 10 seconds */
-
-                    logger.log(
-                            Level.WARNING,
-                            "Failed to connect to Fabric Registry (ensure that the Registry is running); retrying in {0} second(s): [{1}]",
-                            new Object[] {retryInterval, e.getMessage()});
-                    logger.log(Level.FINEST, "Full exception: ", e);
-
-                    /* Wait before retrying */
-                    try {
-                        Thread.sleep(retryInterval * 1000);
-                    } catch (InterruptedException e1) {
-                        logger.log(Level.WARNING, "Sleep interrupted: ", e1);
-                    }
-                }
-            }
-        }
+        connectionPool.connect();
     }
 
     @Override
     public void disconnect() throws PersistenceException {
 
-        synchronized (fabricConnectionLock) {
-
-            if (fabricConnection != null) {
-                try {
-                    fabricConnection.close();
-                } catch (SQLException e) {
-                    logger.log(Level.WARNING, "Failed to disconnect from Fabric Registry: ", e.getMessage());
-                    logger.log(Level.FINEST, "Full exception: ", e);
-                    throw new PersistenceException();
-                }
+        if (connectionPool != null) {
+            try {
+                connectionPool.close();
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Failed to disconnect from Fabric Registry: ", e.getMessage());
+                logger.log(Level.FINEST, "Full exception: ", e);
+                throw new PersistenceException();
             }
         }
     }
@@ -410,14 +340,48 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     public RegistryObject[] queryRegistryObjects(String sqlString, AbstractFactory factory, QueryScope queryScope)
             throws PersistenceException {
 
+        return runRegistryObjectQuery(sqlString, null, factory);
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#queryRegistryObjects(java.lang.String, java.lang.Object[],
+     *      fabric.registry.impl.AbstractFactory, fabric.registry.QueryScope)
+     */
+    @Override
+    public RegistryObject[] queryRegistryObjects(String sqlString, Object[] parameters, AbstractFactory factory,
+            QueryScope queryScope) throws PersistenceException {
+
+        return runRegistryObjectQuery(sqlString, parameters, factory);
+    }
+
+    /**
+     * Runs a query for Registry objects.
+     *
+     * @param sqlString
+     *            the SELECT statement.
+     *
+     * @param parameters
+     *            the parameter values, or <code>null</code> if the SQL is not parameterized.
+     *
+     * @param factory
+     *            the object factory used to convert each row into the appropriate registry object.
+     *
+     * @return the matching objects.
+     *
+     * @throws PersistenceException
+     */
+    private RegistryObject[] runRegistryObjectQuery(String sqlString, Object[] parameters, AbstractFactory factory)
+        throws PersistenceException {
+
         ArrayList<RegistryObject> objects = new ArrayList<RegistryObject>();
+        PooledConnection pc = connectionPool.borrow();
         Statement stmt = null;
         ResultSet rs = null;
         SQLException thrownException = null;
 
         try {
-            stmt = createStatement();
-            rs = stmt.executeQuery(sqlString);
+            stmt = createStatement(pc, sqlString, parameters);
+            rs = executeQuery(stmt, sqlString);
             RegistryObject regObject = null;
             PersistenceResultKeys keys = new PersistenceResultKeys(rs.getMetaData());
             while (rs.next()) {
@@ -428,39 +392,13 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
             }
         } catch (SQLException sqlEx) {
             thrownException = sqlEx;
+            connectionPool.handleException(pc, sqlEx);
         } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex1) {
-                    logger.log(Level.WARNING, "Error closing result set! ", thrownException);
-                }
-            }
+            release(pc, stmt, rs);
         }
 
         if (thrownException != null) {
-
-            logger.log(Level.WARNING, "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
-                    new Object[] {sqlString, thrownException.getSQLState(), thrownException.getErrorCode(),
-                            thrownException.getMessage()});
-            logger.log(Level.FINEST, "Full exception: ", thrownException);
-        }
-
-        if ((thrownException != null && thrownException.getSQLState().startsWith("08")) || registryConnection() == null) {
-            /* 08 prefix codes are connection exceptions in Derby */
-            String reconnectEnabled = config.getProperty("registry.reconnect", "false");
-            logger.log(Level.FINER, "Reconnect enabled: " + reconnectEnabled);
-            if (reconnectEnabled.equalsIgnoreCase("true")) {
-                logger.log(Level.WARNING, "Registry connection lost... attempting to reconnect...");
-                synchronized (monitor) {
-                    jdbcConnect();
-                }
-            }
-        } else { // anything else, log it and throw exception
-            if (thrownException != null) {
-                throw new PersistenceException("Error occurred executing query.", thrownException.getMessage(),
-                        thrownException.getErrorCode(), thrownException.getSQLState());
-            }
+            handleQueryException(sqlString, thrownException);
         }
 
         return objects.toArray(new RegistryObject[] {});
@@ -469,51 +407,27 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     protected int queryInt(String sqlString, QueryScope queryScope) throws PersistenceException {
 
         int returnValue = 0;
+        PooledConnection pc = connectionPool.borrow();
         Statement stmt = null;
         ResultSet rs = null;
         SQLException thrownException = null;
 
         try {
-            stmt = createStatement();
-            rs = stmt.executeQuery(sqlString);
+            stmt = createStatement(pc, sqlString, null);
+            rs = executeQuery(stmt, sqlString);
             while (rs.next()) {
                 /* only expecting a single int value */
                 returnValue = rs.getInt(1);
             }
         } catch (SQLException sqlEx) {
             thrownException = sqlEx;
+            connectionPool.handleException(pc, sqlEx);
         } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex1) {
-                    logger.log(Level.WARNING, "Error closing result set! ", thrownException);
-                }
-            }
+            release(pc, stmt, rs);
         }
 
         if (thrownException != null) {
-            logger.log(Level.WARNING, "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
-                    new Object[] {sqlString, thrownException.getSQLState(), thrownException.getErrorCode(),
-                            thrownException.getMessage()});
-            logger.log(Level.FINEST, "Full exception: ", thrownException);
-        }
-
-        if ((thrownException != null && thrownException.getSQLState().startsWith("08")) || registryConnection() == null) {
-            /* 08 prefix codes are connection exceptions in Derby */
-            String reconnectEnabled = config.getProperty("registry.reconnect", "false");
-            logger.log(Level.FINER, "Reconnect enabled: " + reconnectEnabled);
-            if (reconnectEnabled.equalsIgnoreCase("true")) {
-                logger.log(Level.WARNING, "Registry connection lost... attempting to reconnect...");
-                synchronized (monitor) {
-                    jdbcConnect();
-                }
-            }
-        } else { // anything else, log it and throw exception
-            if (thrownException != null) {
-                throw new PersistenceException("Error occurred executing query.", thrownException.getMessage(),
-                        thrownException.getErrorCode(), thrownException.getSQLState());
-            }
+            handleQueryException(sqlString, thrownException);
         }
 
         return returnValue;
@@ -526,14 +440,14 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     public String queryString(String queryString, QueryScope queryScope) throws PersistenceException {
 
         String returnValue = null;
-
+        PooledConnection pc = connectionPool.borrow();
         Statement stmt = null;
         ResultSet rs = null;
         SQLException thrownException = null;
 
         try {
-            stmt = createStatement();
-            rs = stmt.executeQuery(queryString);
+            stmt = createStatement(pc, queryString, null);
+            rs = executeQuery(stmt, queryString);
             while (rs.next()) {
                 /* only expecting a single row and a single column value */
                 returnValue = rs.getString(1);
@@ -541,39 +455,13 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
             }
         } catch (SQLException sqlEx) {
             thrownException = sqlEx;
+            connectionPool.handleException(pc, sqlEx);
         } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex1) {
-                    logger.log(Level.WARNING, "Error closing result set! ", thrownException);
-                    // log.log(this, ILogger.ERROR, Fabric.message("registry.resultset.failed"));
-                }
-            }
+            release(pc, stmt, rs);
         }
 
         if (thrownException != null) {
-            logger.log(Level.WARNING, "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
-                    new Object[] {queryString, thrownException.getSQLState(), thrownException.getErrorCode(),
-                            thrownException.getMessage()});
-            logger.log(Level.FINEST, "Full exception: ", thrownException);
-        }
-
-        if ((thrownException != null && thrownException.getSQLState().startsWith("08")) || registryConnection() == null) {
-            /* 08 prefix codes are connection exceptions in Derby */
-            String reconnectEnabled = config.getProperty("registry.reconnect", "false");
-            logger.log(Level.FINER, "Reconnect enabled: " + reconnectEnabled);
-            if (reconnectEnabled.equalsIgnoreCase("true")) {
-                logger.log(Level.WARNING, "Registry connection lost... attempting to reconnect...");
-                synchronized (monitor) {
-                    jdbcConnect();
-                }
-            }
-        } else { // anything else, log it and throw exception
-            if (thrownException != null) {
-                throw new PersistenceException("Error occurred executing query.", thrownException.getMessage(),
-                        thrownException.getErrorCode(), thrownException.getSQLState());
-            }
+            handleQueryException(queryString, thrownException);
         }
 
         return returnValue;
@@ -582,58 +470,30 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     @Override
     public Object[] query(String sqlString, QueryScope queryScope) throws PersistenceException {
 
-        Object[] returnValues = null;
-        List<Object> values = null;
-
+        List<Object> values = new ArrayList<Object>();
+        PooledConnection pc = connectionPool.borrow();
         Statement stmt = null;
         ResultSet rs = null;
         SQLException thrownException = null;
 
         try {
-            stmt = createStatement();
-            rs = stmt.executeQuery(sqlString);
-            values = new ArrayList<Object>();
+            stmt = createStatement(pc, sqlString, null);
+            rs = executeQuery(stmt, sqlString);
             while (rs.next()) {
                 values.add(processResultRow(rs));
             }
         } catch (SQLException sqlEx) {
             thrownException = sqlEx;
+            connectionPool.handleException(pc, sqlEx);
         } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex1) {
-                    logger.log(Level.WARNING, "Error closing result set! ", thrownException);
-                }
-            }
+            release(pc, stmt, rs);
         }
 
         if (thrownException != null) {
-            logger.log(Level.WARNING, "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
-                    new Object[] {sqlString, thrownException.getSQLState(), thrownException.getErrorCode(),
-                    thrownException.getMessage()});
-            logger.log(Level.FINEST, "Full exception: ", thrownException);
+            handleQueryException(sqlString, thrownException);
         }
 
-        if ((thrownException != null && thrownException.getSQLState().startsWith("08")) || registryConnection() == null) {
-            /* 08 prefix codes are connection exceptions in Derby */
-            String reconnectEnabled = config.getProperty("registry.reconnect", "false");
-            logger.log(Level.FINER, "Reconnect enabled: " + reconnectEnabled);
-            if (reconnectEnabled.equalsIgnoreCase("true")) {
-                logger.log(Level.WARNING, "Registry connection lost... attempting to reconnect...");
-                synchronized (monitor) {
-                    jdbcConnect();
-                }
-            }
-        } else { // anything else, log it and throw exception
-            if (thrownException != null) {
-                throw new PersistenceException("Error occurred executing query.", thrownException.getMessage(),
-                        thrownException.getErrorCode(), thrownException.getSQLState());
-            }
-        }
-
-        returnValues = values.toArray(new Object[] {});
-        return returnValues;
+        return values.toArray(new Object[] {});
     }
 
     /**
@@ -697,13 +557,14 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     @Override
     public boolean updateRegistryObject(String sqlString, boolean ignoreDuplicateWarning) throws PersistenceException {
 
-        if (registryConnection() != null) {
+        if (connectionPool.isConnected()) {
 
+            PooledConnection pc = connectionPool.borrow();
             Statement stmt = null;
 
             try {
 
-                stmt = createStatement();
+                stmt = createStatement(pc, sqlString, null);
                 stmt.executeUpdate(sqlString);
 
             } catch (SQLException e) {
@@ -716,14 +577,20 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
 
                 } else {
 
-                    if (e.getSQLState().startsWith("08")) { /* 08 prefix codes are connection exceptions in Derby */
+                    if (connectionPool.handleException(pc, e)) { /* 08 prefix codes are connection exceptions in Derby */
 
                         logger.log(Level.WARNING, "Registry connection lost; attempting to reconnect");
-                        String reconnectEnabled = config.getProperty("registry.reconnect", "false");
+                        String reconnectEnabled = config.getProperty(ConfigProperties.REGISTRY_RECONNECT, "false");
 
                         if (reconnectEnabled.equalsIgnoreCase("true")) {
+
+                            /* Return the failed connection first, since reconnecting needs a connection from the pool */
+                            release(pc, stmt, null);
+                            pc = null;
+                            stmt = null;
+
                             synchronized (monitor) {
-                                jdbcConnect();
+                                connectionPool.reconnect();
                             }
                         }
 
@@ -737,6 +604,15 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
 
                     }
                 }
+
+            } finally {
+
+                if (pc != null) {
+                    release(pc, stmt, null);
+                }
+
+                /* Discard any cached query results that may now be stale */
+                RegistryCache.statementExecuted(sqlString);
             }
 
             return true;
@@ -760,10 +636,14 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     @Override
     public boolean updateRegistryObjects(String[] sqlStrings) throws PersistenceException {
 
-        if (registryConnection() != null) {
+        if (connectionPool.isConnected()) {
+
+            PooledConnection pc = connectionPool.borrow();
+            Statement stmt = null;
+
             try {
 
-                Statement stmt = createStatement();
+                stmt = createStatement(pc, null, null);
 
                 for (int z = 0; z < sqlStrings.length; z++) {
                     stmt.addBatch(sqlStrings[z]);
@@ -783,6 +663,7 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
 
             } catch (SQLException e) {
                 logger.log(Level.WARNING, "Failed to execute batch updates: ", e);
+                connectionPool.handleException(pc, e);
                 String sqlState = e.getSQLState();
                 if (sqlState.equals("XJ208")) {
                     SQLException sqlEx = e.getNextException();
@@ -798,6 +679,13 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
                                 .getErrorCode(), sqlState);
                     }
                 }
+            } finally {
+                release(pc, stmt, null);
+
+                /* Discard any cached query results that may now be stale */
+                for (String sql : sqlStrings) {
+                    RegistryCache.statementExecuted(sql);
+                }
             }
             return true;
         } else {
@@ -809,49 +697,24 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
             throws PersistenceException {
 
         DistributedQueryResult queryResult = null;
+        PooledConnection pc = connectionPool.borrow();
         Statement stmt = null;
         ResultSet rs = null;
         SQLException thrownException = null;
 
         try {
-            stmt = createStatement();
-            rs = stmt.executeQuery(sqlString);
+            stmt = createStatement(pc, sqlString, null);
+            rs = executeQuery(stmt, sqlString);
             queryResult = new DistributedQueryResult(nodeName, rs);
         } catch (SQLException sqlEx) {
             thrownException = sqlEx;
+            connectionPool.handleException(pc, sqlEx);
         } finally {
-            if (rs != null) {
-                try {
-                    rs.close();
-                } catch (SQLException ex1) {
-                    logger.log(Level.WARNING, "Error closing result set! ", thrownException);
-                    // log.log(this, ILogger.ERROR, Fabric.message("registry.resultset.failed"));
-                }
-            }
+            release(pc, stmt, rs);
         }
 
         if (thrownException != null) {
-            logger.log(Level.WARNING, "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
-                    new Object[] {sqlString, thrownException.getSQLState(), thrownException.getErrorCode(),
-                            thrownException.getMessage()});
-            logger.log(Level.FINEST, "Full exception: ", thrownException);
-        }
-
-        if ((thrownException != null && thrownException.getSQLState().startsWith("08")) || registryConnection() == null) {
-            /* 08 prefix codes are connection exceptions in Derby */
-            String reconnectEnabled = config.getProperty("registry.reconnect", "false");
-            logger.log(Level.FINER, "Reconnect enabled: " + reconnectEnabled);
-            if (reconnectEnabled.equalsIgnoreCase("true")) {
-                logger.log(Level.WARNING, "Registry connection lost... attempting to reconnect...");
-                synchronized (monitor) {
-                    jdbcConnect();
-                }
-            }
-        } else { // anything else, log it and throw exception
-            if (thrownException != null) {
-                throw new PersistenceException("Error occurred executing query.", thrownException.getMessage(),
-                        thrownException.getErrorCode(), thrownException.getSQLState());
-            }
+            handleQueryException(sqlString, thrownException);
         }
 
         return queryResult;
@@ -12,12 +12,11 @@ import java.util.ArrayList;
 import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.IReplicate;
 import fabric.bus.routing.IRouting;
+import fabric.bus.routing.NeighbourTopology;
 import fabric.bus.routing.impl.Routing;
 import fabric.bus.routing.impl.StaticRouting;
 import fabric.core.xml.XML;
 import fabric.registry.FabricRegistry;
-import fabric.registry.NodeNeighbour;
-import fabric.registry.QueryScope;
 import fabric.registry.Route;
 import fabric.registry.RouteFactory;
 
@@ -74,12 +73,14 @@ public class FloodRouting extends Routing {
      */
     private FloodRouting(FloodRouting source) {
 
-        super();
+        super(source);
         this.startNode = source.startNode();
         this.previousNode = source.previousNode();
         this.ttl = source.getTTL();
         this.retained = source.isRetained();
-        this.nextNodes = source.nextNodes();
+
+        /* Share the list of next nodes if it has already been determined (it is never modified in place) */
+        this.nextNodes = source.nextNodes;
     }
 
     /**
@@ -197,30 +198,20 @@ public class FloodRouting extends Routing {
         /* If we haven't fetched the list of nodes yet... */
         if (nextNodes == null) {
 
-            /* Get the complete set of unique node neighbours by 'best' interface */
-            NodeNeighbour[] nn = FabricRegistry.getNodeNeighbourFactory(QueryScope.LOCAL)
-                    .getUniqueNeighboursByNeighbourId(homeNode());
-            ArrayList<String> neighbours = new ArrayList<String>();
+            /* Get the unique node neighbours from the in-memory topology view (no Registry query needed) */
+            String[] neighbours = NeighbourTopology.neighbours(homeNode());
+            ArrayList<String> onwardNodes = new ArrayList<String>(neighbours.length);
 
             /* For each neighbour... */
-            for (int i = 0; i < nn.length; i++) {
+            for (int i = 0; i < neighbours.length; i++) {
 
                 /* If the neighbour is not the previous node... */
-                if (this.previousNode == null || !nn[i].getNeighbourId().equals(this.previousNode)) {
-
-                    /* If the neighbour is not this node... */
-                    if (!(nn[i].getNeighbourId().equals(homeNode()))) {
-
-                        /* If the neighbour has not been added already... */
-                        if (!neighbours.contains(nn[i].getNeighbourId())) {
-
-                            neighbours.add(nn[i].getNeighbourId());
-                        }
-                    }
+                if (this.previousNode == null || !neighbours[i].equals(this.previousNode)) {
+                    onwardNodes.add(neighbours[i]);
                 }
             }
 
-            nextNodes = neighbours.toArray(new String[neighbours.size()]);
+            nextNodes = onwardNodes.toArray(new String[onwardNodes.size()]);
         }
 
         return nextNodes;
@@ -270,15 +261,7 @@ public class FloodRouting extends Routing {
     @Override
     public boolean isDuplicate(IFabricMessage message) {
 
-        /* Check the FloodMessageService cache if this message has been seen before */
-        String uid = message.getUID();
-        boolean duplicate = FloodMessageService.getInstance().isDuplicate(uid);
-
-        if (!duplicate) {
-            /* Add the message to the cache */
-            FloodMessageService.getInstance().addMessage(message, this.ttl, this.retained);
-        }
-
-        return duplicate;
+        /* Check the FloodMessageService cache if this message has been seen before, adding it if not */
+        return FloodMessageService.getInstance().recordMessage(message, this.ttl, this.retained);
     }
 }
@@ -0,0 +1,323 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.services.messageforwarding;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IFeedMessage;
+import fabric.bus.messages.WireFormat;
+
+/**
+ * A bounded queue of outbound messages for a single destination (neighbouring node or local actor).
+ * <p>
+ * Messages are held in memory up to the configured capacity. When the {@link OverflowPolicy#SPILL} policy is in use,
+ * further messages are serialized to an overflow file and read back, in order, once the in-memory messages have been
+ * sent. Instances are not thread-safe; access is serialized by the {@link MessageForwardingService}.
+ * </p>
+ */
+class ForwardingQueue {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class static fields
+     */
+
+    private final static Logger logger = Logger.getLogger("fabric.bus.services");
+
+    /*
+     * Class fields
+     */
+
+    /** The destination served by this queue. */
+    private final String destination;
+
+    /** The maximum number of messages held in memory. */
+    private final int capacity;
+
+    /** The in-memory messages. */
+    private final ArrayDeque<OutboundMessage> queue = new ArrayDeque<OutboundMessage>();
+
+    /** The directory in which overflow files are created. */
+    private final File spillDirectory;
+
+    /** The overflow file, created on first use. */
+    private RandomAccessFile spillFile = null;
+
+    /** The name of the overflow file. */
+    private File spillFileName = null;
+
+    /** The records of the messages currently in the overflow file, in order. */
+    private final ArrayDeque<SpillRecord> spilled = new ArrayDeque<SpillRecord>();
+
+    /** The offset at which the next spilled message will be written. */
+    private long spillWriteOffset = 0;
+
+    /** The number of messages discarded from this queue. */
+    private long dropped = 0;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * The in-memory record of a message written to the overflow file.
+     */
+    private static class SpillRecord {
+
+        /** The routing details of the message (without the message itself). */
+        OutboundMessage header = null;
+
+        /** The topic associated with the message. */
+        String topic = null;
+
+        /** The offset of the serialized message in the overflow file. */
+        long offset = 0;
+
+        /** The length of the serialized message. */
+        int length = 0;
+
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param destination
+     *            the destination served by this queue.
+     *
+     * @param capacity
+     *            the maximum number of messages held in memory.
+     *
+     * @param spillDirectory
+     *            the directory in which overflow files are created.
+     */
+    ForwardingQueue(String destination, int capacity, File spillDirectory) {
+
+        this.destination = destination;
+        this.capacity = Math.max(1, capacity);
+        this.spillDirectory = spillDirectory;
+
+    }
+
+    /**
+     * Answers the destination served by this queue.
+     *
+     * @return the destination key.
+     */
+    String destination() {
+
+        return destination;
+
+    }
+
+    /**
+     * Answers the total number of messages waiting to be sent (in memory and spilled).
+     *
+     * @return the number of messages.
+     */
+    int size() {
+
+        return queue.size() + spilled.size();
+
+    }
+
+    /**
+     * Answers <code>true</code> if there are no messages waiting to be sent.
+     *
+     * @return the queue state.
+     */
+    boolean isEmpty() {
+
+        return queue.isEmpty() && spilled.isEmpty();
+
+    }
+
+    /**
+     * Answers <code>true</code> if the in-memory queue is at capacity.
+     *
+     * @return the queue state.
+     */
+    boolean isFull() {
+
+        return queue.size() >= capacity;
+
+    }
+
+    /**
+     * Answers <code>true</code> if there are messages in the overflow file; while this is the case new messages must
+     * also be spilled to preserve ordering.
+     *
+     * @return the queue state.
+     */
+    boolean hasSpilled() {
+
+        return !spilled.isEmpty();
+
+    }
+
+    /**
+     * Answers the number of messages discarded from this queue.
+     *
+     * @return the count.
+     */
+    long dropped() {
+
+        return dropped;
+
+    }
+
+    /**
+     * Adds a message to the in-memory queue. The caller must ensure that the queue is not full.
+     *
+     * @param message
+     *            the message.
+     */
+    void add(OutboundMessage message) {
+
+        queue.addLast(message);
+
+    }
+
+    /**
+     * Discards the oldest in-memory message.
+     */
+    void dropOldest() {
+
+        if (queue.pollFirst() != null) {
+            dropped++;
+        }
+
+    }
+
+    /**
+     * Writes a message to the overflow file.
+     *
+     * @param message
+     *            the message.
+     *
+     * @throws Exception
+     *             thrown if the message cannot be serialized or written.
+     */
+    void spill(OutboundMessage message) throws Exception {
+
+        if (spillFile == null) {
+            spillFileName = File.createTempFile("fabric-forwarding-", ".spill", spillDirectory);
+            spillFileName.deleteOnExit();
+            spillFile = new RandomAccessFile(spillFileName, "rw");
+        }
+
+        /* The overflow file is private to this node, so the compact binary format can always be used */
+        byte[] wireBytes = message.message().toWireBytes(WireFormat.BINARY);
+
+        spillFile.seek(spillWriteOffset);
+        spillFile.write(wireBytes);
+
+        SpillRecord record = new SpillRecord();
+        record.header = new OutboundMessage(message, null);
+        record.topic = message.message().metaGetTopic();
+        record.offset = spillWriteOffset;
+        record.length = wireBytes.length;
+        spilled.addLast(record);
+
+        spillWriteOffset += wireBytes.length;
+
+    }
+
+    /**
+     * Removes up to <code>max</code> messages from the head of the queue, in order.
+     *
+     * @param batch
+     *            the list to which the messages are added.
+     *
+     * @param max
+     *            the maximum number of messages to remove.
+     *
+     * @return the number of messages removed.
+     */
+    int drainTo(List<OutboundMessage> batch, int max) {
+
+        int count = 0;
+
+        while (count < max && !queue.isEmpty()) {
+            batch.add(queue.pollFirst());
+            count++;
+        }
+
+        while (count < max && !spilled.isEmpty()) {
+
+            SpillRecord record = spilled.pollFirst();
+
+            try {
+
+                byte[] wireBytes = new byte[record.length];
+                spillFile.seek(record.offset);
+                spillFile.readFully(wireBytes);
+
+                IFeedMessage message = (IFeedMessage) FabricMessageFactory.create(record.topic, wireBytes);
+                batch.add(new OutboundMessage(record.header, message));
+                count++;
+
+            } catch (Exception e) {
+
+                /* The message cannot be recovered */
+                logger.log(Level.WARNING, "Cannot recover spilled message for [{0}] (topic [{1}]), dropped: {2}",
+                        new Object[] {destination, record.topic, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+                dropped++;
+
+            }
+        }
+
+        /* If the overflow file has been fully drained, reclaim the space */
+        if (spilled.isEmpty() && spillWriteOffset > 0) {
+            try {
+                spillFile.setLength(0);
+            } catch (IOException e) {
+                /* Ignore, the file will be overwritten */
+            }
+            spillWriteOffset = 0;
+        }
+
+        return count;
+
+    }
+
+    /**
+     * Releases any resources held by this queue.
+     */
+    void close() {
+
+        queue.clear();
+        spilled.clear();
+
+        if (spillFile != null) {
+
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                /* Ignore */
+            }
+
+            spillFileName.delete();
+            spillFile = null;
+
+        }
+    }
+}
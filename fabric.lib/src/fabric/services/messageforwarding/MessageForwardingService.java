@@ -7,9 +7,18 @@
 
 package fabric.services.messageforwarding;
 
-import java.util.LinkedList;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
+import fabric.MessageLogManager;
 import fabric.bus.IBusServices;
 import fabric.bus.messages.IClientNotificationMessage;
 import fabric.bus.messages.INotificationMessage;
@@ -18,9 +27,21 @@ import fabric.bus.plugins.IPluginConfig;
 import fabric.bus.services.IBusServiceConfig;
 import fabric.bus.services.IPersistentService;
 import fabric.bus.services.impl.BusService;
+import fabric.core.io.MessageQoS;
 
 /**
- * Manages the queue of feed messages to be sent to neighbouring nodes.
+ * Manages the queues of feed messages to be sent to neighbouring nodes and delivered to local actors.
+ * <p>
+ * Messages are held in a bounded queue per destination. A single worker thread is signalled when messages are added,
+ * and drains the queues round-robin in batches so that one busy destination cannot starve the others. When a
+ * destination queue is full the configured {@link OverflowPolicy} is applied.
+ * </p>
+ * <p>
+ * If store-and-forward is enabled, messages that cannot be sent to a neighbouring node (other than best-effort
+ * messages) are held in a disk-backed {@link NeighbourStore} for that node rather than dropped. Further messages for
+ * the node are held behind them, preserving their order, and the worker thread periodically resends the held messages
+ * until the neighbour can be reached again.
+ * </p>
  */
 public class MessageForwardingService extends BusService implements IPersistentService, Runnable {
 
@@ -38,17 +59,56 @@ public class MessageForwardingService extends BusService implements IPersistentS
     /** A local copy of the interface to Fabric management functions. */
     private IBusServices busServices = null;
 
-    /** To hold the sleep interval for the worker thread. */
-    private int sleepInterval = 1000;
+    /** The maximum number of messages held in memory for each destination. */
+    private int queueSize = 1000;
 
-    /** The message queue */
-    private final LinkedList<OutboundMessage> messageQueue = new LinkedList<OutboundMessage>();
+    /** The maximum number of messages taken from a destination queue on each pass of the worker thread. */
+    private int batchSize = 100;
+
+    /** The action taken when a destination queue is full. */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /** The directory used for overflow files when the spill policy is in use. */
+    private File spillDirectory = null;
+
+    /** Flag indicating if messages that cannot be sent to a neighbour are held until it can be reached. */
+    private boolean storeAndForward = true;
+
+    /** The interval between attempts to resend held messages (in milliseconds). */
+    private long retryInterval = 10000;
+
+    /** The number of message UIDs remembered by each store to detect duplicates. */
+    private int dedupWindow = 1000;
+
+    /** The stores of messages held for unreachable neighbours, keyed by node (used only by the worker thread). */
+    private final HashMap<String, NeighbourStore> stores = new HashMap<String, NeighbourStore>();
+
+    /** The time of the next attempt to resend held messages. */
+    private long nextRetry = 0;
+
+    /** The destination queues, in round-robin order. */
+    private final LinkedHashMap<String, ForwardingQueue> queues = new LinkedHashMap<String, ForwardingQueue>();
+
+    /** The total number of messages waiting across all destination queues. */
+    private int pendingCount = 0;
+
+    /** The total number of messages discarded due to overflow. */
+    private long droppedCount = 0;
+
+    /** Lock guarding the destination queues. */
+    private final ReentrantLock queueLock = new ReentrantLock();
+
+    /** Signalled when messages are added. */
+    private final Condition messagesAvailable = queueLock.newCondition();
+
+    /** Signalled when messages are removed. */
+    private final Condition spaceAvailable = queueLock.newCondition();
 
     /** To hold the reference to the worker thread */
     private Thread workerThread = null;
 
     /** Flag used to indicate when the worker thread should terminate */
-    private boolean isRunning = false;
+    private volatile boolean isRunning = false;
 
     /*
      * Inner classes
@@ -68,20 +128,132 @@ public class MessageForwardingService extends BusService implements IPersistentS
     }
 
     /**
-     * Adds a new message to the tail of the queue.
+     * Adds a new message to the tail of the queue for its destination, applying the overflow policy if the queue is
+     * full.
      *
      * @param message
      *            the message to add.
      */
     public void add(OutboundMessage message) {
 
-        synchronized (messageQueue) {
+        String destination = message.destination();
+
+        queueLock.lock();
+
+        try {
+
+            ForwardingQueue queue = queues.get(destination);
+
+            if (queue == null) {
+                queue = new ForwardingQueue(destination, queueSize, spillDirectory);
+                queues.put(destination, queue);
+            }
+
+            /* If the queue is full, or earlier messages have been spilled (and so must be sent first)... */
+            if (queue.isFull() || queue.hasSpilled()) {
+
+                switch (overflowPolicy) {
+
+                    case DROP_OLDEST:
+
+                        if (queue.isFull()) {
+                            queue.dropOldest();
+                            pendingCount--;
+                            droppedCount++;
+                            logger.log(Level.FINEST, "Queue for destination [{0}] full, oldest message dropped",
+                                    destination);
+                        }
+                        queue.add(message);
+                        break;
+
+                    case SPILL:
+
+                        try {
+
+                            queue.spill(message);
+
+                        } catch (Exception e) {
+
+                            droppedCount++;
+                            logger.log(Level.WARNING, "Cannot spill message for destination [{0}], message dropped: {1}",
+                                    new Object[] {destination, e.getMessage()});
+                            logger.log(Level.FINEST, "Full exception: ", e);
+                            return;
+
+                        }
+                        break;
+
+                    case BLOCK:
+                    default:
+
+                        /* Wait for the worker thread to make room (the queue may be replaced while we wait) */
+                        while (isRunning && queue.isFull()) {
+                            spaceAvailable.await(1, TimeUnit.SECONDS);
+                            queue = queues.get(destination);
+                            if (queue == null) {
+                                queue = new ForwardingQueue(destination, queueSize, spillDirectory);
+                                queues.put(destination, queue);
+                            }
+                        }
+                        queue.add(message);
+                        break;
+
+                }
 
-            messageQueue.add(message);
+            } else {
+
+                queue.add(message);
+
+            }
+
+            pendingCount++;
+            messagesAvailable.signal();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            logger.log(Level.FINE, "Interrupted waiting to queue message for destination [{0}]", destination);
+
+        } finally {
+
+            queueLock.unlock();
 
         }
     }
 
+    /**
+     * Answers the total number of messages currently waiting to be sent.
+     *
+     * @return the number of messages.
+     */
+    public int pending() {
+
+        queueLock.lock();
+
+        try {
+            return pendingCount;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /**
+     * Answers the total number of messages discarded because a destination queue was full, or lost from the store of
+     * messages held for an unreachable neighbour.
+     *
+     * @return the number of messages.
+     */
+    public long dropped() {
+
+        queueLock.lock();
+
+        try {
+            return droppedCount;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
     /**
      * @see fabric.bus.services.impl.BusService#initService(fabric.bus.plugins.IPluginConfig)
      */
@@ -93,10 +265,29 @@ public class MessageForwardingService extends BusService implements IPersistentS
         /* Make a local copy of the accessor for Fabric management services */
         busServices = ((IBusServiceConfig) config).getFabricServices();
 
-        /* Determine the sleep interval for the worker thread */
-        sleepInterval = Integer.parseInt(config().getProperty("fabric.messageForwarding.sleepInterval", "1000"));
+        /* Configure the destination queues */
+        queueSize = Integer.parseInt(config().getProperty("fabric.messageForwarding.queueSize", "1000"));
+        batchSize = Math.max(1, Integer.parseInt(config().getProperty("fabric.messageForwarding.batchSize", "100")));
+        overflowPolicy = OverflowPolicy.fromConfig(config().getProperty("fabric.messageForwarding.overflowPolicy",
+                "block"));
+        spillDirectory = new File(config().getProperty("fabric.messageForwarding.spillDirectory",
+                System.getProperty("java.io.tmpdir")));
+
+        storeAndForward = Boolean.parseBoolean(config().getProperty("fabric.messageForwarding.storeAndForward",
+                "true"));
+        retryInterval = Long.parseLong(config().getProperty("fabric.messageForwarding.retryInterval", "10000"));
+        dedupWindow = Integer.parseInt(config().getProperty("fabric.messageForwarding.dedupWindow", "1000"));
+
+        logger.log(Level.FINE, "Message forwarding queue size [{0}], batch size [{1}], overflow policy [{2}], "
+                + "store-and-forward [{3}]", new Object[] {queueSize, batchSize, overflowPolicy, storeAndForward});
+
+        /* Pick up any messages held for neighbours when the node last stopped */
+        if (storeAndForward) {
+            openStores();
+        }
 
         /* Start the worker thread */
+        isRunning = true;
         workerThread = new Thread(this, "Message-Forwarding-Service");
         workerThread.start();
 
@@ -121,7 +312,16 @@ public class MessageForwardingService extends BusService implements IPersistentS
     public void stopService() {
 
         /* Tell the worker thread to stop */
-        isRunning = false;
+        queueLock.lock();
+
+        try {
+            isRunning = false;
+            messagesAvailable.signalAll();
+            spaceAvailable.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+
         logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
 
     }
@@ -132,85 +332,339 @@ public class MessageForwardingService extends BusService implements IPersistentS
     @Override
     public void run() {
 
-        /* Indicate that the worker thread is running */
-        isRunning = true;
+        /* To hold the next batch of messages to be sent */
+        List<OutboundMessage> batch = new ArrayList<OutboundMessage>();
 
         while (isRunning) {
 
-            /* To hold the next message to be processed */
-            OutboundMessage nextMessage = null;
+            queueLock.lock();
 
-            synchronized (messageQueue) {
+            try {
 
-                /* If the message queue is not empty... */
-                if (!messageQueue.isEmpty()) {
+                /* Wait for messages (or until held messages are due to be resent) */
+                while (isRunning && pendingCount == 0 && !retryDue()) {
+                    if (stores.isEmpty()) {
+                        messagesAvailable.await();
+                    } else {
+                        messagesAvailable.await(Math.max(1, nextRetry - System.currentTimeMillis()),
+                                TimeUnit.MILLISECONDS);
+                    }
+                }
+
+                /* Take a batch from each destination in turn, discarding queues that have been drained */
+                for (Iterator<ForwardingQueue> q = queues.values().iterator(); q.hasNext();) {
+
+                    ForwardingQueue queue = q.next();
+                    queue.drainTo(batch, batchSize);
 
-                    /* Get the head of the queue */
-                    nextMessage = messageQueue.remove();
+                    if (queue.isEmpty()) {
+                        queue.close();
+                        q.remove();
+                    }
+                }
 
+                /* Recount the waiting messages (spilled messages that cannot be recovered are discarded by their queue) */
+                pendingCount = 0;
+                for (ForwardingQueue queue : queues.values()) {
+                    pendingCount += queue.size();
                 }
+
+                spaceAvailable.signalAll();
+
+            } catch (InterruptedException e) {
+
+                /* Ignore */
+
+            } finally {
+
+                queueLock.unlock();
+
             }
 
-            /* If we have a message... */
-            if (nextMessage != null) {
+            /* Send the batch outside of the lock so that producers are not held up by network I/O */
+            for (OutboundMessage nextMessage : batch) {
+                send(nextMessage);
+            }
 
-                switch (nextMessage.action()) {
+            batch.clear();
 
-                    case FORWARD:
+            /* Try to clear the backlog of any unreachable neighbours */
+            if (retryDue()) {
+                resendHeld();
+            }
 
-                        try {
+        }
 
-                            busServices.sendFeedMessage(nextMessage.node(), nextMessage.descriptor(), nextMessage
-                                    .message(), nextMessage.messageQos());
+        /* Release any overflow files */
+        queueLock.lock();
 
-                        } catch (Exception e) {
+        try {
+            for (ForwardingQueue queue : queues.values()) {
+                queue.close();
+            }
+            queues.clear();
+            pendingCount = 0;
+        } finally {
+            queueLock.unlock();
+        }
+    }
 
-                            logger.log(Level.WARNING, "Failed to send message to service [{0}] on node [{1}]: {2}",
-                                    new Object[] {nextMessage.descriptor(), nextMessage.node(), e.getMessage()});
-                            logger.log(Level.FINEST, "Full exception: ", e);
+    /**
+     * Sends a single message according to its action.
+     *
+     * @param nextMessage
+     *            the message.
+     */
+    private void send(OutboundMessage nextMessage) {
 
-                        }
+        switch (nextMessage.action()) {
 
-                        break;
+            case FORWARD:
 
-                    case DELIVER:
+                /* If earlier messages are being held for the node then this one must wait behind them */
+                NeighbourStore store = stores.get(nextMessage.node());
 
-                        try {
+                if (store != null && !store.isEmpty()) {
 
-                            busServices.deliverFeedMessage(nextMessage.descriptor(), nextMessage.message(), nextMessage
-                                    .subscription(), nextMessage.messageQos());
+                    if (nextMessage.messageQos() != MessageQoS.BEST_EFFORT) {
 
-                        } catch (Exception e) {
+                        hold(nextMessage, null);
 
-                            logger.log(Level.WARNING, "Failed to deliver message to feed [{0}] for user [{1}]: {2}",
-                                    new Object[] {nextMessage.descriptor(), nextMessage.subscription().actor(),
-                                    e.getMessage()});
-                            logger.log(Level.FINEST, "Full exception: ", e);
+                    } else {
 
-                        }
+                        /* Best effort messages are never held */
+                        countDropped(1);
+                        logger.log(Level.FINEST, "Node [{0}] cannot be reached, best effort message dropped",
+                                nextMessage.node());
 
-                        break;
+                    }
 
-                    default:
+                    break;
+                }
 
-                        logger.log(Level.WARNING, "Internal error, unsupported message action: {0}", nextMessage
-                                .action().toString());
-                        break;
+                try {
+
+                    busServices.sendFeedMessage(nextMessage.node(), nextMessage.descriptor(), nextMessage.message(),
+                            nextMessage.messageQos());
+
+                } catch (Exception e) {
+
+                    if (storeAndForward && nextMessage.messageQos() != MessageQoS.BEST_EFFORT) {
+
+                        hold(nextMessage, e);
+
+                    } else {
 
+                        logger.log(Level.WARNING, "Failed to send message to service [{0}] on node [{1}]: {2}",
+                                new Object[] {nextMessage.descriptor(), nextMessage.node(), e.getMessage()});
+                        logger.log(Level.FINEST, "Full exception: ", e);
+
+                    }
                 }
 
-            } else {
+                break;
 
-                /* Nothing to do right now so sleep for a while */
+            case DELIVER:
 
                 try {
 
-                    Thread.sleep(sleepInterval);
+                    busServices.deliverFeedMessage(nextMessage.descriptor(), nextMessage.message(), nextMessage
+                            .subscription(), nextMessage.messageQos());
+
+                } catch (Exception e) {
+
+                    logger.log(Level.WARNING, "Failed to deliver message to feed [{0}] for user [{1}]: {2}",
+                            new Object[] {nextMessage.descriptor(), nextMessage.subscription().actor(),
+                            e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
+
+                }
+
+                break;
+
+            default:
+
+                logger.log(Level.WARNING, "Internal error, unsupported message action: {0}", nextMessage.action()
+                        .toString());
+                break;
+
+        }
+    }
+
+    /**
+     * Opens the stores left holding messages when the node last stopped.
+     */
+    private void openStores() {
+
+        try {
+
+            String[] nodes = messageLogs().logNames(MessageLogManager.FORWARDING);
+
+            for (int n = 0; n < nodes.length; n++) {
+
+                NeighbourStore store = openStore(nodes[n]);
 
-                } catch (InterruptedException e) {
-                    /* Ignore */
+                if (store.isEmpty()) {
+                    /* Every message held for the node has been sent */
+                    closeStore(nodes[n]);
+                } else {
+                    logger.log(Level.INFO, "Resuming delivery of [{0}] message(s) held for node [{1}]",
+                            new Object[] {store.size(), nodes[n]});
                 }
             }
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot open the stores of messages held for neighbours: {0}", e.getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+    }
+
+    /**
+     * Answers the store of messages held for a neighbour, opening it if necessary.
+     *
+     * @param node
+     *            the neighbour.
+     *
+     * @return the store.
+     *
+     * @throws Exception
+     *             thrown if the store cannot be opened.
+     */
+    private NeighbourStore openStore(String node) throws Exception {
+
+        NeighbourStore store = stores.get(node);
+
+        if (store == null) {
+
+            store = new NeighbourStore(node, messageLogs().log(MessageLogManager.FORWARDING + node), dedupWindow);
+            stores.put(node, store);
+            countDropped(store.takeDropped());
+            nextRetry = System.currentTimeMillis() + retryInterval;
+
         }
+
+        return store;
+    }
+
+    /**
+     * Closes the store of messages held for a neighbour, once all of them have been sent. It is reopened (from the
+     * committed position) if the neighbour becomes unreachable again.
+     *
+     * @param node
+     *            the neighbour.
+     */
+    private void closeStore(String node) {
+
+        stores.remove(node);
+        messageLogs().closeLog(MessageLogManager.FORWARDING + node);
+
+    }
+
+    /**
+     * Holds a message that cannot currently be sent to its node.
+     *
+     * @param message
+     *            the message.
+     *
+     * @param cause
+     *            the reason the message could not be sent, or <code>null</code> if earlier messages are being held.
+     */
+    private void hold(OutboundMessage message, Exception cause) {
+
+        try {
+
+            NeighbourStore store = openStore(message.node());
+
+            if (cause != null && store.isEmpty()) {
+                logger.log(Level.INFO, "Cannot send to node [{0}], holding messages until it can be reached: {1}",
+                        new Object[] {message.node(), cause.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", cause);
+            }
+
+            if (!store.hold(message)) {
+                logger.log(Level.FINEST, "Duplicate message [{0}] for node [{1}] discarded", new Object[] {
+                        message.message().getUID(), message.node()});
+            }
+
+        } catch (Exception e) {
+
+            countDropped(1);
+            logger.log(Level.WARNING, "Cannot hold message for node [{0}], message dropped: {1}", new Object[] {
+                    message.node(), e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+    }
+
+    /**
+     * Adds to the count of dropped messages.
+     *
+     * @param count
+     *            the number of messages dropped.
+     */
+    private void countDropped(long count) {
+
+        if (count > 0) {
+
+            queueLock.lock();
+
+            try {
+                droppedCount += count;
+            } finally {
+                queueLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if there are held messages due to be resent. Only called by the worker thread.
+     *
+     * @return the retry state.
+     */
+    private boolean retryDue() {
+
+        return !stores.isEmpty() && System.currentTimeMillis() >= nextRetry;
+
+    }
+
+    /**
+     * Resends a batch of the messages held for each unreachable neighbour.
+     */
+    private void resendHeld() {
+
+        for (NeighbourStore store : new ArrayList<NeighbourStore>(stores.values())) {
+
+            try {
+
+                int sent = store.resend(busServices, batchSize);
+                logger.log(Level.FINER, "Resent [{0}] held message(s) to node [{1}]", new Object[] {sent,
+                        store.node()});
+
+                if (store.isEmpty()) {
+                    logger.log(Level.INFO, "All held messages sent to node [{0}]", store.node());
+                    closeStore(store.node());
+                }
+
+            } catch (Exception e) {
+
+                logger.log(Level.FINE, "Node [{0}] still cannot be reached, [{1}] message(s) held: {2}",
+                        new Object[] {store.node(), store.size(), e.getMessage()});
+
+            }
+
+            countDropped(store.takeDropped());
+        }
+
+        /* Retry immediately while backlogs are draining, otherwise wait for the retry interval */
+        boolean draining = false;
+
+        for (NeighbourStore store : stores.values()) {
+            draining |= !store.isEmpty() && !store.hasFailed();
+        }
+
+        nextRetry = System.currentTimeMillis() + (draining ? 0 : retryInterval);
+
     }
 }
@@ -0,0 +1,360 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.services.messageforwarding;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.bus.IBusServices;
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IFeedMessage;
+import fabric.bus.messages.WireFormat;
+import fabric.core.io.MessageQoS;
+import fabric.core.log.LogCursor;
+import fabric.core.log.LogRecord;
+import fabric.core.log.MessageLog;
+
+/**
+ * The store-and-forward queue of feed messages held for a neighbouring node that cannot currently be reached.
+ * <p>
+ * Messages are appended to a message log (so they survive a restart, and the space they use is bounded by the log's
+ * retention policy) and resent, in order, once the neighbour can be reached again. The position of the next message to
+ * be resent is committed after each successful batch. Message UIDs are remembered over a sliding window so that a
+ * message is neither held nor resent twice. Instances are not thread-safe; they are only used by the worker thread of
+ * the {@link MessageForwardingService}.
+ * </p>
+ */
+class NeighbourStore {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The name of the cursor recording the position of the next message to be resent. */
+    private static final String CURSOR = "resend";
+
+    /*
+     * Class static fields
+     */
+
+    private final static Logger logger = Logger.getLogger("fabric.bus.services");
+
+    /*
+     * Class fields
+     */
+
+    /** The neighbour served by this store. */
+    private final String node;
+
+    /** The log holding the messages. */
+    private final MessageLog log;
+
+    /** The position of the next message to be resent. */
+    private final LogCursor cursor;
+
+    /** The UIDs of recently held messages. */
+    private final Map<String, Boolean> heldUIDs;
+
+    /** The UIDs of recently resent messages. */
+    private final Map<String, Boolean> sentUIDs;
+
+    /** A message read from the log that could not be resent, and so must be sent before any other. */
+    private OutboundMessage unsent = null;
+
+    /** The number of held messages lost since the last call to <code>takeDropped()</code>. */
+    private long dropped = 0;
+
+    /** The number of held messages deleted by the log's retention policy that have been counted as lost. */
+    private long skipped = 0;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A set of message UIDs that forgets the oldest entries once it reaches its capacity.
+     */
+    private static class UIDWindow extends LinkedHashMap<String, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The maximum number of UIDs remembered. */
+        private final int capacity;
+
+        UIDWindow(int capacity) {
+
+            this.capacity = capacity;
+
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+
+            return size() > capacity;
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance, resuming from the last committed position if the log already holds messages.
+     *
+     * @param node
+     *            the neighbour served by this store.
+     *
+     * @param log
+     *            the log holding the messages.
+     *
+     * @param window
+     *            the number of message UIDs remembered to detect duplicates.
+     *
+     * @throws IOException
+     *             thrown if the committed position cannot be read.
+     */
+    NeighbourStore(String node, MessageLog log, int window) throws IOException {
+
+        this.node = node;
+        this.log = log;
+        this.cursor = log.cursor(CURSOR);
+        this.heldUIDs = new UIDWindow(window);
+        this.sentUIDs = new UIDWindow(window);
+
+        /* Messages may have been deleted while the node was stopped */
+        checkSkipped();
+
+    }
+
+    /**
+     * Answers the neighbour served by this store.
+     *
+     * @return the node ID.
+     */
+    String node() {
+
+        return node;
+
+    }
+
+    /**
+     * Answers <code>true</code> if there are no messages waiting to be resent.
+     *
+     * @return the store state.
+     */
+    boolean isEmpty() {
+
+        return unsent == null && cursor.offset() >= log.nextOffset();
+
+    }
+
+    /**
+     * Answers <code>true</code> if the last attempt to resend held messages failed.
+     *
+     * @return the store state.
+     */
+    boolean hasFailed() {
+
+        return unsent != null;
+
+    }
+
+    /**
+     * Answers the (approximate) number of messages waiting to be resent.
+     *
+     * @return the number of messages.
+     */
+    long size() {
+
+        return log.nextOffset() - cursor.offset() + (unsent != null ? 1 : 0);
+
+    }
+
+    /**
+     * Answers the number of held messages lost since the last call, either because they could not be read back from
+     * the log or because they were deleted by its retention policy before they could be resent.
+     *
+     * @return the count.
+     */
+    long takeDropped() {
+
+        long count = dropped;
+        dropped = 0;
+        return count;
+
+    }
+
+    /**
+     * Counts (and reports) any held messages deleted by the log's retention policy before they could be resent.
+     */
+    private void checkSkipped() {
+
+        long lost = cursor.skipped() - skipped;
+
+        if (lost > 0) {
+            skipped += lost;
+            dropped += lost;
+            logger.log(Level.WARNING, "[{0}] message(s) held for node [{1}] deleted by the message log retention "
+                    + "policy before they could be resent", new Object[] {lost, node});
+        }
+
+    }
+
+    /**
+     * Holds a message until the neighbour can be reached.
+     *
+     * @param message
+     *            the message.
+     *
+     * @return <code>true</code> if the message was held, <code>false</code> if it is a duplicate of a message already
+     *         held.
+     *
+     * @throws Exception
+     *             thrown if the message cannot be serialized or written.
+     */
+    boolean hold(OutboundMessage message) throws Exception {
+
+        String uid = message.message().getUID();
+
+        if (uid != null && heldUIDs.put(uid, Boolean.TRUE) != null) {
+            return false;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(message.descriptor());
+        out.writeUTF(message.messageQos().name());
+        out.writeUTF(message.message().metaGetTopic() != null ? message.message().metaGetTopic() : "");
+
+        /* The log is private to this node, so the compact binary format can always be used */
+        out.write(message.message().toWireBytes(WireFormat.BINARY));
+        out.flush();
+
+        log.append(message.message().getOrdinal(), bytes.toByteArray());
+        return true;
+
+    }
+
+    /**
+     * Resends up to <code>max</code> held messages, in order, stopping at the first that cannot be sent.
+     *
+     * @param busServices
+     *            the interface used to send the messages.
+     *
+     * @param max
+     *            the maximum number of messages to send.
+     *
+     * @return the number of messages sent.
+     *
+     * @throws Exception
+     *             thrown if a message cannot be sent (it will be the first to be resent on the next attempt).
+     */
+    int resend(IBusServices busServices, int max) throws Exception {
+
+        int count = 0;
+
+        while (count < max) {
+
+            OutboundMessage next = unsent;
+            unsent = null;
+
+            if (next == null) {
+
+                LogRecord record = cursor.next();
+                checkSkipped();
+
+                if (record == null) {
+                    break;
+                }
+
+                try {
+
+                    next = decode(record);
+
+                } catch (Exception e) {
+
+                    /* The message cannot be recovered */
+                    dropped++;
+                    logger.log(Level.WARNING, "Cannot read message held for node [{0}] at offset [{1}], message "
+                            + "dropped: {2}", new Object[] {node, record.offset(), e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
+                    continue;
+
+                }
+            }
+
+            String uid = next.message().getUID();
+
+            /* Skip messages that have already been resent */
+            if (uid != null && sentUIDs.containsKey(uid)) {
+                continue;
+            }
+
+            try {
+
+                busServices.sendFeedMessage(node, next.descriptor(), next.message(), next.messageQos());
+
+            } catch (Exception e) {
+
+                unsent = next;
+                throw e;
+
+            }
+
+            if (uid != null) {
+                sentUIDs.put(uid, Boolean.TRUE);
+            }
+
+            count++;
+
+        }
+
+        cursor.commit();
+        return count;
+
+    }
+
+    /**
+     * Rebuilds a held message from its log record.
+     *
+     * @param record
+     *            the record.
+     *
+     * @return the message.
+     *
+     * @throws Exception
+     *             thrown if the record cannot be decoded.
+     */
+    private OutboundMessage decode(LogRecord record) throws Exception {
+
+        byte[] data = record.data();
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        String descriptor = in.readUTF();
+        MessageQoS qos = MessageQoS.valueOf(in.readUTF());
+        String topic = in.readUTF();
+
+        byte[] wireBytes = new byte[bytes.available()];
+        in.readFully(wireBytes);
+
+        IFeedMessage message = (IFeedMessage) FabricMessageFactory.create(topic, wireBytes);
+        return new OutboundMessage(message, node, descriptor, qos);
+
+    }
+}
@@ -107,6 +107,56 @@ public class OutboundMessage {
 
 	}
 
+	/**
+	 * Constructs a copy of an existing outbound message carrying a different (already replicated) message instance.
+	 * 
+	 * @param template
+	 *            the outbound message whose routing details are to be copied.
+	 * 
+	 * @param message
+	 *            the message to be sent, or <code>null</code> if it is held elsewhere (e.g. spilled to disk).
+	 */
+	OutboundMessage(OutboundMessage template, IFeedMessage message) {
+
+		this.action = template.action;
+		this.message = message;
+		this.node = template.node;
+		this.subscription = template.subscription;
+		this.descriptor = template.descriptor;
+		this.messageQoS = template.messageQoS;
+
+	}
+
+	/**
+	 * Answers the key identifying the destination of this message: the target node for forwarded messages, or the
+	 * subscribing actor for delivered messages.
+	 * 
+	 * @return the destination key.
+	 */
+	public String destination() {
+
+		String destination = null;
+
+		switch (action) {
+
+		case FORWARD:
+			destination = "node:" + node;
+			break;
+
+		case DELIVER:
+			destination = "actor:" + subscription.actor() + '/' + subscription.actorPlatform();
+			break;
+
+		default:
+			destination = "unknown";
+			break;
+
+		}
+
+		return destination;
+
+	}
+
 	/**
 	 * Answers the action to be performed for this message (either forward to another node or deliver to an actor).
 	 * 
@@ -0,0 +1,51 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.services.messageforwarding;
+
+/**
+ * Enumerated type representing the action taken when a destination queue of the message forwarding service is full.
+ * <p>
+ * Possible policies are:
+ * <ul>
+ * <li><strong>BLOCK:</strong> the caller waits until there is room on the queue.</li>
+ * <li><strong>DROP_OLDEST:</strong> the oldest queued message for the destination is discarded.</li>
+ * <li><strong>SPILL:</strong> the message is written to an overflow file and sent once the queue has drained.</li>
+ * </ul>
+ * </p>
+ */
+public enum OverflowPolicy {
+    BLOCK, DROP_OLDEST, SPILL;
+
+    /**
+     * Answers the policy corresponding to a configuration value (for example "<code>block</code>" or "
+     * <code>drop-oldest</code>").
+     *
+     * @param value
+     *            the configuration value.
+     *
+     * @return the policy, or <code>BLOCK</code> if the value is not recognized.
+     */
+    public static OverflowPolicy fromConfig(String value) {
+
+        OverflowPolicy policy = BLOCK;
+
+        if (value != null) {
+
+            String normalized = value.trim().toUpperCase().replace('-', '_');
+
+            for (OverflowPolicy p : values()) {
+                if (p.name().equals(normalized)) {
+                    policy = p;
+                }
+            }
+        }
+
+        return policy;
+
+    }
+}
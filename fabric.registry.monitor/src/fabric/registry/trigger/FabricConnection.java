@@ -9,6 +9,8 @@ package fabric.registry.trigger;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.List;
 
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
@@ -16,6 +18,7 @@ import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
 
 import fabric.Fabric;
 import fabric.core.io.mqtt.MqttConfig;
@@ -35,6 +38,12 @@ class FabricConnection implements Runnable, MqttCallback {
     /** The Fabric descriptor for the update data feed. */
     private final static String REGISTRY_UPDATE_SERVICE = "$fab/$reg/$updates";
 
+    /**
+     * The maximum number of notifications awaiting acknowledgement from the broker (the MQTT client has a fixed limit
+     * of 10).
+     */
+    private final static int MAX_IN_FLIGHT = 9;
+
     /*
      * Class fields
      */
@@ -241,33 +250,51 @@ class FabricConnection implements Runnable, MqttCallback {
     }
 
     /**
-     * Send the specified service message.
-     *
-     * @param message
-     *            the message to send.
+     * Send a batch of Registry update notifications, without waiting for each to be acknowledged before sending the
+     * next.
      *
-     * @throws Exception
+     * @param updates
+     *            the notifications to send.
      */
-    public void sendRegistryUpdate(String update) throws Exception {
+    public void sendRegistryUpdates(List<String> updates) {
+
+        ArrayDeque<IMqttDeliveryToken> inFlight = new ArrayDeque<IMqttDeliveryToken>();
+        int sent = 0;
 
         try {
 
             if (isConnected()) {
 
-                /* Send the message to the target node */
-                mqttClient.publish(onrampTopic, update.getBytes(), 2, false);
+                MqttTopic topic = mqttClient.getTopic(onrampTopic);
+
+                for (; sent < updates.size(); sent++) {
+
+                    /* Wait for the oldest notification to be acknowledged if the window is full */
+                    if (inFlight.size() >= MAX_IN_FLIGHT) {
+                        inFlight.remove().waitForCompletion();
+                    }
+
+                    MqttMessage message = new MqttMessage(updates.get(sent).getBytes());
+                    message.setQos(2);
+                    inFlight.add(topic.publish(message));
+
+                }
+
+                while (!inFlight.isEmpty()) {
+                    inFlight.remove().waitForCompletion();
+                }
 
             } else {
 
-                System.out.println("Not currently connected to the Fabric, trigger will not be distributed: " + update);
+                System.out.println("Not currently connected to the Fabric, " + updates.size()
+                        + " trigger(s) will not be distributed");
 
             }
 
         } catch (Exception e) {
 
-            String message = "Fabric trigger not sent: cannot contact local broker";
-            System.out.println(message);
-            // throw new Exception(message, e);
+            System.out.println("Fabric trigger(s) not sent: cannot contact local broker (" + (updates.size() - sent)
+                    + " unsent, " + inFlight.size() + " unacknowledged)");
 
         }
     }
@@ -51,6 +51,9 @@ public class ResourceManager {
 	/** Manages the connection to the Fabric, used to distribute notification messages. */
 	private FabricConnection fabricConnection = null;
 
+	/** Publishes notification messages in the background. */
+	private UpdatePublisher updatePublisher = null;
+
 	/** The reporting level for Registry notification messages (from the "registry.feed.level" configuration property). */
 	private int reportLevel = REPORT_LIST;
 
@@ -126,6 +129,21 @@ public class ResourceManager {
 						+ triggerLevel);
 				reportLevel = REPORT_LIST;
 			}
+
+			/* Start the thread publishing notifications */
+			long coalescePeriod = 50;
+			int maxPending = 10000;
+			try {
+				coalescePeriod = Long.parseLong(fabric.config("registry.notifications.coalesce", "50"));
+				maxPending = Integer.parseInt(fabric.config("registry.notifications.maxPending", "10000"));
+			} catch (NumberFormatException e) {
+				/* Use the default values */
+				System.out.println("Invalid value for configuration setting registry.notifications.coalesce or "
+						+ "registry.notifications.maxPending (must be an integer value)");
+			}
+			System.out.println("Fabric triggers will be coalesced for " + coalescePeriod + " milliseconds");
+			updatePublisher = new UpdatePublisher(fabricConnection, coalescePeriod, maxPending);
+			updatePublisher.start();
 		}
 	}
 
@@ -170,19 +188,15 @@ public class ResourceManager {
 	}
 
 	/**
-	 * Publishes a Registry notification to the Fabric.
-	 * 
-	 * @param updateMessage
-	 *            the Registry update notification message.
+	 * Queues a Registry change for publication to the Fabric, returning without waiting for it to be sent.
 	 * 
-	 * @throws Exception
-	 *             thrown if the message cannot be sent.
+	 * @param change
+	 *            the change.
 	 */
-	public void sendRegistryUpdate(String updateMessage) throws Exception {
+	void queueRegistryUpdate(UpdatePublisher.Change change) {
 
 		if (fireTriggers) {
-			debug(updateMessage);
-			fabricConnection.sendRegistryUpdate(updateMessage);
+			updatePublisher.queue(change);
 		}
 	}
 
@@ -19,7 +19,10 @@ import fabric.core.logging.FLog;
 /**
  * Simple Fabric Service bound as a JavaUDF in the Registry. Used to publish Registry update events (INSERT, DELETE,
  * UPDATE) to the Fabric.
- *
+ * <p>
+ * Events are queued for publication in the background (see <code>UpdatePublisher</code>), so that Registry updates do
+ * not wait for the Fabric.
+ * </p>
  */
 public class TableUpdate {
 
@@ -32,14 +35,14 @@ public class TableUpdate {
 
     private static final Logger logger = Logger.getLogger("fabric.registry.trigger");
 
-    private static ResourceManager resourceManager = null;
+    private static volatile ResourceManager resourceManager = null;
 
     /*
      * Class methods
      */
 
     /**
-     * Publish event data to the Fabric.
+     * Queue event data for publication to the Fabric.
      *
      * @param tableName
      *            the name of the table that was updated.
@@ -55,7 +58,7 @@ public class TableUpdate {
      *
      * @return code always 0.
      */
-    public synchronized static int entryModified(String tableName, String key, String id, String action)
+    public static int entryModified(String tableName, String key, String id, String action)
         throws Exception {
 
         try {
@@ -64,7 +67,6 @@ public class TableUpdate {
                 resourceManager = ResourceManager.getInstance();
             }
 
-            StringBuilder notification = new StringBuilder("{");
             StringBuilder notificationDetail = new StringBuilder();
             tableName = (tableName != null) ? tableName.toUpperCase() : null;
             action = (action != null) ? action.toUpperCase() : null;
@@ -113,17 +115,12 @@ public class TableUpdate {
 
                 }
 
-                /* Build the notification message (a JSON object) */
-                notification
-                .append(String
-                        .format("\"table\":\"%s\",\"key\":\"%s\",\"id\":\"%s\",\"action\":\"%s\",\"availability\":\"%s\",\"timestamp\":%d",
-                                tableName, key, id, action, availability, System.currentTimeMillis()));
-
-                notification.append(notificationDetail);
-                notification.append('}');
-
-                /* Publish to the Fabric */
-                resourceManager.sendRegistryUpdate(notification.toString());
+                /*
+                 * Queue the change for publication to the Fabric (the details that depend upon the database have been
+                 * looked up above, as the connection is only available from within the trigger)
+                 */
+                resourceManager.queueRegistryUpdate(new UpdatePublisher.Change(tableName, key, id, action,
+                        availability, notificationDetail.toString()));
             }
 
         } catch (Exception e) {
@@ -0,0 +1,230 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.trigger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Class that publishes Registry update notifications from a background thread, so that Registry updates do not wait
+ * for the Fabric.
+ * <p>
+ * Triggers queue a change record and return immediately. The publisher waits for a short period after the first change
+ * arrives (<code>registry.notifications.coalesce</code>, in milliseconds, default 50) and then publishes everything
+ * queued as a single batch. Repeated changes to the same row within that period are coalesced, with only the latest
+ * change being published. If more than <code>registry.notifications.maxPending</code> changes (default 10000) are
+ * waiting then triggers block until the publisher has caught up.
+ * </p>
+ */
+class UpdatePublisher implements Runnable {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** Connection to the Fabric, used to publish the notifications. */
+    private final FabricConnection fabricConnection;
+
+    /** The changes waiting to be published, keyed by table and row, in the order in which they were made. */
+    private final LinkedHashMap<String, Change> pending = new LinkedHashMap<String, Change>();
+
+    /** The period (in milliseconds) for which changes are coalesced before they are published. */
+    private long coalescePeriod = 50;
+
+    /** The maximum number of changes waiting to be published. */
+    private int maxPending = 10000;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A change to a row of a Registry table.
+     */
+    static class Change {
+
+        final String tableName;
+
+        final String key;
+
+        final String id;
+
+        final String action;
+
+        final String availability;
+
+        final long timestamp;
+
+        /** Additional JSON fields describing the change (prefixed with a comma), or an empty string. */
+        final String detail;
+
+        Change(String tableName, String key, String id, String action, String availability, String detail) {
+
+            this.tableName = tableName;
+            this.key = key;
+            this.id = id;
+            this.action = action;
+            this.availability = availability;
+            this.detail = detail;
+            timestamp = System.currentTimeMillis();
+
+        }
+
+        /**
+         * Answers the key used to coalesce changes to the same row; IDs are encoded as the primary key of the row,
+         * followed by any other columns (separated by a ':').
+         *
+         * @return the key.
+         */
+        String rowKey() {
+
+            int colon = (id != null) ? id.indexOf(':') : -1;
+            return tableName + '/' + ((colon == -1) ? id : id.substring(0, colon));
+
+        }
+
+        /**
+         * Answers the notification message for the change (a JSON object).
+         *
+         * @return the notification.
+         */
+        String toJSON() {
+
+            return String.format(
+                    "{\"table\":\"%s\",\"key\":\"%s\",\"id\":\"%s\",\"action\":\"%s\",\"availability\":\"%s\","
+                            + "\"timestamp\":%d%s}", tableName, key, id, action, availability, timestamp, detail);
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructor.
+     *
+     * @param fabricConnection
+     *            the connection used to publish the notifications.
+     *
+     * @param coalescePeriod
+     *            the period (in milliseconds) for which changes are coalesced before they are published.
+     *
+     * @param maxPending
+     *            the maximum number of changes waiting to be published.
+     */
+    public UpdatePublisher(FabricConnection fabricConnection, long coalescePeriod, int maxPending) {
+
+        this.fabricConnection = fabricConnection;
+        this.coalescePeriod = coalescePeriod;
+        this.maxPending = maxPending;
+
+    }
+
+    /**
+     * Starts the thread publishing the notifications.
+     */
+    public void start() {
+
+        Thread publisherThread = new Thread(this, "Registry-Update-Publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+
+    }
+
+    /**
+     * Queues a change for publication, replacing any change to the same row that has not yet been published.
+     *
+     * @param change
+     *            the change.
+     */
+    public void queue(Change change) {
+
+        String rowKey = change.rowKey();
+
+        synchronized (pending) {
+
+            while (pending.size() >= maxPending && !pending.containsKey(rowKey)) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    /* Queue the change anyway */
+                    break;
+                }
+            }
+
+            /* Remove any earlier change first, so that the row takes its place in the order of the latest change */
+            pending.remove(rowKey);
+            pending.put(rowKey, change);
+            pending.notifyAll();
+
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+
+        ArrayList<String> batch = new ArrayList<String>();
+
+        while (true) {
+
+            try {
+
+                /* Wait for the first change */
+                synchronized (pending) {
+                    while (pending.isEmpty()) {
+                        pending.wait();
+                    }
+                }
+
+                /* Give any further changes to the same rows the chance to arrive */
+                if (coalescePeriod > 0) {
+                    Thread.sleep(coalescePeriod);
+                }
+
+                synchronized (pending) {
+
+                    for (Iterator<Change> c = pending.values().iterator(); c.hasNext();) {
+                        batch.add(c.next().toJSON());
+                    }
+
+                    pending.clear();
+                    pending.notifyAll();
+
+                }
+
+                for (int b = 0; b < batch.size(); b++) {
+                    ResourceManager.debug(batch.get(b));
+                }
+
+                fabricConnection.sendRegistryUpdates(batch);
+
+            } catch (InterruptedException e) {
+
+                /* Nothing to do */
+
+            } catch (Exception e) {
+
+                System.out.println("Registry update notifications not sent: " + e.getMessage());
+
+            } finally {
+
+                batch.clear();
+
+            }
+        }
+    }
+}
@@ -8,25 +8,60 @@
 package fabric.services.json;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
+ * A JSON object.
+ * <p>
+ * All instances share a single, preconfigured Jackson mapper (and the thread-safe readers and writers derived from
+ * it), since constructing a mapper is expensive.
+ * </p>
  */
 public class JSON {
 
 	/** Copyright notice. */
 	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
 
+	/*
+	 * Class constants
+	 */
+
+	/** The mapper shared by all instances. */
+	static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/** The factory used to create the nodes of new objects and arrays. */
+	static final JsonNodeFactory NODES = MAPPER.getNodeFactory();
+
+	/** The factory used for streaming parsers. */
+	private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+	/** The reader used to parse JSON objects. */
+	private static final ObjectReader READER = MAPPER.reader(ObjectNode.class);
+
+	/** The writer used to serialize JSON. */
+	private static final ObjectWriter WRITER = MAPPER.writer();
+
+	/*
+	 * Class fields
+	 */
+
 	private JsonNode rootNode;
-	private ObjectMapper mapper = null;
 
 	/*
 	 * Class methods
@@ -41,8 +76,7 @@ public class JSON {
 	 */
 	public JSON() {
 
-		mapper = new ObjectMapper();
-		rootNode = mapper.createObjectNode();
+		rootNode = NODES.objectNode();
 	}
 
 	/**
@@ -55,8 +89,20 @@ public class JSON {
 	 */
 	public JSON(String string) throws JsonParseException, JsonMappingException, IOException {
 
-		this();
-		rootNode = mapper.readValue(string, ObjectNode.class);
+		rootNode = READER.readValue(string);
+	}
+
+	/**
+	 * Constructor that creates a JSON object from UTF-8 encoded bytes, without first decoding them into a string.
+	 * 
+	 * @param bytes
+	 * @throws IOException
+	 * @throws JsonMappingException
+	 * @throws JsonParseException
+	 */
+	public JSON(byte[] bytes) throws JsonParseException, JsonMappingException, IOException {
+
+		rootNode = READER.readValue(bytes);
 	}
 
 	/**
@@ -66,10 +112,64 @@ public class JSON {
 	 */
 	public JSON(JsonNode node) {
 
-		this();
 		rootNode = node;
 	}
 
+	/**
+	 * Extracts the values of top-level fields from a JSON object using a streaming parser, without building the
+	 * object's tree. Scanning stops as soon as all of the fields have been found; nested objects and arrays are
+	 * skipped.
+	 * <p>
+	 * This allows a message to be routed (e.g. by its operation name and correlation ID) before it is fully parsed.
+	 * Only scalar values are answered: a field whose value is an object or array is treated as missing.
+	 * </p>
+	 * 
+	 * @param bytes
+	 *            the UTF-8 encoded JSON object.
+	 * 
+	 * @param keys
+	 *            the names of the fields.
+	 * 
+	 * @return the text of each field's value, in the same order as the keys, or <code>null</code> for fields that are
+	 *         missing.
+	 * 
+	 * @throws JsonParseException
+	 *             thrown if the bytes do not start with a valid JSON object.
+	 * 
+	 * @throws IOException
+	 */
+	public static String[] peek(byte[] bytes, String... keys) throws JsonParseException, IOException {
+
+		String[] values = new String[keys.length];
+		int found = 0;
+
+		try (JsonParser parser = FACTORY.createParser(bytes)) {
+
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new JsonParseException("Not a JSON object", parser.getCurrentLocation());
+			}
+
+			while (found < keys.length && parser.nextToken() == JsonToken.FIELD_NAME) {
+
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+
+				if (value.isScalarValue()) {
+					for (int k = 0; k < keys.length; k++) {
+						if (values[k] == null && keys[k].equals(name)) {
+							values[k] = parser.getText();
+							found++;
+						}
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+
+		return values;
+	}
+
 	/*
 	 * Get methods
 	 */
@@ -256,6 +356,33 @@ public class JSON {
 		return rootNode;
 	}
 
+	/**
+	 * Answers this instance serialized as UTF-8 encoded bytes, without building an intermediate string.
+	 * 
+	 * @return the bytes.
+	 * 
+	 * @throws IOException
+	 */
+	public byte[] toBytes() throws IOException {
+
+		return WRITER.writeValueAsBytes(rootNode);
+	}
+
+	/**
+	 * Serializes this instance, UTF-8 encoded, directly to a stream.
+	 * 
+	 * @param out
+	 *            the stream (which is not closed).
+	 * 
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+
+		JsonGenerator generator = FACTORY.createGenerator(out);
+		WRITER.writeValue(generator, rootNode);
+		generator.flush();
+	}
+
 	@Override
 	public String toString() {
 
@@ -11,7 +11,6 @@ import java.util.Iterator;
 import java.util.List;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 /**
@@ -22,7 +21,6 @@ public class JSONArray implements Iterable<JSON> {
 	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
 
 	ArrayNode rootNode;
-	ObjectMapper mapper = null;
 
 	/*
 	 * Class methods
@@ -33,8 +31,7 @@ public class JSONArray implements Iterable<JSON> {
 	 */
 	public JSONArray() {
 
-		mapper = new ObjectMapper();
-		rootNode = mapper.createArrayNode();
+		rootNode = JSON.NODES.arrayNode();
 	}
 
 	/**
@@ -43,7 +40,6 @@ public class JSONArray implements Iterable<JSON> {
 	 */
 	public JSONArray(ArrayNode node) {
 
-		this();
 		rootNode = node;
 	}
 
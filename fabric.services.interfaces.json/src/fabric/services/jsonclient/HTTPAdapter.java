@@ -11,7 +11,6 @@ import org.eclipse.jetty.websocket.api.Session;
 
 import fabric.core.io.mqtt.MqttConfig;
 import fabric.services.json.JSON;
-import fabric.services.jsonclient.utilities.AdapterConstants;
 
 /**
  * HTTP adapter for JSON Fabric clients.
@@ -52,17 +51,20 @@ public class HTTPAdapter extends JSONAdapter {
      * Fabric for non-SQL items
      */
     public JSON getJSONResponseMessage(JSON obj, Session session) {
+
         /*
          * Correlation id is null so JSONAdapter can handle the case whereby no correlation id exists
          */
-        String correlationId = null;
         JSON response = new JSON();
-        correlationId = obj.getString("correl");
-        boolean isSQLQuery = obj.getString(AdapterConstants.FIELD_SQL_KEY) != null
-                || obj.getString(AdapterConstants.FIELD_SQL_TABLE) != null;
+        String correlationId = obj.getString("correl");
 
         try {
             response = handleAdapterMessage(obj, correlationId, session);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        try {
             session.getRemote().sendString(response.toString());
         } catch (Exception e) {
             e.printStackTrace();
@@ -70,4 +72,26 @@ public class HTTPAdapter extends JSONAdapter {
 
         return response;
     }
+
+    /**
+     * Method that handles the incoming JSON message from HTTP client, returning the response message without sending
+     * it (for callers that queue their own messages to the client). Messages for systems started by the client are
+     * sent via the same sender.
+     */
+    public JSON getJSONResponse(JSON obj, SocketSender sender) {
+        /*
+         * Correlation id is null so JSONAdapter can handle the case whereby no correlation id exists
+         */
+        String correlationId = null;
+        JSON response = new JSON();
+        correlationId = obj.getString("correl");
+
+        try {
+            response = handleAdapterMessage(obj, correlationId, sender);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return response;
+    }
 }
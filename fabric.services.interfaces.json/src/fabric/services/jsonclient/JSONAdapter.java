@@ -553,4 +553,14 @@ IEndPointCallback {
 
         logger.log(Level.FINEST, "End point lost");
     }
+
+    /**
+     * @see fabric.core.io.IEndPointCallback#endPointDeliveryFailed(fabric.core.io.EndPoint, java.lang.String,
+     *      java.lang.Throwable)
+     */
+    @Override
+    public void endPointDeliveryFailed(EndPoint ep, String topic, Throwable cause) {
+
+        logger.log(Level.FINEST, "End point delivery failed");
+    }
 }
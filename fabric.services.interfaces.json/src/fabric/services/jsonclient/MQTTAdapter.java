@@ -204,25 +204,38 @@ public class MQTTAdapter extends JSONAdapter implements IFabricShutdownHookActio
         String adapterClientID = topicParts[topicParts.length - 1];
         logger.log(Level.FINEST, "Client ID: {0}", adapterClientID);
 
-        /* Get the JSON payload */
-        String opString = new String(message.data);
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.log(Level.FINEST, "Handling JSON message:\n{0}", new String(message.data));
+        }
 
-        /* Convert the message to a JSON object */
         try {
 
-            logger.log(Level.FINEST, "Handling JSON message:\n{0}", opString);
-            JSON op = new JSON(opString);
-
-            /* Get the message correlation ID from the message (if any) */
-            correlationID = op.getString(AdapterConstants.FIELD_CORRELATION_ID);
+            /* Extract the operation name and correlation ID (if any) without parsing the whole message */
+            String[] header = JSON.peek(message.data, AdapterConstants.FIELD_OPERATION,
+                    AdapterConstants.FIELD_CORRELATION_ID);
+            correlationID = header[1];
             logger.log(Level.FINEST, "Correlation ID: {0}", correlationID);
 
-            /* Handle the message */
-            response = handleAdapterMessage(op, correlationID, adapterClientID);
+            if (header[0] == null) {
+
+                logger.log(Level.WARNING, "Operation field ([{0}]) missing, ignoring message",
+                        AdapterConstants.FIELD_OPERATION);
+                AdapterStatus status = new AdapterStatus(AdapterConstants.ERROR_PARSE, AdapterConstants.OP_CODE_NONE,
+                        AdapterConstants.ARTICLE_JSON, AdapterConstants.STATUS_MSG_BAD_OPERATION, correlationID);
+                response = status.toJsonObject();
+
+            } else {
+
+                /* Convert the message to a JSON object and handle it */
+                JSON op = new JSON(message.data);
+                response = handleAdapterMessage(op, correlationID, adapterClientID);
+
+            }
 
         } catch (Exception e) {
 
-            logger.log(Level.INFO, "Failed to parse JSON string:\n{0}");
+            String opString = new String(message.data);
+            logger.log(Level.INFO, "Failed to parse JSON string:\n{0}", opString);
             AdapterStatus status = new AdapterStatus(AdapterConstants.ERROR_PARSE, AdapterConstants.OP_CODE_NONE,
                     AdapterConstants.ARTICLE_JSON, AdapterConstants.STATUS_MSG_BAD_JSON + ": " + e.getMessage(),
                     (correlationID == null) ? "Unknown" : correlationID, opString);
@@ -233,8 +246,10 @@ public class MQTTAdapter extends JSONAdapter implements IFabricShutdownHookActio
         /* If a response is required by the client... */
         if (response != null) {
             try {
-                logger.log(Level.FINEST, "Response to client:\n{0}", response.toString());
-                sendChannel.write(response.toString().getBytes(), new OutputTopic(sendTopic + "/" + adapterClientID));
+                if (logger.isLoggable(Level.FINEST)) {
+                    logger.log(Level.FINEST, "Response to client:\n{0}", response.toString());
+                }
+                sendChannel.write(response.toBytes(), new OutputTopic(sendTopic + "/" + adapterClientID));
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Failed to send response to client [{0}] (correlation ID [{1}]): {2}",
                         new Object[] {adapterClientID, correlationID, e.getMessage()});
@@ -0,0 +1,152 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.services.jsonclient;
+
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+/**
+ * Bounded queue of messages waiting to be sent to a websocket.
+ * <p>
+ * Messages are sent asynchronously, one at a time, so that the thread queueing a message (for example the shared MQTT
+ * client's callback thread) is never blocked by a slow browser. If a socket falls so far behind that its queue fills,
+ * it is evicted: the queue is discarded and the socket closed, leaving the client to reconnect.
+ * </p>
+ * <p>
+ * All messages to a websocket, including those sent by the system proxies started for it, must be sent via its
+ * sender, since Jetty does not allow a blocking write while an asynchronous one is in progress.
+ * </p>
+ */
+public class SocketSender implements WriteCallback {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class static fields
+     */
+
+    private final static Logger logger = Logger.getLogger("fabric.services.jsonclient");
+
+    /*
+     * Class fields
+     */
+
+    private final Session session;
+    private final int limit;
+    private final String evictReason;
+    private final ArrayDeque<String> queue = new ArrayDeque<String>();
+
+    /** Set while a message is being written */
+    private boolean sending = false;
+
+    /** Set while a write is being started (a write can complete before it returns) */
+    private boolean starting = false;
+
+    /** Set once the socket has been evicted, or the session has failed */
+    private boolean closed = false;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param session
+     *            the websocket session.
+     *
+     * @param limit
+     *            the maximum number of messages waiting to be sent.
+     *
+     * @param evictReason
+     *            the reason given to the client when it is evicted.
+     */
+    public SocketSender(Session session, int limit, String evictReason) {
+        this.session = session;
+        this.limit = limit;
+        this.evictReason = evictReason;
+    }
+
+    /**
+     * Answers the websocket session.
+     *
+     * @return the session.
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Queues a message to be sent, evicting the socket if its queue is full.
+     *
+     * @param message
+     *            the message.
+     *
+     * @return <code>true</code> if the message was queued, <code>false</code> if the socket has been evicted.
+     */
+    public synchronized boolean send(String message) {
+        if (closed) {
+            return false;
+        }
+        if (queue.size() >= limit) {
+            evict();
+            return false;
+        }
+        queue.addLast(message);
+        sendNext();
+        return true;
+    }
+
+    /**
+     * Starts writing queued messages until one is still in progress, or there are none left.
+     */
+    private void sendNext() {
+        while (!sending && !closed && !queue.isEmpty()) {
+            sending = true;
+            starting = true;
+            try {
+                session.getRemote().sendString(queue.pollFirst(), this);
+            } finally {
+                starting = false;
+            }
+        }
+    }
+
+    /**
+     * Discards any queued messages and closes the session.
+     */
+    private void evict() {
+        closed = true;
+        queue.clear();
+        logger.log(Level.WARNING, "Evicting slow websocket client [{0}]", session.getRemoteAddress());
+        session.close(StatusCode.TRY_AGAIN_LATER, evictReason);
+    }
+
+    /**
+     * @see org.eclipse.jetty.websocket.api.WriteCallback#writeSuccess()
+     */
+    @Override
+    public synchronized void writeSuccess() {
+        sending = false;
+        if (!starting) {
+            sendNext();
+        }
+    }
+
+    /**
+     * @see org.eclipse.jetty.websocket.api.WriteCallback#writeFailed(java.lang.Throwable)
+     */
+    @Override
+    public synchronized void writeFailed(Throwable cause) {
+        sending = false;
+        closed = true;
+        queue.clear();
+    }
+}
@@ -18,6 +18,7 @@ import fabric.bus.feeds.ISubscription;
 import fabric.bus.messages.IFeedMessage;
 import fabric.bus.messages.IServiceMessage;
 import fabric.services.json.JSON;
+import fabric.services.jsonclient.SocketSender;
 
 /**
  * Class implementing the adapter proxy for an HTTP JSON Fabric client.
@@ -34,6 +35,9 @@ public class HTTPSystem extends JSONSystem {
     /* To hold the session via which to communicate with the client */
     private Session session = null;
 
+    /* To hold the send queue via which to communicate with a websocket client (if any) */
+    private SocketSender sender = null;
+
     /*
      * Class methods
      */
@@ -166,10 +170,23 @@ public class HTTPSystem extends JSONSystem {
 
             if (session == null) {
                 /* Get the session via which to communicate with the client */
-                session = (Session) container.getClient();
+                Object client = container.getClient();
+                if (client instanceof SocketSender) {
+                    sender = (SocketSender) client;
+                    session = sender.getSession();
+                } else {
+                    session = (Session) client;
+                }
             }
 
-            session.getRemote().sendString(jsonMessage);
+            if (sender != null) {
+                /* Queue the message behind any others being sent to the websocket */
+                if (!sender.send(jsonMessage)) {
+                    throw new IOException("client evicted as a slow consumer");
+                }
+            } else {
+                session.getRemote().sendString(jsonMessage);
+            }
 
         } catch (IOException e) {
 
@@ -28,6 +28,7 @@ import fabric.client.FabricPlatform;
 import fabric.core.logging.FLog;
 import fabric.registry.FabricRegistry;
 import fabric.registry.Node;
+import fabric.registry.RegistryCache;
 import fabric.registry.NodeFactory;
 import fabric.registry.QueryScope;
 import fabric.registry.Service;
@@ -1481,7 +1482,10 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
                 byte[] payloadBytes = message.getPayload().getPayload();
                 payload = (payloadBytes != null) ? new String(payloadBytes) : null;
 
-                if (serviceDescriptor.equals("$fab/$reg/$updates")) {
+                if (serviceDescriptor.equals(RegistryCache.UPDATES_SERVICE)) {
+
+                    /* Discard any cached Registry query results affected by the update */
+                    RegistryCache.handleRegistryUpdate(payload);
 
                     /* The payload is a JSON structure containing details of a Registry update */
                     JSON triggerJSON = new JSON(payload);
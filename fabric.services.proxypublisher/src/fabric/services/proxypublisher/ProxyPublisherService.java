@@ -22,6 +22,7 @@ import fabric.bus.services.IBusServiceConfig;
 import fabric.bus.services.impl.BusService;
 import fabric.core.io.InputTopic;
 import fabric.core.io.OutputTopic;
+import fabric.registry.RegistryCache;
 
 /**
  * Service to publish Fabric messages locally on behalf of a remote requester.
@@ -79,6 +80,12 @@ public class ProxyPublisherService extends BusService {
         /* Get the payload to publish */
         IMessagePayload payloadToPublish = serviceMessage.getPayload();
 
+        /* If this is a Registry update notification, discard any affected cached query results */
+        if (RegistryCache.UPDATES_SERVICE.equals(serviceMessage.getProperty(IServiceMessage.PROPERTY_DELIVER_TO_SERVICE))
+                && payloadToPublish != null && payloadToPublish.getPayload() != null) {
+            RegistryCache.handleRegistryUpdate(new String(payloadToPublish.getPayload()));
+        }
+
         /* Build the feed message */
         IFeedMessage feedMessage = busServices.busIO().wrapRawMessage(new byte[1], false);
 
@@ -17,6 +17,7 @@ public final class Constants {
 
     // Global socket settings
     public static final int timeout = 60 * 10 * 1000;
+    public static final int sendQueueLimit = 1000;
 
     // Error messages
     public static final String JSONParse = "There was an error parsing the JSON entered.";
@@ -25,4 +26,5 @@ public final class Constants {
     public static final String ConnectException = "Unable to connect to the Fabric Registry.";
     public static final String SocketTimeout = "The socket timeout window has elasped, please refresh.";
     public static final String MQTTConnectionLost = "The MQTT connection has been lost, please refresh.";
+    public static final String SlowConsumer = "Messages are not being received quickly enough, please refresh.";
 }
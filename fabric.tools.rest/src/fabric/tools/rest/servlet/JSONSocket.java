@@ -23,6 +23,7 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 
 import fabric.services.json.JSON;
 import fabric.services.jsonclient.HTTPAdapter;
+import fabric.services.jsonclient.SocketSender;
 
 public class JSONSocket implements WebSocketListener, SocketHandler {
 
@@ -30,17 +31,15 @@ public class JSONSocket implements WebSocketListener, SocketHandler {
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
 
     private Session session;
-    private static HTTPAdapter adapter;
+    private SocketSender sender;
+    private HTTPAdapter adapter;
 
     /**
-     * Creates an HTTP connection to the Fabric registry.
+     * Joins the connection to the Fabric shared by all sockets.
      */
     public synchronized void init() {
         try {
-            if (adapter == null) {
-                setAdapter();
-            }
-            adapter.init();
+            adapter = SharedAdapter.acquire();
         } catch (SQLNonTransientException e) {
             returnError(Constants.ConnectException);
         } catch (Exception e) {
@@ -48,13 +47,6 @@ public class JSONSocket implements WebSocketListener, SocketHandler {
         }
     }
 
-    /**
-     * If the connection to the Fabric Registry is successful, then we set it to be the adapter for the socket.
-     */
-    private void setAdapter() {
-        adapter = new HTTPAdapter();
-    }
-
     /**
      * Upon connect grab session variable and initialise Fabric connection.
      * 
@@ -63,6 +55,7 @@ public class JSONSocket implements WebSocketListener, SocketHandler {
     @Override
     public void onWebSocketConnect(Session session) {
         this.session = session;
+        this.sender = new SocketSender(session, Constants.sendQueueLimit, Constants.SlowConsumer);
         init();
     }
 
@@ -75,11 +68,15 @@ public class JSONSocket implements WebSocketListener, SocketHandler {
             System.out.println("No session found");
             return;
         }
+        if (adapter == null) {
+            returnError(Constants.ConnectException);
+            return;
+        }
 
         JSON obj;
         try {
             obj = new JSON(message);
-            adapter.getJSONResponseMessage(obj, session);
+            sender.send(adapter.getJSONResponse(obj, sender).toString());
         } catch (JsonParseException e) {
             returnError(Constants.JSONParse);
         } catch (JsonMappingException e) {
@@ -97,11 +94,7 @@ public class JSONSocket implements WebSocketListener, SocketHandler {
      */
     @Override
     public void returnError(String errMessage) {
-        try {
-            session.getRemote().sendString(errMessage);
-        } catch (IOException err) {
-            err.printStackTrace();
-        }
+        sender.send(errMessage);
     }
 
     /**
@@ -125,8 +118,12 @@ public class JSONSocket implements WebSocketListener, SocketHandler {
      * @param reason
      */
     @Override
-    public void onWebSocketClose(int statusCode, String reason) {
+    public synchronized void onWebSocketClose(int statusCode, String reason) {
         System.out.println("Session closed: " + statusCode + " " + reason);
+        if (adapter != null) {
+            adapter = null;
+            SharedAdapter.release();
+        }
     }
 
     /**
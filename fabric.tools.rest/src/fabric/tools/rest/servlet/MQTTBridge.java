@@ -0,0 +1,262 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.tools.rest.servlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import fabric.core.io.mqtt.TopicMatcher;
+import fabric.services.json.JSON;
+
+/**
+ * A single MQTT connection to a broker shared by all of the websockets viewing it.
+ * <p>
+ * Each topic is subscribed to on the broker once, when the first socket asks for it, and unsubscribed when the last
+ * socket using it closes. Arriving messages are converted to JSON once and dispatched, via a topic trie, to the sockets
+ * whose subscriptions match. The connection is closed when the last socket is released.
+ * </p>
+ */
+public class MQTTBridge implements MqttCallback {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The open bridges, keyed by broker URL */
+    private static final HashMap<String, MQTTBridge> bridges = new HashMap<String, MQTTBridge>();
+
+    /**
+     * Thread used to disconnect from brokers; Paho does not allow a client to disconnect from its own callback thread,
+     * which is where a socket evicted as a slow consumer releases the bridge.
+     */
+    private static final ExecutorService disconnector = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "MQTT-Bridge-Disconnect");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final String brokerURL;
+    private final MqttAsyncClient client;
+    private final int subscribeQos;
+
+    /** The sockets subscribed to each topic */
+    private final TopicMatcher<MQTTSocket> subscriptions = new TopicMatcher<MQTTSocket>();
+
+    /** The number of sockets subscribed to each topic */
+    private final HashMap<String, Integer> topicUsers = new HashMap<String, Integer>();
+
+    /** The sockets using the bridge */
+    private final ArrayList<MQTTSocket> users = new ArrayList<MQTTSocket>();
+
+    /**
+     * Answers the bridge to a broker, connecting to it if necessary. Each call must be matched by a call to
+     * <code>release()</code>.
+     *
+     * @param brokerURL
+     *            the URL of the broker.
+     *
+     * @param subscribeQos
+     *            the MQTT QoS used for subscriptions.
+     *
+     * @param socket
+     *            the socket using the bridge.
+     *
+     * @return the bridge.
+     *
+     * @throws MqttException
+     *             thrown if the broker cannot be reached.
+     */
+    public static MQTTBridge acquire(String brokerURL, int subscribeQos, MQTTSocket socket) throws MqttException {
+        synchronized (bridges) {
+            MQTTBridge bridge = bridges.get(brokerURL);
+            if (bridge == null) {
+                bridge = new MQTTBridge(brokerURL, subscribeQos);
+                bridges.put(brokerURL, bridge);
+            }
+            bridge.users.add(socket);
+            return bridge;
+        }
+    }
+
+    /**
+     * Connects a new bridge.
+     */
+    private MQTTBridge(String brokerURL, int subscribeQos) throws MqttException {
+        this.brokerURL = brokerURL;
+        this.subscribeQos = subscribeQos;
+        client = new MqttAsyncClient(brokerURL, "ws" + System.currentTimeMillis());
+        client.setCallback(this);
+        MqttConnectOptions opt = new MqttConnectOptions();
+        opt.setCleanSession(true);
+        client.connect(opt).waitForCompletion();
+    }
+
+    /**
+     * Adds a socket's subscription to a topic, subscribing on the broker if no other socket is using it.
+     *
+     * @param topic
+     *            the topic (which may include wildcards).
+     *
+     * @param socket
+     *            the socket.
+     *
+     * @throws MqttException
+     *             thrown if the broker subscription fails.
+     */
+    public void subscribe(String topic, MQTTSocket socket) throws MqttException {
+        synchronized (topicUsers) {
+            if (!subscriptions.add(topic, socket)) {
+                return;
+            }
+            Integer count = topicUsers.get(topic);
+            topicUsers.put(topic, (count == null) ? 1 : count + 1);
+            if (count == null) {
+                client.subscribe(topic, subscribeQos);
+            }
+        }
+    }
+
+    /**
+     * Removes a socket's subscription to a topic, unsubscribing on the broker if no other socket is using it.
+     *
+     * @param topic
+     *            the topic.
+     *
+     * @param socket
+     *            the socket.
+     */
+    public void unsubscribe(String topic, MQTTSocket socket) {
+        synchronized (topicUsers) {
+            if (!subscriptions.remove(topic, socket)) {
+                return;
+            }
+            Integer count = topicUsers.get(topic);
+            if (count == null || count <= 1) {
+                topicUsers.remove(topic);
+                try {
+                    if (client.isConnected()) {
+                        client.unsubscribe(topic);
+                    }
+                } catch (MqttException e) {
+                    e.printStackTrace();
+                }
+            } else {
+                topicUsers.put(topic, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Releases a socket's use of the bridge, removing its subscriptions and disconnecting from the broker if it was
+     * the last user. The disconnection is made on a separate thread, since a socket may be released from the MQTT
+     * client's callback thread.
+     *
+     * @param socket
+     *            the socket.
+     *
+     * @param topics
+     *            the topics to which the socket is subscribed.
+     */
+    public void release(MQTTSocket socket, List<String> topics) {
+        for (String topic : topics) {
+            unsubscribe(topic, socket);
+        }
+        synchronized (bridges) {
+            users.remove(socket);
+            if (users.isEmpty()) {
+                if (bridges.get(brokerURL) == this) {
+                    bridges.remove(brokerURL);
+                }
+                disconnector.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            if (client.isConnected()) {
+                                client.disconnect();
+                            }
+                        } catch (MqttException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Once a message arrives from the broker convert it to JSON and pass it to each subscribed socket.
+     *
+     * @param topic
+     * @param message
+     * @throws Exception
+     */
+    @Override
+    public void messageArrived(String topic, MqttMessage message) throws Exception {
+        List<MQTTSocket> matches = subscriptions.match(topic);
+        if (matches.isEmpty()) {
+            return;
+        }
+
+        JSON obj = new JSON();
+        obj.putString("topic", topic);
+        obj.putString("payloadString", new String(message.getPayload()));
+        String json = obj.toString();
+
+        /* A socket with overlapping subscriptions receives the message once */
+        IdentityHashMap<MQTTSocket, Boolean> sent = new IdentityHashMap<MQTTSocket, Boolean>();
+        for (MQTTSocket socket : matches) {
+            if (sent.put(socket, Boolean.TRUE) == null) {
+                socket.deliver(json);
+            }
+        }
+    }
+
+    /**
+     * Tell each socket that the connection has been lost; the next socket to connect will open a new one.
+     *
+     * @param err
+     */
+    @Override
+    public void connectionLost(Throwable err) {
+        ArrayList<MQTTSocket> sockets = null;
+        synchronized (bridges) {
+            if (bridges.get(brokerURL) == this) {
+                bridges.remove(brokerURL);
+            }
+            sockets = new ArrayList<MQTTSocket>(users);
+        }
+        for (MQTTSocket socket : sockets) {
+            socket.connectionLost();
+        }
+    }
+
+    /**
+     * Inherited method from MqttCallback that tells us once an MQTT message has successfuly been delivered. Currently
+     * not needed.
+     */
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken arg0) {
+        // Not needed
+    }
+}
@@ -9,47 +9,42 @@ package fabric.tools.rest.servlet;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
-import java.util.Date;
+import java.util.ArrayList;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
-import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
-import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
-import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
 
-import fabric.services.json.JSON;
+import fabric.services.jsonclient.SocketSender;
 
 /**
  * MQTT Socket class that deals with incoming and outgoing MQTT messages, and MQTT connections.
+ * <p>
+ * Sockets share a single connection to each broker (see <code>MQTTBridge</code>), and messages are passed to the
+ * browser via a bounded send queue (see <code>SocketSender</code>).
+ * </p>
  */
-public class MQTTSocket implements WebSocketListener, MqttCallback, SocketHandler {
+public class MQTTSocket implements WebSocketListener, SocketHandler {
 
     /** Copyright notice. */
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
 
     private Session session;
+    private SocketSender sender;
     private String brokerURL = null;
-    private MqttAsyncClient client = null;
+    private MQTTBridge bridge = null;
+    private final ArrayList<String> topics = new ArrayList<String>();
     private final String defaultSubscribeTopic = "$fabric/#";
     private final int defaultSubscribeQos = 2;
 
     /**
-     * Create MQTT connection to broker, subscribe to everything and define our callback to be this socket.
+     * Join the shared MQTT connection to the broker, and subscribe to everything.
      */
-    public void init() {
+    public synchronized void init() {
         if (brokerURL != null) {
             try {
-                if (client != null) {
-                    client.disconnect();
-                }
-                client = new MqttAsyncClient(brokerURL, generateClientId());
-                client.setCallback(this);
-                MqttConnectOptions opt = new MqttConnectOptions();
-                opt.setCleanSession(true);
-                client.connect(opt).waitForCompletion();
+                release();
+                bridge = MQTTBridge.acquire(brokerURL, defaultSubscribeQos, this);
                 subscribe(defaultSubscribeTopic);
             } catch (MqttException e) {
                 returnError("An MqttException has occurred: " + e.getMessage());
@@ -58,49 +53,59 @@ public class MQTTSocket implements WebSocketListener, MqttCallback, SocketHandle
     }
 
     /**
-     * Send the error message when we lose MQTTconnectivity.
-     *
-     * @param err
+     * Leave the shared MQTT connection, removing our subscriptions.
      */
-    @Override
-    public void connectionLost(Throwable err) {
+    private synchronized void release() {
+        if (bridge != null) {
+            bridge.release(this, topics);
+            bridge = null;
+            topics.clear();
+        }
+    }
+
+    /**
+     * Send the error message when we lose MQTT connectivity.
+     */
+    public synchronized void connectionLost() {
         returnError(Constants.MQTTConnectionLost);
-        client = null;
+        bridge = null;
+        topics.clear();
     }
 
     @Override
     public void returnError(String errorMessage) {
-        try {
-            session.getRemote().sendString(errorMessage);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (sender != null) {
+            sender.send(errorMessage);
+        } else {
+            try {
+                session.getRemote().sendString(errorMessage);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     /**
-     * Once a message arrives from the broker convert it to json and send it back.
+     * Queue a message (already converted to JSON) to be sent to the browser.
      *
-     * @param topic
-     * @param message
-     * @throws Exception
+     * @param json
      */
-    @Override
-    public void messageArrived(String topic, MqttMessage message) throws Exception {
-        JSON obj = new JSON();
-        String payload = new String(message.getPayload());
-        obj.putString("topic", topic);
-        obj.putString("payloadString", payload);
-        session.getRemote().sendString(obj.toString());
+    public void deliver(String json) {
+        if (!sender.send(json)) {
+            /* Evicted as a slow consumer, so stop receiving messages */
+            release();
+        }
     }
 
     /**
-     * Upon connect grab session variable and initialize MQTT connection.
+     * Upon connect grab session variable and create the send queue.
      *
      * @param session
      */
     @Override
     public void onWebSocketConnect(Session session) {
         this.session = session;
+        this.sender = new SocketSender(session, Constants.sendQueueLimit, Constants.SlowConsumer);
     }
 
     /**
@@ -113,7 +118,7 @@ public class MQTTSocket implements WebSocketListener, MqttCallback, SocketHandle
         if (cause instanceof SocketTimeoutException) {
             returnError(Constants.SocketTimeout);
         }
-        client = null;
+        release();
     }
 
     /**
@@ -125,25 +130,7 @@ public class MQTTSocket implements WebSocketListener, MqttCallback, SocketHandle
     @Override
     public void onWebSocketClose(int statusCode, String reason) {
         System.out.println("Session closed: " + statusCode + " " + reason);
-        client = null;
-    }
-
-    /**
-     * Generates a string client id for broker connections with date in miliseconds
-     *
-     * @return
-     */
-    private String generateClientId() {
-        return "ws" + new Date().getTime();
-    }
-
-    /**
-     * Inherited method from MqttCallback that tells us once an MQTT message has successfuly been delivered. Currently
-     * not needed.
-     */
-    @Override
-    public void deliveryComplete(IMqttDeliveryToken arg0) {
-        // Not needed
+        release();
     }
 
     /**
@@ -165,12 +152,15 @@ public class MQTTSocket implements WebSocketListener, MqttCallback, SocketHandle
     /**
      * Helper method to subscribe to a specific MQTT topic.
      */
-    public void subscribe(String topic) {
-        if (client == null) {
+    public synchronized void subscribe(String topic) {
+        if (bridge == null) {
             return;
         }
         try {
-            client.subscribe(topic, defaultSubscribeQos);
+            if (!topics.contains(topic)) {
+                topics.add(topic);
+                bridge.subscribe(topic, this);
+            }
         } catch (MqttException e) {
             returnError("An MqttException has occurred: " + e.getMessage());
         }
@@ -20,6 +20,7 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 
 import fabric.services.json.JSON;
 import fabric.services.jsonclient.HTTPAdapter;
+import fabric.services.jsonclient.SocketSender;
 
 /**
  * MQTT Socket class that deals with incoming and outgoing MQTT messages, and MQTT connections.
@@ -32,12 +33,13 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
     private final String noNeighboursPayload = "{\"op\":\"query-result:neighbours\",\"nodes\":[]}";
 
     private Session session;
-    private static HTTPAdapter adapter;
+    private SocketSender sender;
+    private HTTPAdapter adapter;
 
     private JSON response;
 
     /**
-     * Creates an HTTP connection to the Fabric registry
+     * Joins the connection to the Fabric shared by all sockets.
      */
     public synchronized void init() {
 
@@ -53,10 +55,7 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
         }
 
         try {
-            if (adapter == null) {
-                setAdapter();
-            }
-            adapter.init();
+            adapter = SharedAdapter.acquire();
         } catch (SQLNonTransientException e) {
             returnError(Constants.ConnectException);
         } catch (Exception e) {
@@ -66,13 +65,6 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
         sendWsMessage("WSConnected");
     }
 
-    /**
-     * Set the adapter for the socket.
-     */
-    private void setAdapter() {
-        adapter = new HTTPAdapter();
-    }
-
     /**
      * Upon connect grab session variable and initialize MQTT connection
      *
@@ -81,6 +73,7 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
     @Override
     public void onWebSocketConnect(Session session) {
         this.session = session;
+        this.sender = new SocketSender(session, Constants.sendQueueLimit, Constants.SlowConsumer);
         init();
     }
 
@@ -101,6 +94,13 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
         } catch (IOException e) {
             returnError(Constants.IOException);
         }
+        if (obj == null) {
+            return;
+        }
+        if (adapter == null) {
+            returnError(Constants.ConnectException);
+            return;
+        }
 
         /**
          * Handle a "refreshnodes" incoming message.
@@ -114,7 +114,7 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
         // sendWsMessage(response.toString());
         // }
         // } else {
-        adapter.getJSONResponseMessage(obj, session);
+        sender.send(adapter.getJSONResponse(obj, sender).toString());
         // }
     }
 
@@ -126,11 +126,7 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
      */
     @Override
     public void returnError(String errorMessage) {
-        try {
-            session.getRemote().sendString(errorMessage);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        sender.send(errorMessage);
     }
 
     /**
@@ -154,10 +150,13 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
      * @param reason
      */
     @Override
-    public void onWebSocketClose(int statusCode, String reason) {
+    public synchronized void onWebSocketClose(int statusCode, String reason) {
         System.out.println("Session closed: " + statusCode + " " + reason);
         session.close();
-        adapter.stop();
+        if (adapter != null) {
+            adapter = null;
+            SharedAdapter.release();
+        }
     }
 
     /**
@@ -169,10 +168,6 @@ public class NodeViewerSocket implements WebSocketListener, SocketHandler {
     }
 
     public void sendWsMessage(String message) {
-        try {
-            session.getRemote().sendString(message);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        sender.send(message);
     }
 }
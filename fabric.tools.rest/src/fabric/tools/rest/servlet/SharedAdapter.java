@@ -0,0 +1,58 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.tools.rest.servlet;
+
+import fabric.services.jsonclient.HTTPAdapter;
+
+/**
+ * The single connection to the Fabric shared by all of the JSON websockets (see <code>JSONSocket</code> and
+ * <code>NodeViewerSocket</code>) in this server.
+ * <p>
+ * The adapter is connected when the first socket acquires it, and stopped when the last socket releases it.
+ * </p>
+ */
+public final class SharedAdapter {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    private static HTTPAdapter adapter = null;
+    private static int users = 0;
+
+    private SharedAdapter() {
+    }
+
+    /**
+     * Answers the shared adapter, connecting it to the Fabric if necessary. Each successful call must be matched by a
+     * call to <code>release()</code>.
+     *
+     * @return the adapter.
+     *
+     * @throws Exception
+     *             thrown if the adapter cannot connect to the Fabric.
+     */
+    public static synchronized HTTPAdapter acquire() throws Exception {
+        if (adapter == null) {
+            HTTPAdapter newAdapter = new HTTPAdapter();
+            newAdapter.init();
+            adapter = newAdapter;
+        }
+        users++;
+        return adapter;
+    }
+
+    /**
+     * Releases a socket's use of the shared adapter, stopping it if this was the last user.
+     */
+    public static synchronized void release() {
+        if (users > 0 && --users == 0) {
+            adapter.stop();
+            adapter = null;
+        }
+    }
+}